@@ -452,6 +452,7 @@ public final class CorePlugin extends SonarPlugin {
       // time machine
       TendencyDecorator.class,
       VariationDecorator.class,
+      SourceHashes.class,
       ViolationTrackingDecorator.class,
       IssueTracking.class,
       ViolationPersisterDecorator.class,
@@ -24,15 +24,14 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.*;
 import org.sonar.api.BatchExtension;
-import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.KeyValueFormat;
-import org.sonar.batch.scan.LastSnapshots;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.plugins.core.timemachine.SourceChecksum;
+import org.sonar.plugins.core.timemachine.SourceHashes;
 import org.sonar.plugins.core.timemachine.ViolationTrackingBlocksRecognizer;
 import org.sonar.plugins.core.timemachine.tracking.*;
 
@@ -54,8 +53,7 @@ public class IssueTracking implements BatchExtension {
   };
   private final Project project;
   private final RuleFinder ruleFinder;
-  private final LastSnapshots lastSnapshots;
-  private final SonarIndex index;
+  private final SourceHashes sourceHashes;
   /**
    * Live collection of unmapped past issues.
    */
@@ -65,11 +63,10 @@ public class IssueTracking implements BatchExtension {
    */
   private Map<DefaultIssue, IssueDto> referenceIssuesMap = Maps.newIdentityHashMap();
 
-  public IssueTracking(Project project, RuleFinder ruleFinder, LastSnapshots lastSnapshots, SonarIndex index) {
+  public IssueTracking(Project project, RuleFinder ruleFinder, SourceHashes sourceHashes) {
     this.project = project;
     this.ruleFinder = ruleFinder;
-    this.lastSnapshots = lastSnapshots;
-    this.index = index;
+    this.sourceHashes = sourceHashes;
   }
 
   /**
@@ -79,16 +76,15 @@ public class IssueTracking implements BatchExtension {
     referenceIssuesMap.clear();
     unmappedLastIssues.clear();
 
-    String source = index.getSource(resource);
-    setChecksumOnNewIssues(newIssues, source);
+    setChecksumOnNewIssues(newIssues, resource);
 
     // Map new issues with old ones
-    mapIssues(newIssues, dbIssues, source, resource);
+    mapIssues(newIssues, dbIssues, resource);
     return unmappedLastIssues;
   }
 
-  private void setChecksumOnNewIssues(Collection<DefaultIssue> issues, String source) {
-    List<String> checksums = SourceChecksum.lineChecksumsOfFile(source);
+  private void setChecksumOnNewIssues(Collection<DefaultIssue> issues, Resource resource) {
+    List<String> checksums = sourceHashes.getLineChecksums(resource);
     for (DefaultIssue issue : issues) {
       issue.setChecksum(SourceChecksum.getChecksumForLine(checksums, issue.line()));
     }
@@ -96,11 +92,11 @@ public class IssueTracking implements BatchExtension {
 
   @VisibleForTesting
   Map<DefaultIssue, IssueDto> mapIssues(Collection<DefaultIssue> newIssues, @Nullable List<IssueDto> lastIssues) {
-    return mapIssues(newIssues, lastIssues, null, null);
+    return mapIssues(newIssues, lastIssues, null);
   }
 
   @VisibleForTesting
-  Map<DefaultIssue, IssueDto> mapIssues(Collection<DefaultIssue> newIssues, @Nullable Collection<IssueDto> lastIssues, @Nullable String source, @Nullable Resource resource) {
+  Map<DefaultIssue, IssueDto> mapIssues(Collection<DefaultIssue> newIssues, @Nullable Collection<IssueDto> lastIssues, @Nullable Resource resource) {
     boolean hasLastScan = false;
     Multimap<Integer, IssueDto> lastIssuesByRule = LinkedHashMultimap.create();
 
@@ -111,10 +107,11 @@ public class IssueTracking implements BatchExtension {
 
     // If each new issue matches an old one we can stop the matching mechanism
     if (referenceIssuesMap.size() != newIssues.size()) {
-      if (source != null && resource != null && hasLastScan) {
-        String referenceSource = lastSnapshots.getSource(resource);
-        if (referenceSource != null) {
-          mapNewissues(referenceSource, newIssues, lastIssuesByRule, source);
+      HashedSequence<StringText> hashedSource = resource != null && hasLastScan ? sourceHashes.getHashedSource(resource) : null;
+      if (hashedSource != null) {
+        HashedSequence<StringText> hashedReference = sourceHashes.getHashedReference(resource);
+        if (hashedReference != null) {
+          mapNewissues(hashedReference, hashedSource, newIssues, lastIssuesByRule);
         }
       }
       mapIssuesOnSameRule(newIssues, lastIssuesByRule);
@@ -147,9 +144,8 @@ public class IssueTracking implements BatchExtension {
     }
   }
 
-  private void mapNewissues(String referenceSource, Collection<DefaultIssue> newIssues, Multimap<Integer, IssueDto> lastIssuesByRule, String source) {
-    HashedSequence<StringText> hashedReference = HashedSequence.wrap(new StringText(referenceSource), StringTextComparator.IGNORE_WHITESPACE);
-    HashedSequence<StringText> hashedSource = HashedSequence.wrap(new StringText(source), StringTextComparator.IGNORE_WHITESPACE);
+  private void mapNewissues(HashedSequence<StringText> hashedReference, HashedSequence<StringText> hashedSource, Collection<DefaultIssue> newIssues,
+                            Multimap<Integer, IssueDto> lastIssuesByRule) {
     HashedSequenceComparator<StringText> hashedComparator = new HashedSequenceComparator<StringText>(StringTextComparator.IGNORE_WHITESPACE);
 
     ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer(hashedReference, hashedSource, hashedComparator);
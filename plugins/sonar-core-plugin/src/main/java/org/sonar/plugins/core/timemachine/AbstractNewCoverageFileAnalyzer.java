@@ -20,8 +20,6 @@
 package org.sonar.plugins.core.timemachine;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import org.apache.commons.lang.ObjectUtils;
 import org.sonar.api.batch.*;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -31,6 +29,7 @@ import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.api.utils.SparseIntArray;
 import org.sonar.batch.components.PastSnapshot;
 import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.core.DryRunIncompatible;
@@ -112,17 +111,17 @@ public abstract class AbstractNewCoverageFileAnalyzer implements Decorator {
 
     if (lastCommits != null && lastCommits.hasData() && hitsByLineMeasure != null && hitsByLineMeasure.hasData()) {
       Map<Integer, Date> datesByLine = KeyValueFormat.parseIntDateTime(lastCommits.getData());
-      Map<Integer, Integer> hitsByLine = parseCountByLine(hitsByLineMeasure);
-      Map<Integer, Integer> conditionsByLine = parseCountByLine(context.getMeasure(getConditionsByLineMetric()));
-      Map<Integer, Integer> coveredConditionsByLine = parseCountByLine(context.getMeasure(getCoveredConditionsByLineMetric()));
+      SparseIntArray hitsByLine = parseCountByLine(hitsByLineMeasure);
+      SparseIntArray conditionsByLine = parseCountByLine(context.getMeasure(getConditionsByLineMetric()));
+      SparseIntArray coveredConditionsByLine = parseCountByLine(context.getMeasure(getCoveredConditionsByLineMetric()));
 
       reset();
 
-      for (Map.Entry<Integer, Integer> entry : hitsByLine.entrySet()) {
-        int lineId = entry.getKey();
-        int hits = entry.getValue();
-        int conditions = (Integer) ObjectUtils.defaultIfNull(conditionsByLine.get(lineId), 0);
-        int coveredConditions = (Integer) ObjectUtils.defaultIfNull(coveredConditionsByLine.get(lineId), 0);
+      for (int i = 0; i < hitsByLine.size(); i++) {
+        int lineId = hitsByLine.keyAt(i);
+        int hits = hitsByLine.valueAt(i);
+        int conditions = conditionsByLine.get(lineId, 0);
+        int coveredConditions = coveredConditionsByLine.get(lineId, 0);
         Date date = datesByLine.get(lineId);
         for (PeriodStruct struct : structs) {
           struct.analyze(date, hits, conditions, coveredConditions);
@@ -159,11 +158,11 @@ public abstract class AbstractNewCoverageFileAnalyzer implements Decorator {
     context.saveMeasure(newUncoveredConditions);
   }
 
-  private Map<Integer, Integer> parseCountByLine(Measure measure) {
+  private SparseIntArray parseCountByLine(Measure measure) {
     if (measure != null && measure.hasData()) {
-      return KeyValueFormat.parseIntInt(measure.getData());
+      return KeyValueFormat.parseSparseIntArray(measure.getData());
     }
-    return Maps.newHashMap();
+    return new SparseIntArray(0);
   }
 
   public static final class PeriodStruct {
@@ -0,0 +1,165 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.core.timemachine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.resources.Resource;
+import org.sonar.batch.scan.LastSnapshots;
+import org.sonar.plugins.core.timemachine.tracking.HashedSequence;
+import org.sonar.plugins.core.timemachine.tracking.StringText;
+import org.sonar.plugins.core.timemachine.tracking.StringTextComparator;
+
+import javax.annotation.CheckForNull;
+
+import java.util.List;
+
+/**
+ * Sources and line hashes of the resource being decorated. They are shared by violation tracking and issue tracking,
+ * so that both versions of the source are loaded from database and hashed only once per resource.
+ * Decorators are executed resource by resource, so only the hashes of the last requested resource are kept in memory.
+ *
+ * @since 3.6
+ */
+public class SourceHashes implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SourceHashes.class);
+
+  private final SonarIndex index;
+  private final LastSnapshots lastSnapshots;
+
+  private FileHashes current;
+  private long computationTimeMs = 0L;
+  private long savedTimeMs = 0L;
+
+  public SourceHashes(SonarIndex index, LastSnapshots lastSnapshots) {
+    this.index = index;
+    this.lastSnapshots = lastSnapshots;
+  }
+
+  @CheckForNull
+  public String getSource(Resource resource) {
+    FileHashes hashes = of(resource);
+    if (!hashes.sourceLoaded) {
+      hashes.source = index.getSource(resource);
+      hashes.sourceLoaded = true;
+    }
+    return hashes.source;
+  }
+
+  /**
+   * @see SourceChecksum#lineChecksumsOfFile(String)
+   */
+  public List<String> getLineChecksums(Resource resource) {
+    FileHashes hashes = of(resource);
+    if (hashes.checksums == null) {
+      String source = getSource(resource);
+      long start = System.currentTimeMillis();
+      hashes.checksums = SourceChecksum.lineChecksumsOfFile(source);
+      hashes.checksumsTimeMs = computed(start);
+    } else {
+      savedTimeMs += hashes.checksumsTimeMs;
+    }
+    return hashes.checksums;
+  }
+
+  /**
+   * @return null if the resource has no source
+   */
+  @CheckForNull
+  public HashedSequence<StringText> getHashedSource(Resource resource) {
+    FileHashes hashes = of(resource);
+    if (hashes.hashedSource == null) {
+      String source = getSource(resource);
+      if (source != null) {
+        long start = System.currentTimeMillis();
+        hashes.hashedSource = HashedSequence.wrap(new StringText(source), StringTextComparator.IGNORE_WHITESPACE);
+        hashes.hashedSourceTimeMs = computed(start);
+      }
+    } else {
+      savedTimeMs += hashes.hashedSourceTimeMs;
+    }
+    return hashes.hashedSource;
+  }
+
+  /**
+   * @return null if the resource has no source in the last analysis
+   */
+  @CheckForNull
+  public HashedSequence<StringText> getHashedReference(Resource resource) {
+    FileHashes hashes = of(resource);
+    if (!hashes.referenceLoaded) {
+      String referenceSource = lastSnapshots.getSource(resource);
+      if (referenceSource != null) {
+        long start = System.currentTimeMillis();
+        hashes.hashedReference = HashedSequence.wrap(new StringText(referenceSource), StringTextComparator.IGNORE_WHITESPACE);
+        hashes.hashedReferenceTimeMs = computed(start);
+      }
+      hashes.referenceLoaded = true;
+    } else {
+      savedTimeMs += hashes.hashedReferenceTimeMs;
+    }
+    return hashes.hashedReference;
+  }
+
+  public void stop() {
+    LOG.debug("Source hashes computed in {} ms, {} ms saved by reusing them", computationTimeMs, savedTimeMs);
+  }
+
+  long getComputationTimeMs() {
+    return computationTimeMs;
+  }
+
+  long getSavedTimeMs() {
+    return savedTimeMs;
+  }
+
+  private FileHashes of(Resource resource) {
+    if (current == null || !current.resource.equals(resource)) {
+      current = new FileHashes(resource);
+    }
+    return current;
+  }
+
+  private long computed(long start) {
+    long duration = System.currentTimeMillis() - start;
+    computationTimeMs += duration;
+    return duration;
+  }
+
+  private static final class FileHashes {
+    private final Resource resource;
+    private boolean sourceLoaded = false;
+    private String source;
+    private List<String> checksums;
+    private long checksumsTimeMs;
+    private HashedSequence<StringText> hashedSource;
+    private long hashedSourceTimeMs;
+    private boolean referenceLoaded = false;
+    private HashedSequence<StringText> hashedReference;
+    private long hashedReferenceTimeMs;
+
+    private FileHashes(Resource resource) {
+      this.resource = resource;
+    }
+  }
+}
@@ -47,7 +47,7 @@ public class ViolationTrackingDecorator implements Decorator {
 
   private LastSnapshots lastSnapshots;
   private Map<Violation, RuleFailureModel> referenceViolationsMap = Maps.newIdentityHashMap();
-  private SonarIndex index;
+  private SourceHashes sourceHashes;
   private Project project;
 
   /**
@@ -55,9 +55,9 @@ public class ViolationTrackingDecorator implements Decorator {
    */
   private Set<RuleFailureModel> unmappedLastViolations = Sets.newHashSet();
 
-  public ViolationTrackingDecorator(Project project, LastSnapshots lastSnapshots, SonarIndex index) {
+  public ViolationTrackingDecorator(Project project, LastSnapshots lastSnapshots, SourceHashes sourceHashes) {
     this.lastSnapshots = lastSnapshots;
-    this.index = index;
+    this.sourceHashes = sourceHashes;
     this.project = project;
   }
 
@@ -75,21 +75,19 @@ public class ViolationTrackingDecorator implements Decorator {
       return;
     }
 
-    String source = index.getSource(resource);
-
     // Load new violations
-    List<Violation> newViolations = prepareNewViolations(context, source);
+    List<Violation> newViolations = prepareNewViolations(context, resource);
 
     // Load the violations of the last available analysis
     List<RuleFailureModel> referenceViolations = lastSnapshots.getViolations(resource);
 
     // Map new violations with old ones
-    mapViolations(newViolations, referenceViolations, source, resource);
+    mapViolations(newViolations, referenceViolations, resource);
   }
 
-  private List<Violation> prepareNewViolations(DecoratorContext context, String source) {
+  private List<Violation> prepareNewViolations(DecoratorContext context, Resource resource) {
     List<Violation> result = Lists.newArrayList();
-    List<String> checksums = SourceChecksum.lineChecksumsOfFile(source);
+    List<String> checksums = sourceHashes.getLineChecksums(resource);
     for (Violation violation : context.getViolations()) {
       violation.setChecksum(SourceChecksum.getChecksumForLine(checksums, violation.getLineId()));
       result.add(violation);
@@ -103,12 +101,12 @@ public class ViolationTrackingDecorator implements Decorator {
 
   @VisibleForTesting
   Map<Violation, RuleFailureModel> mapViolations(List<Violation> newViolations, @Nullable List<RuleFailureModel> lastViolations) {
-    return mapViolations(newViolations, lastViolations, null, null);
+    return mapViolations(newViolations, lastViolations, null);
   }
 
   @VisibleForTesting
   Map<Violation, RuleFailureModel> mapViolations(List<Violation> newViolations, @Nullable List<RuleFailureModel> lastViolations,
-                                                 @Nullable String source, @Nullable Resource resource) {
+                                                 @Nullable Resource resource) {
     boolean hasLastScan = false;
     Multimap<Integer, RuleFailureModel> lastViolationsByRule = LinkedHashMultimap.create();
     
@@ -139,11 +137,10 @@ public class ViolationTrackingDecorator implements Decorator {
 
     // If each new violation matches an old one we can stop the matching mechanism
     if (referenceViolationsMap.size() != newViolations.size()) {
-      if (source != null && resource != null && hasLastScan) {
-        String referenceSource = lastSnapshots.getSource(resource);
-        if (referenceSource != null) {
-          HashedSequence<StringText> hashedReference = HashedSequence.wrap(new StringText(referenceSource), StringTextComparator.IGNORE_WHITESPACE);
-          HashedSequence<StringText> hashedSource = HashedSequence.wrap(new StringText(source), StringTextComparator.IGNORE_WHITESPACE);
+      HashedSequence<StringText> hashedSource = resource != null && hasLastScan ? sourceHashes.getHashedSource(resource) : null;
+      if (hashedSource != null) {
+        HashedSequence<StringText> hashedReference = sourceHashes.getHashedReference(resource);
+        if (hashedReference != null) {
           HashedSequenceComparator<StringText> hashedComparator = new HashedSequenceComparator<StringText>(StringTextComparator.IGNORE_WHITESPACE);
 
           ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer(hashedReference, hashedSource, hashedComparator);
@@ -24,6 +24,7 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rule.RuleKey;
@@ -33,6 +34,7 @@ import org.sonar.api.utils.DateUtils;
 import org.sonar.batch.scan.LastSnapshots;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.db.IssueDto;
+import org.sonar.plugins.core.timemachine.SourceHashes;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -52,6 +54,7 @@ public class IssueTrackingTest {
   Project project;
   RuleFinder ruleFinder;
   LastSnapshots lastSnapshots;
+  SonarIndex index;
   long violationId = 0;
 
   @Before
@@ -75,7 +78,8 @@ public class IssueTrackingTest {
 
     project = mock(Project.class);
     when(project.getAnalysisDate()).thenReturn(analysisDate);
-    tracking = new IssueTracking(project, ruleFinder, lastSnapshots, null);
+    index = mock(SonarIndex.class);
+    tracking = new IssueTracking(project, ruleFinder, new SourceHashes(index, lastSnapshots));
   }
 
   @Test
@@ -234,7 +238,7 @@ public class IssueTrackingTest {
   @Test
   public void past_issue_not_associated_with_line_should_not_cause_npe() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     DefaultIssue newIssue = newDefaultIssue("Indentation", 9, RuleKey.of("squid", "AvoidCycle"), "foo");
     IssueDto referenceIssue = newReferenceIssue("2 branches need to be covered", null, 1, null);
@@ -243,7 +247,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       newArrayList(newIssue),
       newArrayList(referenceIssue),
-      source, project);
+      project);
 
     assertThat(mapping.isEmpty()).isTrue();
     assertThat(newIssue.isNew()).isTrue();
@@ -252,7 +256,7 @@ public class IssueTrackingTest {
   @Test
   public void new_issue_not_associated_with_line_should_not_cause_npe() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     DefaultIssue newIssue = newDefaultIssue("1 branch need to be covered", null, RuleKey.of("squid", "AvoidCycle"), "foo");
     IssueDto referenceIssue = newReferenceIssue("Indentationd", 7, 1, null);
@@ -260,7 +264,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       newArrayList(newIssue),
       newArrayList(referenceIssue),
-      source, project);
+      project);
 
     assertThat(mapping.isEmpty()).isTrue();
     assertThat(newIssue.isNew()).isTrue();
@@ -272,7 +276,7 @@ public class IssueTrackingTest {
   @Test
   public void issue_not_associated_with_line() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     DefaultIssue newIssue = newDefaultIssue("1 branch need to be covered", null, RuleKey.of("squid", "AvoidCycle"), null);
     IssueDto referenceIssue = newReferenceIssue("2 branches need to be covered", null, 1, null);
@@ -280,7 +284,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       newArrayList(newIssue),
       newArrayList(referenceIssue),
-      source, project);
+      project);
 
     assertThat(newIssue.isNew()).isFalse();
     assertThat(mapping.get(newIssue)).isEqualTo(referenceIssue);
@@ -292,7 +296,7 @@ public class IssueTrackingTest {
   @Test
   public void should_track_issues_based_on_blocks_recognition_on_example1() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example1-v1"));
-    String source = load("example1-v2");
+    when(index.getSource(project)).thenReturn(load("example1-v2"));
 
     IssueDto referenceIssue1 = newReferenceIssue("Indentation", 7, 1, null);
     IssueDto referenceIssue2 = newReferenceIssue("Indentation", 11, 1, null);
@@ -305,7 +309,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       Arrays.asList(newIssue1, newIssue2, newIssue3, newIssue4),
       Arrays.asList(referenceIssue1, referenceIssue2),
-      source, project);
+      project);
 
     assertThat(newIssue1.isNew()).isTrue();
     assertThat(newIssue2.isNew()).isTrue();
@@ -321,7 +325,7 @@ public class IssueTrackingTest {
   @Test
   public void should_track_issues_based_on_blocks_recognition_on_example2() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     IssueDto referenceIssue1 = newReferenceIssue("SystemPrintln", 5, 1, null);
 
@@ -332,7 +336,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       Arrays.asList(newIssue1, newIssue2, newIssue3),
       Arrays.asList(referenceIssue1),
-      source, project);
+      project);
 
     assertThat(newIssue1.isNew()).isTrue();
     assertThat(newIssue2.isNew()).isFalse();
@@ -343,7 +347,7 @@ public class IssueTrackingTest {
   @Test
   public void should_track_issues_based_on_blocks_recognition_on_example3() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example3-v1"));
-    String source = load("example3-v2");
+    when(index.getSource(project)).thenReturn(load("example3-v2"));
 
     IssueDto referenceIssue1 = newReferenceIssue("Avoid unused local variables such as 'j'.", 6, 1, "63c11570fc0a76434156be5f8138fa03");
     IssueDto referenceIssue2 = newReferenceIssue("Avoid unused private methods such as 'myMethod()'.", 13, 2, "ef23288705d1ef1e512448ace287586e");
@@ -363,7 +367,7 @@ public class IssueTrackingTest {
     Map<DefaultIssue, IssueDto> mapping = tracking.mapIssues(
       Arrays.asList(newIssue1, newIssue2, newIssue3, newIssue4, newIssue5),
       Arrays.asList(referenceIssue1, referenceIssue2, referenceIssue3),
-      source, project);
+      project);
 
     assertThat(newIssue1.isNew()).isTrue();
     assertThat(newIssue2.isNew()).isFalse();
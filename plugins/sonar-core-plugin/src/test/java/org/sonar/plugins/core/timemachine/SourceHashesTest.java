@@ -0,0 +1,90 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.core.timemachine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Resource;
+import org.sonar.batch.scan.LastSnapshots;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SourceHashesTest {
+
+  SonarIndex index;
+  LastSnapshots lastSnapshots;
+  SourceHashes sourceHashes;
+
+  @Before
+  public void setUp() {
+    index = mock(SonarIndex.class);
+    lastSnapshots = mock(LastSnapshots.class);
+    sourceHashes = new SourceHashes(index, lastSnapshots);
+  }
+
+  @Test
+  public void should_load_and_hash_sources_once_per_resource() {
+    Resource file = new JavaFile("org.foo.Bar");
+    when(index.getSource(file)).thenReturn("line1\n  line2\n");
+    when(lastSnapshots.getSource(file)).thenReturn("line1\nline2\n");
+
+    assertThat(sourceHashes.getLineChecksums(file)).isEqualTo(SourceChecksum.lineChecksumsOfFile("line1\n  line2\n"));
+    assertThat(sourceHashes.getLineChecksums(file)).isSameAs(sourceHashes.getLineChecksums(file));
+    assertThat(sourceHashes.getHashedSource(file)).isSameAs(sourceHashes.getHashedSource(file));
+    assertThat(sourceHashes.getHashedSource(file).length()).isEqualTo(2);
+    assertThat(sourceHashes.getHashedReference(file)).isSameAs(sourceHashes.getHashedReference(file));
+
+    verify(index, times(1)).getSource(file);
+    verify(lastSnapshots, times(1)).getSource(file);
+  }
+
+  @Test
+  public void should_reload_sources_of_another_resource() {
+    Resource first = new JavaFile("org.foo.First");
+    Resource second = new JavaFile("org.foo.Second");
+    when(index.getSource(first)).thenReturn("first");
+    when(index.getSource(second)).thenReturn("second\nfile");
+
+    assertThat(sourceHashes.getHashedSource(first).length()).isEqualTo(1);
+    assertThat(sourceHashes.getHashedSource(second).length()).isEqualTo(2);
+    assertThat(sourceHashes.getSource(first)).isEqualTo("first");
+
+    verify(index, times(2)).getSource(first);
+  }
+
+  @Test
+  public void should_support_missing_sources() {
+    Resource file = new JavaFile("org.foo.Bar");
+
+    assertThat(sourceHashes.getSource(file)).isNull();
+    assertThat(sourceHashes.getHashedSource(file)).isNull();
+    assertThat(sourceHashes.getHashedReference(file)).isNull();
+    assertThat(sourceHashes.getLineChecksums(file)).isEmpty();
+
+    verify(index, times(1)).getSource(file);
+    verify(lastSnapshots, times(1)).getSource(file);
+  }
+}
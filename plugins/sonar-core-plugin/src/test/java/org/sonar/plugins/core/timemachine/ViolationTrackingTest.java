@@ -23,6 +23,7 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Resources;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.batch.SonarIndex;
 import org.sonar.api.database.model.RuleFailureModel;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.Rule;
@@ -49,19 +50,21 @@ public class ViolationTrackingTest {
 
   private Project project;
   private LastSnapshots lastSnapshots;
+  private SonarIndex index;
 
   @Before
   public void setUp() {
     project = mock(Project.class);
     when(project.getAnalysisDate()).thenReturn(analysisDate);
     lastSnapshots = mock(LastSnapshots.class);
-    decorator = new ViolationTrackingDecorator(project, lastSnapshots, null);
+    index = mock(SonarIndex.class);
+    decorator = new ViolationTrackingDecorator(project, lastSnapshots, new SourceHashes(index, lastSnapshots));
   }
 
   @Test
   public void pastViolationNotAssiciatedWithLineShouldNotCauseNPE() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     RuleFailureModel referenceViolation1 = newReferenceViolation("2 branches need to be covered", null, 50);
 
@@ -71,7 +74,7 @@ public class ViolationTrackingTest {
     Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(
         Arrays.asList(newViolation1),
         Arrays.asList(referenceViolation1),
-        source, project);
+        project);
 
     assertThat(mapping.isEmpty(), is(true));
     assertThat(newViolation1.isNew(), is(true));
@@ -80,7 +83,7 @@ public class ViolationTrackingTest {
   @Test
   public void newViolationNotAssiciatedWithLineShouldNotCauseNPE() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     RuleFailureModel referenceViolation1 = newReferenceViolation("Indentation", 7, 50);
 
@@ -90,7 +93,7 @@ public class ViolationTrackingTest {
     Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(
         Arrays.asList(newViolation1),
         Arrays.asList(referenceViolation1),
-        source, project);
+        project);
 
     assertThat(mapping.isEmpty(), is(true));
     assertThat(newViolation1.isNew(), is(true));
@@ -102,7 +105,7 @@ public class ViolationTrackingTest {
   @Test
   public void violationNotAssociatedWithLine() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     RuleFailureModel referenceViolation1 = newReferenceViolation("2 branches need to be covered", null, 50);
 
@@ -111,7 +114,7 @@ public class ViolationTrackingTest {
     Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(
         Arrays.asList(newViolation1),
         Arrays.asList(referenceViolation1),
-        source, project);
+        project);
 
     assertThat(newViolation1.isNew(), is(false));
     assertThat(mapping.get(newViolation1), equalTo(referenceViolation1));
@@ -123,7 +126,7 @@ public class ViolationTrackingTest {
   @Test
   public void example1() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example1-v1"));
-    String source = load("example1-v2");
+    when(index.getSource(project)).thenReturn(load("example1-v2"));
 
     RuleFailureModel referenceViolation1 = newReferenceViolation("Indentation", 7, 50);
     RuleFailureModel referenceViolation2 = newReferenceViolation("Indentation", 11, 50);
@@ -136,7 +139,7 @@ public class ViolationTrackingTest {
     Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(
         Arrays.asList(newViolation1, newViolation2, newViolation3, newViolation4),
         Arrays.asList(referenceViolation1, referenceViolation2),
-        source, project);
+        project);
 
     assertThat(newViolation1.isNew(), is(true));
     assertThat(newViolation2.isNew(), is(true));
@@ -152,7 +155,7 @@ public class ViolationTrackingTest {
   @Test
   public void example2() throws Exception {
     when(lastSnapshots.getSource(project)).thenReturn(load("example2-v1"));
-    String source = load("example2-v2");
+    when(index.getSource(project)).thenReturn(load("example2-v2"));
 
     RuleFailureModel referenceViolation1 = newReferenceViolation("SystemPrintln", 5, 50);
 
@@ -163,7 +166,7 @@ public class ViolationTrackingTest {
     Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(
         Arrays.asList(newViolation1, newViolation2, newViolation3),
         Arrays.asList(referenceViolation1),
-        source, project);
+        project);
 
     assertThat(newViolation1.isNew(), is(true));
     assertThat(newViolation2.isNew(), is(false));
@@ -60,6 +60,15 @@ public final class CpdPlugin extends SonarPlugin {
         .category(CoreProperties.CATEGORY_DUPLICATIONS)
         .multiValues(true)
         .build(),
+      PropertyDefinition.builder(CoreProperties.CPD_INCREMENTAL)
+        .defaultValue(CoreProperties.CPD_INCREMENTAL_DEFAULT_VALUE + "")
+        .name("Incremental duplication detection")
+        .description("Reuse blocks of files, which were not changed since previous analysis, and detect duplications only in changed files " +
+          "and in files, which share blocks with them. Not supported with cross project duplication detection.")
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .category(CoreProperties.CATEGORY_DUPLICATIONS)
+        .type(PropertyType.BOOLEAN)
+        .build(),
 
       CpdSensor.class,
       SumDuplicationsDecorator.class,
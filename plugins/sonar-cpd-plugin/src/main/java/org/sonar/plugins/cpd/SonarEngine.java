@@ -20,7 +20,10 @@
 
 package org.sonar.plugins.cpd;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.slf4j.Logger;
@@ -43,6 +46,7 @@ import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.SonarException;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.CloneIndex;
@@ -53,15 +57,17 @@ import org.sonar.duplications.statement.Statement;
 import org.sonar.duplications.statement.StatementChunker;
 import org.sonar.duplications.token.TokenChunker;
 import org.sonar.plugins.cpd.index.IndexFactory;
+import org.sonar.plugins.cpd.index.PreviousAnalysis;
 import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
 import javax.annotation.Nullable;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -117,11 +123,18 @@ public class SonarEngine extends CpdEngine {
     if (sourceFiles.isEmpty()) {
       return;
     }
-    SonarDuplicationsIndex index = createIndex(project, sourceFiles);
-    detect(index, context, project, sourceFiles);
+    PreviousAnalysis previousAnalysis = indexFactory.createPreviousAnalysis(project);
+    Set<String> changedResourceKeys = Sets.newHashSet();
+    SonarDuplicationsIndex index = createIndex(project, sourceFiles, previousAnalysis, changedResourceKeys);
+    Set<String> resourceKeysToDetect = null;
+    if (previousAnalysis != null) {
+      resourceKeysToDetect = getResourceKeysToDetect(index, previousAnalysis, changedResourceKeys);
+      LOG.info("{} changed files, {} files to analyse for duplications", changedResourceKeys.size(), resourceKeysToDetect.size());
+    }
+    detect(index, context, project, sourceFiles, previousAnalysis, resourceKeysToDetect);
   }
 
-  private SonarDuplicationsIndex createIndex(Project project, List<File> sourceFiles) {
+  private SonarDuplicationsIndex createIndex(Project project, List<File> sourceFiles, @Nullable PreviousAnalysis previousAnalysis, Set<String> changedResourceKeys) {
     final SonarDuplicationsIndex index = indexFactory.create(project);
 
     TokenChunker tokenChunker = JavaTokenProducer.build();
@@ -133,35 +146,79 @@ public class SonarEngine extends CpdEngine {
       Resource<?> resource = getResource(file);
       String resourceKey = getFullKey(project, resource);
 
-      List<Statement> statements;
-
+      List<Block> previousBlocks = previousAnalysis == null ? null : previousAnalysis.getBlocks(resourceKey);
       Reader reader = null;
       try {
-        reader = new InputStreamReader(new FileInputStream(file), fileSystem.sourceCharset());
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
+        if (previousBlocks != null) {
+          String content = Files.toString(file, fileSystem.sourceCharset());
+          if (previousAnalysis.isUnchanged(resourceKey, content)) {
+            index.insert(resource, previousBlocks);
+            continue;
+          }
+          reader = new StringReader(content);
+        } else {
+          reader = new InputStreamReader(new FileInputStream(file), fileSystem.sourceCharset());
+        }
+        List<Statement> statements = statementChunker.chunk(tokenChunker.chunk(reader));
+        List<Block> blocks = blockChunker.chunk(resourceKey, statements);
+        index.insert(resource, blocks);
+        changedResourceKeys.add(resourceKey);
+      } catch (IOException e) {
         throw new SonarException(e);
       } finally {
         IOUtils.closeQuietly(reader);
       }
-
-      List<Block> blocks = blockChunker.chunk(resourceKey, statements);
-      index.insert(resource, blocks);
     }
 
     return index;
   }
 
-  private void detect(SonarDuplicationsIndex index, SensorContext context, Project project, List<File> sourceFiles) {
+  /**
+   * Duplications can change only for changed files and for files, which share blocks with current or previous version of changed files
+   * or with removed files. Duplications of other files can be copied from previous analysis.
+   */
+  @VisibleForTesting
+  static Set<String> getResourceKeysToDetect(SonarDuplicationsIndex index, PreviousAnalysis previousAnalysis, Set<String> changedResourceKeys) {
+    Set<ByteArray> hashes = Sets.newHashSet();
+    for (String resourceKey : changedResourceKeys) {
+      addHashes(index.getByResourceId(resourceKey), hashes);
+    }
+    for (String resourceKey : previousAnalysis.getResourceKeys()) {
+      if (changedResourceKeys.contains(resourceKey) || index.getByResourceId(resourceKey).isEmpty()) {
+        addHashes(previousAnalysis.getBlocks(resourceKey), hashes);
+      }
+    }
+    Set<String> result = Sets.newHashSet(changedResourceKeys);
+    for (ByteArray hash : hashes) {
+      for (Block block : index.getBySequenceHash(hash)) {
+        result.add(block.getResourceId());
+      }
+    }
+    return result;
+  }
+
+  private static void addHashes(Collection<Block> blocks, Set<ByteArray> hashes) {
+    for (Block block : blocks) {
+      hashes.add(block.getBlockHash());
+    }
+  }
+
+  private void detect(SonarDuplicationsIndex index, SensorContext context, Project project, List<File> sourceFiles,
+      @Nullable PreviousAnalysis previousAnalysis, @Nullable Set<String> resourceKeysToDetect) {
     ExecutorService executorService = Executors.newSingleThreadExecutor();
     try {
       for (File file : sourceFiles) {
-        LOG.debug("Detection of duplications for {}", file);
         Resource<?> resource = getResource(file);
         String resourceKey = getFullKey(project, resource);
 
         Collection<Block> fileBlocks = index.getByResource(resource, resourceKey);
 
+        if (resourceKeysToDetect != null && !resourceKeysToDetect.contains(resourceKey)
+          && (!hasDuplicatedHashes(index, fileBlocks) || previousAnalysis.copyDuplications(context, resource, resourceKey))) {
+          continue;
+        }
+
+        LOG.debug("Detection of duplications for {}", file);
         List<CloneGroup> clones;
         try {
           clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
@@ -181,6 +238,18 @@ public class SonarEngine extends CpdEngine {
     }
   }
 
+  /**
+   * @return false if file can't have duplications, because each of its blocks is unique
+   */
+  private static boolean hasDuplicatedHashes(SonarDuplicationsIndex index, Collection<Block> fileBlocks) {
+    for (Block block : fileBlocks) {
+      if (index.getBySequenceHash(block.getBlockHash()).size() > 1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   static class Task implements Callable<List<CloneGroup>> {
     private final CloneIndex index;
     private final Collection<Block> fileBlocks;
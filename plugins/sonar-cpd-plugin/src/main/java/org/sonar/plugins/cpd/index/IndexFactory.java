@@ -26,9 +26,16 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
+import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.index.ResourcePersister;
 import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.duplication.DuplicationMeasureDto;
+import org.sonar.core.duplication.DuplicationUnitDto;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Collections;
 
 public class IndexFactory implements BatchExtension {
 
@@ -48,9 +55,53 @@ public class IndexFactory implements BatchExtension {
     if (verifyCrossProject(project, LOG)) {
       return new SonarDuplicationsIndex(new DbDuplicationsIndex(resourcePersister, project, dao));
     }
+    if (isIncremental()) {
+      // blocks should be persisted for next analysis
+      return new SonarDuplicationsIndex(new DbDuplicationsIndex(resourcePersister, project, dao), false);
+    }
     return new SonarDuplicationsIndex();
   }
 
+  /**
+   * @return blocks and duplications from previous analysis of module, or null if incremental detection is disabled
+   */
+  @CheckForNull
+  public PreviousAnalysis createPreviousAnalysis(Project project) {
+    if (!verifyIncremental(LOG)) {
+      return null;
+    }
+    Snapshot lastSnapshot = resourcePersister.getLastSnapshot(resourcePersister.getSnapshotOrFail(project), false);
+    if (lastSnapshot == null) {
+      return new PreviousAnalysis(Collections.<DuplicationUnitDto>emptyList(), Collections.<String, String>emptyMap(),
+          Collections.<DuplicationMeasureDto>emptyList());
+    }
+    int lastSnapshotId = lastSnapshot.getId();
+    return new PreviousAnalysis(dao.selectByProjectSnapshot(lastSnapshotId), dao.selectSourceHashesByProjectSnapshot(lastSnapshotId),
+        dao.selectMeasuresByProjectSnapshot(lastSnapshotId, PreviousAnalysis.METRIC_KEYS));
+  }
+
+  private boolean isIncremental() {
+    return settings.getBoolean(CoreProperties.CPD_INCREMENTAL)
+      && !settings.getBoolean(CoreProperties.CPD_CROSS_RPOJECT)
+      && !settings.getBoolean(CoreProperties.DRY_RUN);
+  }
+
+  @VisibleForTesting
+  boolean verifyIncremental(Logger logger) {
+    if (!settings.getBoolean(CoreProperties.CPD_INCREMENTAL)) {
+      return false;
+    }
+    if (settings.getBoolean(CoreProperties.CPD_CROSS_RPOJECT)) {
+      logger.info("Incremental detection of duplications disabled. Not supported with cross-project analysis.");
+    } else if (settings.getBoolean(CoreProperties.DRY_RUN)) {
+      logger.info("Incremental detection of duplications disabled. Not supported on dry runs.");
+    } else {
+      logger.info("Incremental detection of duplications enabled");
+      return true;
+    }
+    return false;
+  }
+
   @VisibleForTesting
   boolean verifyCrossProject(Project project, Logger logger) {
     boolean crossProject = false;
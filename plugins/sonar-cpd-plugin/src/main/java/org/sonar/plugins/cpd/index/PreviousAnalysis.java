@@ -0,0 +1,124 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cpd.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.resources.Resource;
+import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.duplication.DuplicationMeasureDto;
+import org.sonar.core.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Blocks and duplications of files from previous analysis of module, which allow to not process files without changes.
+ * Everything is loaded by a few queries per module, so that unchanged files do not require any request to database.
+ *
+ * @since 3.6
+ */
+public class PreviousAnalysis {
+
+  static final List<String> METRIC_KEYS = Arrays.asList(CoreMetrics.DUPLICATED_FILES_KEY, CoreMetrics.DUPLICATED_LINES_KEY,
+      CoreMetrics.DUPLICATED_BLOCKS_KEY, CoreMetrics.DUPLICATIONS_DATA_KEY);
+
+  private final Map<String, List<Block>> blocksByResourceKey = Maps.newHashMap();
+  private final Map<String, String> sourceHashes;
+  private final Map<String, Map<String, DuplicationMeasureDto>> measuresByResourceKey = Maps.newHashMap();
+
+  /**
+   * @param sourceHashes hashes of sources computed by {@link DuplicationDao#hashSource(String)}, by keys of files
+   */
+  public PreviousAnalysis(Collection<DuplicationUnitDto> units, Map<String, String> sourceHashes, Collection<DuplicationMeasureDto> measures) {
+    this.sourceHashes = sourceHashes;
+    for (DuplicationUnitDto unit : units) {
+      List<Block> blocks = blocksByResourceKey.get(unit.getResourceKey());
+      if (blocks == null) {
+        blocks = Lists.newArrayList();
+        blocksByResourceKey.put(unit.getResourceKey(), blocks);
+      }
+      blocks.add(Block.builder()
+          .setResourceId(unit.getResourceKey())
+          .setBlockHash(new ByteArray(unit.getHash()))
+          .setIndexInFile(unit.getIndexInFile())
+          .setLines(unit.getStartLine(), unit.getEndLine())
+          .build());
+    }
+    for (DuplicationMeasureDto measure : measures) {
+      Map<String, DuplicationMeasureDto> byMetric = measuresByResourceKey.get(measure.getResourceKey());
+      if (byMetric == null) {
+        byMetric = Maps.newHashMap();
+        measuresByResourceKey.put(measure.getResourceKey(), byMetric);
+      }
+      byMetric.put(measure.getMetricKey(), measure);
+    }
+  }
+
+  public Set<String> getResourceKeys() {
+    return blocksByResourceKey.keySet();
+  }
+
+  /**
+   * @return blocks of file from previous analysis, or null if file was not analysed or had no blocks
+   */
+  @CheckForNull
+  public List<Block> getBlocks(String resourceKey) {
+    return blocksByResourceKey.get(resourceKey);
+  }
+
+  /**
+   * @return true if specified content of file is the same as in previous analysis
+   */
+  public boolean isUnchanged(String resourceKey, String content) {
+    String hash = sourceHashes.get(resourceKey);
+    return hash != null && hash.equals(DuplicationDao.hashSource(content));
+  }
+
+  /**
+   * Saves duplications of file from previous analysis as duplications of current analysis.
+   *
+   * @return false if there was no duplications in previous analysis
+   */
+  public boolean copyDuplications(SensorContext context, Resource resource, String resourceKey) {
+    Map<String, DuplicationMeasureDto> byMetric = measuresByResourceKey.get(resourceKey);
+    if (byMetric == null || byMetric.size() < METRIC_KEYS.size()) {
+      return false;
+    }
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_FILES, byMetric.get(CoreMetrics.DUPLICATED_FILES_KEY).getValue());
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_LINES, byMetric.get(CoreMetrics.DUPLICATED_LINES_KEY).getValue());
+    context.saveMeasure(resource, CoreMetrics.DUPLICATED_BLOCKS, byMetric.get(CoreMetrics.DUPLICATED_BLOCKS_KEY).getValue());
+    context.saveMeasure(resource, new Measure(CoreMetrics.DUPLICATIONS_DATA, byMetric.get(CoreMetrics.DUPLICATIONS_DATA_KEY).getData())
+        .setPersistenceMode(PersistenceMode.DATABASE));
+    return true;
+  }
+
+}
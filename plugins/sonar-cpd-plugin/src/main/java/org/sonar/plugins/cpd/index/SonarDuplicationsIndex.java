@@ -27,6 +27,8 @@ import org.sonar.duplications.index.AbstractCloneIndex;
 import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
 import java.util.List;
 
@@ -35,12 +37,22 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
   private final CloneIndex mem = new PackedMemoryCloneIndex();
   private final DbDuplicationsIndex db;
 
+  /**
+   * Whether blocks of other projects should be searched in {@link #db}, otherwise it's used only to persist blocks.
+   */
+  private final boolean crossProject;
+
   public SonarDuplicationsIndex() {
-    this.db = null;
+    this(null, false);
   }
 
   public SonarDuplicationsIndex(DbDuplicationsIndex db) {
+    this(db, true);
+  }
+
+  public SonarDuplicationsIndex(@Nullable DbDuplicationsIndex db, boolean crossProject) {
     this.db = db;
+    this.crossProject = db != null && crossProject;
   }
 
   public void insert(Resource resource, Collection<Block> blocks) {
@@ -53,14 +65,14 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
   }
 
   public Collection<Block> getByResource(Resource resource, String resourceKey) {
-    if (db != null) {
+    if (crossProject) {
       db.prepareCache(resource);
     }
     return mem.getByResourceId(resourceKey);
   }
 
   public Collection<Block> getBySequenceHash(ByteArray hash) {
-    if (db == null) {
+    if (!crossProject) {
       return mem.getBySequenceHash(hash);
     } else {
       List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
@@ -69,8 +81,11 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
     }
   }
 
+  /**
+   * @return blocks of specified resource from current analysis
+   */
   public Collection<Block> getByResourceId(String resourceId) {
-    throw new UnsupportedOperationException();
+    return mem.getByResourceId(resourceId);
   }
 
   public void insert(Block block) {
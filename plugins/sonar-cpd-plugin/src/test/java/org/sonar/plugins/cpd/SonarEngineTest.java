@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.cpd;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
@@ -30,12 +31,17 @@ import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.scan.filesystem.PathResolver.RelativePath;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.plugins.cpd.index.PreviousAnalysis;
+import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -171,6 +177,32 @@ public class SonarEngineTest {
           + "</g></duplications>")));
   }
 
+  @Test
+  public void should_detect_changed_files_and_files_sharing_blocks_with_them() {
+    SonarDuplicationsIndex index = new SonarDuplicationsIndex();
+    index.insert(resource, Arrays.asList(newBlock("A", 1), newBlock("A", 2)));
+    index.insert(resource, Arrays.asList(newBlock("B", 2), newBlock("B", 3)));
+    index.insert(resource, Arrays.asList(newBlock("C", 4), newBlock("C", 5)));
+    index.insert(resource, Arrays.asList(newBlock("D", 6)));
+    PreviousAnalysis previousAnalysis = mock(PreviousAnalysis.class);
+    when(previousAnalysis.getResourceKeys()).thenReturn(ImmutableSet.of("A", "B", "C", "D", "E"));
+    when(previousAnalysis.getBlocks("A")).thenReturn(Arrays.asList(newBlock("A", 7)));
+    when(previousAnalysis.getBlocks("E")).thenReturn(Arrays.asList(newBlock("E", 6)));
+
+    Set<String> resourceKeys = SonarEngine.getResourceKeysToDetect(index, previousAnalysis, Collections.singleton("A"));
+
+    assertThat(resourceKeys).containsOnly("A", "B", "D");
+  }
+
+  private static Block newBlock(String resourceId, long hash) {
+    return Block.builder()
+        .setResourceId(resourceId)
+        .setBlockHash(new ByteArray(hash))
+        .setIndexInFile(0)
+        .setLines(1, 10)
+        .build();
+  }
+
   private CloneGroup newCloneGroup(ClonePart... parts) {
     return CloneGroup.builder().setLength(0).setOrigin(parts[0]).setParts(Arrays.asList(parts)).build();
   }
@@ -24,6 +24,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
+import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.index.ResourcePersister;
 import org.sonar.core.duplication.DuplicationDao;
@@ -31,6 +32,9 @@ import org.sonar.core.duplication.DuplicationDao;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 public class IndexFactoryTest {
 
@@ -77,4 +81,54 @@ public class IndexFactoryTest {
     verify(logger).info("Cross-project analysis disabled");
   }
 
+  @Test
+  public void incremental_enabled() {
+    settings.setProperty(CoreProperties.CPD_INCREMENTAL, "true");
+    assertThat(factory.verifyIncremental(logger)).isTrue();
+    verify(logger).info("Incremental detection of duplications enabled");
+  }
+
+  @Test
+  public void incremental_disabled_by_default() {
+    assertThat(factory.verifyIncremental(logger)).isFalse();
+    verifyZeroInteractions(logger);
+    assertThat(factory.createPreviousAnalysis(project)).isNull();
+  }
+
+  @Test
+  public void should_load_previous_analysis_with_one_query_per_kind_of_data() {
+    settings.setProperty(CoreProperties.CPD_INCREMENTAL, "true");
+    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    Snapshot snapshot = new Snapshot();
+    Snapshot lastSnapshot = new Snapshot();
+    lastSnapshot.setId(7);
+    when(resourcePersister.getSnapshotOrFail(project)).thenReturn(snapshot);
+    when(resourcePersister.getLastSnapshot(snapshot, false)).thenReturn(lastSnapshot);
+    DuplicationDao dao = mock(DuplicationDao.class);
+    factory = new IndexFactory(settings, resourcePersister, dao);
+
+    assertThat(factory.createPreviousAnalysis(project)).isNotNull();
+
+    verify(dao).selectByProjectSnapshot(7);
+    verify(dao).selectSourceHashesByProjectSnapshot(7);
+    verify(dao).selectMeasuresByProjectSnapshot(7, PreviousAnalysis.METRIC_KEYS);
+    verifyNoMoreInteractions(dao);
+  }
+
+  @Test
+  public void incremental_should_be_disabled_with_cross_project() {
+    settings.setProperty(CoreProperties.CPD_INCREMENTAL, "true");
+    settings.setProperty(CoreProperties.CPD_CROSS_RPOJECT, "true");
+    assertThat(factory.verifyIncremental(logger)).isFalse();
+    verify(logger).info("Incremental detection of duplications disabled. Not supported with cross-project analysis.");
+  }
+
+  @Test
+  public void incremental_should_be_disabled_on_dry_run() {
+    settings.setProperty(CoreProperties.CPD_INCREMENTAL, "true");
+    settings.setProperty(CoreProperties.DRY_RUN, "true");
+    assertThat(factory.verifyIncremental(logger)).isFalse();
+    verify(logger).info("Incremental detection of duplications disabled. Not supported on dry runs.");
+  }
+
 }
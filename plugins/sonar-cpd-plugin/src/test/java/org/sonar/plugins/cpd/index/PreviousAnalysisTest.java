@@ -0,0 +1,115 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cpd.index;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.test.IsMeasure;
+import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.duplication.DuplicationMeasureDto;
+import org.sonar.core.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class PreviousAnalysisTest {
+
+  SensorContext context = mock(SensorContext.class);
+  Resource resource = new JavaFile("org.foo.Bar");
+
+  @Test
+  public void should_group_blocks_by_resource() {
+    PreviousAnalysis previousAnalysis = new PreviousAnalysis(Arrays.asList(
+        newUnit("foo:Bar", "aa", 0, 1, 10),
+        newUnit("foo:Bar", "bb", 1, 2, 11),
+        newUnit("foo:Baz", "aa", 0, 5, 14)), Collections.<String, String>emptyMap(), Collections.<DuplicationMeasureDto>emptyList());
+
+    assertThat(previousAnalysis.getResourceKeys()).containsOnly("foo:Bar", "foo:Baz");
+    List<Block> blocks = previousAnalysis.getBlocks("foo:Bar");
+    assertThat(blocks).hasSize(2);
+    assertThat(blocks.get(1).getResourceId()).isEqualTo("foo:Bar");
+    assertThat(blocks.get(1).getHashHex()).isEqualTo("bb");
+    assertThat(blocks.get(1).getIndexInFile()).isEqualTo(1);
+    assertThat(blocks.get(1).getStartLine()).isEqualTo(2);
+    assertThat(blocks.get(1).getEndLine()).isEqualTo(11);
+    assertThat(previousAnalysis.getBlocks("foo:Other")).isNull();
+  }
+
+  @Test
+  public void should_compare_content_with_hash_of_last_source() {
+    Map<String, String> hashes = ImmutableMap.of("foo:Bar", DuplicationDao.hashSource("class Bar {}"));
+    PreviousAnalysis previousAnalysis = new PreviousAnalysis(Collections.<DuplicationUnitDto>emptyList(), hashes, Collections.<DuplicationMeasureDto>emptyList());
+
+    assertThat(previousAnalysis.isUnchanged("foo:Bar", "class Bar {}")).isTrue();
+    assertThat(previousAnalysis.isUnchanged("foo:Bar", "class Bar { }")).isFalse();
+    assertThat(previousAnalysis.isUnchanged("foo:Other", "class Bar {}")).isFalse();
+  }
+
+  @Test
+  public void should_copy_duplications() {
+    PreviousAnalysis previousAnalysis = new PreviousAnalysis(Collections.<DuplicationUnitDto>emptyList(), Collections.<String, String>emptyMap(), Arrays.asList(
+        newMeasure("foo:Bar", CoreMetrics.DUPLICATED_FILES_KEY, 1.0, null),
+        newMeasure("foo:Bar", CoreMetrics.DUPLICATED_LINES_KEY, 20.0, null),
+        newMeasure("foo:Bar", CoreMetrics.DUPLICATED_BLOCKS_KEY, 2.0, null),
+        newMeasure("foo:Bar", CoreMetrics.DUPLICATIONS_DATA_KEY, null, "<duplications/>")));
+
+    assertThat(previousAnalysis.copyDuplications(context, resource, "foo:Bar")).isTrue();
+
+    verify(context).saveMeasure(resource, CoreMetrics.DUPLICATED_FILES, 1.0);
+    verify(context).saveMeasure(resource, CoreMetrics.DUPLICATED_LINES, 20.0);
+    verify(context).saveMeasure(resource, CoreMetrics.DUPLICATED_BLOCKS, 2.0);
+    verify(context).saveMeasure(eq(resource), argThat(new IsMeasure(CoreMetrics.DUPLICATIONS_DATA, "<duplications/>")));
+  }
+
+  @Test
+  public void should_not_copy_duplications_if_absent() {
+    PreviousAnalysis previousAnalysis = new PreviousAnalysis(Collections.<DuplicationUnitDto>emptyList(), Collections.<String, String>emptyMap(), Arrays.asList(
+        newMeasure("foo:Bar", CoreMetrics.DUPLICATED_LINES_KEY, 20.0, null)));
+
+    assertThat(previousAnalysis.copyDuplications(context, resource, "foo:Bar")).isFalse();
+    assertThat(previousAnalysis.copyDuplications(context, resource, "foo:Other")).isFalse();
+    verifyZeroInteractions(context);
+  }
+
+  private static DuplicationUnitDto newUnit(String resourceKey, String hash, int indexInFile, int startLine, int endLine) {
+    DuplicationUnitDto unit = new DuplicationUnitDto(1, 2, hash, indexInFile, startLine, endLine);
+    unit.setResourceKey(resourceKey);
+    return unit;
+  }
+
+  private static DuplicationMeasureDto newMeasure(String resourceKey, String metricKey, Double value, String textValue) {
+    return new DuplicationMeasureDto().setResourceKey(resourceKey).setMetricKey(metricKey).setValue(value).setTextValue(textValue);
+  }
+
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.plugins.emailnotifications;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.SimpleEmail;
@@ -33,8 +35,15 @@ import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
 import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
+import java.util.Map;
 
 /**
  * References:
@@ -95,16 +104,47 @@ public class EmailNotificationChannel extends NotificationChannel {
 
   @Override
   public void deliver(Notification notification, String username) {
+    EmailMessage emailMessage = toEmailMessage(notification, username);
+    if (emailMessage != null) {
+      deliver(emailMessage);
+    }
+  }
+
+  /**
+   * All the emails are sent through a single connection to the SMTP server.
+   */
+  @Override
+  public void deliverAll(Multimap<String, Notification> notificationsByUser) {
+    List<EmailMessage> emailMessages = Lists.newArrayList();
+    for (Map.Entry<String, Notification> entry : notificationsByUser.entries()) {
+      try {
+        EmailMessage emailMessage = toEmailMessage(entry.getValue(), entry.getKey());
+        if (emailMessage != null) {
+          emailMessages.add(emailMessage);
+        }
+      } catch (Exception e) {
+        // catch all exceptions in order to deliver the other notifications
+        LOG.warn("Unable to deliver notification " + entry.getValue() + " for user " + entry.getKey() + " via " + this, e);
+      }
+    }
+    deliver(emailMessages);
+  }
+
+  private EmailMessage toEmailMessage(Notification notification, String username) {
     User user = userFinder.findByLogin(username);
+    if (user == null) {
+      LOG.debug("User does not exist: " + username);
+      return null;
+    }
     if (StringUtils.isBlank(user.getEmail())) {
       LOG.debug("Email not defined for user: " + username);
-      return;
+      return null;
     }
     EmailMessage emailMessage = format(notification);
     if (emailMessage != null) {
       emailMessage.setTo(user.getEmail());
-      deliver(emailMessage);
     }
+    return emailMessage;
   }
 
   private EmailMessage format(Notification notification) {
@@ -133,70 +173,145 @@ public class EmailNotificationChannel extends NotificationChannel {
     }
   }
 
-  private void send(EmailMessage emailMessage) throws EmailException {
+  /**
+   * Visibility has been relaxed for tests.
+   */
+  void deliver(List<EmailMessage> emailMessages) {
+    if (StringUtils.isBlank(configuration.getSmtpHost())) {
+      LOG.debug("SMTP host was not configured - email will not be sent");
+      return;
+    }
+    if (emailMessages.isEmpty()) {
+      return;
+    }
     // Trick to correctly initilize javax.mail library
     ClassLoader classloader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
+    Session session = null;
+    Transport transport = null;
     try {
-      LOG.debug("Sending email: {}", emailMessage);
-      String host = null;
-      try {
-        host = new URL(configuration.getServerBaseURL()).getHost();
-      } catch (MalformedURLException e) {
-        // ignore
-      }
-
-      SimpleEmail email = new SimpleEmail();
-      if (StringUtils.isNotBlank(host)) {
-        /*
-        * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
-        * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
-        */
-        if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
-          String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
-          email.addHeader(IN_REPLY_TO_HEADER, messageId);
-          email.addHeader(REFERENCES_HEADER, messageId);
+      for (EmailMessage emailMessage : emailMessages) {
+        LOG.debug("Sending email: {}", emailMessage);
+        try {
+          SimpleEmail email = createEmail(emailMessage);
+          if (transport == null) {
+            session = email.getMailSession();
+            transport = session.getTransport();
+            transport.connect();
+          } else {
+            email.setMailSession(session);
+          }
+          if (!send(transport, email)) {
+            // the state of the connection is unknown, so a new one is opened for the next email
+            close(transport);
+            transport = null;
+          }
+        } catch (EmailException e) {
+          LOG.error("Unable to send email", e);
         }
-        // Set headers for proper filtering
-        email.addHeader(LIST_ID_HEADER, "Sonar <sonar." + host + ">");
-        email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
-      }
-      // Set general information
-      email.setCharset("UTF-8");
-      String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : emailMessage.getFrom() + " (Sonar)";
-      email.setFrom(configuration.getFrom(), from);
-      email.addTo(emailMessage.getTo(), " ");
-      String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
-          + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
-      email.setSubject(subject);
-      email.setMsg(emailMessage.getMessage());
-      // Send
-      email.setHostName(configuration.getSmtpHost());
-      if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "SSL")) {
-        email.setSSL(true);
-        email.setSslSmtpPort(String.valueOf(configuration.getSmtpPort()));
-
-        // this port is not used except in EmailException message, that's why it's set with the same value than SSL port.
-        // It prevents from getting bad message.
-        email.setSmtpPort(configuration.getSmtpPort());
-      } else if (StringUtils.isBlank(configuration.getSecureConnection())) {
-        email.setSmtpPort(configuration.getSmtpPort());
-      } else {
-        throw new SonarException("Unknown type of SMTP secure connection: " + configuration.getSecureConnection());
       }
-      if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
-        email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    } catch (MessagingException e) {
+      LOG.error("Unable to connect to SMTP server", e);
+    } finally {
+      close(transport);
+      Thread.currentThread().setContextClassLoader(classloader);
+    }
+  }
+
+  /**
+   * @return false if the email could not be sent
+   */
+  private static boolean send(Transport transport, SimpleEmail email) throws EmailException {
+    try {
+      email.buildMimeMessage();
+      MimeMessage message = email.getMimeMessage();
+      message.saveChanges();
+      transport.sendMessage(message, message.getAllRecipients());
+      return true;
+    } catch (MessagingException e) {
+      LOG.error("Unable to send email", e);
+      return false;
+    }
+  }
+
+  private static void close(Transport transport) {
+    if (transport != null) {
+      try {
+        transport.close();
+      } catch (MessagingException e) {
+        LOG.debug("Unable to close connection to SMTP server", e);
       }
-      email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
-      email.setSocketTimeout(SOCKET_TIMEOUT);
-      email.send();
+    }
+  }
+
+  private void send(EmailMessage emailMessage) throws EmailException {
+    // Trick to correctly initilize javax.mail library
+    ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
 
+    try {
+      LOG.debug("Sending email: {}", emailMessage);
+      createEmail(emailMessage).send();
     } finally {
       Thread.currentThread().setContextClassLoader(classloader);
     }
   }
 
+  private SimpleEmail createEmail(EmailMessage emailMessage) throws EmailException {
+    String host = null;
+    try {
+      host = new URL(configuration.getServerBaseURL()).getHost();
+    } catch (MalformedURLException e) {
+      // ignore
+    }
+
+    SimpleEmail email = new SimpleEmail();
+    if (StringUtils.isNotBlank(host)) {
+      /*
+      * Set headers for proper threading: GMail will not group messages, even if they have same subject, but don't have "In-Reply-To" and
+      * "References" headers. TODO investigate threading in other clients like KMail, Thunderbird, Outlook
+      */
+      if (StringUtils.isNotEmpty(emailMessage.getMessageId())) {
+        String messageId = "<" + emailMessage.getMessageId() + "@" + host + ">";
+        email.addHeader(IN_REPLY_TO_HEADER, messageId);
+        email.addHeader(REFERENCES_HEADER, messageId);
+      }
+      // Set headers for proper filtering
+      email.addHeader(LIST_ID_HEADER, "Sonar <sonar." + host + ">");
+      email.addHeader(LIST_ARCHIVE_HEADER, configuration.getServerBaseURL());
+    }
+    // Set general information
+    email.setCharset("UTF-8");
+    String from = StringUtils.isBlank(emailMessage.getFrom()) ? FROM_NAME_DEFAULT : emailMessage.getFrom() + " (Sonar)";
+    email.setFrom(configuration.getFrom(), from);
+    email.addTo(emailMessage.getTo(), " ");
+    String subject = StringUtils.defaultIfBlank(StringUtils.trimToEmpty(configuration.getPrefix()) + " ", "")
+        + StringUtils.defaultString(emailMessage.getSubject(), SUBJECT_DEFAULT);
+    email.setSubject(subject);
+    email.setMsg(emailMessage.getMessage());
+    // Send
+    email.setHostName(configuration.getSmtpHost());
+    if (StringUtils.equalsIgnoreCase(configuration.getSecureConnection(), "SSL")) {
+      email.setSSL(true);
+      email.setSslSmtpPort(String.valueOf(configuration.getSmtpPort()));
+
+      // this port is not used except in EmailException message, that's why it's set with the same value than SSL port.
+      // It prevents from getting bad message.
+      email.setSmtpPort(configuration.getSmtpPort());
+    } else if (StringUtils.isBlank(configuration.getSecureConnection())) {
+      email.setSmtpPort(configuration.getSmtpPort());
+    } else {
+      throw new SonarException("Unknown type of SMTP secure connection: " + configuration.getSecureConnection());
+    }
+    if (StringUtils.isNotBlank(configuration.getSmtpUsername()) || StringUtils.isNotBlank(configuration.getSmtpPassword())) {
+      email.setAuthentication(configuration.getSmtpUsername(), configuration.getSmtpPassword());
+    }
+    email.setSocketConnectionTimeout(SOCKET_TIMEOUT);
+    email.setSocketTimeout(SOCKET_TIMEOUT);
+    return email;
+  }
+
   /**
    * Send test email. This method called from Ruby.
    *
@@ -19,12 +19,18 @@
  */
 package org.sonar.plugins.emailnotifications;
 
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
 import org.apache.commons.mail.EmailException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.config.EmailSettings;
+import org.sonar.api.database.model.User;
+import org.sonar.api.notifications.Notification;
+import org.sonar.api.security.UserFinder;
 import org.sonar.plugins.emailnotifications.api.EmailMessage;
+import org.sonar.plugins.emailnotifications.api.EmailTemplate;
 import org.subethamail.wiser.Wiser;
 import org.subethamail.wiser.WiserMessage;
 
@@ -32,6 +38,7 @@ import javax.mail.internet.MimeMessage;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
@@ -185,6 +192,100 @@ public class EmailNotificationChannelTest {
     channel.deliver(emailMessage);
   }
 
+  @Test
+  public void shouldSendSeveralEmails() throws Exception {
+    configure();
+    EmailMessage first = new EmailMessage()
+      .setTo("user1@nowhere")
+      .setSubject("Foo")
+      .setMessage("Bar");
+    EmailMessage second = new EmailMessage()
+      .setTo("user2@nowhere")
+      .setSubject("Review #3")
+      .setMessage("I'll take care of this violation.");
+    channel.deliver(Arrays.asList(first, second));
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(2));
+
+    MimeMessage email = messages.get(0).getMimeMessage();
+    assertThat(email.getHeader("To", null), is("<user1@nowhere>"));
+    assertThat(email.getHeader("Subject", null), is("[SONAR] Foo"));
+    assertThat((String) email.getContent(), startsWith("Bar"));
+
+    email = messages.get(1).getMimeMessage();
+    assertThat(email.getHeader("To", null), is("<user2@nowhere>"));
+    assertThat(email.getHeader("Subject", null), is("[SONAR] Review #3"));
+    assertThat((String) email.getContent(), startsWith("I'll take care of this violation."));
+  }
+
+  @Test
+  public void shouldNotThrowAnExceptionWhenUnableToSendSeveralEmails() throws Exception {
+    configure();
+    server.stop();
+
+    EmailMessage emailMessage = new EmailMessage()
+      .setTo("user@nowhere")
+      .setSubject("Foo")
+      .setMessage("Bar");
+    channel.deliver(Arrays.asList(emailMessage, emailMessage));
+  }
+
+  @Test
+  public void shouldSendNextEmailsWhenOneIsRejected() throws Exception {
+    server.stop();
+    server = new Wiser() {
+      @Override
+      public boolean accept(String from, String recipient) {
+        return !recipient.startsWith("rejected@");
+      }
+    };
+    server.setPort(port);
+    server.start();
+    configure();
+
+    EmailMessage rejected = new EmailMessage().setTo("rejected@nowhere").setSubject("Foo").setMessage("Bar");
+    EmailMessage first = new EmailMessage().setTo("user1@nowhere").setSubject("Foo").setMessage("Bar");
+    EmailMessage second = new EmailMessage().setTo("user2@nowhere").setSubject("Foo").setMessage("Bar");
+    channel.deliver(Arrays.asList(rejected, first, rejected, second));
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(2));
+    assertThat(messages.get(0).getMimeMessage().getHeader("To", null), is("<user1@nowhere>"));
+    assertThat(messages.get(1).getMimeMessage().getHeader("To", null), is("<user2@nowhere>"));
+  }
+
+  @Test
+  public void shouldDeliverOtherNotificationsWhenOneFails() throws Exception {
+    configure();
+    UserFinder userFinder = mock(UserFinder.class);
+    when(userFinder.findByLogin("user1")).thenReturn(new User().setEmail("user1@nowhere"));
+    when(userFinder.findByLogin("user2")).thenReturn(new User().setEmail("user2@nowhere"));
+    final Notification failing = new Notification("failing");
+    EmailTemplate template = new EmailTemplate() {
+      @Override
+      public EmailMessage format(Notification notification) {
+        if (notification == failing) {
+          throw new IllegalStateException("Fail");
+        }
+        return new EmailMessage().setSubject("Foo").setMessage("Bar");
+      }
+    };
+    channel = new EmailNotificationChannel(configuration, new EmailTemplate[] {template}, userFinder);
+
+    Multimap<String, Notification> notifications = LinkedHashMultimap.create();
+    notifications.put("unknown", new Notification("new-violations"));
+    notifications.put("user1", failing);
+    notifications.put("user1", new Notification("new-violations"));
+    notifications.put("user2", new Notification("new-violations"));
+    channel.deliverAll(notifications);
+
+    List<WiserMessage> messages = server.getMessages();
+    assertThat(messages.size(), is(2));
+    assertThat(messages.get(0).getMimeMessage().getHeader("To", null), is("<user1@nowhere>"));
+    assertThat(messages.get(1).getMimeMessage().getHeader("To", null), is("<user2@nowhere>"));
+  }
+
   private void configure() {
     when(configuration.getSmtpHost()).thenReturn("localhost");
     when(configuration.getSmtpPort()).thenReturn(port);
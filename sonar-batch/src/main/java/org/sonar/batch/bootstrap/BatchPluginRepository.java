@@ -20,6 +20,8 @@
 package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
@@ -30,6 +32,7 @@ import org.sonar.api.Plugin;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.PluginMetadata;
 import org.sonar.api.platform.PluginRepository;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.plugins.PluginClassloaders;
 import org.sonar.core.plugins.PluginInstaller;
 import org.sonar.core.plugins.RemotePlugin;
@@ -40,12 +43,18 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BatchPluginRepository implements PluginRepository {
 
   private static final Logger LOG = LoggerFactory.getLogger(BatchPluginRepository.class);
   private static final String CORE_PLUGIN = "core";
   private static final String ENGLISH_PACK_PLUGIN = "l10nen";
+  private static final int DOWNLOAD_THREADS = 4;
 
   private PluginDownloader pluginDownloader;
   private Map<String, Plugin> pluginsByKey;
@@ -67,27 +76,67 @@ public class BatchPluginRepository implements PluginRepository {
 
   void doStart(List<RemotePlugin> remotePlugins) {
     PluginFilter filter = new PluginFilter(settings);
-    PluginInstaller extractor = new PluginInstaller();
     metadataByKey = Maps.newHashMap();
-    for (RemotePlugin remote : remotePlugins) {
-      if (filter.accepts(remote.getKey())) {
-        List<File> pluginFiles = pluginDownloader.downloadPlugin(remote);
-        List<File> extensionFiles = pluginFiles.subList(1, pluginFiles.size());
-        File targetDir = workingDirectories.getDir("plugins/" + remote.getKey());
-        LOG.debug("Installing plugin {} into {}", remote.getKey(), targetDir.getAbsolutePath());
-        PluginMetadata metadata = extractor.install(pluginFiles.get(0), remote.isCore(), extensionFiles, targetDir);
-        if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
-          metadataByKey.put(metadata.getKey(), metadata);
-        }
-        else {
-          LOG.debug("Excluded plugin: " + metadata.getKey());
-        }
+    for (PluginMetadata metadata : install(remotePlugins, filter)) {
+      if (StringUtils.isBlank(metadata.getBasePlugin()) || filter.accepts(metadata.getBasePlugin())) {
+        metadataByKey.put(metadata.getKey(), metadata);
+      }
+      else {
+        LOG.debug("Excluded plugin: " + metadata.getKey());
       }
     }
     classLoaders = new PluginClassloaders(Thread.currentThread().getContextClassLoader());
     pluginsByKey = classLoaders.init(metadataByKey.values());
   }
 
+  /**
+   * Plugins are downloaded, verified and installed concurrently. Each plugin is installed as soon as it's downloaded.
+   */
+  private List<PluginMetadata> install(List<RemotePlugin> remotePlugins, PluginFilter filter) {
+    final long startTime = System.currentTimeMillis();
+    final PluginInstaller extractor = new PluginInstaller();
+    List<Callable<PluginMetadata>> tasks = Lists.newArrayList();
+    for (final RemotePlugin remote : remotePlugins) {
+      if (filter.accepts(remote.getKey())) {
+        // TempDirectories is not thread-safe
+        final File targetDir = workingDirectories.getDir("plugins/" + remote.getKey());
+        tasks.add(new Callable<PluginMetadata>() {
+          public PluginMetadata call() {
+            long downloadStart = System.currentTimeMillis();
+            List<File> pluginFiles = pluginDownloader.downloadPlugin(remote);
+            List<File> extensionFiles = pluginFiles.subList(1, pluginFiles.size());
+            long installStart = System.currentTimeMillis();
+            LOG.debug("Installing plugin {} into {}", remote.getKey(), targetDir.getAbsolutePath());
+            PluginMetadata metadata = extractor.install(pluginFiles.get(0), remote.isCore(), extensionFiles, targetDir);
+            LOG.debug("Plugin {} started at +{} ms, downloaded in {} ms, installed in {} ms", new Object[] {remote.getKey(),
+              downloadStart - startTime, installStart - downloadStart, System.currentTimeMillis() - installStart});
+            return metadata;
+          }
+        });
+      }
+    }
+    List<PluginMetadata> result = Lists.newArrayList();
+    if (tasks.isEmpty()) {
+      return result;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(DOWNLOAD_THREADS, tasks.size()));
+    try {
+      for (Future<PluginMetadata> future : executor.invokeAll(tasks)) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while installing plugins", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new SonarException("Fail to install plugins", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    LOG.debug("{} plugins installed in {} ms", result.size(), System.currentTimeMillis() - startTime);
+    return result;
+  }
+
   public void stop() {
     if (classLoaders != null) {
       classLoaders.clean();
@@ -48,6 +48,7 @@ import org.sonar.core.persistence.SemaphoresImpl;
 import org.sonar.core.qualitymodel.DefaultModelFinder;
 import org.sonar.core.rule.CacheRuleFinder;
 import org.sonar.core.user.DefaultUserFinder;
+import org.sonar.home.cache.FileCache;
 import org.sonar.jpa.dao.MeasuresDao;
 import org.sonar.jpa.dao.ProfilesDao;
 import org.sonar.jpa.dao.RulesDao;
@@ -142,6 +143,7 @@ public class BootstrapContainer extends ComponentContainer {
   @Override
   protected void doAfterStart() {
     installPlugins();
+    logCacheStatistics();
     executeTask();
   }
 
@@ -153,6 +155,14 @@ public class BootstrapContainer extends ComponentContainer {
     }
   }
 
+  private void logCacheStatistics() {
+    // plugins and JDBC driver are loaded from cache during bootstrap
+    FileCache cache = getComponentByType(FileCache.class);
+    if (cache != null) {
+      cache.logStatistics();
+    }
+  }
+
   void executeTask() {
     new TaskContainer(this).execute();
   }
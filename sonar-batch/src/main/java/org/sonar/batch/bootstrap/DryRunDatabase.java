@@ -30,10 +30,15 @@ import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.SonarException;
+import org.sonar.api.utils.TimeProfiler;
+import org.sonar.home.cache.FileCache;
+import org.sonar.home.cache.FileHashes;
 
 import javax.annotation.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 
 import static org.sonar.api.utils.HttpDownloader.HttpException;
 
@@ -48,27 +53,32 @@ public class DryRunDatabase implements BatchComponent {
   private static final String URL = "jdbc:h2:";
   private static final String USER = "sonar";
   private static final String PASSWORD = "sonar";
+  private static final String CACHE_DIR = "_dryrun";
+  private static final String DATABASE_FILENAME = "dryrun.h2.db";
 
   private final Settings settings;
   private final ServerClient server;
   private final TempDirectories tempDirectories;
+  private final FileCache fileCache;
+  private final FileHashes hashes = new FileHashes();
   private ProjectReactor reactor;
 
-  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, @Nullable ProjectReactor reactor) {
+  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, FileCache fileCache, @Nullable ProjectReactor reactor) {
     this.settings = settings;
     this.server = server;
     this.tempDirectories = tempDirectories;
+    this.fileCache = fileCache;
     this.reactor = reactor;
   }
 
-  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories) {
-    this(settings, server, tempDirectories, null);
+  public DryRunDatabase(Settings settings, ServerClient server, TempDirectories tempDirectories, FileCache fileCache) {
+    this(settings, server, tempDirectories, fileCache, null);
   }
 
   public void start() {
     if (settings.getBoolean(CoreProperties.DRY_RUN)) {
       LOG.info("Dry run");
-      File databaseFile = tempDirectories.getFile("", "dryrun.h2.db");
+      File databaseFile = tempDirectories.getFile("", DATABASE_FILENAME);
       downloadDatabase(databaseFile);
 
       String databasePath = StringUtils.removeEnd(databaseFile.getAbsolutePath(), ".h2.db");
@@ -76,16 +86,31 @@ public class DryRunDatabase implements BatchComponent {
     }
   }
 
+  /**
+   * The last downloaded database is kept in the user cache. Its MD5 hash is sent to the server,
+   * which does not transfer the database again if it's unchanged.
+   */
   private void downloadDatabase(File toFile) {
     String projectKey = null;
     try {
-      if (reactor == null) {
-        server.download("/batch_bootstrap/db", toFile);
-      } else {
+      String url = "/batch_bootstrap/db";
+      if (reactor != null) {
         projectKey = StringUtils.defaultString(reactor.getRoot().getKey());
-        server.download("/batch_bootstrap/db?project=" + projectKey, toFile);
+        url += "?project=" + projectKey;
+      }
+      File cachedFile = cachedDatabase(projectKey);
+      String cachedHash = cachedFile.exists() ? hashes.of(cachedFile) : null;
+
+      TimeProfiler profiler = new TimeProfiler(LOG).start("Download Dry Run database");
+      boolean modified = server.downloadIfModified(url, toFile, cachedHash);
+      profiler.stop();
+      if (modified) {
+        LOG.info("Dry Run database size: {}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toFile)));
+        updateCache(toFile, cachedFile);
+      } else {
+        LOG.info("Dry Run database is unchanged, reuse the cached copy");
+        copy(cachedFile, toFile);
       }
-      LOG.debug("Dry Run database size: {}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(toFile)));
     } catch (SonarException e) {
       Throwable rootCause = Throwables.getRootCause(e);
       if (projectKey != null && (rootCause instanceof HttpException) && (((HttpException) rootCause).getResponseCode() == 401)) {
@@ -95,6 +120,31 @@ public class DryRunDatabase implements BatchComponent {
     }
   }
 
+  private File cachedDatabase(@Nullable String projectKey) {
+    String key = StringUtils.defaultString(projectKey);
+    String keyHash = hashes.of(new ByteArrayInputStream(key.getBytes()));
+    return new File(new File(new File(fileCache.getDir(), CACHE_DIR), keyHash), DATABASE_FILENAME);
+  }
+
+  private void updateCache(File databaseFile, File cachedFile) {
+    // copy then rename, so that concurrent analyses never read a partial copy
+    File tempFile = new File(cachedFile.getParentFile(), cachedFile.getName() + "." + System.nanoTime());
+    copy(databaseFile, tempFile);
+    FileUtils.deleteQuietly(cachedFile);
+    if (!tempFile.renameTo(cachedFile)) {
+      FileUtils.deleteQuietly(tempFile);
+      LOG.debug("Unable to cache the Dry Run database in {}", cachedFile.getAbsolutePath());
+    }
+  }
+
+  private static void copy(File from, File to) {
+    try {
+      FileUtils.copyFile(from, to);
+    } catch (IOException e) {
+      throw new SonarException(String.format("Fail to copy %s to %s", from.getAbsolutePath(), to.getAbsolutePath()), e);
+    }
+  }
+
   private void replaceSettings(String databasePath) {
     settings
       .removeProperty("sonar.jdbc.schema")
@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.bootstrap;
 
+import org.apache.commons.io.FileUtils;
 import org.picocontainer.injectors.ProviderAdapter;
 import org.sonar.api.config.Settings;
 import org.sonar.home.cache.FileCache;
@@ -26,12 +27,15 @@ import org.sonar.home.cache.FileCacheBuilder;
 import org.sonar.home.log.Slf4jLog;
 
 public class FileCacheProvider extends ProviderAdapter {
+  static final String MAX_SIZE_PROPERTY = "sonar.userCache.maxSizeInMb";
+
   private FileCache cache;
 
   public FileCache provide(Settings settings) {
     if (cache == null) {
       String home = settings.getString("sonar.userHome");
-      cache = new FileCacheBuilder().setLog(new Slf4jLog(FileCache.class)).setUserHome(home).build();
+      long maxSize = settings.getLong(MAX_SIZE_PROPERTY) * FileUtils.ONE_MB;
+      cache = new FileCacheBuilder().setLog(new Slf4jLog(FileCache.class)).setUserHome(home).setMaxSize(maxSize).build();
     }
     return cache;
   }
@@ -21,6 +21,8 @@ package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.google.common.io.InputSupplier;
 import org.apache.commons.io.IOUtils;
@@ -32,10 +34,14 @@ import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.bootstrapper.EnvironmentInformation;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.Map;
 
 /**
  * Replace the deprecated org.sonar.batch.ServerMetadata
@@ -68,6 +74,33 @@ public class ServerClient implements BatchComponent {
     }
   }
 
+  /**
+   * Download the file only if its content differs from the given MD5 hash, sent as an <code>If-None-Match</code> header.
+   * The response is compressed with gzip if the server supports it.
+   *
+   * @return false if the server answered that the content is not modified. In this case the file is left untouched.
+   * @since 3.6
+   */
+  public boolean downloadIfModified(String pathStartingWithSlash, File toFile, @Nullable String md5) {
+    Map<String, String> headers = Maps.newHashMap();
+    headers.put("Accept-Encoding", "gzip");
+    if (md5 != null) {
+      headers.put("If-None-Match", "\"" + md5 + "\"");
+    }
+    try {
+      InputSupplier<InputStream> inputSupplier = doRequest(pathStartingWithSlash, headers);
+      Files.copy(inputSupplier, toFile);
+      return true;
+    } catch (HttpDownloader.HttpException he) {
+      if (he.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return false;
+      }
+      throw handleHttpException(he);
+    } catch (IOException e) {
+      throw new SonarException(String.format("Unable to download '%s' to: %s", pathStartingWithSlash, toFile), e);
+    }
+  }
+
   public String request(String pathStartingWithSlash) {
     return request(pathStartingWithSlash, true);
   }
@@ -84,6 +117,10 @@ public class ServerClient implements BatchComponent {
   }
 
   private InputSupplier<InputStream> doRequest(String pathStartingWithSlash) {
+    return doRequest(pathStartingWithSlash, ImmutableMap.<String, String>of());
+  }
+
+  private InputSupplier<InputStream> doRequest(String pathStartingWithSlash, Map<String, String> headers) {
     Preconditions.checkArgument(pathStartingWithSlash.startsWith("/"), "Path must start with slash /");
     String path = StringEscapeUtils.escapeHtml(pathStartingWithSlash);
 
@@ -91,9 +128,9 @@ public class ServerClient implements BatchComponent {
     try {
       InputSupplier<InputStream> inputSupplier;
       if (Strings.isNullOrEmpty(getLogin())) {
-        inputSupplier = downloader.newInputSupplier(uri);
+        inputSupplier = downloader.newInputSupplier(uri, null, null, headers);
       } else {
-        inputSupplier = downloader.newInputSupplier(uri, getLogin(), getPassword());
+        inputSupplier = downloader.newInputSupplier(uri, getLogin(), getPassword(), headers);
       }
       return inputSupplier;
     } catch (Exception e) {
@@ -19,9 +19,8 @@
  */
 package org.sonar.batch.index;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilter;
 import org.sonar.api.measures.MeasuresFilters;
@@ -32,11 +31,13 @@ import org.sonar.api.utils.SonarException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class Bucket {
 
   private Resource resource;
-  private ListMultimap<String, Measure> measuresByMetric = ArrayListMultimap.create();
+  // measures are indexed by themselves, as equality is based on metric, rule, characteristic and person
+  private Map<String, Map<Measure, Measure>> measuresByMetric = Maps.newLinkedHashMap();
   private List<Violation> violations = Lists.newLinkedList();
 
   private Bucket parent;
@@ -89,21 +90,16 @@ public final class Bucket {
   }
 
   public void addMeasure(Measure measure) {
-    List<Measure> metricMeasures = measuresByMetric.get(measure.getMetric().getKey());
-
-    boolean add = true;
-    if (metricMeasures != null) {
-      int index = metricMeasures.indexOf(measure);
-      if (index > -1) {
-        if (metricMeasures.get(index) == measure) {
-          add = false;
-        } else {
-          throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
-        }
-      }
+    Map<Measure, Measure> metricMeasures = measuresByMetric.get(measure.getMetric().getKey());
+    if (metricMeasures == null) {
+      metricMeasures = Maps.newLinkedHashMap();
+      measuresByMetric.put(measure.getMetric().getKey(), metricMeasures);
     }
-    if (add) {
-      measuresByMetric.put(measure.getMetric().getKey(), measure);
+    Measure existing = metricMeasures.get(measure);
+    if (existing == null) {
+      metricMeasures.put(measure, measure);
+    } else if (existing != measure) {
+      throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
     }
   }
 
@@ -120,9 +116,20 @@ public final class Bucket {
   public <M> M getMeasures(final MeasuresFilter<M> filter) {
     Collection<Measure> unfiltered;
     if (filter instanceof MeasuresFilters.MetricFilter) {
-      unfiltered = measuresByMetric.get(((MeasuresFilters.MetricFilter) filter).filterOnMetricKey());
+      Map<Measure, Measure> metricMeasures = measuresByMetric.get(((MeasuresFilters.MetricFilter) filter).filterOnMetricKey());
+      if (metricMeasures == null) {
+        unfiltered = Collections.emptyList();
+      } else if (filter instanceof MeasuresFilters.MeasureFilter) {
+        Measure measure = metricMeasures.get(((MeasuresFilters.MeasureFilter) filter).filterOnMeasure());
+        unfiltered = (measure == null ? Collections.<Measure>emptyList() : Collections.singletonList(measure));
+      } else {
+        unfiltered = metricMeasures.values();
+      }
     } else {
-      unfiltered = measuresByMetric.values();
+      unfiltered = Lists.newArrayList();
+      for (Map<Measure, Measure> metricMeasures : measuresByMetric.values()) {
+        unfiltered.addAll(metricMeasures.values());
+      }
     }
     return filter.filter(unfiltered);
   }
@@ -22,7 +22,7 @@ package org.sonar.batch.scan.filesystem;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import org.apache.commons.io.FileUtils;
+import com.google.common.collect.Maps;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.HiddenFileFilter;
 import org.apache.commons.io.filefilter.IOFileFilter;
@@ -35,11 +35,14 @@ import org.sonar.api.scan.filesystem.FileType;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 
+import javax.annotation.CheckForNull;
+
 import java.io.File;
 import java.io.FileFilter;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class can't be immutable because of execution of maven plugins that can change the project structure (see MavenPluginHandler and sonar.phase)
@@ -58,6 +61,8 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
   private PathResolver pathResolver = new PathResolver();
   private List<FileSystemFilter> fsFilters = Lists.newArrayList();
   private LanguageFilters languageFilters;
+  private final Map<File, DirIndex> indexByDir = Maps.newHashMap();
+  private final Map<String, List<File>> resultsByQuery = Maps.newHashMap();
 
   DefaultModuleFileSystem() {
   }
@@ -109,7 +114,26 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     return languageFilters;
   }
 
+  /**
+   * Source and test directories are walked only once. The files that match queries without custom
+   * {@link java.io.FileFilter} are kept in memory. They are walked again when the last modification date
+   * of one of their sub-directories changed, for example when sources are generated during analysis.
+   */
   public List<File> files(FileQuery query) {
+    refreshChangedDirs(query);
+    String cacheKey = cacheKey(query);
+    if (cacheKey != null) {
+      List<File> cachedResult = resultsByQuery.get(cacheKey);
+      if (cachedResult == null) {
+        cachedResult = ImmutableList.copyOf(doFiles(query));
+        resultsByQuery.put(cacheKey, cachedResult);
+      }
+      return Lists.newLinkedList(cachedResult);
+    }
+    return doFiles(query);
+  }
+
+  private List<File> doFiles(FileQuery query) {
     List<FileSystemFilter> filters = Lists.newArrayList(fsFilters);
     for (FileFilter fileFilter : query.filters()) {
       filters.add(new FileFilterWrapper(fileFilter));
@@ -141,36 +165,155 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     return result;
   }
 
+  /**
+   * @return null if the query can't be cached because of custom filters
+   */
+  @CheckForNull
+  private static String cacheKey(FileQuery query) {
+    if (!query.filters().isEmpty()) {
+      return null;
+    }
+    return new StringBuilder()
+      .append(query.types()).append('|')
+      .append(query.languages()).append('|')
+      .append(query.inclusions()).append('|')
+      .append(query.exclusions())
+      .toString();
+  }
+
+  private void refreshChangedDirs(FileQuery query) {
+    for (FileType type : query.types()) {
+      for (File dir : type == FileType.TEST ? testDirs : sourceDirs) {
+        DirIndex index = indexByDir.get(dir);
+        if (index != null && !index.isUpToDate()) {
+          indexByDir.remove(dir);
+          resultsByQuery.clear();
+        }
+      }
+    }
+  }
+
   private void applyFilters(List<File> result, FileFilterContext context,
                             Collection<FileSystemFilter> filters, Collection<File> dirs) {
     for (File dir : dirs) {
+      context.setRelativeDir(dir);
+      for (IndexedFile indexedFile : index(dir).files) {
+        if (accept(indexedFile, context, filters)) {
+          result.add(indexedFile.file);
+        }
+      }
+    }
+  }
+
+  private DirIndex index(File dir) {
+    DirIndex index = indexByDir.get(dir);
+    if (index == null) {
+      long indexedAt = System.currentTimeMillis();
+      ImmutableList.Builder<IndexedFile> files = ImmutableList.builder();
+      Map<File, Long> lastModifiedByDir = Maps.newHashMap();
       if (dir.exists()) {
-        context.setRelativeDir(dir);
-        Collection<File> files = FileUtils.listFiles(dir, HiddenFileFilter.VISIBLE, DIR_FILTER);
-        for (File file : files) {
-          if (accept(file, context, filters)) {
-            result.add(file);
-          }
+        walk(dir, dir, files, lastModifiedByDir);
+      } else {
+        lastModifiedByDir.put(dir, 0L);
+      }
+      index = new DirIndex(files.build(), lastModifiedByDir, indexedAt);
+      indexByDir.put(dir, index);
+    }
+    return index;
+  }
+
+  private void walk(File rootDir, File dir, ImmutableList.Builder<IndexedFile> files, Map<File, Long> lastModifiedByDir) {
+    lastModifiedByDir.put(dir, dir.lastModified());
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        if (DIR_FILTER.accept(child)) {
+          walk(rootDir, child, files, lastModifiedByDir);
         }
+      } else if (HiddenFileFilter.VISIBLE.accept(child)) {
+        files.add(new IndexedFile(child, pathResolver.relativePath(rootDir, child), canonicalPath(child)));
       }
     }
   }
 
-  private boolean accept(File file, FileFilterContext context, Collection<FileSystemFilter> filters) {
-    context.setRelativePath(pathResolver.relativePath(context.relativeDir(), file));
+  private static String canonicalPath(File file) {
     try {
-      context.setCanonicalPath(file.getCanonicalPath());
+      return file.getCanonicalPath();
     } catch (Exception e) {
       throw new IllegalStateException("Fail to get the canonical path of: " + file);
     }
+  }
+
+  private boolean accept(IndexedFile indexedFile, FileFilterContext context, Collection<FileSystemFilter> filters) {
+    context.setRelativePath(indexedFile.relativePath);
+    context.setCanonicalPath(indexedFile.canonicalPath);
     for (FileSystemFilter filter : filters) {
-      if (!filter.accept(file, context)) {
+      if (!filter.accept(indexedFile.file, context)) {
         return false;
       }
     }
     return true;
   }
 
+  /**
+   * Forces source and test directories to be walked again. Changes are also detected from the last
+   * modification dates of directories, but they may not be precise enough on some file systems.
+   * @since 3.6
+   */
+  public void resetCache() {
+    indexByDir.clear();
+    resultsByQuery.clear();
+  }
+
+  private static final class DirIndex {
+    /**
+     * Some file systems store modification dates with a precision of one or two seconds
+     */
+    private static final long TIMESTAMP_PRECISION = 2000L;
+
+    private final List<IndexedFile> files;
+    private final Map<File, Long> lastModifiedByDir;
+    private final boolean racy;
+
+    private DirIndex(List<IndexedFile> files, Map<File, Long> lastModifiedByDir, long indexedAt) {
+      this.files = files;
+      this.lastModifiedByDir = lastModifiedByDir;
+      boolean recentlyModified = false;
+      for (Long lastModified : lastModifiedByDir.values()) {
+        recentlyModified |= lastModified > indexedAt - TIMESTAMP_PRECISION;
+      }
+      // a directory changed in the same time slot than the walk can't be verified later
+      this.racy = recentlyModified;
+    }
+
+    private boolean isUpToDate() {
+      if (racy) {
+        return false;
+      }
+      for (Map.Entry<File, Long> entry : lastModifiedByDir.entrySet()) {
+        if (entry.getKey().lastModified() != entry.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final class IndexedFile {
+    private final File file;
+    private final String relativePath;
+    private final String canonicalPath;
+
+    private IndexedFile(File file, String relativePath, String canonicalPath) {
+      this.file = file;
+      this.relativePath = relativePath;
+      this.canonicalPath = canonicalPath;
+    }
+  }
+
   public void resetDirs(File basedir, File buildDir, List<File> sourceDirs, List<File> testDirs, List<File> binaryDirs) {
     Preconditions.checkNotNull(basedir, "Basedir can't be null");
     this.baseDir = basedir;
@@ -178,6 +321,7 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     this.sourceDirs = existingDirs(sourceDirs);
     this.testDirs = existingDirs(testDirs);
     this.binaryDirs = existingDirs(binaryDirs);
+    resetCache();
   }
 
   private List<File> existingDirs(List<File> dirs) {
@@ -214,21 +358,25 @@ public class DefaultModuleFileSystem implements ModuleFileSystem {
     for (FileSystemFilter filter : f) {
       this.fsFilters.add(filter);
     }
+    resultsByQuery.clear();
     return this;
   }
 
   DefaultModuleFileSystem setLanguageFilters(LanguageFilters languageFilters) {
     this.languageFilters = languageFilters;
+    resultsByQuery.clear();
     return this;
   }
 
   DefaultModuleFileSystem addSourceDir(File d) {
     this.sourceDirs.add(d);
+    resultsByQuery.clear();
     return this;
   }
 
   DefaultModuleFileSystem addTestDir(File d) {
     this.testDirs.add(d);
+    resultsByQuery.clear();
     return this;
   }
 
@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.config.Settings;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.plugins.RemotePlugin;
 import org.sonar.core.plugins.RemotePluginFile;
 import org.sonar.test.TestUtils;
@@ -37,6 +38,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -156,6 +158,25 @@ public class BatchPluginRepositoryTest {
     return files;
   }
 
+  @Test
+  public void should_fail_if_plugin_can_not_be_downloaded() throws IOException {
+    TempDirectories tempDirs = mock(TempDirectories.class);
+    when(tempDirs.getDir("plugins/checkstyle")).thenReturn(temp.newFolder());
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true);
+
+    PluginDownloader downloader = mock(PluginDownloader.class);
+    when(downloader.downloadPlugin(checkstyle)).thenThrow(new SonarException("Fail to download plugin: checkstyle"));
+
+    repository = new BatchPluginRepository(downloader, tempDirs, new Settings());
+
+    try {
+      repository.doStart(Arrays.asList(checkstyle));
+      fail();
+    } catch (SonarException e) {
+      assertThat(e).hasMessage("Fail to download plugin: checkstyle");
+    }
+  }
+
   @Test
   public void shouldAlwaysAcceptIfNoWhiteListAndBlackList() {
     BatchPluginRepository.PluginFilter filter = new BatchPluginRepository.PluginFilter(new Settings());
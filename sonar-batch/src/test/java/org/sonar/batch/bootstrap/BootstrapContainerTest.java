@@ -27,6 +27,7 @@ import org.sonar.api.Plugin;
 import org.sonar.api.SonarPlugin;
 import org.sonar.api.platform.PluginMetadata;
 import org.sonar.core.config.Logback;
+import org.sonar.home.cache.FileCache;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +37,7 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BootstrapContainerTest {
@@ -73,6 +75,19 @@ public class BootstrapContainerTest {
     assertThat(container.getComponentsByType(Plugin.class)).containsOnly(plugin);
   }
 
+  @Test
+  public void should_log_statistics_of_file_cache() {
+    FileCache cache = mock(FileCache.class);
+    BatchPluginRepository pluginRepository = mock(BatchPluginRepository.class);
+    when(pluginRepository.getPluginsByMetadata()).thenReturn(Collections.<PluginMetadata, Plugin>emptyMap());
+
+    BootstrapContainer container = spy(BootstrapContainer.create(Lists.<Object>newArrayList(pluginRepository, cache)));
+    doNothing().when(container).executeTask();
+    container.doAfterStart();
+
+    verify(cache).logStatistics();
+  }
+
   public static class Foo implements BatchExtension {
 
   }
@@ -19,12 +19,15 @@
  */
 package org.sonar.batch.bootstrap;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
@@ -32,10 +35,16 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseProperties;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.SonarException;
+import org.sonar.home.cache.FileCache;
+import org.sonar.home.cache.FileHashes;
+import org.sonar.home.log.StandardLog;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -47,6 +56,7 @@ public class DryRunDatabaseTest {
   ServerClient server = mock(ServerClient.class);
   TempDirectories tempDirectories = mock(TempDirectories.class);
   ProjectReactor projectReactor = new ProjectReactor(ProjectDefinition.create().setKey("group:project"));
+  FileCache fileCache;
   File databaseFile;
 
   @Rule
@@ -58,28 +68,49 @@ public class DryRunDatabaseTest {
   @Before
   public void setUp() throws Exception {
     databaseFile = temp.newFile("dryrun.h2.db");
+    fileCache = FileCache.create(temp.newFolder(), new StandardLog());
     when(tempDirectories.getFile("", "dryrun.h2.db")).thenReturn(databaseFile);
     settings.setProperty(CoreProperties.DRY_RUN, true);
+    when(server.downloadIfModified(anyString(), any(File.class), anyString())).thenReturn(true);
   }
 
   @Test
   public void should_be_disabled_if_not_dry_run() {
     settings.setProperty(CoreProperties.DRY_RUN, false);
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
     verifyZeroInteractions(tempDirectories, server);
   }
 
   @Test
   public void should_download_database() {
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
-    verify(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
+    verify(server).downloadIfModified("/batch_bootstrap/db?project=group:project", databaseFile, null);
+  }
+
+  @Test
+  public void should_reuse_cached_database_if_not_modified() throws Exception {
+    when(server.downloadIfModified("/batch_bootstrap/db?project=group:project", databaseFile, null)).thenAnswer(new Answer<Boolean>() {
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+        FileUtils.write(databaseFile, "database content");
+        return true;
+      }
+    });
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
+
+    // second analysis : the hash of the cached database is sent to server
+    FileUtils.write(databaseFile, "");
+    String hash = new FileHashes().of(new ByteArrayInputStream("database content".getBytes()));
+    when(server.downloadIfModified("/batch_bootstrap/db?project=group:project", databaseFile, hash)).thenReturn(false);
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
+
+    assertThat(FileUtils.readFileToString(databaseFile)).isEqualTo("database content");
   }
 
   @Test
   public void should_replace_database_settings() {
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
 
     assertThat(settings.getString(DatabaseProperties.PROP_DIALECT)).isEqualTo("h2");
     assertThat(settings.getString(DatabaseProperties.PROP_DRIVER)).isEqualTo("org.h2.Driver");
@@ -90,28 +121,28 @@ public class DryRunDatabaseTest {
 
   @Test
   public void should_fail_on_invalid_role() {
-    doThrow(new SonarException(new HttpDownloader.HttpException(null, 401))).when(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
+    doThrow(new SonarException(new HttpDownloader.HttpException(null, 401))).when(server).downloadIfModified("/batch_bootstrap/db?project=group:project", databaseFile, null);
 
     thrown.expect(SonarException.class);
     thrown.expectMessage("You don't have access rights to project [group:project]");
 
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
   }
 
   @Test
   public void should_fail() {
-    doThrow(new SonarException("BUG")).when(server).download("/batch_bootstrap/db?project=group:project", databaseFile);
+    doThrow(new SonarException("BUG")).when(server).downloadIfModified("/batch_bootstrap/db?project=group:project", databaseFile, null);
 
     thrown.expect(SonarException.class);
     thrown.expectMessage("BUG");
 
-    new DryRunDatabase(settings, server, tempDirectories, projectReactor).start();
+    new DryRunDatabase(settings, server, tempDirectories, fileCache, projectReactor).start();
   }
 
   @Test
   public void project_should_be_optional() {
     // on non-scan tasks
-    new DryRunDatabase(settings, server, tempDirectories).start();
-    verify(server).download("/batch_bootstrap/db", databaseFile);
+    new DryRunDatabase(settings, server, tempDirectories, fileCache).start();
+    verify(server).downloadIfModified("/batch_bootstrap/db", databaseFile, null);
   }
 }
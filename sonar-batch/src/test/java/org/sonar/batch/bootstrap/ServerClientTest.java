@@ -103,6 +103,29 @@ public class ServerClientTest {
     assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("this is the content");
   }
 
+  @Test
+  public void should_download_file_if_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseData("this is the content");
+
+    File file = temp.newFile();
+    assertThat(newServerClient().downloadIfModified("/foo", file, "abcde")).isTrue();
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("this is the content");
+  }
+
+  @Test
+  public void should_not_download_file_if_not_modified() throws Exception {
+    server = new MockHttpServer();
+    server.start();
+    server.setMockResponseStatus(304);
+
+    File file = temp.newFile();
+    Files.write("old content", file, Charsets.UTF_8);
+    assertThat(newServerClient().downloadIfModified("/foo", file, "abcde")).isFalse();
+    assertThat(Files.toString(file, Charsets.UTF_8)).isEqualTo("old content");
+  }
+
   @Test
   public void should_fail_if_unauthorized_with_no_login_password() throws Exception {
     server = new MockHttpServer();
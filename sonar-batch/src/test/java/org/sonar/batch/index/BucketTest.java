@@ -23,6 +23,8 @@ import org.junit.Test;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.RuleMeasure;
+import org.sonar.api.qualitymodel.Characteristic;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.rules.Rule;
@@ -96,6 +98,40 @@ public class BucketTest {
     fileBucket.addMeasure(measure);
   }
 
+  @Test
+  public void shouldGetRuleMeasures() {
+    Bucket fileBucket = new Bucket(javaFile);
+    for (int i = 0; i < 100; i++) {
+      fileBucket.addMeasure(RuleMeasure.createForRule(ncloc, Rule.create("checkstyle", "rule" + i), (double) i));
+    }
+    fileBucket.addMeasure(new Measure(ncloc).setValue(1200.0));
+
+    assertThat(fileBucket.getMeasures(MeasuresFilters.rule(ncloc, Rule.create("checkstyle", "rule42"))).getValue(), is(42.0));
+    assertNull(fileBucket.getMeasures(MeasuresFilters.rule(ncloc, Rule.create("checkstyle", "other"))));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.rules(ncloc)).size(), is(100));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.metric(ncloc)).getValue(), is(1200.0));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.all()).size(), is(101));
+  }
+
+  @Test
+  public void shouldGetCharacteristicMeasures() {
+    Bucket fileBucket = new Bucket(javaFile);
+    Characteristic efficiency = Characteristic.createByKey("EFFICIENCY", "Efficiency");
+    Characteristic usability = Characteristic.createByKey("USABILITY", "Usability");
+    fileBucket.addMeasure(new Measure(ncloc).setCharacteristic(efficiency).setValue(3.0));
+
+    assertThat(fileBucket.getMeasures(MeasuresFilters.characteristic(ncloc, efficiency)).getValue(), is(3.0));
+    assertNull(fileBucket.getMeasures(MeasuresFilters.characteristic(ncloc, usability)));
+    assertNull(fileBucket.getMeasures(MeasuresFilters.metric(ncloc)));
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailIfAddingSameRuleMeasures() {
+    Bucket fileBucket = new Bucket(javaFile);
+    fileBucket.addMeasure(RuleMeasure.createForRule(ncloc, Rule.create("checkstyle", "rule1"), 1.0));
+    fileBucket.addMeasure(RuleMeasure.createForRule(ncloc, Rule.create("checkstyle", "rule1"), 2.0));
+  }
+
   @Test
   public void shouldBeEquals() {
     assertEquals(new Bucket(javaPackage), new Bucket(javaPackage));
@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -185,6 +186,94 @@ public class DefaultModuleFileSystemTest {
     assertThat(files.get(0).getName()).isEqualTo("Foo.java");
   }
 
+  @Test
+  public void should_walk_directories_only_once() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    File foo = new File(sourceDir, "Foo.java");
+    FileUtils.write(foo, "class Foo {}");
+    FileUtils.write(new File(sourceDir, "Bar.java"), "class Bar {}");
+    long lastModified = setLastModifiedInPast(sourceDir);
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder())
+      .addSourceDir(sourceDir);
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+
+    // the deletion is not detected because the directory looks unchanged
+    foo.delete();
+    sourceDir.setLastModified(lastModified);
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+    assertThat(fileSystem.files(FileQuery.onSource().withExclusions("**/Bar.java"))).hasSize(1);
+
+    fileSystem.resetCache();
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+    assertThat(fileSystem.files(FileQuery.onSource().withExclusions("**/Bar.java"))).isEmpty();
+  }
+
+  @Test
+  public void should_detect_generated_files() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    File packageDir = new File(sourceDir, "org/foo");
+    FileUtils.write(new File(packageDir, "Foo.java"), "class Foo {}");
+    setLastModifiedInPast(sourceDir);
+    setLastModifiedInPast(new File(sourceDir, "org"));
+    setLastModifiedInPast(packageDir);
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder())
+      .addSourceDir(sourceDir);
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+
+    // generated in a sub-directory
+    FileUtils.write(new File(packageDir, "Generated.java"), "class Generated {}");
+    packageDir.setLastModified(packageDir.lastModified() + 1000L);
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+    assertThat(fileSystem.files(FileQuery.onSource().withExclusions("**/Foo.java"))).hasSize(1);
+  }
+
+  @Test
+  public void should_detect_files_generated_just_after_walk() throws IOException {
+    File basedir = temp.newFolder("base");
+    File sourceDir = new File(basedir, "src");
+    FileUtils.write(new File(sourceDir, "Foo.java"), "class Foo {}");
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder())
+      .addSourceDir(sourceDir);
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(1);
+
+    // the modification date of directory may not change if the file system is not precise enough
+    long lastModified = sourceDir.lastModified();
+    FileUtils.write(new File(sourceDir, "Generated.java"), "class Generated {}");
+    sourceDir.setLastModified(lastModified);
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+  }
+
+  private static long setLastModifiedInPast(File dir) {
+    long lastModified = (System.currentTimeMillis() / 1000L - 60L) * 1000L;
+    dir.setLastModified(lastModified);
+    return dir.lastModified();
+  }
+
+  @Test
+  public void should_not_share_cached_results_with_caller() throws IOException {
+    File basedir = new File(resourcesDir(), "main_and_test_files");
+    DefaultModuleFileSystem fileSystem = new DefaultModuleFileSystem()
+      .setBaseDir(basedir)
+      .setWorkingDir(temp.newFolder())
+      .addSourceDir(new File(basedir, "src/main/java"));
+
+    List<File> files = fileSystem.files(FileQuery.onSource());
+    files.clear();
+
+    assertThat(fileSystem.files(FileQuery.onSource())).hasSize(2);
+  }
+
   static class Php extends AbstractLanguage {
     public Php() {
       super("php");
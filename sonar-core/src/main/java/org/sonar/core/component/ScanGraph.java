@@ -22,13 +22,13 @@ package org.sonar.core.component;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.component.Component;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Resource;
 import org.sonar.core.graph.BeanGraph;
 import org.sonar.core.graph.BeanIterable;
+import org.sonar.core.graph.CompactGraph;
 import org.sonar.core.graph.GraphUtil;
 
 import javax.annotation.Nullable;
@@ -44,7 +44,7 @@ public class ScanGraph extends BeanGraph implements BatchComponent {
   }
 
   public static ScanGraph create() {
-    TinkerGraph graph = new TinkerGraph();
+    CompactGraph graph = new CompactGraph();
     graph.createKeyIndex("key", Vertex.class);
     return new ScanGraph(graph);
   }
@@ -0,0 +1,210 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.sonar.core.graph.jdbc.GraphDto;
+import org.sonar.core.graph.jdbc.GraphSerializer;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of the graphs loaded by {@link SnapshotPerspectives}, keyed by perspective and snapshot.
+ * The weight of a graph is its number of vertices and edges. Graphs are evicted when the total weight exceeds
+ * the maximum weight. Graphs heavier than the maximum weight are not cached.
+ * <p/>
+ * Cached graphs are shared by all the server requests, so they must not be modified.
+ *
+ * @since 3.6
+ */
+class SnapshotGraphCache {
+
+  private final long maxWeight;
+  private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+  private long weight = 0L;
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer loadTimer;
+
+  SnapshotGraphCache(long maxWeight, MetricRegistry registry) {
+    this.maxWeight = maxWeight;
+    this.hits = registry.counter(MetricRegistry.name(SnapshotGraphCache.class, "hits"));
+    this.misses = registry.counter(MetricRegistry.name(SnapshotGraphCache.class, "misses"));
+    this.loadTimer = registry.timer(MetricRegistry.name(SnapshotGraphCache.class, "load"));
+    register(registry, MetricRegistry.name(SnapshotGraphCache.class, "hitRatio"), new RatioGauge() {
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+      }
+    });
+    register(registry, MetricRegistry.name(SnapshotGraphCache.class, "weight"), new Gauge<Long>() {
+      public Long getValue() {
+        return weight();
+      }
+    });
+  }
+
+  private static void register(MetricRegistry registry, String name, Gauge gauge) {
+    // the gauges of the previous instance, if any, are replaced
+    registry.remove(name);
+    registry.register(name, gauge);
+  }
+
+  /**
+   * @param header the graph as stored in database, without data. Null if the graph does not exist, for example when
+   *               the snapshot has been purged. The cached graph, if any, is then invalidated.
+   * @param loader loads the data of the graph when it is not cached yet, or when it has been stored again since it
+   *               was cached.
+   */
+  @CheckForNull
+  SnapshotGraph get(String perspectiveKey, @CheckForNull GraphDto header, Loader loader) {
+    if (header == null) {
+      return null;
+    }
+    Key key = new Key(perspectiveKey, header.getSnapshotId());
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.graphId == header.getId()) {
+        hits.inc();
+        return entry.graph;
+      }
+    }
+    misses.inc();
+    Entry loaded = load(header, loader);
+    if (loaded != null) {
+      put(key, loaded);
+      return loaded.graph;
+    }
+    invalidate(perspectiveKey, header.getSnapshotId());
+    return null;
+  }
+
+  @CheckForNull
+  private Entry load(GraphDto header, Loader loader) {
+    Timer.Context context = loadTimer.time();
+    try {
+      GraphDto graphDto = loader.load();
+      if (graphDto == null) {
+        return null;
+      }
+      TinkerGraph graph = new TinkerGraph();
+      GraphSerializer.read(graphDto, graph);
+      return new Entry(graphDto.getId(), weigh(graph), new SnapshotGraph(graph, graphDto.getRootVertexId()));
+    } finally {
+      context.stop();
+    }
+  }
+
+  private static long weigh(Graph graph) {
+    return Iterables.size(graph.getVertices()) + Iterables.size(graph.getEdges());
+  }
+
+  private synchronized void put(Key key, Entry entry) {
+    Entry previous = entries.remove(key);
+    if (previous != null) {
+      weight -= previous.weight;
+    }
+    if (entry.weight > maxWeight) {
+      return;
+    }
+    Iterator<Entry> it = entries.values().iterator();
+    while (weight + entry.weight > maxWeight && it.hasNext()) {
+      weight -= it.next().weight;
+      it.remove();
+    }
+    entries.put(key, entry);
+    weight += entry.weight;
+  }
+
+  synchronized void invalidate(String perspectiveKey, long snapshotId) {
+    Entry entry = entries.remove(new Key(perspectiveKey, snapshotId));
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+
+  @VisibleForTesting
+  synchronized long weight() {
+    return weight;
+  }
+
+  interface Loader {
+    @CheckForNull
+    GraphDto load();
+  }
+
+  private static final class Key {
+    private final String perspectiveKey;
+    private final long snapshotId;
+
+    private Key(String perspectiveKey, long snapshotId) {
+      this.perspectiveKey = perspectiveKey;
+      this.snapshotId = snapshotId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return snapshotId == that.snapshotId && perspectiveKey.equals(that.perspectiveKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(perspectiveKey, snapshotId);
+    }
+  }
+
+  private static final class Entry {
+    private final long graphId;
+    private final long weight;
+    private final SnapshotGraph graph;
+
+    private Entry(long graphId, long weight, SnapshotGraph graph) {
+      this.graphId = graphId;
+      this.weight = weight;
+      this.graph = graph;
+    }
+  }
+}
@@ -20,68 +20,88 @@
 package org.sonar.core.component;
 
 import com.google.common.collect.Maps;
-import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.sonar.api.Properties;
+import org.sonar.api.Property;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.component.Perspective;
-import org.sonar.core.graph.graphson.GraphsonReader;
+import org.sonar.api.config.Settings;
 import org.sonar.core.graph.jdbc.GraphDao;
 import org.sonar.core.graph.jdbc.GraphDto;
+import org.sonar.core.persistence.MetricRegistryLocator;
 
 import javax.annotation.CheckForNull;
 
-import java.io.StringReader;
 import java.util.Map;
 
+@Properties({
+  @Property(
+    key = SnapshotPerspectives.PROPERTY_CACHE_WEIGHT,
+    defaultValue = "50000",
+    name = "Maximum number of vertices and edges of the graphs cached by the server",
+    project = false,
+    global = false)
+})
 public class SnapshotPerspectives implements ServerComponent {
 
+  /**
+   * @since 3.6
+   */
+  public static final String PROPERTY_CACHE_WEIGHT = "sonar.perspectives.cacheWeight";
+
+  /**
+   * About 40Mb of heap
+   */
+  static final long DEFAULT_CACHE_WEIGHT = 50000L;
+
   private final GraphDao dao;
   private final Map<Class<?>, GraphPerspectiveLoader<?>> loaders = Maps.newHashMap();
+  private final SnapshotGraphCache cache;
 
-  public SnapshotPerspectives(GraphDao dao, GraphPerspectiveLoader[] loaders) {
+  public SnapshotPerspectives(GraphDao dao, Settings settings, GraphPerspectiveLoader[] loaders) {
     this.dao = dao;
     for (GraphPerspectiveLoader loader : loaders) {
       // TODO check duplications
       this.loaders.put(loader.getPerspectiveClass(), loader);
     }
+    long maxWeight = settings.hasKey(PROPERTY_CACHE_WEIGHT) ? settings.getLong(PROPERTY_CACHE_WEIGHT) : DEFAULT_CACHE_WEIGHT;
+    this.cache = new SnapshotGraphCache(maxWeight, MetricRegistryLocator.INSTANCE.getRegistry());
   }
 
   @CheckForNull
-  public <T extends Perspective> T as(Class<T> perspectiveClass, String componentKey) {
-    GraphPerspectiveLoader<T> builder = (GraphPerspectiveLoader<T>) loaders.get(perspectiveClass);
+  public <T extends Perspective> T as(Class<T> perspectiveClass, final String componentKey) {
+    final GraphPerspectiveLoader<T> builder = (GraphPerspectiveLoader<T>) loaders.get(perspectiveClass);
     if (builder == null) {
       throw new IllegalStateException();
     }
-    GraphDto graphDto = dao.selectByComponent(builder.getPerspectiveKey(), componentKey);
-    return doAs(builder, graphDto);
+    final GraphDto header = dao.selectHeaderByComponent(builder.getPerspectiveKey(), componentKey);
+    SnapshotGraph graph = cache.get(builder.getPerspectiveKey(), header, new SnapshotGraphCache.Loader() {
+      public GraphDto load() {
+        return dao.selectBySnapshot(builder.getPerspectiveKey(), header.getSnapshotId());
+      }
+    });
+    return doAs(builder, graph);
   }
 
   @CheckForNull
-  public <T extends Perspective> T as(Class<T> perspectiveClass, long snapshotId) {
-    GraphPerspectiveLoader<T> builder = (GraphPerspectiveLoader<T>) loaders.get(perspectiveClass);
+  public <T extends Perspective> T as(Class<T> perspectiveClass, final long snapshotId) {
+    final GraphPerspectiveLoader<T> builder = (GraphPerspectiveLoader<T>) loaders.get(perspectiveClass);
     if (builder == null) {
       throw new IllegalStateException();
     }
-    GraphDto graphDto = dao.selectBySnapshot(builder.getPerspectiveKey(), snapshotId);
-    return doAs(builder, graphDto);
+    GraphDto header = dao.selectHeaderBySnapshot(builder.getPerspectiveKey(), snapshotId);
+    SnapshotGraph graph = cache.get(builder.getPerspectiveKey(), header, new SnapshotGraphCache.Loader() {
+      public GraphDto load() {
+        return dao.selectBySnapshot(builder.getPerspectiveKey(), snapshotId);
+      }
+    });
+    return doAs(builder, graph);
   }
 
-  private <T extends Perspective> T doAs(GraphPerspectiveLoader<T> loader, GraphDto graphDto) {
+  private <T extends Perspective> T doAs(GraphPerspectiveLoader<T> loader, @CheckForNull SnapshotGraph graph) {
     T result = null;
-    if (graphDto != null) {
-      SnapshotGraph graph = read(graphDto.getData(), graphDto.getRootVertexId());
+    if (graph != null) {
       result = loader.load(graph.wrap(graph.getComponentRoot(), ComponentVertex.class));
     }
     return result;
   }
-
-  private SnapshotGraph read(String data, String rootVertexId) {
-    StringReader input = new StringReader(data);
-    try {
-      TinkerGraph graph = new TinkerGraph();
-      new GraphsonReader().read(input, graph);
-      return new SnapshotGraph(graph, rootVertexId);
-    } catch (Exception e) {
-      throw new IllegalStateException(e);
-    }
-  }
 }
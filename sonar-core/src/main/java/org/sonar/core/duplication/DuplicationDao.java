@@ -19,6 +19,11 @@
  */
 package org.sonar.core.duplication;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.ServerComponent;
@@ -26,6 +31,7 @@ import org.sonar.core.persistence.MyBatis;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class DuplicationDao implements BatchComponent, ServerComponent {
 
@@ -45,6 +51,67 @@ public class DuplicationDao implements BatchComponent, ServerComponent {
     }
   }
 
+  /**
+   * Blocks of all files of a module snapshot, with keys of files.
+   *
+   * @since 3.6
+   */
+  public List<DuplicationUnitDto> selectByProjectSnapshot(int projectSnapshotId) {
+    SqlSession session = mybatis.openSession();
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      return mapper.selectByProjectSnapshot(projectSnapshotId);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Hashes of sources of all files of a module snapshot, which have blocks. Sources are hashed while they are read,
+   * so only one source is kept in memory at a time.
+   *
+   * @return hashes computed by {@link #hashSource(String)}, by keys of files
+   * @since 3.6
+   */
+  public Map<String, String> selectSourceHashesByProjectSnapshot(int projectSnapshotId) {
+    final Map<String, String> hashes = Maps.newHashMap();
+    SqlSession session = mybatis.openSession();
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      mapper.selectSourcesByProjectSnapshot(projectSnapshotId, new ResultHandler() {
+        public void handleResult(ResultContext context) {
+          Map<String, String> row = (Map<String, String>) context.getResultObject();
+          String data = row.get("data");
+          if (data != null) {
+            hashes.put(row.get("resourceKey"), hashSource(data));
+          }
+        }
+      });
+      return hashes;
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Measures of all files of a module snapshot, which have blocks.
+   *
+   * @since 3.6
+   */
+  public List<DuplicationMeasureDto> selectMeasuresByProjectSnapshot(int projectSnapshotId, Collection<String> metricKeys) {
+    SqlSession session = mybatis.openSession();
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      return mapper.selectMeasuresByProjectSnapshot(projectSnapshotId, metricKeys);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  public static String hashSource(String source) {
+    return DigestUtils.md5Hex(source.getBytes(Charsets.UTF_8));
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
@@ -20,7 +20,9 @@
 package org.sonar.core.duplication;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DuplicationMapper {
@@ -30,6 +32,14 @@ public interface DuplicationMapper {
       @Param("last_project_snapshot_id") Integer lastSnapshotId,
       @Param("language") String language);
 
+  List<DuplicationUnitDto> selectByProjectSnapshot(@Param("project_snapshot_id") int projectSnapshotId);
+
+  void selectSourcesByProjectSnapshot(@Param("project_snapshot_id") int projectSnapshotId, ResultHandler handler);
+
+  List<DuplicationMeasureDto> selectMeasuresByProjectSnapshot(
+      @Param("project_snapshot_id") int projectSnapshotId,
+      @Param("metric_keys") Collection<String> metricKeys);
+
   void batchInsert(DuplicationUnitDto unit);
 
 }
@@ -0,0 +1,88 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.duplication;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Measure of duplications of a file, as stored by a previous analysis.
+ *
+ * @since 3.6
+ */
+public final class DuplicationMeasureDto {
+
+  private String resourceKey;
+  private String metricKey;
+  private Double value;
+  private String textValue;
+  private byte[] measureData;
+
+  public String getResourceKey() {
+    return resourceKey;
+  }
+
+  public DuplicationMeasureDto setResourceKey(String resourceKey) {
+    this.resourceKey = resourceKey;
+    return this;
+  }
+
+  public String getMetricKey() {
+    return metricKey;
+  }
+
+  public DuplicationMeasureDto setMetricKey(String metricKey) {
+    this.metricKey = metricKey;
+    return this;
+  }
+
+  @CheckForNull
+  public Double getValue() {
+    return value;
+  }
+
+  public DuplicationMeasureDto setValue(Double value) {
+    this.value = value;
+    return this;
+  }
+
+  public DuplicationMeasureDto setTextValue(String textValue) {
+    this.textValue = textValue;
+    return this;
+  }
+
+  public DuplicationMeasureDto setMeasureData(byte[] measureData) {
+    this.measureData = measureData;
+    return this;
+  }
+
+  /**
+   * Long texts are stored in the table MEASURE_DATA, short ones in the column TEXT_VALUE.
+   */
+  @CheckForNull
+  public String getData() {
+    if (measureData != null) {
+      return new String(measureData, Charsets.UTF_8);
+    }
+    return textValue;
+  }
+
+}
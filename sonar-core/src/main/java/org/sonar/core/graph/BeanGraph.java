@@ -23,7 +23,6 @@ import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
-import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
 import com.tinkerpop.blueprints.util.ElementHelper;
 
 import javax.annotation.Nullable;
@@ -38,7 +37,7 @@ public class BeanGraph {
   }
 
   public static BeanGraph createInMemory() {
-    return new BeanGraph(new TinkerGraph());
+    return new BeanGraph(new CompactGraph());
   }
 
   public final <T extends BeanElement> T wrap(@Nullable Element element, Class<T> beanClass) {
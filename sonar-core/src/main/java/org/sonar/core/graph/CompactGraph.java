@@ -0,0 +1,578 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Features;
+import com.tinkerpop.blueprints.KeyIndexableGraph;
+import com.tinkerpop.blueprints.Query;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.DefaultQuery;
+import com.tinkerpop.blueprints.util.ExceptionFactory;
+import com.tinkerpop.blueprints.util.StringFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory implementation of the Blueprints graph API, optimized for the large and short-lived graphs
+ * built during project analysis. Compared to TinkerGraph :
+ * <ul>
+ * <li>element ids are generated integers, supplied ids are ignored</li>
+ * <li>property keys and edge labels are interned, so each element only keeps two small arrays of keys and values</li>
+ * <li>vertices keep their incident edges in arrays instead of maps of sets</li>
+ * </ul>
+ * This class is not thread-safe.
+ *
+ * @since 3.6
+ */
+public final class CompactGraph implements KeyIndexableGraph {
+
+  private static final Features FEATURES = new Features();
+
+  static {
+    FEATURES.supportsDuplicateEdges = true;
+    FEATURES.supportsSelfLoops = true;
+    FEATURES.supportsSerializableObjectProperty = true;
+    FEATURES.supportsBooleanProperty = true;
+    FEATURES.supportsDoubleProperty = true;
+    FEATURES.supportsFloatProperty = true;
+    FEATURES.supportsIntegerProperty = true;
+    FEATURES.supportsPrimitiveArrayProperty = true;
+    FEATURES.supportsUniformListProperty = true;
+    FEATURES.supportsMixedListProperty = true;
+    FEATURES.supportsLongProperty = true;
+    FEATURES.supportsMapProperty = true;
+    FEATURES.supportsStringProperty = true;
+    FEATURES.ignoresSuppliedIds = true;
+    FEATURES.isPersistent = false;
+    FEATURES.isWrapper = false;
+    FEATURES.supportsIndices = false;
+    FEATURES.supportsVertexIndex = false;
+    FEATURES.supportsEdgeIndex = false;
+    FEATURES.supportsKeyIndices = true;
+    FEATURES.supportsVertexKeyIndex = true;
+    FEATURES.supportsEdgeKeyIndex = true;
+    FEATURES.supportsEdgeIteration = true;
+    FEATURES.supportsVertexIteration = true;
+    FEATURES.supportsEdgeRetrieval = true;
+    FEATURES.supportsVertexProperties = true;
+    FEATURES.supportsEdgeProperties = true;
+    FEATURES.supportsTransactions = false;
+    FEATURES.supportsThreadedTransactions = false;
+  }
+
+  private static final String[] NO_KEYS = new String[0];
+  private static final Object[] NO_VALUES = new Object[0];
+  private static final CompactEdge[] NO_EDGES = new CompactEdge[0];
+
+  private final Map<String, String> internedStrings = Maps.newHashMap();
+  private final List<CompactVertex> vertices = Lists.newArrayList();
+  private final List<CompactEdge> edges = Lists.newArrayList();
+  private final Map<String, KeyIndex> vertexKeyIndices = Maps.newHashMap();
+  private final Map<String, KeyIndex> edgeKeyIndices = Maps.newHashMap();
+  private int vertexCount = 0;
+  private int edgeCount = 0;
+
+  public Features getFeatures() {
+    return FEATURES;
+  }
+
+  /**
+   * @param id ignored, ids are generated
+   */
+  public Vertex addVertex(Object id) {
+    CompactVertex vertex = new CompactVertex(this, vertices.size());
+    vertices.add(vertex);
+    vertexCount++;
+    return vertex;
+  }
+
+  @CheckForNull
+  public Vertex getVertex(Object id) {
+    if (id == null) {
+      throw ExceptionFactory.vertexIdCanNotBeNull();
+    }
+    int index = toIndex(id);
+    return index >= 0 && index < vertices.size() ? vertices.get(index) : null;
+  }
+
+  public void removeVertex(Vertex vertex) {
+    CompactVertex v = (CompactVertex) vertex;
+    if (vertices.get(v.id) == v) {
+      for (Edge edge : v.getEdges(Direction.BOTH)) {
+        removeEdge(edge);
+      }
+      unindex(vertexKeyIndices, v);
+      vertices.set(v.id, null);
+      vertexCount--;
+    }
+  }
+
+  /**
+   * @return unmodifiable view of vertices. Vertices can be removed while iterating, but not added.
+   */
+  public Iterable<Vertex> getVertices() {
+    // removed vertices are null, so they are skipped by the filter
+    return Iterables.filter(vertices, Vertex.class);
+  }
+
+  public Iterable<Vertex> getVertices(String key, Object value) {
+    KeyIndex index = vertexKeyIndices.get(key);
+    if (index != null) {
+      return index.<Vertex>get(value);
+    }
+    List<Vertex> result = Lists.newArrayList();
+    for (CompactVertex vertex : vertices) {
+      if (vertex != null && value.equals(vertex.getProperty(key))) {
+        result.add(vertex);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param id ignored, ids are generated
+   */
+  public Edge addEdge(Object id, Vertex outVertex, Vertex inVertex, String label) {
+    if (label == null) {
+      throw new IllegalArgumentException("Edge label can not be null");
+    }
+    CompactVertex out = (CompactVertex) outVertex;
+    CompactVertex in = (CompactVertex) inVertex;
+    CompactEdge edge = new CompactEdge(this, edges.size(), out, in, intern(label));
+    edges.add(edge);
+    edgeCount++;
+    out.outEdges = append(out.outEdges, out.outCount, edge);
+    out.outCount++;
+    in.inEdges = append(in.inEdges, in.inCount, edge);
+    in.inCount++;
+    return edge;
+  }
+
+  @CheckForNull
+  public Edge getEdge(Object id) {
+    if (id == null) {
+      throw ExceptionFactory.edgeIdCanNotBeNull();
+    }
+    int index = toIndex(id);
+    return index >= 0 && index < edges.size() ? edges.get(index) : null;
+  }
+
+  public void removeEdge(Edge edge) {
+    CompactEdge e = (CompactEdge) edge;
+    if (edges.get(e.id) == e) {
+      e.out.outCount = remove(e.out.outEdges, e.out.outCount, e);
+      e.in.inCount = remove(e.in.inEdges, e.in.inCount, e);
+      unindex(edgeKeyIndices, e);
+      edges.set(e.id, null);
+      edgeCount--;
+    }
+  }
+
+  /**
+   * @return unmodifiable view of edges. Edges can be removed while iterating, but not added.
+   */
+  public Iterable<Edge> getEdges() {
+    // removed edges are null, so they are skipped by the filter
+    return Iterables.filter(edges, Edge.class);
+  }
+
+  public Iterable<Edge> getEdges(String key, Object value) {
+    KeyIndex index = edgeKeyIndices.get(key);
+    if (index != null) {
+      return index.<Edge>get(value);
+    }
+    List<Edge> result = Lists.newArrayList();
+    for (CompactEdge edge : edges) {
+      if (edge != null && value.equals(edge.getProperty(key))) {
+        result.add(edge);
+      }
+    }
+    return result;
+  }
+
+  public <T extends Element> void createKeyIndex(String key, Class<T> elementClass) {
+    Map<String, KeyIndex> indices = keyIndices(elementClass);
+    if (!indices.containsKey(key)) {
+      KeyIndex index = new KeyIndex();
+      List<? extends CompactElement> elements = Vertex.class.isAssignableFrom(elementClass) ? vertices : edges;
+      for (CompactElement element : elements) {
+        if (element != null) {
+          index.put(element.getProperty(key), element);
+        }
+      }
+      indices.put(intern(key), index);
+    }
+  }
+
+  public <T extends Element> void dropKeyIndex(String key, Class<T> elementClass) {
+    keyIndices(elementClass).remove(key);
+  }
+
+  public <T extends Element> Set<String> getIndexedKeys(Class<T> elementClass) {
+    return Sets.newHashSet(keyIndices(elementClass).keySet());
+  }
+
+  public void shutdown() {
+    // nothing to do, graph is in memory
+  }
+
+  public int countVertices() {
+    return vertexCount;
+  }
+
+  public int countEdges() {
+    return edgeCount;
+  }
+
+  @Override
+  public String toString() {
+    return StringFactory.graphString(this, "vertices:" + vertexCount + " edges:" + edgeCount);
+  }
+
+  private Map<String, KeyIndex> keyIndices(Class<? extends Element> elementClass) {
+    if (Vertex.class.isAssignableFrom(elementClass)) {
+      return vertexKeyIndices;
+    }
+    if (Edge.class.isAssignableFrom(elementClass)) {
+      return edgeKeyIndices;
+    }
+    throw ExceptionFactory.classIsNotIndexable(elementClass);
+  }
+
+  private Map<String, KeyIndex> keyIndices(CompactElement element) {
+    return element instanceof CompactVertex ? vertexKeyIndices : edgeKeyIndices;
+  }
+
+  private static void unindex(Map<String, KeyIndex> indices, CompactElement element) {
+    for (Map.Entry<String, KeyIndex> entry : indices.entrySet()) {
+      entry.getValue().remove(element.getProperty(entry.getKey()), element);
+    }
+  }
+
+  private String intern(String s) {
+    String interned = internedStrings.get(s);
+    if (interned == null) {
+      interned = s;
+      internedStrings.put(s, s);
+    }
+    return interned;
+  }
+
+  private static int toIndex(Object id) {
+    if (id instanceof Number) {
+      return ((Number) id).intValue();
+    }
+    try {
+      return Integer.parseInt(id.toString());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static CompactEdge[] append(CompactEdge[] array, int size, CompactEdge edge) {
+    CompactEdge[] result = array;
+    if (size == array.length) {
+      result = new CompactEdge[Math.max(2, size * 2)];
+      System.arraycopy(array, 0, result, 0, size);
+    }
+    result[size] = edge;
+    return result;
+  }
+
+  private static int remove(CompactEdge[] array, int size, CompactEdge edge) {
+    for (int i = 0; i < size; i++) {
+      if (array[i] == edge) {
+        System.arraycopy(array, i + 1, array, i, size - i - 1);
+        array[size - 1] = null;
+        return size - 1;
+      }
+    }
+    return size;
+  }
+
+  private static boolean hasLabel(CompactEdge edge, String... labels) {
+    if (labels.length == 0) {
+      return true;
+    }
+    for (String label : labels) {
+      if (edge.label.equals(label)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Maps property values to elements. Values are a single element when the property is unique, which is
+   * the most common case, and are upgraded to a list when several elements share the same value.
+   */
+  private static class KeyIndex {
+    private final Map<Object, Object> elementsByValue = Maps.newHashMap();
+
+    // casts are safe: each index only contains vertices or only edges, and values are either an element or a list of elements
+    @SuppressWarnings("unchecked")
+    <T extends Element> List<T> get(Object value) {
+      Object elements = elementsByValue.get(value);
+      if (elements == null) {
+        return Collections.emptyList();
+      }
+      if (elements instanceof List) {
+        return Lists.newArrayList((List<T>) elements);
+      }
+      return Collections.singletonList((T) elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    void put(@CheckForNull Object value, CompactElement element) {
+      if (value != null) {
+        Object elements = elementsByValue.get(value);
+        if (elements == null) {
+          elementsByValue.put(value, element);
+        } else if (elements instanceof List) {
+          ((List<Object>) elements).add(element);
+        } else {
+          elementsByValue.put(value, Lists.newArrayList(elements, element));
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void remove(@CheckForNull Object value, CompactElement element) {
+      if (value != null) {
+        Object elements = elementsByValue.get(value);
+        if (elements == element) {
+          elementsByValue.remove(value);
+        } else if (elements instanceof List) {
+          List<Object> list = (List<Object>) elements;
+          list.remove(element);
+          if (list.size() == 1) {
+            elementsByValue.put(value, list.get(0));
+          }
+        }
+      }
+    }
+  }
+
+  abstract static class CompactElement implements Element {
+    final CompactGraph graph;
+    final int id;
+    private String[] keys = NO_KEYS;
+    private Object[] values = NO_VALUES;
+
+    CompactElement(CompactGraph graph, int id) {
+      this.graph = graph;
+      this.id = id;
+    }
+
+    public Object getId() {
+      return id;
+    }
+
+    @CheckForNull
+    public Object getProperty(String key) {
+      int index = indexOf(key);
+      return index >= 0 ? values[index] : null;
+    }
+
+    public Set<String> getPropertyKeys() {
+      return Sets.newHashSet(keys);
+    }
+
+    public void setProperty(String key, Object value) {
+      validateProperty(key, value);
+      KeyIndex keyIndex = graph.keyIndices(this).get(key);
+      int index = indexOf(key);
+      if (index >= 0) {
+        if (keyIndex != null) {
+          keyIndex.remove(values[index], this);
+        }
+        values[index] = value;
+      } else {
+        int size = keys.length;
+        String[] newKeys = new String[size + 1];
+        Object[] newValues = new Object[size + 1];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size);
+        newKeys[size] = graph.intern(key);
+        newValues[size] = value;
+        keys = newKeys;
+        values = newValues;
+      }
+      if (keyIndex != null) {
+        keyIndex.put(value, this);
+      }
+    }
+
+    @CheckForNull
+    public Object removeProperty(String key) {
+      int index = indexOf(key);
+      if (index < 0) {
+        return null;
+      }
+      Object value = values[index];
+      KeyIndex keyIndex = graph.keyIndices(this).get(key);
+      if (keyIndex != null) {
+        keyIndex.remove(value, this);
+      }
+      int size = keys.length - 1;
+      String[] newKeys = size == 0 ? NO_KEYS : new String[size];
+      Object[] newValues = size == 0 ? NO_VALUES : new Object[size];
+      System.arraycopy(keys, 0, newKeys, 0, index);
+      System.arraycopy(values, 0, newValues, 0, index);
+      System.arraycopy(keys, index + 1, newKeys, index, size - index);
+      System.arraycopy(values, index + 1, newValues, index, size - index);
+      keys = newKeys;
+      values = newValues;
+      return value;
+    }
+
+    void validateProperty(String key, Object value) {
+      if (key == null || "".equals(key)) {
+        throw ExceptionFactory.elementKeyCanNotBeEmpty();
+      }
+      if (StringFactory.ID.equals(key)) {
+        throw ExceptionFactory.propertyKeyIdIsReserved();
+      }
+      if (value == null) {
+        throw new IllegalArgumentException("Property value can not be null");
+      }
+    }
+
+    private int indexOf(String key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (Objects.equal(keys[i], key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  static final class CompactVertex extends CompactElement implements Vertex {
+    private CompactEdge[] outEdges = NO_EDGES;
+    private CompactEdge[] inEdges = NO_EDGES;
+    private int outCount = 0;
+    private int inCount = 0;
+
+    CompactVertex(CompactGraph graph, int id) {
+      super(graph, id);
+    }
+
+    public Iterable<Edge> getEdges(Direction direction, String... labels) {
+      List<Edge> result = Lists.newArrayList();
+      if (direction != Direction.IN) {
+        for (int i = 0; i < outCount; i++) {
+          if (hasLabel(outEdges[i], labels)) {
+            result.add(outEdges[i]);
+          }
+        }
+      }
+      if (direction != Direction.OUT) {
+        for (int i = 0; i < inCount; i++) {
+          if (hasLabel(inEdges[i], labels)) {
+            result.add(inEdges[i]);
+          }
+        }
+      }
+      return result;
+    }
+
+    public Iterable<Vertex> getVertices(Direction direction, String... labels) {
+      List<Vertex> result = Lists.newArrayList();
+      if (direction != Direction.IN) {
+        for (int i = 0; i < outCount; i++) {
+          if (hasLabel(outEdges[i], labels)) {
+            result.add(outEdges[i].in);
+          }
+        }
+      }
+      if (direction != Direction.OUT) {
+        for (int i = 0; i < inCount; i++) {
+          if (hasLabel(inEdges[i], labels)) {
+            result.add(inEdges[i].out);
+          }
+        }
+      }
+      return result;
+    }
+
+    public Query query() {
+      return new DefaultQuery(this);
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.vertexString(this);
+    }
+  }
+
+  static final class CompactEdge extends CompactElement implements Edge {
+    private final CompactVertex out;
+    private final CompactVertex in;
+    private final String label;
+
+    CompactEdge(CompactGraph graph, int id, CompactVertex out, CompactVertex in, String label) {
+      super(graph, id);
+      this.out = out;
+      this.in = in;
+      this.label = label;
+    }
+
+    public Vertex getVertex(Direction direction) {
+      if (direction == Direction.OUT) {
+        return out;
+      }
+      if (direction == Direction.IN) {
+        return in;
+      }
+      throw ExceptionFactory.bothIsNotSupported();
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    @Override
+    void validateProperty(String key, Object value) {
+      super.validateProperty(key, value);
+      if (StringFactory.LABEL.equals(key)) {
+        throw ExceptionFactory.propertyKeyLabelIsReservedForEdges();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return StringFactory.edgeString(this);
+    }
+  }
+}
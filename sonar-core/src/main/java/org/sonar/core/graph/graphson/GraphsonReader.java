@@ -19,17 +19,26 @@
  */
 package org.sonar.core.graph.graphson;
 
+import com.google.common.collect.Lists;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.JSONParser;
 
+import javax.annotation.Nullable;
+
+import java.io.IOException;
 import java.io.Reader;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 /**
- * Greatly inspired by the Blueprints implementation based on Jettison/Jackson
+ * GraphSON is parsed as a stream of tokens: vertices and edges are added to the graph one by one, as soon as they
+ * are read, so that the whole JSON tree is never kept in memory. Only elements read before the mode or before
+ * the vertices they refer to are buffered.
  */
 public class GraphsonReader {
 
@@ -45,31 +54,183 @@ public class GraphsonReader {
    * @param input      an InputStream of JSON data
    * @param bufferSize the amount of elements to hold in memory before committing a transactions (only valid for TransactionalGraphs)
    */
-  public Graph read(Reader input, Graph toGraph, Set<String> edgePropertyKeys, Set<String> vertexPropertyKeys) {
+  public Graph read(Reader input, Graph toGraph, @Nullable Set<String> edgePropertyKeys, @Nullable Set<String> vertexPropertyKeys) {
     try {
-      JSONParser parser = new JSONParser();
-      JSONObject json = (JSONObject) parser.parse(input);
+      StreamHandler handler = new StreamHandler(toGraph, edgePropertyKeys, vertexPropertyKeys);
+      new JSONParser().parse(input, handler);
+      handler.checkComplete();
+      toGraph.shutdown();
+      return toGraph;
+    } catch (Exception e) {
+      throw new GraphsonException("Unable to parse GraphSON", e);
+    }
+  }
 
-      ElementFactory elementFactory = new ElementFactory(toGraph);
-      GraphsonMode mode = GraphsonMode.valueOf(json.get(GraphsonTokens.MODE).toString());
-      GraphsonUtil graphson = new GraphsonUtil(mode, elementFactory, vertexPropertyKeys, edgePropertyKeys);
+  private static class StreamHandler implements ContentHandler {
+    private static final int ELEMENT_DEPTH = 3;
+
+    private final Graph toGraph;
+    private final Set<String> edgePropertyKeys;
+    private final Set<String> vertexPropertyKeys;
+
+    private GraphsonUtil graphson;
+    private boolean verticesRead = false;
+    private final List<JSONObject> pendingVertices = Lists.newArrayList();
+    private final List<JSONObject> pendingEdges = Lists.newArrayList();
+
+    // depth of the current object or array, 1 being the root object
+    private int depth = 0;
+    // key of the current entry of the root object
+    private String rootKey;
+    // objects and arrays of the element being read, and keys of their current entries
+    private final LinkedList<Object> containers = Lists.newLinkedList();
+    private final LinkedList<String> keys = Lists.newLinkedList();
+
+    StreamHandler(Graph toGraph, @Nullable Set<String> edgePropertyKeys, @Nullable Set<String> vertexPropertyKeys) {
+      this.toGraph = toGraph;
+      this.edgePropertyKeys = edgePropertyKeys;
+      this.vertexPropertyKeys = vertexPropertyKeys;
+    }
+
+    public void startJSON() {
+      // nothing to do
+    }
 
-      JSONArray vertices = (JSONArray) json.get(GraphsonTokens.VERTICES);
-      for (Object vertice : vertices) {
-        graphson.vertexFromJson((JSONObject) vertice);
+    public void endJSON() {
+      // nothing to do
+    }
+
+    public boolean startObject() {
+      depth++;
+      if (!containers.isEmpty()) {
+        JSONObject object = new JSONObject();
+        addValue(object);
+        containers.push(object);
+      } else if (depth == ELEMENT_DEPTH && isElementArray()) {
+        containers.push(new JSONObject());
       }
+      return true;
+    }
 
-      JSONArray edges = (JSONArray) json.get(GraphsonTokens.EDGES);
-      for (Object edgeObject : edges) {
-        JSONObject edge = (JSONObject) edgeObject;
-        Vertex inV = toGraph.getVertex(edge.get(GraphsonTokens._IN_V));
-        Vertex outV = toGraph.getVertex(edge.get(GraphsonTokens._OUT_V));
-        graphson.edgeFromJson(edge, outV, inV);
+    public boolean endObject() throws IOException {
+      if (!containers.isEmpty()) {
+        Object container = containers.pop();
+        if (containers.isEmpty()) {
+          readElement((JSONObject) container);
+        }
+      }
+      depth--;
+      return true;
+    }
+
+    public boolean startObjectEntry(String key) {
+      if (containers.isEmpty()) {
+        if (depth == 1) {
+          rootKey = key;
+        }
+      } else {
+        keys.push(key);
+      }
+      return true;
+    }
+
+    public boolean endObjectEntry() throws IOException {
+      if (!containers.isEmpty()) {
+        keys.pop();
+      } else if (depth == 1) {
+        if (GraphsonTokens.VERTICES.equals(rootKey)) {
+          verticesRead = true;
+          flushPendingElements();
+        }
+        rootKey = null;
+      }
+      return true;
+    }
+
+    public boolean startArray() {
+      depth++;
+      if (!containers.isEmpty()) {
+        JSONArray array = new JSONArray();
+        addValue(array);
+        containers.push(array);
+      }
+      return true;
+    }
+
+    public boolean endArray() {
+      if (!containers.isEmpty()) {
+        containers.pop();
+      }
+      depth--;
+      return true;
+    }
+
+    public boolean primitive(Object value) throws IOException {
+      if (!containers.isEmpty()) {
+        addValue(value);
+      } else if (depth == 1 && GraphsonTokens.MODE.equals(rootKey)) {
+        GraphsonMode mode = GraphsonMode.valueOf(value.toString());
+        graphson = new GraphsonUtil(mode, new ElementFactory(toGraph), vertexPropertyKeys, edgePropertyKeys);
+        flushPendingElements();
+      }
+      return true;
+    }
+
+    void checkComplete() {
+      if (graphson == null) {
+        throw new IllegalStateException("GraphSON mode is missing");
+      }
+      if (!pendingVertices.isEmpty() || !pendingEdges.isEmpty()) {
+        throw new IllegalStateException("GraphSON vertices are missing");
+      }
+    }
+
+    private boolean isElementArray() {
+      return GraphsonTokens.VERTICES.equals(rootKey) || GraphsonTokens.EDGES.equals(rootKey);
+    }
+
+    private void addValue(Object value) {
+      Object container = containers.peek();
+      if (container instanceof JSONObject) {
+        ((JSONObject) container).put(keys.peek(), value);
+      } else {
+        ((JSONArray) container).add(value);
+      }
+    }
+
+    private void readElement(JSONObject element) throws IOException {
+      if (GraphsonTokens.VERTICES.equals(rootKey)) {
+        if (graphson == null) {
+          pendingVertices.add(element);
+        } else {
+          graphson.vertexFromJson(element);
+        }
+      } else if (graphson == null || !verticesRead) {
+        pendingEdges.add(element);
+      } else {
+        readEdge(element);
+      }
+    }
+
+    private void readEdge(JSONObject edge) throws IOException {
+      Vertex inV = toGraph.getVertex(edge.get(GraphsonTokens._IN_V));
+      Vertex outV = toGraph.getVertex(edge.get(GraphsonTokens._OUT_V));
+      graphson.edgeFromJson(edge, outV, inV);
+    }
+
+    private void flushPendingElements() throws IOException {
+      if (graphson != null) {
+        for (JSONObject vertex : pendingVertices) {
+          graphson.vertexFromJson(vertex);
+        }
+        pendingVertices.clear();
+        if (verticesRead) {
+          for (JSONObject edge : pendingEdges) {
+            readEdge(edge);
+          }
+          pendingEdges.clear();
+        }
       }
-      toGraph.shutdown();
-      return toGraph;
-    } catch (Exception e) {
-      throw new GraphsonException("Unable to parse GraphSON", e);
     }
   }
 }
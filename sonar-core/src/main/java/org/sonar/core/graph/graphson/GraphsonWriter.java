@@ -22,11 +22,11 @@ package org.sonar.core.graph.graphson;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 import javax.annotation.Nullable;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Set;
 
@@ -47,27 +47,43 @@ public class GraphsonWriter {
    */
   public void write(Graph graph, Writer output, GraphsonMode mode, @Nullable Set<String> vertexPropertyKeys, @Nullable Set<String> edgePropertyKeys) {
     try {
-      JSONObject root = new JSONObject();
       GraphsonUtil graphson = new GraphsonUtil(mode, null, vertexPropertyKeys, edgePropertyKeys);
 
-      root.put(GraphsonTokens.MODE, mode.toString());
-
-      JSONArray verticesArray = new JSONArray();
+      // elements are written one by one, so that whole JSON tree is never kept in memory
+      output.write('{');
+      writeKey(GraphsonTokens.MODE, output);
+      output.write(JSONValue.toJSONString(mode.toString()));
+      output.write(',');
+      writeKey(GraphsonTokens.VERTICES, output);
+      output.write('[');
+      boolean first = true;
       for (Vertex v : graph.getVertices()) {
-        verticesArray.add(graphson.jsonFromElement(v));
+        if (!first) {
+          output.write(',');
+        }
+        graphson.jsonFromElement(v).writeJSONString(output);
+        first = false;
       }
-      root.put(GraphsonTokens.VERTICES, verticesArray);
-
-      JSONArray edgesArray = new JSONArray();
+      output.write("],");
+      writeKey(GraphsonTokens.EDGES, output);
+      output.write('[');
+      first = true;
       for (Edge e : graph.getEdges()) {
-        edgesArray.add(graphson.jsonFromElement(e));
+        if (!first) {
+          output.write(',');
+        }
+        graphson.jsonFromElement(e).writeJSONString(output);
+        first = false;
       }
-      root.put(GraphsonTokens.EDGES, edgesArray);
-
-      output.write(root.toString());
+      output.write("]}");
     } catch (Exception e) {
       throw new GraphsonException("Fail to generate GraphSON", e);
     }
   }
 
+  private static void writeKey(String key, Writer output) throws IOException {
+    output.write(JSONValue.toJSONString(key));
+    output.write(':');
+  }
+
 }
@@ -50,4 +50,32 @@ public class GraphDao {
       MyBatis.closeQuietly(session);
     }
   }
+
+  /**
+   * Same as {@link #selectBySnapshot(String, long)}, but data is not loaded.
+   */
+  public GraphDto selectHeaderBySnapshot(String perspectiveKey, long snapshotId) {
+    SqlSession session = mybatis.openBatchSession();
+    try {
+      GraphDtoMapper mapper = session.getMapper(GraphDtoMapper.class);
+      return mapper.selectHeaderBySnapshot(perspectiveKey, snapshotId);
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Same as {@link #selectByComponent(String, String)}, but data is not loaded.
+   */
+  public GraphDto selectHeaderByComponent(String perspectiveKey, String componentKey) {
+    SqlSession session = mybatis.openBatchSession();
+    try {
+      GraphDtoMapper mapper = session.getMapper(GraphDtoMapper.class);
+      return mapper.selectHeaderByComponent(perspectiveKey, componentKey);
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
 }
@@ -27,4 +27,8 @@ public interface GraphDtoMapper {
   GraphDto selectBySnapshot(@Param("perspective") String perspectiveKey, @Param("sid") long snapshotId);
 
   GraphDto selectByComponent(@Param("perspective") String perspectiveKey, @Param("key") String componentKey);
+
+  GraphDto selectHeaderBySnapshot(@Param("perspective") String perspectiveKey, @Param("sid") long snapshotId);
+
+  GraphDto selectHeaderByComponent(@Param("perspective") String perspectiveKey, @Param("key") String componentKey);
 }
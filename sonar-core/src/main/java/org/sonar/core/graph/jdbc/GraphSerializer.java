@@ -0,0 +1,106 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.jdbc;
+
+import com.google.common.base.Charsets;
+import com.tinkerpop.blueprints.Graph;
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.io.IOUtils;
+import org.sonar.core.graph.graphson.GraphsonMode;
+import org.sonar.core.graph.graphson.GraphsonReader;
+import org.sonar.core.graph.graphson.GraphsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Converts graphs to and from {@link GraphDto#getData()} according to {@link GraphDto#getFormat()}.
+ * <p>
+ * Graphs are written as GraphSON, which is streamed through GZIP and Base64, so that the JSON document is never kept
+ * in memory and stored text is several times smaller. Graphs in plain GraphSON, which were stored by previous versions,
+ * can still be read.
+ * </p>
+ *
+ * @since 3.6
+ */
+public final class GraphSerializer {
+
+  public static final String FORMAT_GRAPHSON = "graphson";
+  public static final String FORMAT_GRAPHSON_GZIP = "graphson-gz";
+  public static final int VERSION = 1;
+
+  private GraphSerializer() {
+    // only static methods
+  }
+
+  /**
+   * @return data to be stored with format {@link #FORMAT_GRAPHSON_GZIP}
+   */
+  public static String write(Graph graph) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Writer output = null;
+    try {
+      output = new OutputStreamWriter(new GZIPOutputStream(new Base64OutputStream(bytes, true, 0, new byte[0])), Charsets.UTF_8);
+      new GraphsonWriter().write(graph, output, GraphsonMode.EXTENDED);
+      output.close();
+      return new String(bytes.toByteArray(), Charsets.US_ASCII);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compress graph", e);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
+  /**
+   * Loads stored graph into specified graph.
+   */
+  public static Graph read(GraphDto dto, Graph toGraph) {
+    Reader input = null;
+    try {
+      input = openReader(dto);
+      return new GraphsonReader().read(input, toGraph);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to decompress graph " + dto.getId(), e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static Reader openReader(GraphDto dto) throws IOException {
+    if (FORMAT_GRAPHSON.equals(dto.getFormat())) {
+      return new StringReader(dto.getData());
+    }
+    if (FORMAT_GRAPHSON_GZIP.equals(dto.getFormat())) {
+      byte[] bytes = dto.getData().getBytes(Charsets.US_ASCII);
+      return new InputStreamReader(new GZIPInputStream(new Base64InputStream(new ByteArrayInputStream(bytes))), Charsets.UTF_8);
+    }
+    throw new IllegalStateException("Unsupported format of graph " + dto.getId() + ": " + dto.getFormat());
+  }
+
+}
@@ -20,8 +20,14 @@
 package org.sonar.core.i18n;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchExtension;
@@ -42,16 +48,35 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 public class I18nManager implements I18n, ServerExtension, BatchExtension {
   private static final Logger LOG = LoggerFactory.getLogger(I18nManager.class);
 
   public static final String BUNDLE_PACKAGE = "org.sonar.l10n.";
 
+  private static final int MAX_LOCALES = 50;
+  private static final int MAX_MESSAGE_FORMATS = 10000;
+  private static final int MAX_FILES = 2000;
+
   private PluginRepository pluginRepository;
   private I18nClassloader i18nClassloader;
   private Map<String, String> propertyToBundles;
-  private Map<String, Map<Locale, String>> fileContentCache = Maps.newHashMap();
+
+  /**
+   * Immutable tables of all the messages of a locale, loaded on first use. English is loaded at startup.
+   */
+  private Cache<Locale, Map<String, String>> messagesByLocale;
+
+  /**
+   * Compiled message patterns. {@link MessageFormat} is not thread-safe, so instances are synchronized when used.
+   */
+  private Cache<String, MessageFormat> messageFormats;
+
+  /**
+   * Contents of files, per filename and locale. Missing files are cached as absent values.
+   */
+  private Cache<String, ConcurrentMap<Locale, Optional<String>>> fileContentCache;
 
   public I18nManager(PluginRepository pluginRepository) {
     this.pluginRepository = pluginRepository;
@@ -78,40 +103,74 @@ public class I18nManager implements I18n, ServerExtension, BatchExtension {
         // ignore
       }
     }
+    messagesByLocale = CacheBuilder.newBuilder().maximumSize(MAX_LOCALES).build(new CacheLoader<Locale, Map<String, String>>() {
+      @Override
+      public Map<String, String> load(Locale locale) {
+        return loadMessages(locale);
+      }
+    });
+    messageFormats = CacheBuilder.newBuilder().maximumSize(MAX_MESSAGE_FORMATS).build(new CacheLoader<String, MessageFormat>() {
+      @Override
+      public MessageFormat load(String message) {
+        return new MessageFormat(StringUtils.replace(message, "'", "''"));
+      }
+    });
+    fileContentCache = CacheBuilder.newBuilder().maximumSize(MAX_FILES).build(new CacheLoader<String, ConcurrentMap<Locale, Optional<String>>>() {
+      @Override
+      public ConcurrentMap<Locale, Optional<String>> load(String filename) {
+        return Maps.newConcurrentMap();
+      }
+    });
+    messagesByLocale.getUnchecked(Locale.ENGLISH);
     LOG.debug(String.format("Loaded %d properties from l10n bundles", propertyToBundles.size()));
   }
 
   public void stop() {
-    i18nClassloader=null;
-    propertyToBundles=null;
-    fileContentCache=null;
+    i18nClassloader = null;
+    propertyToBundles = null;
+    messagesByLocale = null;
+    messageFormats = null;
+    fileContentCache = null;
   }
 
   public String message(Locale locale, String key, String defaultValue, Object... parameters) {
-    String bundleKey = propertyToBundles.get(key);
-    String value = null;
-    if (bundleKey != null) {
-      try {
-        ResourceBundle resourceBundle = ResourceBundle.getBundle(bundleKey, locale, i18nClassloader);
-        value = resourceBundle.getString(key);
-      } catch (MissingResourceException e1) {
-        // ignore
-      }
-    }
+    String value = messagesByLocale.getUnchecked(locale).get(key);
     if (value == null) {
       value = defaultValue;
     }
     return formatMessage(value, parameters);
   }
 
+  private Map<String, String> loadMessages(Locale locale) {
+    Map<String, ResourceBundle> bundles = Maps.newHashMap();
+    ImmutableMap.Builder<String, String> messages = ImmutableMap.builder();
+    for (Map.Entry<String, String> entry : propertyToBundles.entrySet()) {
+      String bundleKey = entry.getValue();
+      try {
+        ResourceBundle bundle = bundles.get(bundleKey);
+        if (bundle == null) {
+          bundle = ResourceBundle.getBundle(bundleKey, locale, i18nClassloader);
+          bundles.put(bundleKey, bundle);
+        }
+        messages.put(entry.getKey(), bundle.getString(entry.getKey()));
+      } catch (MissingResourceException e) {
+        // ignore
+      }
+    }
+    return messages.build();
+  }
+
   /**
    * Only the given locale is searched. Contrary to java.util.ResourceBundle, no strategy for locating the bundle is implemented in
    * this method.
    */
   String messageFromFile(Locale locale, String filename, String relatedProperty, boolean keepInCache) {
-    Map<Locale, String> fileCache = fileContentCache.get(filename);
-    if (fileCache != null && fileCache.containsKey(locale)) {
-      return fileCache.get(locale);
+    Map<Locale, Optional<String>> fileCache = fileContentCache.asMap().get(filename);
+    if (fileCache != null) {
+      Optional<String> cached = fileCache.get(locale);
+      if (cached != null) {
+        return cached.orNull();
+      }
     }
 
     String result = null;
@@ -132,12 +191,8 @@ public class I18nManager implements I18n, ServerExtension, BatchExtension {
     }
 
     if (keepInCache) {
-      if (fileCache == null) {
-        fileCache = Maps.newHashMap();
-        fileContentCache.put(filename, fileCache);
-      }
-      // put null value for negative caching.
-      fileCache.put(locale, result);
+      // absent value for negative caching.
+      fileContentCache.getUnchecked(filename).put(locale, Optional.fromNullable(result));
     }
     return result;
   }
@@ -163,14 +218,18 @@ public class I18nManager implements I18n, ServerExtension, BatchExtension {
     if (message == null || parameters.length == 0) {
       return message;
     }
-    return MessageFormat.format(message.replaceAll("'", "''"), parameters);
+    MessageFormat format = messageFormats.getUnchecked(message);
+    synchronized (format) {
+      return format.format(parameters);
+    }
   }
 
   ClassLoader getBundleClassLoader() {
     return i18nClassloader;
   }
 
-  Map<String, Map<Locale, String>> getFileContentCache() {
-    return fileContentCache;
+  @VisibleForTesting
+  Map<String, ConcurrentMap<Locale, Optional<String>>> getFileContentCache() {
+    return fileContentCache.asMap();
   }
 }
@@ -32,6 +32,7 @@ import org.sonar.core.properties.PropertiesDao;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -76,22 +77,45 @@ public class DefaultNotificationManager implements NotificationManager {
    * Give the notification queue so that it can be processed
    */
   public NotificationQueueElement getFromQueue() {
+    List<NotificationQueueElement> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Remove the oldest elements from the queue, in a single transaction, so that they can be processed.
+   *
+   * @param maxElements the maximum number of elements to remove
+   * @return the removed elements, ordered by creation date. Empty if the queue is empty.
+   * @since 3.6
+   */
+  public List<NotificationQueueElement> getFromQueue(int maxElements) {
     DatabaseSession session = sessionFactory.getSession();
     String hql = "FROM " + NotificationQueueElement.class.getSimpleName() + " ORDER BY createdAt ASC";
-    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(1).getResultList();
+    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(maxElements).getResultList();
     if (notifications.isEmpty()) {
       // UGLY - waiting for a clean way to manage JDBC connections without Hibernate - myBatis is coming soon
       // This code is highly coupled to org.sonar.server.notifications.NotificationService, which periodically executes
       // several times the methods getFromQueue() and isEnabled(). The session is closed only at the end of the task -
       // when there are no more notifications to process - to ensure "better" performances.
       sessionFactory.clear();
-      return null;
+      return Collections.emptyList();
+    }
+    for (NotificationQueueElement notification : notifications) {
+      session.removeWithoutFlush(notification);
     }
-    NotificationQueueElement notification = notifications.get(0);
-    session.removeWithoutFlush(notification);
     session.commit();
-    return notification;
+    return notifications;
+  }
 
+  /**
+   * Number of notifications waiting to be processed
+   *
+   * @since 3.6
+   */
+  public long getQueueSize() {
+    DatabaseSession session = sessionFactory.getSession();
+    String hql = "SELECT COUNT(n) FROM " + NotificationQueueElement.class.getSimpleName() + " n";
+    return session.getSingleResult(session.createQuery(hql), 0L);
   }
 
   /**
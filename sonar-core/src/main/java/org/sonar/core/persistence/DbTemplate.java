@@ -20,6 +20,7 @@
 package org.sonar.core.persistence;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import org.apache.commons.dbcp.BasicDataSource;
@@ -31,6 +32,9 @@ import org.sonar.api.utils.SonarException;
 
 import javax.sql.DataSource;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -100,6 +104,63 @@ public class DbTemplate implements ServerComponent {
     return this;
   }
 
+  /**
+   * Adds the rows of a table to a digest, without copying them. Rows are combined in a way that does not depend
+   * on their order, which is not guaranteed by the database.
+   *
+   * @since 3.6
+   */
+  public DbTemplate hashTable(DataSource source, MessageDigest digest, String table, String... whereClauses) {
+    String selectQuery = selectQuery(table, whereClauses);
+
+    Connection connection = null;
+    Statement statement = null;
+    ResultSet resultSet = null;
+    try {
+      connection = source.getConnection();
+      statement = connection.createStatement();
+      resultSet = statement.executeQuery(selectQuery);
+
+      int colCount = resultSet.getMetaData().getColumnCount();
+      MessageDigest rowDigest = md5();
+      long rowCount = 0L;
+      long rowHashes = 0L;
+      while (resultSet.next()) {
+        for (int col = 1; col <= colCount; col++) {
+          String value = resultSet.getString(col);
+          if (value == null) {
+            rowDigest.update((byte) 0);
+          } else {
+            rowDigest.update((byte) 1);
+            rowDigest.update(value.getBytes(Charsets.UTF_8));
+          }
+          rowDigest.update((byte) 0);
+        }
+        // digest() resets rowDigest for the next row
+        rowHashes += ByteBuffer.wrap(rowDigest.digest()).getLong();
+        rowCount++;
+      }
+      digest.update((table + ':' + rowCount + ':' + rowHashes + '\n').getBytes(Charsets.UTF_8));
+    } catch (SQLException e) {
+      LOG.error("Fail to hash table " + table, e);
+      throw new IllegalStateException("Fail to hash table " + table, e);
+    } finally {
+      DatabaseUtils.closeQuietly(resultSet);
+      DatabaseUtils.closeQuietly(statement);
+      DatabaseUtils.closeQuietly(connection);
+    }
+
+    return this;
+  }
+
+  static MessageDigest md5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not supported", e);
+    }
+  }
+
   private void copyColumns(ResultSet sourceResultSet, PreparedStatement destStatement, String[] columnNames, int[] columnTypes) throws SQLException {
     for (int col = 1; col <= columnNames.length; col++) {
       if (columnTypes[col - 1] == Types.TIMESTAMP) {
@@ -165,7 +165,8 @@ public class DefaultDatabase implements Database {
           return dbcpDataSoure.getMaxActive();
         }
       });
-      monitoredDataSource = new MonitoredDataSource(datasource, getConnectionTimer);
+      Timer executeTimer = registry.timer(MetricRegistry.name(DataSource.class, "execute"));
+      monitoredDataSource = new MonitoredDataSource(datasource, getConnectionTimer, executeTimer);
     } else {
       // monitoring disabled
       monitoredDataSource = datasource;
@@ -19,29 +19,46 @@
  */
 package org.sonar.core.persistence;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.dbcp.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.platform.ServerFileSystem;
 import org.sonar.api.utils.SonarException;
 import org.sonar.core.review.ReviewDto;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Creates the H2 databases downloaded by dry runs. The last database of each project is kept in the temp directory
+ * with a hash of its data, and is generated again only when data has changed.
+ */
 public class DryRunDatabaseFactory implements ServerComponent {
+  private static final Logger LOG = LoggerFactory.getLogger(DryRunDatabaseFactory.class);
   private static final String DIALECT = "h2";
   private static final String DRIVER = "org.h2.Driver";
   private static final String URL = "jdbc:h2:";
   private static final String USER = "sonar";
   private static final String PASSWORD = "sonar";
+  private static final String GLOBAL_KEY = "global";
   private final Database database;
   private final ServerFileSystem serverFileSystem;
+  private final ConcurrentMap<String, CachedDatabase> cache = Maps.newConcurrentMap();
 
   public DryRunDatabaseFactory(Database database, ServerFileSystem serverFileSystem) {
     this.database = database;
@@ -49,7 +66,61 @@ public class DryRunDatabaseFactory implements ServerComponent {
   }
 
   public byte[] createDatabaseForDryRun(@Nullable Long projectId) {
-    String name = serverFileSystem.getTempDir().getAbsolutePath() + "db-" + System.nanoTime();
+    return getDatabaseForDryRun(projectId, null).getContent();
+  }
+
+  /**
+   * H2 files are not byte-identical when they are generated twice from the same data. The hash of rows is used
+   * to know whether the cached file can be reused, so that the hash of the file returned to clients does not change
+   * while data is unchanged. Computing the hash of rows does not require to generate the database.
+   *
+   * @param knownHash MD5 hash of the database file already downloaded by the client, if any
+   * @return the database, without content if its hash equals <code>knownHash</code>
+   * @since 3.6
+   */
+  public DryRunDatabase getDatabaseForDryRun(@Nullable Long projectId, @Nullable String knownHash) {
+    String key = projectId == null ? GLOBAL_KEY : projectId.toString();
+    CachedDatabase cached = cache.get(key);
+    if (cached == null) {
+      cache.putIfAbsent(key, new CachedDatabase());
+      cached = cache.get(key);
+    }
+    // databases of different projects can be created at the same time
+    synchronized (cached) {
+      String dataHash = hash(projectId);
+      byte[] content = null;
+      if (!dataHash.equals(cached.dataHash) || !cached.file.exists()) {
+        File file = createDatabase(projectId);
+        content = dbFileContent(file);
+        if (cached.file != null) {
+          cached.file.delete();
+        }
+        cached.dataHash = dataHash;
+        cached.fileHash = DigestUtils.md5Hex(content);
+        cached.file = file;
+      } else {
+        LOG.debug("Reuse database for dry run of {}", key);
+      }
+      if (cached.fileHash.equals(knownHash)) {
+        return new DryRunDatabase(cached.fileHash, null);
+      }
+      return new DryRunDatabase(cached.fileHash, content == null ? dbFileContent(cached.file) : content);
+    }
+  }
+
+  private String hash(@Nullable Long projectId) {
+    MessageDigest digest = DbTemplate.md5();
+    DbTemplate template = new DbTemplate();
+    for (Table table : tables(projectId)) {
+      template.hashTable(database.getDataSource(), digest, table.name, table.whereClauses);
+    }
+    return new String(Hex.encodeHex(digest.digest()));
+  }
+
+  private File createDatabase(@Nullable Long projectId) {
+    File dir = new File(serverFileSystem.getTempDir(), "dryRun");
+    dir.mkdirs();
+    String name = new File(dir, "db-" + System.nanoTime()).getAbsolutePath();
 
     try {
       DataSource source = database.getDataSource();
@@ -58,7 +129,7 @@ public class DryRunDatabaseFactory implements ServerComponent {
       copy(source, destination, projectId);
       close(destination);
 
-      return dbFileContent(name);
+      return new File(name + ".h2.db");
     } catch (SQLException e) {
       throw new SonarException("Unable to create database for DryRun", e);
     }
@@ -66,27 +137,33 @@ public class DryRunDatabaseFactory implements ServerComponent {
 
   private void copy(DataSource source, DataSource dest, @Nullable Long projectId) {
     DbTemplate template = new DbTemplate();
-    template
-      .copyTable(source, dest, "active_rules")
-      .copyTable(source, dest, "active_rule_parameters")
-      .copyTable(source, dest, "characteristics")
-      .copyTable(source, dest, "characteristic_edges")
-      .copyTable(source, dest, "characteristic_properties")
-      .copyTable(source, dest, "metrics")
-      .copyTable(source, dest, "quality_models")
-      .copyTable(source, dest, "rules")
-      .copyTable(source, dest, "rules_parameters")
-      .copyTable(source, dest, "rules_profiles");
+    for (Table table : tables(projectId)) {
+      template.copyTable(source, dest, table.name, table.whereClauses);
+    }
+  }
+
+  private List<Table> tables(@Nullable Long projectId) {
+    List<Table> tables = Lists.newArrayList(
+      new Table("active_rules"),
+      new Table("active_rule_parameters"),
+      new Table("characteristics"),
+      new Table("characteristic_edges"),
+      new Table("characteristic_properties"),
+      new Table("metrics"),
+      new Table("quality_models"),
+      new Table("rules"),
+      new Table("rules_parameters"),
+      new Table("rules_profiles"));
     if (projectId != null) {
       String projectsConditionForIssues = "SELECT id from projects where id=" + projectId + " or root_id=" + projectId;
       String snapshotCondition = "islast=" + database.getDialect().getTrueSqlValue() + " and (project_id=" + projectId + " or root_project_id=" + projectId + ")";
-      template
-        .copyTable(source, dest, "projects", "(id=" + projectId + " or root_id=" + projectId + ")")
-        .copyTable(source, dest, "reviews", "project_id=" + projectId, "status<>'" + ReviewDto.STATUS_CLOSED + "'")
-        .copyTable(source, dest, "rule_failures", "snapshot_id in (select id from snapshots where " + snapshotCondition + ")")
-        .copyTable(source, dest, "issues", "resource_id in (" + projectsConditionForIssues + ")", "status<>'" + Issue.STATUS_CLOSED + "'")
-        .copyTable(source, dest, "snapshots", snapshotCondition);
+      tables.add(new Table("projects", "(id=" + projectId + " or root_id=" + projectId + ")"));
+      tables.add(new Table("reviews", "project_id=" + projectId, "status<>'" + ReviewDto.STATUS_CLOSED + "'"));
+      tables.add(new Table("rule_failures", "snapshot_id in (select id from snapshots where " + snapshotCondition + ")"));
+      tables.add(new Table("issues", "resource_id in (" + projectsConditionForIssues + ")", "status<>'" + Issue.STATUS_CLOSED + "'"));
+      tables.add(new Table("snapshots", snapshotCondition));
     }
+    return tables;
   }
 
   private BasicDataSource create(String dialect, String driver, String user, String password, String url) {
@@ -99,14 +176,52 @@ public class DryRunDatabaseFactory implements ServerComponent {
     destination.close();
   }
 
-  private byte[] dbFileContent(String name) {
+  private byte[] dbFileContent(File dbFile) {
     try {
-      File dbFile = new File(name + ".h2.db");
-      byte[] content = Files.toByteArray(dbFile);
-      dbFile.delete();
-      return content;
+      return Files.toByteArray(dbFile);
     } catch (IOException e) {
       throw new SonarException("Unable to read h2 database file", e);
     }
   }
+
+  private static class Table {
+    private final String name;
+    private final String[] whereClauses;
+
+    Table(String name, String... whereClauses) {
+      this.name = name;
+      this.whereClauses = whereClauses;
+    }
+  }
+
+  private static class CachedDatabase {
+    private String dataHash;
+    private String fileHash;
+    private File file;
+  }
+
+  public static final class DryRunDatabase {
+    private final String hash;
+    private final byte[] content;
+
+    DryRunDatabase(String hash, @Nullable byte[] content) {
+      this.hash = hash;
+      this.content = content;
+    }
+
+    /**
+     * MD5 hash of the database file, in hexadecimal
+     */
+    public String getHash() {
+      return hash;
+    }
+
+    /**
+     * @return content of the H2 file, or null if the client already has it
+     */
+    @CheckForNull
+    public byte[] getContent() {
+      return content;
+    }
+  }
 }
@@ -20,8 +20,16 @@
 package org.sonar.core.persistence;
 
 import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -30,12 +38,32 @@ import com.codahale.metrics.Timer.Context;
 
 public class MonitoredDataSource implements DataSource {
 
+  /**
+   * Time in nanoseconds spent by each thread in the execution of SQL statements
+   */
+  private static final ThreadLocal<long[]> EXECUTION_TIME = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
+
   private final DataSource subject;
   private final Timer timer;
+  private final Timer executeTimer;
 
-  public MonitoredDataSource(DataSource subject, Timer getConnectionTimer) {
+  public MonitoredDataSource(DataSource subject, Timer getConnectionTimer, Timer executeTimer) {
     this.subject = subject;
     this.timer = getConnectionTimer;
+    this.executeTimer = executeTimer;
+  }
+
+  /**
+   * Cumulative time in nanoseconds spent by the current thread in the execution of SQL statements
+   * of monitored datasources. Difference of two values gives the database time of a request.
+   */
+  public static long getCurrentThreadExecutionTime() {
+    return EXECUTION_TIME.get()[0];
   }
 
   public <T> T unwrap(Class<T> paramClass) throws SQLException {
@@ -53,7 +81,7 @@ public class MonitoredDataSource implements DataSource {
   public Connection getConnection() throws SQLException {
     Context ctx = timer.time();
     try {
-      return subject.getConnection();
+      return monitor(subject.getConnection());
     } finally {
       ctx.stop();
     }
@@ -67,7 +95,7 @@ public class MonitoredDataSource implements DataSource {
       throws SQLException {
     Context ctx = timer.time();
     try {
-      return subject.getConnection(paramString1, paramString2);
+      return monitor(subject.getConnection(paramString1, paramString2));
     } finally {
       ctx.stop();
     }
@@ -80,4 +108,70 @@ public class MonitoredDataSource implements DataSource {
   public int getLoginTimeout() throws SQLException {
     return subject.getLoginTimeout();
   }
+
+  private Connection monitor(Connection connection) {
+    return newProxy(Connection.class, new ConnectionHandler(connection));
+  }
+
+  private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(MonitoredDataSource.class.getClassLoader(), new Class[] {type}, handler));
+  }
+
+  private static Object invokeSubject(Object subject, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(subject, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private class ConnectionHandler implements InvocationHandler {
+    private final Connection connection;
+
+    ConnectionHandler(Connection connection) {
+      this.connection = connection;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+        return proxy == args[0];
+      }
+      Object result = invokeSubject(connection, method, args);
+      if (result instanceof CallableStatement) {
+        return newProxy(CallableStatement.class, new StatementHandler(result));
+      }
+      if (result instanceof PreparedStatement) {
+        return newProxy(PreparedStatement.class, new StatementHandler(result));
+      }
+      if (result instanceof Statement) {
+        return newProxy(Statement.class, new StatementHandler(result));
+      }
+      return result;
+    }
+  }
+
+  private class StatementHandler implements InvocationHandler {
+    private final Object statement;
+
+    StatementHandler(Object statement) {
+      this.statement = statement;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+        return proxy == args[0];
+      }
+      if (!method.getName().startsWith("execute")) {
+        return invokeSubject(statement, method, args);
+      }
+      long start = System.nanoTime();
+      try {
+        return invokeSubject(statement, method, args);
+      } finally {
+        long duration = System.nanoTime() - start;
+        EXECUTION_TIME.get()[0] += duration;
+        executeTimer.update(duration, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
 }
@@ -25,6 +25,8 @@ import org.sonar.api.component.Component;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.persistence.MyBatis;
 
+import javax.annotation.CheckForNull;
+
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -90,6 +92,20 @@ public class ResourceDao {
     return session.getMapper(ResourceMapper.class).selectLastSnapshotByResourceId(resourceId);
   }
 
+  /**
+   * @return the id of the last snapshot of the most recently analyzed project or view, or null if nothing has been analyzed yet
+   * @since 3.6
+   */
+  @CheckForNull
+  public Long getLastAnalysisId() {
+    SqlSession session = mybatis.openSession();
+    try {
+      return session.getMapper(ResourceMapper.class).selectLastAnalysisId();
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public List<ResourceDto> getDescendantProjects(long projectId) {
     SqlSession session = mybatis.openSession();
     try {
@@ -31,6 +31,11 @@ public interface ResourceMapper {
 
   SnapshotDto selectLastSnapshotByResourceId(long resourceId);
 
+  /**
+   * @since 3.6
+   */
+  Long selectLastAnalysisId();
+
   ResourceDto selectResource(long id);
 
   List<ResourceDto> selectDescendantProjects(long rootProjectId);
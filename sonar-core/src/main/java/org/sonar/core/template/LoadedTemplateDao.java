@@ -53,4 +53,14 @@ public class LoadedTemplateDao implements BatchComponent, ServerComponent {
     }
   }
 
+  public void deleteByType(String type) {
+    SqlSession session = mybatis.openSession();
+    LoadedTemplateMapper mapper = session.getMapper(LoadedTemplateMapper.class);
+    try {
+      mapper.deleteByType(type);
+      session.commit();
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
 }
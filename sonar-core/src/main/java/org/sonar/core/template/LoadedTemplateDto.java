@@ -26,6 +26,7 @@ public final class LoadedTemplateDto {
   public static final String DASHBOARD_TYPE = "DASHBOARD";
   public static final String FILTER_TYPE = "FILTER";
   public static final String QUALITY_PROFILE_TYPE = "QUALITY_PROFILE";
+  public static final String RULE_REPOSITORY_TYPE = "RULE_REPOSITORY";
 
   private Long id;
   private String key;
@@ -27,4 +27,6 @@ public interface LoadedTemplateMapper {
 
   void insert(LoadedTemplateDto template);
 
+  void deleteByType(@Param("type") String type);
+
 }
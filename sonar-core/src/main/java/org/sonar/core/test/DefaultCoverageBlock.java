@@ -38,6 +38,6 @@ public class DefaultCoverageBlock extends BeanEdge implements CoverageBlock {
   }
 
   public List<Integer> lines() {
-    return (List<Integer>) getProperty("lines");
+    return LineRanges.decode(getProperty("lines"));
   }
 }
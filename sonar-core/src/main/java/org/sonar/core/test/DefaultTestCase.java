@@ -100,7 +100,7 @@ public class DefaultTestCase extends BeanVertex implements MutableTestCase {
     if (coverageBlock(testable) != null) {
       throw new CoverageAlreadyExistsException("The link between " + name() + " and " + testable.component().key() + " already exists");
     }
-    beanGraph().getUnderlyingGraph().addEdge(null, element(), ((BeanVertex) testable).element(), "covers").setProperty("lines", lines);
+    beanGraph().getUnderlyingGraph().addEdge(null, element(), ((BeanVertex) testable).element(), "covers").setProperty("lines", LineRanges.encode(lines));
     return this;
   }
 
@@ -116,8 +116,7 @@ public class DefaultTestCase extends BeanVertex implements MutableTestCase {
   public int countCoveredLines() {
     int result = 0;
     for (Edge edge : edgeCovers()) {
-      List<Integer> lines = (List<Integer>) edge.getProperty("lines");
-      result = result + lines.size();
+      result = result + LineRanges.count(edge.getProperty("lines"));
     }
     return result;
   }
@@ -64,7 +64,7 @@ public class DefaultTestable extends BeanVertex implements MutableTestable {
   public int countTestCasesOfLine(Integer line) {
     int number = 0;
     for (Edge edge : coverEdges()) {
-      if (Iterables.contains(lines(edge), line)) {
+      if (LineRanges.contains(edge.getProperty("lines"), line)) {
         number++;
       }
     }
@@ -74,7 +74,7 @@ public class DefaultTestable extends BeanVertex implements MutableTestable {
   public List<TestCase> testCasesOfLine(int line) {
     ImmutableList.Builder<TestCase> cases = ImmutableList.builder();
     for (Edge edge : coverEdges()) {
-      if (lines(edge).contains(line)) {
+      if (LineRanges.contains(edge.getProperty("lines"), line)) {
         Vertex vertexTestable = edge.getVertex(Direction.OUT);
         DefaultTestCase testCase = beanGraph().wrap(vertexTestable, DefaultTestCase.class);
         cases.add(testCase);
@@ -86,7 +86,7 @@ public class DefaultTestable extends BeanVertex implements MutableTestable {
   public SortedSet<Integer> testedLines() {
     ImmutableSortedSet.Builder<Integer> coveredLines = ImmutableSortedSet.naturalOrder();
     for (Edge edge : coverEdges()) {
-      coveredLines.addAll(lines(edge));
+      coveredLines.addAll(LineRanges.decode(edge.getProperty("lines")));
     }
     return coveredLines.build();
   }
@@ -106,8 +106,4 @@ public class DefaultTestable extends BeanVertex implements MutableTestable {
   private Iterable<Edge> coverEdges() {
     return element().query().labels("covers").direction(Direction.IN).edges();
   }
-
-  private List<Integer> lines(Edge edge) {
-    return (List<Integer>) edge.getProperty("lines");
-  }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * Covered lines of a coverage block are stored as sorted ranges of lines, for example "3-5,8,10-12", instead of
+ * lists of integers. Contiguous lines, which are the common case, take a few bytes both in memory and once persisted.
+ * <p/>
+ * Lists of numbers, as stored by previous versions, are still supported.
+ *
+ * @since 3.6
+ */
+final class LineRanges {
+
+  private static final char RANGE_SEPARATOR = ',';
+  private static final char BOUNDS_SEPARATOR = '-';
+
+  private LineRanges() {
+    // only static methods
+  }
+
+  static String encode(Collection<Integer> lines) {
+    SortedSet<Integer> sortedLines = Sets.newTreeSet(lines);
+    StringBuilder sb = new StringBuilder();
+    int start = -1;
+    int end = -1;
+    for (Integer line : sortedLines) {
+      if (start >= 0 && line == end + 1) {
+        end = line;
+      } else {
+        appendRange(sb, start, end);
+        start = line;
+        end = line;
+      }
+    }
+    appendRange(sb, start, end);
+    return sb.toString();
+  }
+
+  private static void appendRange(StringBuilder sb, int start, int end) {
+    if (start >= 0) {
+      if (sb.length() > 0) {
+        sb.append(RANGE_SEPARATOR);
+      }
+      sb.append(start);
+      if (end > start) {
+        sb.append(BOUNDS_SEPARATOR).append(end);
+      }
+    }
+  }
+
+  static List<Integer> decode(@Nullable Object property) {
+    if (property == null) {
+      return Collections.emptyList();
+    }
+    if (property instanceof List) {
+      return legacyLines((List) property);
+    }
+    final List<Integer> lines = Lists.newArrayList();
+    parse((String) property, new RangeHandler() {
+      public boolean handle(int start, int end) {
+        for (int line = start; line <= end; line++) {
+          lines.add(line);
+        }
+        return true;
+      }
+    });
+    return lines;
+  }
+
+  static boolean contains(@Nullable Object property, final int line) {
+    if (property == null) {
+      return false;
+    }
+    if (property instanceof List) {
+      return legacyLines((List) property).contains(line);
+    }
+    final boolean[] found = new boolean[1];
+    parse((String) property, new RangeHandler() {
+      public boolean handle(int start, int end) {
+        found[0] = start <= line && line <= end;
+        // ranges are sorted, no need to go further
+        return end < line;
+      }
+    });
+    return found[0];
+  }
+
+  static int count(@Nullable Object property) {
+    if (property == null) {
+      return 0;
+    }
+    if (property instanceof List) {
+      return ((List) property).size();
+    }
+    final int[] count = new int[1];
+    parse((String) property, new RangeHandler() {
+      public boolean handle(int start, int end) {
+        count[0] += end - start + 1;
+        return true;
+      }
+    });
+    return count[0];
+  }
+
+  private static List<Integer> legacyLines(List<?> property) {
+    List<Integer> lines = Lists.newArrayListWithCapacity(property.size());
+    for (Object line : property) {
+      lines.add(((Number) line).intValue());
+    }
+    return lines;
+  }
+
+  private interface RangeHandler {
+    /**
+     * @return false to stop parsing
+     */
+    boolean handle(int start, int end);
+  }
+
+  private static void parse(String ranges, RangeHandler handler) {
+    int start = 0;
+    int current = 0;
+    boolean inRange = false;
+    for (int i = 0; i < ranges.length(); i++) {
+      char c = ranges.charAt(i);
+      if (c == RANGE_SEPARATOR) {
+        if (!handler.handle(inRange ? start : current, current)) {
+          return;
+        }
+        inRange = false;
+        current = 0;
+      } else if (c == BOUNDS_SEPARATOR) {
+        start = current;
+        inRange = true;
+        current = 0;
+      } else {
+        current = current * 10 + (c - '0');
+      }
+    }
+    if (ranges.length() > 0) {
+      handler.handle(inRange ? start : current, current);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.component;
+
+import com.codahale.metrics.MetricRegistry;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.graph.jdbc.GraphDto;
+import org.sonar.core.graph.jdbc.GraphSerializer;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SnapshotGraphCacheTest {
+
+  private MetricRegistry registry;
+  private SnapshotGraphCache cache;
+
+  @Before
+  public void before() {
+    registry = new MetricRegistry();
+    cache = new SnapshotGraphCache(10L, registry);
+  }
+
+  @Test
+  public void should_load_graph_once() {
+    GraphDto dto = graph(100L, 11L, 3);
+    SnapshotGraphCache.Loader loader = loader(dto);
+
+    SnapshotGraph first = cache.get("testplan", header(dto), loader);
+    SnapshotGraph second = cache.get("testplan", header(dto), loader);
+
+    assertThat(first).isNotNull();
+    assertThat(first.getComponentRoot().getProperty("key")).isEqualTo("root");
+    assertThat(second).isSameAs(first);
+    verify(loader, times(1)).load();
+    assertThat(cache.size()).isEqualTo(1);
+    // 3 vertices and 2 edges
+    assertThat(cache.weight()).isEqualTo(5L);
+
+    String prefix = SnapshotGraphCache.class.getName();
+    assertThat(registry.getCounters().get(prefix + ".hits").getCount()).isEqualTo(1L);
+    assertThat(registry.getCounters().get(prefix + ".misses").getCount()).isEqualTo(1L);
+    assertThat(registry.getTimers().get(prefix + ".load").getCount()).isEqualTo(1L);
+    assertThat(registry.getGauges().get(prefix + ".hitRatio").getValue()).isEqualTo(0.5);
+  }
+
+  @Test
+  public void should_cache_by_perspective_and_snapshot() {
+    GraphDto testPlan = graph(100L, 11L, 1);
+    GraphDto testable = graph(101L, 11L, 1);
+    GraphDto otherSnapshot = graph(102L, 12L, 1);
+
+    SnapshotGraph testPlanGraph = cache.get("testplan", header(testPlan), loader(testPlan));
+    SnapshotGraph testableGraph = cache.get("testable", header(testable), loader(testable));
+    SnapshotGraph otherGraph = cache.get("testplan", header(otherSnapshot), loader(otherSnapshot));
+
+    assertThat(testableGraph).isNotSameAs(testPlanGraph);
+    assertThat(otherGraph).isNotSameAs(testPlanGraph);
+    assertThat(cache.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_invalidate_purged_graph() {
+    GraphDto dto = graph(100L, 11L, 3);
+    cache.get("testplan", header(dto), loader(dto));
+
+    assertThat(cache.get("testplan", null, loader(dto))).isNull();
+    assertThat(cache.size()).isEqualTo(1);
+
+    // snapshot purged between the header and the data requests
+    GraphDto purged = graph(100L, 11L, 3);
+    assertThat(cache.get("testplan", header(purged).setId(200L), loader(null))).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.weight()).isEqualTo(0L);
+  }
+
+  @Test
+  public void should_reload_graph_stored_again() {
+    GraphDto dto = graph(100L, 11L, 3);
+    SnapshotGraph first = cache.get("testplan", header(dto), loader(dto));
+
+    GraphDto storedAgain = graph(200L, 11L, 2);
+    SnapshotGraph second = cache.get("testplan", header(storedAgain), loader(storedAgain));
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo(3L);
+  }
+
+  @Test
+  public void should_evict_least_recently_used_graphs() {
+    GraphDto first = graph(100L, 11L, 3);
+    GraphDto second = graph(101L, 12L, 3);
+    GraphDto third = graph(102L, 13L, 3);
+
+    cache.get("testplan", header(first), loader(first));
+    cache.get("testplan", header(second), loader(second));
+    // first is used again, so second is the least recently used
+    cache.get("testplan", header(first), loader(first));
+    cache.get("testplan", header(third), loader(third));
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.weight()).isEqualTo(10L);
+    SnapshotGraphCache.Loader secondLoader = loader(second);
+    cache.get("testplan", header(second), secondLoader);
+    verify(secondLoader).load();
+  }
+
+  @Test
+  public void should_not_cache_graph_heavier_than_max_weight() {
+    GraphDto light = graph(100L, 11L, 3);
+    GraphDto heavy = graph(101L, 12L, 20);
+    cache.get("testplan", header(light), loader(light));
+
+    SnapshotGraphCache.Loader loader = loader(heavy);
+    assertThat(cache.get("testplan", header(heavy), loader)).isNotNull();
+    assertThat(cache.get("testplan", header(heavy), loader)).isNotNull();
+
+    verify(loader, times(2)).load();
+    // other graphs are not evicted
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.weight()).isEqualTo(5L);
+  }
+
+  private static GraphDto graph(long id, long snapshotId, int vertices) {
+    TinkerGraph graph = new TinkerGraph();
+    Vertex root = graph.addVertex("root");
+    root.setProperty("key", "root");
+    for (int i = 1; i < vertices; i++) {
+      graph.addEdge(null, root, graph.addVertex(null), "child");
+    }
+    return new GraphDto().setId(id).setSnapshotId(snapshotId).setRootVertexId("root")
+      .setFormat(GraphSerializer.FORMAT_GRAPHSON_GZIP).setVersion(GraphSerializer.VERSION)
+      .setData(GraphSerializer.write(graph));
+  }
+
+  private static GraphDto header(GraphDto dto) {
+    return new GraphDto().setId(dto.getId()).setSnapshotId(dto.getSnapshotId()).setRootVertexId(dto.getRootVertexId());
+  }
+
+  private static SnapshotGraphCache.Loader loader(GraphDto dto) {
+    SnapshotGraphCache.Loader loader = mock(SnapshotGraphCache.Loader.class);
+    when(loader.load()).thenReturn(dto);
+    return loader;
+  }
+}
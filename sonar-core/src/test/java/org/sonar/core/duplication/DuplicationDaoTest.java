@@ -19,12 +19,14 @@
  */
 package org.sonar.core.duplication;
 
+import com.google.common.collect.Maps;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -57,6 +59,48 @@ public class DuplicationDaoTest extends AbstractDaoTestCase {
     assertThat(blocks.size(), is(2));
   }
 
+  @Test
+  public void should_select_by_project_snapshot() throws Exception {
+    setupData("shouldGetByHash");
+
+    List<DuplicationUnitDto> blocks = dao.selectByProjectSnapshot(9);
+    assertThat(blocks.size(), is(2));
+
+    DuplicationUnitDto block = blocks.get(0);
+    assertThat("block resourceId", block.getResourceKey(), is("foo"));
+    assertThat("block hash", block.getHash(), is("aa"));
+    assertThat("block snapshot", block.getSnapshotId(), is(10));
+
+    assertThat(dao.selectByProjectSnapshot(123).size(), is(0));
+  }
+
+  @Test
+  public void should_select_source_hashes_by_project_snapshot() throws Exception {
+    setupData("shouldSelectPreviousAnalysis");
+
+    Map<String, String> hashes = dao.selectSourceHashesByProjectSnapshot(1);
+    assertThat(hashes.size(), is(2));
+    assertThat(hashes.get("foo:Bar"), is(DuplicationDao.hashSource("class Bar {}")));
+    assertThat(hashes.get("foo:Baz"), is(DuplicationDao.hashSource("class Baz {}")));
+
+    assertThat(dao.selectSourceHashesByProjectSnapshot(123).size(), is(0));
+  }
+
+  @Test
+  public void should_select_measures_by_project_snapshot() throws Exception {
+    setupData("shouldSelectPreviousAnalysis");
+
+    List<DuplicationMeasureDto> measures = dao.selectMeasuresByProjectSnapshot(1, Arrays.asList("duplicated_lines", "duplications_data"));
+    assertThat(measures.size(), is(3));
+    Map<String, DuplicationMeasureDto> byKey = Maps.newHashMap();
+    for (DuplicationMeasureDto measure : measures) {
+      byKey.put(measure.getResourceKey() + "/" + measure.getMetricKey(), measure);
+    }
+    assertThat(byKey.get("foo:Bar/duplicated_lines").getValue(), is(10.0));
+    assertThat(byKey.get("foo:Bar/duplications_data").getData(), is("<short/>"));
+    assertThat(byKey.get("foo:Baz/duplications_data").getData(), is("<long/>"));
+  }
+
   @Test
   public void shouldInsert() throws Exception {
     setupData("shouldInsert");
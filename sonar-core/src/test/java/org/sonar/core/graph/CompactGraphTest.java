@@ -0,0 +1,214 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompactGraphTest {
+
+  CompactGraph graph = new CompactGraph();
+
+  @Test
+  public void should_add_and_get_vertices() {
+    Vertex v1 = graph.addVertex(null);
+    Vertex v2 = graph.addVertex("ignored");
+
+    assertThat(v1.getId()).isNotEqualTo(v2.getId());
+    assertThat(graph.getVertex(v1.getId())).isSameAs(v1);
+    assertThat(graph.getVertex(v2.getId().toString())).isSameAs(v2);
+    assertThat(graph.getVertex("unknown")).isNull();
+    assertThat(graph.getVertex(1000)).isNull();
+    assertThat(graph.getVertices()).containsOnly(v1, v2);
+    assertThat(graph.countVertices()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_set_and_remove_properties() {
+    Vertex vertex = graph.addVertex(null);
+    vertex.setProperty("name", "foo");
+    vertex.setProperty("age", 42);
+    vertex.setProperty("name", "bar");
+
+    assertThat(vertex.getPropertyKeys()).containsOnly("name", "age");
+    assertThat(vertex.getProperty("name")).isEqualTo("bar");
+    assertThat(vertex.getProperty("age")).isEqualTo(42);
+    assertThat(vertex.getProperty("unknown")).isNull();
+
+    assertThat(vertex.removeProperty("name")).isEqualTo("bar");
+    assertThat(vertex.removeProperty("name")).isNull();
+    assertThat(vertex.getPropertyKeys()).containsOnly("age");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void id_property_is_reserved() {
+    graph.addVertex(null).setProperty("id", "foo");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void label_property_is_reserved_for_edges() {
+    graph.addEdge(null, graph.addVertex(null), graph.addVertex(null), "knows").setProperty("label", "foo");
+  }
+
+  @Test
+  public void should_browse_adjacent_edges_and_vertices() {
+    Vertex a = graph.addVertex(null);
+    Vertex b = graph.addVertex(null);
+    Vertex c = graph.addVertex(null);
+    Edge ab = graph.addEdge(null, a, b, "knows");
+    Edge ac = graph.addEdge(null, a, c, "likes");
+    Edge ca = graph.addEdge(null, c, a, "knows");
+
+    assertThat(ab.getVertex(Direction.OUT)).isSameAs(a);
+    assertThat(ab.getVertex(Direction.IN)).isSameAs(b);
+    assertThat(ab.getLabel()).isEqualTo("knows");
+    assertThat(graph.getEdge(ac.getId())).isSameAs(ac);
+
+    assertThat(a.getEdges(Direction.OUT)).containsOnly(ab, ac);
+    assertThat(a.getEdges(Direction.OUT, "knows")).containsOnly(ab);
+    assertThat(a.getEdges(Direction.IN)).containsOnly(ca);
+    assertThat(a.getEdges(Direction.BOTH, "knows")).containsOnly(ab, ca);
+    assertThat(a.getVertices(Direction.OUT)).containsOnly(b, c);
+    assertThat(a.getVertices(Direction.BOTH, "knows")).containsOnly(b, c);
+    assertThat(b.getVertices(Direction.OUT)).isEmpty();
+    assertThat(a.query().labels("likes").direction(Direction.OUT).vertices()).containsOnly(c);
+    assertThat(graph.getEdges()).containsOnly(ab, ac, ca);
+  }
+
+  @Test
+  public void should_remove_edges() {
+    Vertex a = graph.addVertex(null);
+    Vertex b = graph.addVertex(null);
+    Edge ab = graph.addEdge(null, a, b, "knows");
+    Edge ba = graph.addEdge(null, b, a, "knows");
+
+    graph.removeEdge(ab);
+    graph.removeEdge(ab);
+
+    assertThat(graph.getEdge(ab.getId())).isNull();
+    assertThat(graph.getEdges()).containsOnly(ba);
+    assertThat(graph.countEdges()).isEqualTo(1);
+    assertThat(a.getEdges(Direction.OUT)).isEmpty();
+    assertThat(b.getEdges(Direction.IN)).isEmpty();
+    assertThat(b.getEdges(Direction.OUT)).containsOnly(ba);
+  }
+
+  @Test
+  public void should_remove_vertex_and_its_edges() {
+    Vertex a = graph.addVertex(null);
+    Vertex b = graph.addVertex(null);
+    graph.addEdge(null, a, b, "knows");
+    graph.addEdge(null, a, a, "self");
+    a.setProperty("key", "a");
+    graph.createKeyIndex("key", Vertex.class);
+
+    graph.removeVertex(a);
+
+    assertThat(graph.getVertex(a.getId())).isNull();
+    assertThat(graph.getVertices()).containsOnly(b);
+    assertThat(graph.getEdges()).isEmpty();
+    assertThat(b.getEdges(Direction.BOTH)).isEmpty();
+    assertThat(graph.getVertices("key", "a")).isEmpty();
+  }
+
+  @Test
+  public void should_remove_elements_while_iterating() {
+    Vertex a = graph.addVertex(null);
+    Vertex b = graph.addVertex(null);
+    graph.addEdge(null, a, b, "knows");
+    graph.addEdge(null, b, a, "knows");
+
+    for (Edge edge : graph.getEdges()) {
+      graph.removeEdge(edge);
+    }
+    for (Vertex vertex : graph.getVertices()) {
+      graph.removeVertex(vertex);
+    }
+
+    assertThat(graph.getVertices()).isEmpty();
+    assertThat(graph.getEdges()).isEmpty();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void vertices_should_be_unmodifiable() {
+    graph.addVertex(null);
+    Iterator<Vertex> vertices = graph.getVertices().iterator();
+    vertices.next();
+    vertices.remove();
+  }
+
+  @Test
+  public void should_find_vertices_by_property() {
+    Vertex a = graph.addVertex(null);
+    a.setProperty("key", "a");
+    Vertex b = graph.addVertex(null);
+    b.setProperty("key", "b");
+
+    assertThat(graph.getVertices("key", "a")).containsOnly(a);
+    assertThat(graph.getVertices("key", "c")).isEmpty();
+  }
+
+  @Test
+  public void should_maintain_key_index() {
+    graph.createKeyIndex("key", Vertex.class);
+    assertThat(graph.getIndexedKeys(Vertex.class)).containsOnly("key");
+    assertThat(graph.getIndexedKeys(Edge.class)).isEmpty();
+
+    Vertex a = graph.addVertex(null);
+    a.setProperty("key", "a");
+    Vertex b = graph.addVertex(null);
+    b.setProperty("key", "b");
+    Vertex c = graph.addVertex(null);
+    c.setProperty("key", "b");
+
+    assertThat(graph.getVertices("key", "a")).containsOnly(a);
+    assertThat(graph.getVertices("key", "b")).containsOnly(b, c);
+
+    b.setProperty("key", "a");
+    assertThat(graph.getVertices("key", "a")).containsOnly(a, b);
+    assertThat(graph.getVertices("key", "b")).containsOnly(c);
+
+    c.removeProperty("key");
+    assertThat(graph.getVertices("key", "b")).isEmpty();
+
+    graph.dropKeyIndex("key", Vertex.class);
+    assertThat(graph.getIndexedKeys(Vertex.class)).isEmpty();
+    assertThat(graph.getVertices("key", "a")).containsOnly(a, b);
+  }
+
+  @Test
+  public void should_index_existing_elements() {
+    Vertex a = graph.addVertex(null);
+    Vertex b = graph.addVertex(null);
+    Edge edge = graph.addEdge(null, a, b, "knows");
+    edge.setProperty("weight", 3);
+
+    graph.createKeyIndex("weight", Edge.class);
+
+    assertThat(graph.getEdges("weight", 3)).containsOnly(edge);
+    assertThat(graph.getEdges("weight", 4)).isEmpty();
+  }
+}
@@ -87,6 +87,32 @@ public class GraphsonReaderTest {
 
   }
 
+  @Test
+  public void inputGraphWithEntriesInAnyOrder() throws Exception {
+    TinkerGraph graph = new TinkerGraph();
+
+    String json = "{ \"edges\":[{\"_id\":100, \"_type\":\"edge\", \"_outV\":1, \"_inV\":2, \"_label\":\"works\", \"teste\": \"please worke\"}], \"vertices\": [ {\"_id\":1, \"_type\":\"vertex\", \"test\": \"please work\", \"testlist\":[1, 2, 3]}, {\"_id\":2, \"_type\":\"vertex\", \"testagain\":\"please work again\"}], \"mode\":\"NORMAL\"}";
+
+    new GraphsonReader().read(new StringReader(json), graph);
+
+    Assert.assertEquals(2, getIterableCount(graph.getVertices()));
+    Assert.assertEquals(1, getIterableCount(graph.getEdges()));
+    Vertex v1 = graph.getVertex(1);
+    Assert.assertEquals("please work", v1.getProperty("test"));
+    Assert.assertEquals(3, ((List) v1.getProperty("testlist")).size());
+    Edge e = graph.getEdge(100);
+    Assert.assertEquals(v1, e.getVertex(Direction.OUT));
+    Assert.assertEquals(graph.getVertex(2), e.getVertex(Direction.IN));
+    Assert.assertEquals("please worke", e.getProperty("teste"));
+  }
+
+  @Test(expected = GraphsonException.class)
+  public void failIfMissingMode() throws Exception {
+    String json = "{ \"vertices\": [ {\"_id\":1, \"_type\":\"vertex\", \"test\": \"please work\"}], \"edges\":[]}";
+
+    new GraphsonReader().read(new StringReader(json), new TinkerGraph());
+  }
+
   @Test
   public void inputGraphModeNormal() throws Exception {
     TinkerGraph graph = new TinkerGraph();
@@ -76,4 +76,29 @@ public class GraphDaoTest extends AbstractDaoTestCase {
   public void select_by_missing_component() {
     assertThat(dao.selectByComponent("testplan", "org.other:unknown")).isNull();
   }
+
+  @Test
+  public void select_header_by_snapshot() {
+    GraphDto testPlan = dao.selectHeaderBySnapshot("testplan", 11L);
+
+    assertThat(testPlan.getId()).isEqualTo(101L);
+    assertThat(testPlan.getSnapshotId()).isEqualTo(11L);
+    assertThat(testPlan.getPerspective()).isEqualTo("testplan");
+    assertThat(testPlan.getRootVertexId()).isEqualTo("3456");
+    assertThat(testPlan.getData()).isNull();
+
+    assertThat(dao.selectHeaderBySnapshot("testplan", 7777L)).isNull();
+  }
+
+  @Test
+  public void select_header_by_component() {
+    GraphDto testPlan = dao.selectHeaderByComponent("testplan", "org.apache.struts:struts");
+
+    assertThat(testPlan.getId()).isEqualTo(101L);
+    assertThat(testPlan.getSnapshotId()).isEqualTo(11L);
+    assertThat(testPlan.getRootVertexId()).isEqualTo("3456");
+    assertThat(testPlan.getData()).isNull();
+
+    assertThat(dao.selectHeaderByComponent("testplan", "org.other:unknown")).isNull();
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.jdbc;
+
+import com.google.common.collect.Iterables;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import org.junit.Test;
+import org.sonar.core.graph.graphson.GraphsonMode;
+import org.sonar.core.graph.graphson.GraphsonWriter;
+
+import java.io.StringWriter;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class GraphSerializerTest {
+
+  @Test
+  public void should_write_and_read_compressed_graph() {
+    String data = GraphSerializer.write(TinkerGraphFactory.createTinkerGraph());
+
+    TinkerGraph graph = new TinkerGraph();
+    GraphSerializer.read(new GraphDto().setFormat(GraphSerializer.FORMAT_GRAPHSON_GZIP).setData(data), graph);
+
+    verifyGraph(graph);
+  }
+
+  @Test
+  public void should_read_plain_graphson() {
+    StringWriter json = new StringWriter();
+    new GraphsonWriter().write(TinkerGraphFactory.createTinkerGraph(), json, GraphsonMode.EXTENDED);
+
+    TinkerGraph graph = new TinkerGraph();
+    GraphSerializer.read(new GraphDto().setFormat(GraphSerializer.FORMAT_GRAPHSON).setData(json.toString()), graph);
+
+    verifyGraph(graph);
+  }
+
+  @Test
+  public void compressed_graph_should_be_smaller_than_graphson() {
+    Graph graph = new TinkerGraph();
+    for (int i = 0; i < 1000; i++) {
+      graph.addVertex(i).setProperty("key", "org.codehaus.sonar:sonar-core:src/main/java/org/sonar/core/Foo" + i + ".java");
+    }
+    StringWriter json = new StringWriter();
+    new GraphsonWriter().write(graph, json, GraphsonMode.EXTENDED);
+
+    assertThat(GraphSerializer.write(graph).length()).isLessThan(json.toString().length() / 3);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_fail_on_unknown_format() {
+    GraphSerializer.read(new GraphDto().setFormat("xml").setData("<graph/>"), new TinkerGraph());
+  }
+
+  private static void verifyGraph(TinkerGraph graph) {
+    assertThat(Iterables.size(graph.getVertices())).isEqualTo(6);
+    assertThat(Iterables.size(graph.getEdges())).isEqualTo(6);
+    assertThat(graph.getVertex("1").getProperty("name")).isEqualTo("marko");
+    assertThat(graph.getVertex("1").getProperty("age")).isEqualTo(29);
+  }
+
+}
@@ -28,7 +28,9 @@ import org.sonar.api.platform.PluginRepository;
 
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -126,6 +128,42 @@ public class I18nManagerTest {
     assertThat(manager.message(Locale.ENGLISH, "with.parameters", null, "one", "two")).isEqualTo("First is one and second is two");
   }
 
+  @Test
+  public void shouldReuseFormatOfMessageWithDifferentParameters() {
+    assertThat(manager.message(Locale.ENGLISH, "with.parameters", null, "one", "two")).isEqualTo("First is one and second is two");
+    assertThat(manager.message(Locale.ENGLISH, "with.parameters", null, "three", "four")).isEqualTo("First is three and second is four");
+    assertThat(manager.message(Locale.ENGLISH, "unknown", "It's {0}", "five")).isEqualTo("It's five");
+  }
+
+  @Test
+  public void shouldGetMessagesFromConcurrentThreads() throws Exception {
+    final Locale[] locales = {Locale.ENGLISH, Locale.FRENCH, new Locale("fr", "CH"), Locale.CHINA};
+    final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      final int index = i;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 500; j++) {
+            Locale locale = locales[(index + j) % locales.length];
+            String message = manager.message(locale, "with.parameters", null, "a" + j, "b" + j);
+            if (!("First is a" + j + " and second is b" + j).equals(message)) {
+              errors.add(message);
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(errors).isEmpty();
+  }
+
   @Test
   public void shouldUseDefaultLocaleIfMissingValueInLocalizedBundle() {
     assertThat(manager.message(Locale.FRENCH, "only.in.english", null)).isEqualTo("Missing in French bundle");
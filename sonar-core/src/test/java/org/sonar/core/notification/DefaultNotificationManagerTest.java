@@ -32,6 +32,7 @@ import org.sonar.core.properties.PropertiesDao;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -85,6 +86,26 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     assertThat(manager.getFromQueue(), nullValue());
   }
 
+  @Test
+  public void shouldGetSeveralElementsFromQueue() throws Exception {
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+    Notification third = new Notification("third");
+    manager.scheduleForSending(first);
+    manager.scheduleForSending(second);
+    manager.scheduleForSending(third);
+    assertThat(manager.getQueueSize()).isEqualTo(3);
+
+    List<NotificationQueueElement> elements = manager.getFromQueue(2);
+    assertThat(elements).hasSize(2);
+    assertThat(manager.getQueueSize()).isEqualTo(1);
+
+    elements = manager.getFromQueue(2);
+    assertThat(elements).hasSize(1);
+    assertThat(manager.getQueueSize()).isEqualTo(0);
+    assertThat(manager.getFromQueue(2)).isEmpty();
+  }
+
   @Test
   public void shouldFindNoRecipient() {
     assertThat(manager.findSubscribedRecipientsForDispatcher(dispatcher, 45).asMap().entrySet()).hasSize(0);
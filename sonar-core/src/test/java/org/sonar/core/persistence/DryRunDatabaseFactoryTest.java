@@ -20,6 +20,7 @@
 package org.sonar.core.persistence;
 
 import com.google.common.io.Files;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.junit.After;
 import org.junit.Before;
@@ -108,6 +109,50 @@ public class DryRunDatabaseFactoryTest extends AbstractDaoTestCase {
     assertThat(rowCount("issues")).isEqualTo(2);
   }
 
+  @Test
+  public void should_reuse_database_when_data_is_unchanged() {
+    setupData("should_create_database_with_issues");
+
+    when(serverFileSystem.getTempDir()).thenReturn(temporaryFolder.getRoot());
+
+    DryRunDatabaseFactory.DryRunDatabase first = localDatabaseFactory.getDatabaseForDryRun(399L, null);
+    DryRunDatabaseFactory.DryRunDatabase second = localDatabaseFactory.getDatabaseForDryRun(399L, null);
+
+    assertThat(second.getHash()).isEqualTo(first.getHash());
+    assertThat(second.getHash()).isEqualTo(DigestUtils.md5Hex(second.getContent()));
+    assertThat(second.getContent()).isEqualTo(first.getContent());
+    assertThat(new File(temporaryFolder.getRoot(), "dryRun").list()).hasSize(1);
+  }
+
+  @Test
+  public void should_not_return_content_if_client_has_same_database() {
+    setupData("should_create_database_with_issues");
+
+    when(serverFileSystem.getTempDir()).thenReturn(temporaryFolder.getRoot());
+
+    String hash = localDatabaseFactory.getDatabaseForDryRun(399L, null).getHash();
+    DryRunDatabaseFactory.DryRunDatabase database = localDatabaseFactory.getDatabaseForDryRun(399L, hash);
+
+    assertThat(database.getHash()).isEqualTo(hash);
+    assertThat(database.getContent()).isNull();
+  }
+
+  @Test
+  public void should_create_database_again_when_data_changes() throws IOException, SQLException {
+    setupData("should_create_database_with_issues");
+
+    when(serverFileSystem.getTempDir()).thenReturn(temporaryFolder.getRoot());
+
+    String hash = localDatabaseFactory.getDatabaseForDryRun(399L, null).getHash();
+    new DbTemplate().truncate(getDatabase().getDataSource(), "issues");
+    DryRunDatabaseFactory.DryRunDatabase database = localDatabaseFactory.getDatabaseForDryRun(399L, hash);
+
+    assertThat(database.getHash()).isNotEqualTo(hash);
+    dataSource = createDatabase(database.getContent());
+    assertThat(rowCount("issues")).isZero();
+    assertThat(new File(temporaryFolder.getRoot(), "dryRun").list()).hasSize(1);
+  }
+
   private BasicDataSource createDatabase(byte[] db) throws IOException {
     File file = temporaryFolder.newFile("db.h2.db");
     Files.write(db, file);
@@ -0,0 +1,84 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.persistence;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MonitoredDataSourceTest {
+
+  MetricRegistry registry = new MetricRegistry();
+  Timer getConnectionTimer = registry.timer("getConnection");
+  Timer executeTimer = registry.timer("execute");
+
+  @Test
+  public void should_time_statement_executions() throws SQLException {
+    DataSource subject = mock(DataSource.class);
+    Connection connection = mock(Connection.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(subject.getConnection()).thenReturn(connection);
+    when(connection.prepareStatement("select 1")).thenReturn(statement);
+    when(statement.execute()).thenReturn(true);
+
+    long before = MonitoredDataSource.getCurrentThreadExecutionTime();
+    Connection monitored = new MonitoredDataSource(subject, getConnectionTimer, executeTimer).getConnection();
+    PreparedStatement monitoredStatement = monitored.prepareStatement("select 1");
+    assertThat(monitoredStatement.execute()).isTrue();
+    monitoredStatement.close();
+    monitored.close();
+
+    verify(statement).execute();
+    verify(statement).close();
+    verify(connection).close();
+    assertThat(getConnectionTimer.getCount()).isEqualTo(1);
+    assertThat(executeTimer.getCount()).isEqualTo(1);
+    assertThat(MonitoredDataSource.getCurrentThreadExecutionTime()).isGreaterThanOrEqualTo(before);
+  }
+
+  @Test
+  public void should_propagate_sql_exceptions() throws SQLException {
+    DataSource subject = mock(DataSource.class);
+    Connection connection = mock(Connection.class);
+    when(subject.getConnection()).thenReturn(connection);
+    doThrow(new SQLException("boom")).when(connection).commit();
+
+    Connection monitored = new MonitoredDataSource(subject, getConnectionTimer, executeTimer).getConnection();
+    try {
+      monitored.commit();
+      fail();
+    } catch (SQLException e) {
+      assertThat(e.getMessage()).isEqualTo("boom");
+    }
+  }
+}
@@ -146,6 +146,20 @@ public class ResourceDaoTest extends AbstractDaoTestCase {
     assertThat(dao.getResourceIds(ResourceQuery.create().setExcludeDisabled(true))).containsOnly(2L);
   }
 
+  @Test
+  public void should_get_last_analysis_id() {
+    setupData("getLastAnalysisId");
+
+    assertThat(dao.getLastAnalysisId()).isEqualTo(11L);
+  }
+
+  @Test
+  public void should_not_get_last_analysis_id_if_nothing_is_analyzed() {
+    setupData("fixture");
+
+    assertThat(dao.getLastAnalysisId()).isNull();
+  }
+
   @Test
   public void should_find_components_by_resource_ids() {
     setupData("fixture");
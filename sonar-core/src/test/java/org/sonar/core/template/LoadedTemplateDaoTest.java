@@ -52,4 +52,13 @@ public class LoadedTemplateDaoTest extends AbstractDaoTestCase {
 
     checkTables("shouldInsert", "loaded_templates");
   }
+
+  @Test
+  public void shouldDeleteByType() throws Exception {
+    setupData("shouldDeleteByType");
+
+    dao.deleteByType("RULE_REPOSITORY");
+
+    checkTables("shouldDeleteByType", "loaded_templates");
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.test;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineRangesTest {
+
+  @Test
+  public void should_encode_ranges_of_lines() {
+    assertThat(LineRanges.encode(Arrays.asList(10, 11, 12, 48, 49))).isEqualTo("10-12,48-49");
+    assertThat(LineRanges.encode(Arrays.asList(3, 1, 7, 2, 5, 2))).isEqualTo("1-3,5,7");
+    assertThat(LineRanges.encode(Arrays.asList(0, 1))).isEqualTo("0-1");
+    assertThat(LineRanges.encode(Collections.<Integer>emptyList())).isEqualTo("");
+  }
+
+  @Test
+  public void should_decode_ranges_of_lines() {
+    assertThat(LineRanges.decode("10-12,48-49")).containsExactly(10, 11, 12, 48, 49);
+    assertThat(LineRanges.decode("1-3,5,7")).containsExactly(1, 2, 3, 5, 7);
+    assertThat(LineRanges.decode("")).isEmpty();
+    assertThat(LineRanges.decode(null)).isEmpty();
+  }
+
+  @Test
+  public void should_check_if_line_is_in_ranges() {
+    assertThat(LineRanges.contains("1-3,5,7-9", 1)).isTrue();
+    assertThat(LineRanges.contains("1-3,5,7-9", 3)).isTrue();
+    assertThat(LineRanges.contains("1-3,5,7-9", 4)).isFalse();
+    assertThat(LineRanges.contains("1-3,5,7-9", 5)).isTrue();
+    assertThat(LineRanges.contains("1-3,5,7-9", 9)).isTrue();
+    assertThat(LineRanges.contains("1-3,5,7-9", 10)).isFalse();
+    assertThat(LineRanges.contains("", 1)).isFalse();
+    assertThat(LineRanges.contains(null, 1)).isFalse();
+  }
+
+  @Test
+  public void should_count_lines() {
+    assertThat(LineRanges.count("1-3,5,7-9")).isEqualTo(7);
+    assertThat(LineRanges.count("")).isEqualTo(0);
+    assertThat(LineRanges.count(null)).isEqualTo(0);
+  }
+
+  @Test
+  public void should_support_lists_of_lines() {
+    assertThat(LineRanges.decode(Arrays.asList(10L, 11L, 12L))).containsExactly(10, 11, 12);
+    assertThat(LineRanges.contains(Arrays.asList(10, 11, 12), 11)).isTrue();
+    assertThat(LineRanges.contains(Arrays.asList(10, 11, 12), 13)).isFalse();
+    assertThat(LineRanges.count(Arrays.asList(10, 11, 12))).isEqualTo(3);
+  }
+}
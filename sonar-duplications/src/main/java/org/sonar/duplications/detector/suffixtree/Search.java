@@ -19,18 +19,35 @@
  */
 package org.sonar.duplications.detector.suffixtree;
 
-import com.google.common.collect.Lists;
-
-import java.util.*;
-
 public final class Search {
 
   private final SuffixTree tree;
   private final TextSet text;
   private final Collector reporter;
 
-  private final List<Integer> list = Lists.newArrayList();
-  private final List<Node> innerNodes = Lists.newArrayList();
+  /**
+   * Number of symbols from the root to node.
+   * <p>
+   * Note that this is not equal to number of nodes from root to this node,
+   * because in a compact suffix-tree edge can span multiple symbols - see {@link SuffixTree#getSpan(int)}.
+   * </p>
+   */
+  private final int[] depth;
+
+  /**
+   * Leaves in the subtree of node are leaves[startSize[node]] ... leaves[endSize[node] - 1].
+   */
+  private final int[] startSize;
+  private final int[] endSize;
+
+  /**
+   * Depths of leaves in order of visiting.
+   */
+  private final int[] leaves;
+  private int numberOfLeaves;
+
+  private final int[] innerNodes;
+  private int numberOfInnerNodes;
 
   public static void perform(TextSet text, Collector reporter) {
     new Search(SuffixTree.create(text), text, reporter).compute();
@@ -40,67 +57,93 @@ public final class Search {
     this.tree = tree;
     this.text = text;
     this.reporter = reporter;
+    int numberOfNodes = tree.getNumberOfNodes();
+    this.depth = new int[numberOfNodes];
+    this.startSize = new int[numberOfNodes];
+    this.endSize = new int[numberOfNodes];
+    this.leaves = new int[numberOfNodes];
+    this.innerNodes = new int[numberOfNodes];
   }
 
   private void compute() {
     // O(N)
     dfs();
 
-    // O(N * log(N))
-    Collections.sort(innerNodes, DEPTH_COMPARATOR);
+    // O(N)
+    sortInnerNodesByDepth();
 
     // O(N)
     visitInnerNodes();
   }
 
-  private static final Comparator<Node> DEPTH_COMPARATOR = new Comparator<Node>() {
-    public int compare(Node o1, Node o2) {
-      return o2.depth - o1.depth;
-    }
-  };
-
   /**
    * Depth-first search (DFS).
    */
   private void dfs() {
-    LinkedList<Node> stack = Lists.newLinkedList();
-    stack.add(tree.getRootNode());
-    while (!stack.isEmpty()) {
-      Node node = stack.removeLast();
-      node.startSize = list.size();
-      if (node.getEdges().isEmpty()) {
+    int[] stack = new int[tree.getNumberOfNodes()];
+    int stackSize = 0;
+    int root = tree.getRootNode();
+    stack[stackSize++] = root;
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+      startSize[node] = numberOfLeaves;
+      int numberOfChildren = tree.getNumberOfChildren(node);
+      if (numberOfChildren == 0) {
         // leaf
-        list.add(node.depth);
-        node.endSize = list.size();
+        leaves[numberOfLeaves++] = depth[node];
+        endSize[node] = numberOfLeaves;
       } else {
-        if (!node.equals(tree.getRootNode())) {
+        if (node != root) {
           // inner node = not leaf and not root
-          innerNodes.add(node);
+          innerNodes[numberOfInnerNodes++] = node;
         }
-        for (Edge edge : node.getEdges()) {
-          Node endNode = edge.getEndNode();
-          endNode.depth = node.depth + edge.getSpan() + 1;
-          stack.addLast(endNode);
+        for (int i = 0; i < numberOfChildren; i++) {
+          int child = tree.getChild(node, i);
+          depth[child] = depth[node] + tree.getSpan(child) + 1;
+          stack[stackSize++] = child;
         }
       }
     }
     // At this point all inner nodes are ordered by the time of entering, so we visit them from last to first
-    ListIterator<Node> iterator = innerNodes.listIterator(innerNodes.size());
-    while (iterator.hasPrevious()) {
-      Node node = iterator.previous();
+    for (int i = numberOfInnerNodes - 1; i >= 0; i--) {
+      int node = innerNodes[i];
       int max = -1;
-      for (Edge edge : node.getEdges()) {
-        max = Math.max(edge.getEndNode().endSize, max);
+      for (int j = 0; j < tree.getNumberOfChildren(node); j++) {
+        max = Math.max(endSize[tree.getChild(node, j)], max);
       }
-      node.endSize = max;
+      endSize[node] = max;
     }
   }
 
+  /**
+   * Stable counting sort of inner nodes in descending order of depth.
+   */
+  private void sortInnerNodesByDepth() {
+    int maxDepth = 0;
+    for (int i = 0; i < numberOfInnerNodes; i++) {
+      maxDepth = Math.max(maxDepth, depth[innerNodes[i]]);
+    }
+    int[] counts = new int[maxDepth + 2];
+    for (int i = 0; i < numberOfInnerNodes; i++) {
+      counts[maxDepth - depth[innerNodes[i]] + 1]++;
+    }
+    for (int i = 1; i < counts.length; i++) {
+      counts[i] += counts[i - 1];
+    }
+    int[] sorted = new int[numberOfInnerNodes];
+    for (int i = 0; i < numberOfInnerNodes; i++) {
+      int node = innerNodes[i];
+      sorted[counts[maxDepth - depth[node]]++] = node;
+    }
+    System.arraycopy(sorted, 0, innerNodes, 0, numberOfInnerNodes);
+  }
+
   /**
    * Each inner-node represents prefix of some suffixes, thus substring of text.
    */
   private void visitInnerNodes() {
-    for (Node node : innerNodes) {
+    for (int i = 0; i < numberOfInnerNodes; i++) {
+      int node = innerNodes[i];
       if (containsOrigin(node)) {
         report(node);
       }
@@ -108,15 +151,15 @@ public final class Search {
   }
 
   /**
-   * TODO Godin: in fact computations here are the same as in {@link #report(Node)},
+   * TODO Godin: in fact computations here are the same as in {@link #report(int)},
    * so maybe would be better to remove this duplication,
    * however it should be noted that this check can't be done in {@link Collector#endOfGroup()},
    * because it might lead to creation of unnecessary new objects
    */
-  private boolean containsOrigin(Node node) {
-    for (int i = node.startSize; i < node.endSize; i++) {
-      int start = tree.text.length() - list.get(i);
-      int end = start + node.depth;
+  private boolean containsOrigin(int node) {
+    for (int i = startSize[node]; i < endSize[node]; i++) {
+      int start = tree.text.length() - leaves[i];
+      int end = start + depth[node];
       if (text.isInsideOrigin(end)) {
         return true;
       }
@@ -124,16 +167,15 @@ public final class Search {
     return false;
   }
 
-  private void report(Node node) {
-    reporter.startOfGroup(node.endSize - node.startSize, node.depth);
-    for (int i = node.startSize; i < node.endSize; i++) {
-      int start = tree.text.length() - list.get(i);
-      int end = start + node.depth;
+  private void report(int node) {
+    reporter.startOfGroup(endSize[node] - startSize[node], depth[node]);
+    for (int i = startSize[node]; i < endSize[node]; i++) {
+      int start = tree.text.length() - leaves[i];
+      int end = start + depth[node];
       reporter.part(start, end);
     }
     reporter.endOfGroup();
   }
-
   public abstract static class Collector {
 
     /**
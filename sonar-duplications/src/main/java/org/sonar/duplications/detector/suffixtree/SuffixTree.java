@@ -19,7 +19,10 @@
  */
 package org.sonar.duplications.detector.suffixtree;
 
-import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * Provides algorithm to construct suffix tree.
@@ -40,77 +43,248 @@ import com.google.common.base.Objects;
  * This implementation was adapted from <a href="http://illya-keeplearning.blogspot.com/search/label/suffix%20tree">Java-port</a> of
  * <a href="http://marknelson.us/1996/08/01/suffix-trees/">Mark Nelson's C++ implementation of Ukkonen's algorithm</a>.
  * </p>
+ * <p>
+ * In order to reduce memory consumption, nodes are represented by integers and their attributes are stored in arrays.
+ * As each node except root has exactly one incoming edge, an edge is identified by its end node.
+ * Children of nodes are stored in a single open-addressing hash table, whose keys are pairs (node, first symbol of edge),
+ * where symbols are replaced by integer identifiers.
+ * </p>
  */
 public final class SuffixTree {
 
+  public static final int NONE = -1;
+
+  private static final int ROOT = 0;
+
   final Text text;
 
-  private final Node root;
+  /**
+   * Identifiers of symbols of text, equal symbols have same identifier.
+   */
+  private final int[] symbols;
+
+  /**
+   * Index in text of the first symbol of edge, which ends with given node.
+   */
+  private final int[] beginIndex;
+
+  /**
+   * Index in text of the last symbol of edge, which ends with given node.
+   */
+  private final int[] endIndex;
+
+  private final int[] parent;
+
+  /**
+   * Node represents string s[i],s[i+1],...,s[j],
+   * suffix-link is a link to node, which represents string s[i+1],...,s[j].
+   */
+  private final int[] suffixNode;
+
+  private int numberOfNodes;
+
+  private final long[] childKeys;
+  private final int[] childValues;
+  private final int childMask;
+
+  /**
+   * Children of node i are children[childrenStart[i]] ... children[childrenStart[i + 1] - 1], available after construction.
+   */
+  private int[] childrenStart;
+  private int[] children;
+
+  /**
+   * Active point.
+   */
+  private int activeNode = ROOT;
+  private int activeBeginIndex = 0;
+  private int activeEndIndex = -1;
 
   public static SuffixTree create(Text text) {
     SuffixTree tree = new SuffixTree(text);
-    Suffix active = new Suffix(tree.root, 0, -1);
     for (int i = 0; i < text.length(); i++) {
-      tree.addPrefix(active, i);
+      tree.addPrefix(i);
     }
+    tree.indexChildren();
     return tree;
   }
 
   private SuffixTree(Text text) {
     this.text = text;
-    root = new Node(this, null);
+    int length = text.length();
+    symbols = new int[length];
+    Map<Object, Integer> ids = Maps.newHashMap();
+    for (int i = 0; i < length; i++) {
+      Object symbol = text.symbolAt(i);
+      Integer id = ids.get(symbol);
+      if (id == null) {
+        id = ids.size();
+        ids.put(symbol, id);
+      }
+      symbols[i] = id;
+    }
+
+    // at most 2n nodes including root
+    int capacity = 2 * length + 1;
+    beginIndex = new int[capacity];
+    endIndex = new int[capacity];
+    parent = new int[capacity];
+    suffixNode = new int[capacity];
+
+    int tableSize = Integer.highestOneBit(Math.max(2 * capacity - 1, 1)) << 1;
+    childKeys = new long[tableSize];
+    childValues = new int[tableSize];
+    childMask = tableSize - 1;
+    Arrays.fill(childKeys, NONE);
+
+    newNode(NONE, 0, -1);
   }
 
-  private void addPrefix(Suffix active, int endIndex) {
-    Node lastParentNode = null;
-    Node parentNode;
+  private void addPrefix(int index) {
+    int lastParentNode = NONE;
+    int parentNode;
 
     while (true) {
-      Edge edge;
-      parentNode = active.getOriginNode();
+      int edge;
+      parentNode = activeNode;
 
       // Step 1 is to try and find a matching edge for the given node.
       // If a matching edge exists, we are done adding edges, so we break out of this big loop.
-      if (active.isExplicit()) {
-        edge = active.getOriginNode().findEdge(symbolAt(endIndex));
-        if (edge != null) {
+      if (activeBeginIndex > activeEndIndex) {
+        edge = findChild(activeNode, symbols[index]);
+        if (edge != NONE) {
           break;
         }
       } else {
         // implicit node, a little more complicated
-        edge = active.getOriginNode().findEdge(symbolAt(active.getBeginIndex()));
-        int span = active.getSpan();
-        if (Objects.equal(symbolAt(edge.getBeginIndex() + span + 1), symbolAt(endIndex))) {
+        edge = findChild(activeNode, symbols[activeBeginIndex]);
+        int span = activeEndIndex - activeBeginIndex;
+        if (symbols[beginIndex[edge] + span + 1] == symbols[index]) {
           break;
         }
-        parentNode = edge.splitEdge(active);
+        parentNode = splitEdge(edge);
       }
 
       // We didn't find a matching edge, so we create a new one, add it to the tree at the parent node position,
       // and insert it into the hash table. When we create a new node, it also means we need to create
       // a suffix link to the new node from the last node we visited.
-      Edge newEdge = new Edge(endIndex, text.length() - 1, parentNode);
-      newEdge.insert();
+      newNode(parentNode, index, symbols.length - 1);
       updateSuffixNode(lastParentNode, parentNode);
       lastParentNode = parentNode;
 
       // This final step is where we move to the next smaller suffix
-      if (active.getOriginNode() == root) {
-        active.incBeginIndex();
+      if (activeNode == ROOT) {
+        activeBeginIndex++;
       } else {
-        active.changeOriginNode();
+        activeNode = suffixNode[activeNode];
       }
-      active.canonize();
+      canonize();
     }
     updateSuffixNode(lastParentNode, parentNode);
-    active.incEndIndex();
+    activeEndIndex++;
     // Now the endpoint is the next active point
-    active.canonize();
+    canonize();
+  }
+
+  /**
+   * Splits edge at the active point.
+   *
+   * @return new node
+   */
+  private int splitEdge(int edge) {
+    int span = activeEndIndex - activeBeginIndex;
+    int node = newNode(activeNode, beginIndex[edge], beginIndex[edge] + span);
+    suffixNode[node] = activeNode;
+    beginIndex[edge] += span + 1;
+    parent[edge] = node;
+    putChild(node, symbols[beginIndex[edge]], edge);
+    return node;
+  }
+
+  private void canonize() {
+    if (activeBeginIndex <= activeEndIndex) {
+      int edge = findChild(activeNode, symbols[activeBeginIndex]);
+      int edgeSpan = endIndex[edge] - beginIndex[edge];
+      while (edgeSpan <= activeEndIndex - activeBeginIndex) {
+        activeBeginIndex += edgeSpan + 1;
+        activeNode = edge;
+        if (activeBeginIndex <= activeEndIndex) {
+          edge = findChild(edge, symbols[activeBeginIndex]);
+          edgeSpan = endIndex[edge] - beginIndex[edge];
+        }
+      }
+    }
+  }
+
+  private void updateSuffixNode(int node, int suffix) {
+    if (node != NONE && node != ROOT) {
+      suffixNode[node] = suffix;
+    }
+  }
+
+  private int newNode(int parentNode, int begin, int end) {
+    int node = numberOfNodes;
+    numberOfNodes++;
+    beginIndex[node] = begin;
+    endIndex[node] = end;
+    parent[node] = parentNode;
+    suffixNode[node] = NONE;
+    if (parentNode != NONE) {
+      putChild(parentNode, symbols[begin], node);
+    }
+    return node;
+  }
+
+  private static long key(int node, int symbol) {
+    return ((long) node << 32) | (symbol & 0xffffffffL);
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & childMask;
   }
 
-  private void updateSuffixNode(Node node, Node suffixNode) {
-    if ((node != null) && (!node.equals(root))) {
-      node.setSuffixNode(suffixNode);
+  /**
+   * Adds or replaces child of node.
+   */
+  private void putChild(int node, int symbol, int child) {
+    long key = key(node, symbol);
+    int i = slot(key);
+    while (childKeys[i] != NONE && childKeys[i] != key) {
+      i = (i + 1) & childMask;
+    }
+    childKeys[i] = key;
+    childValues[i] = child;
+  }
+
+  private int findChild(int node, int symbol) {
+    long key = key(node, symbol);
+    int i = slot(key);
+    while (childKeys[i] != NONE) {
+      if (childKeys[i] == key) {
+        return childValues[i];
+      }
+      i = (i + 1) & childMask;
+    }
+    return NONE;
+  }
+
+  /**
+   * Lays out children of nodes contiguously, so that they can be enumerated without hash table.
+   */
+  private void indexChildren() {
+    childrenStart = new int[numberOfNodes + 1];
+    for (int node = 1; node < numberOfNodes; node++) {
+      childrenStart[parent[node] + 1]++;
+    }
+    for (int node = 0; node < numberOfNodes; node++) {
+      childrenStart[node + 1] += childrenStart[node];
+    }
+    children = new int[Math.max(numberOfNodes - 1, 0)];
+    int[] next = new int[numberOfNodes];
+    System.arraycopy(childrenStart, 0, next, 0, numberOfNodes);
+    for (int node = 1; node < numberOfNodes; node++) {
+      children[next[parent[node]]++] = node;
     }
   }
 
@@ -118,8 +292,59 @@ public final class SuffixTree {
     return text.symbolAt(index);
   }
 
-  public Node getRootNode() {
-    return root;
+  public int getRootNode() {
+    return ROOT;
+  }
+
+  public int getNumberOfNodes() {
+    return numberOfNodes;
+  }
+
+  /**
+   * Note that unlike lookups during construction, this method enumerates children, so should not be used on hot paths.
+   *
+   * @return node at the end of edge, which starts from given node with given symbol, or {@link #NONE}
+   */
+  public int findEdge(int node, Object symbol) {
+    for (int i = childrenStart[node]; i < childrenStart[node + 1]; i++) {
+      int child = children[i];
+      if (text.symbolAt(beginIndex[child]).equals(symbol)) {
+        return child;
+      }
+    }
+    return NONE;
+  }
+
+  public int getNumberOfChildren(int node) {
+    return childrenStart[node + 1] - childrenStart[node];
+  }
+
+  /**
+   * @param i index of child, from 0 to {@link #getNumberOfChildren(int)} - 1
+   */
+  public int getChild(int node, int i) {
+    return children[childrenStart[node] + i];
+  }
+
+  /**
+   * @return index in text of the first symbol of edge, which ends with given node
+   */
+  public int getBeginIndex(int node) {
+    return beginIndex[node];
+  }
+
+  /**
+   * @return index in text of the last symbol of edge, which ends with given node
+   */
+  public int getEndIndex(int node) {
+    return endIndex[node];
+  }
+
+  /**
+   * @return length of edge, which ends with given node, in symbols minus one - see {@link #getBeginIndex(int)} and {@link #getEndIndex(int)}
+   */
+  public int getSpan(int node) {
+    return endIndex[node] - beginIndex[node];
   }
 
 }
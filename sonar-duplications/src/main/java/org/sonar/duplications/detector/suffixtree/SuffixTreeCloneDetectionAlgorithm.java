@@ -47,33 +47,54 @@ public final class SuffixTreeCloneDetectionAlgorithm {
   }
 
   private static TextSet createTextSet(CloneIndex index, Collection<Block> fileBlocks) {
-    Set<ByteArray> hashes = Sets.newHashSet();
+    Multiset<ByteArray> hashes = HashMultiset.create();
     for (Block fileBlock : fileBlocks) {
       hashes.add(fileBlock.getBlockHash());
     }
 
     String originResourceId = fileBlocks.iterator().next().getResourceId();
-    Map<String, List<Block>> fromIndex = retrieveFromIndex(index, originResourceId, hashes);
+    Map<String, List<Block>> fromIndex = retrieveFromIndex(index, originResourceId, hashes.elementSet());
 
-    if (fromIndex.isEmpty() && hashes.size() == fileBlocks.size()) {
+    if (fromIndex.isEmpty() && hashes.elementSet().size() == fileBlocks.size()) {
       // optimization for the case when there is no duplications
       return null;
     }
 
-    return createTextSet(fileBlocks, fromIndex);
+    return createTextSet(fileBlocks, hashes, fromIndex);
   }
 
-  private static TextSet createTextSet(Collection<Block> fileBlocks, Map<String, List<Block>> fromIndex) {
+  private static TextSet createTextSet(Collection<Block> fileBlocks, Multiset<ByteArray> hashes, Map<String, List<Block>> fromIndex) {
+    Set<ByteArray> hashesFromIndex = Sets.newHashSet();
+    for (List<Block> list : fromIndex.values()) {
+      for (Block block : list) {
+        hashesFromIndex.add(block.getBlockHash());
+      }
+    }
+
     TextSet.Builder textSetBuilder = TextSet.builder();
-    // TODO Godin: maybe we can reduce size of tree and so memory consumption by removing non-repeatable blocks
     List<Block> sortedFileBlocks = Lists.newArrayList(fileBlocks);
     Collections.sort(sortedFileBlocks, BLOCK_COMPARATOR);
-    textSetBuilder.add(sortedFileBlocks);
+    // Blocks, which appear only once, can't be part of a duplication, so they are removed to reduce size of tree.
+    // Origin is split on them into several strings, so that blocks around them are not considered as consecutive.
+    int i = 0;
+    while (i < sortedFileBlocks.size()) {
+      while (i < sortedFileBlocks.size() && !isRepeatable(sortedFileBlocks.get(i), hashes, hashesFromIndex)) {
+        i++;
+      }
+      int j = i;
+      while (j < sortedFileBlocks.size() && isRepeatable(sortedFileBlocks.get(j), hashes, hashesFromIndex)) {
+        j++;
+      }
+      if (i < j) {
+        textSetBuilder.addOrigin(sortedFileBlocks.subList(i, j));
+      }
+      i = j;
+    }
 
     for (List<Block> list : fromIndex.values()) {
       Collections.sort(list, BLOCK_COMPARATOR);
 
-      int i = 0;
+      i = 0;
       while (i < list.size()) {
         int j = i + 1;
         while ((j < list.size()) && (list.get(j).getIndexInFile() == list.get(j - 1).getIndexInFile() + 1)) {
@@ -87,6 +108,11 @@ public final class SuffixTreeCloneDetectionAlgorithm {
     return textSetBuilder.build();
   }
 
+  private static boolean isRepeatable(Block block, Multiset<ByteArray> hashes, Set<ByteArray> hashesFromIndex) {
+    ByteArray hash = block.getBlockHash();
+    return hashes.count(hash) > 1 || hashesFromIndex.contains(hash);
+  }
+
   private static Map<String, List<Block>> retrieveFromIndex(CloneIndex index, String originResourceId, Set<ByteArray> hashes) {
     Map<String, List<Block>> collection = Maps.newHashMap();
     for (ByteArray hash : hashes) {
@@ -39,6 +39,9 @@ public final class TextSet extends AbstractText {
     private Builder() {
     }
 
+    /**
+     * Adds a string. First string is considered as origin, unless {@link #addOrigin(List)} was used.
+     */
     public void add(List<Block> list) {
       symbols.addAll(list);
       symbols.add(new Terminator(count));
@@ -48,6 +51,14 @@ public final class TextSet extends AbstractText {
       }
     }
 
+    /**
+     * Adds a part of origin, when origin is split into several strings. All parts of origin must be added before other strings.
+     */
+    public void addOrigin(List<Block> list) {
+      add(list);
+      lengthOfOrigin = symbols.size();
+    }
+
     public TextSet build() {
       return new TextSet(symbols, lengthOfOrigin);
     }
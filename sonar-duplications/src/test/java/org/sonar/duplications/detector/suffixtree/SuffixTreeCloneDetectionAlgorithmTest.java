@@ -49,6 +49,37 @@ public class SuffixTreeCloneDetectionAlgorithmTest extends DetectorTestCase {
     assertThat(result, sameInstance(Collections.EMPTY_LIST));
   }
 
+  /**
+   * Blocks, which appear only once, are not added into suffix-tree, but must still separate duplications.
+   * Given:
+   * <pre>
+   * y: 1 2 b 3 4
+   * x: 1 2 a 3 4
+   * </pre>
+   * Expected:
+   * <pre>
+   * x-y (1 2)
+   * x-y (3 4)
+   * </pre>
+   */
+  @Test
+  public void nonRepeatableBlocksSeparateDuplications() {
+    CloneIndex index = createIndex(newBlocks("y", "1 2 b 3 4"));
+    Block[] fileBlocks = newBlocks("x", "1 2 a 3 4");
+    List<CloneGroup> result = detect(index, fileBlocks);
+
+    print(result);
+    assertEquals(2, result.size());
+
+    assertThat(result, hasCloneGroup(2,
+        newClonePart("x", 0, 2),
+        newClonePart("y", 0, 2)));
+
+    assertThat(result, hasCloneGroup(2,
+        newClonePart("x", 3, 2),
+        newClonePart("y", 3, 2)));
+  }
+
   /**
    * See SONAR-3060
    * <p>
@@ -20,30 +20,69 @@
 package org.sonar.home.cache;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.sonar.home.log.Log;
 
 import javax.annotation.CheckForNull;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * This class is responsible for managing Sonar batch file cache. You can put file into cache and
- * later try to retrieve them. MD5 is used to differentiate files (name is not secure as files may come
- * from different Sonar servers and have same name but be actually different, and same for SNAPSHOTs).
+ * Files are stored in directories named by their hash. Downloads are protected by a lock per hash,
+ * shared by the threads of the current JVM and by the other processes that use the same directory,
+ * so that a file is downloaded only once.
+ * <p/>
+ * The files returned by the cache are in use until the end of the JVM: a shared lock is kept on their hash,
+ * so that they are not evicted by other processes. Lock files are deleted when their exclusive lock is released.
  */
 public class FileCache {
 
   private static final int TEMP_FILE_ATTEMPTS = 1000;
+  private static final String LOCK_SUFFIX = ".lock";
+
+  /**
+   * JVM locks, by path of lock file. They are shared by all the instances of FileCache,
+   * because a JVM can not lock the same file twice.
+   */
+  static final ConcurrentMap<String, ReentrantLock> THREAD_LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+  /**
+   * Shared file locks of the entries used by the JVM, by path of lock file
+   */
+  private static final ConcurrentMap<String, FileLock> IN_USE = new ConcurrentHashMap<String, FileLock>();
 
   private final File dir, tmpDir;
   private final FileHashes hashes;
   private final Log log;
+  private final long maxSize;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+  private final AtomicInteger evictions = new AtomicInteger();
 
   FileCache(File dir, Log log, FileHashes fileHashes) {
+    this(dir, log, fileHashes, 0L);
+  }
+
+  FileCache(File dir, Log log, FileHashes fileHashes, long maxSize) {
     this.hashes = fileHashes;
     this.log = log;
+    this.maxSize = maxSize;
     this.dir = createDir(dir, log, "user cache");
     log.info(String.format("User cache: %s", dir.getAbsolutePath()));
     this.tmpDir = createDir(new File(dir, "_tmp"), log, "temp dir");
@@ -53,6 +92,15 @@ public class FileCache {
     return new FileCache(dir, log, new FileHashes());
   }
 
+  /**
+   * @param maxSize maximum size in bytes of the cache. The least recently used files are deleted when it's exceeded.
+   *                Zero or negative value means unbounded.
+   * @since 3.6
+   */
+  public static FileCache create(File dir, Log log, long maxSize) {
+    return new FileCache(dir, log, new FileHashes(), maxSize);
+  }
+
   public File getDir() {
     return dir;
   }
@@ -63,10 +111,12 @@ public class FileCache {
    */
   @CheckForNull
   public File get(String filename, String hash) {
-    File cachedFile = new File(new File(dir, hash), filename);
-    if (cachedFile.exists()) {
+    File cachedFile = new File(hashDir(hash), filename);
+    if (cachedFile.exists() && use(hash, cachedFile)) {
+      hit(cachedFile.getParentFile());
       return cachedFile;
     }
+    misses.incrementAndGet();
     log.debug(String.format("No file found in the cache with name %s and hash %s", filename, hash));
     return null;
   }
@@ -79,26 +129,73 @@ public class FileCache {
     // Does not fail if another process tries to create the directory at the same time.
     File hashDir = hashDir(hash);
     File targetFile = new File(hashDir, filename);
-    if (!targetFile.exists()) {
-      File tempFile = newTempFile();
-      download(downloader, filename, tempFile);
-      String downloadedHash = hashes.of(tempFile);
-      if (!hash.equals(downloadedHash)) {
-        throw new IllegalStateException("INVALID HASH: File " + tempFile.getAbsolutePath() + " was expected to have hash " + hash
-          + " but was downloaded with hash " + downloadedHash);
+    if (targetFile.exists() && use(hash, targetFile)) {
+      hit(hashDir);
+      return targetFile;
+    }
+    while (true) {
+      boolean downloaded = false;
+      CacheLock lock = lock(hash);
+      try {
+        if (!targetFile.exists()) {
+          misses.incrementAndGet();
+          download(downloader, filename, hash, hashDir, targetFile);
+          downloaded = true;
+        }
+      } finally {
+        lock.release();
       }
-      mkdirQuietly(hashDir);
-      renameQuietly(tempFile, targetFile);
+      // the file may have been evicted by another process before being marked as used
+      if (use(hash, targetFile)) {
+        if (downloaded) {
+          evictIfNeeded();
+        } else {
+          // downloaded by another thread or process while waiting for the lock
+          hit(hashDir);
+        }
+        return targetFile;
+      }
+    }
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  public int getEvictions() {
+    return evictions.get();
+  }
+
+  public void logStatistics() {
+    log.info(String.format("User cache: %d hits, %d misses, %d evictions", hits.get(), misses.get(), evictions.get()));
+  }
+
+  private void hit(File hashDir) {
+    hits.incrementAndGet();
+    if (maxSize > 0L) {
+      // the last modification date of directory is used to find the least recently used files
+      hashDir.setLastModified(System.currentTimeMillis());
     }
-    return targetFile;
   }
 
-  private void download(Downloader downloader, String filename, File tempFile) {
+  private void download(Downloader downloader, String filename, String hash, File hashDir, File targetFile) {
+    File tempFile = newTempFile();
     try {
       downloader.download(filename, tempFile);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to download " + filename + " to " + tempFile, e);
     }
+    String downloadedHash = hashes.of(tempFile);
+    if (!hash.equals(downloadedHash)) {
+      throw new IllegalStateException("INVALID HASH: File " + tempFile.getAbsolutePath() + " was expected to have hash " + hash
+        + " but was downloaded with hash " + downloadedHash);
+    }
+    mkdirQuietly(hashDir);
+    renameQuietly(tempFile, targetFile);
   }
 
   private void renameQuietly(File sourceFile, File targetFile) {
@@ -115,6 +212,242 @@ public class FileCache {
     }
   }
 
+  private void evictIfNeeded() {
+    if (maxSize <= 0L) {
+      return;
+    }
+    File[] hashDirs = dir.listFiles(new FileFilter() {
+      public boolean accept(File f) {
+        return f.isDirectory() && !f.getName().startsWith("_");
+      }
+    });
+    if (hashDirs == null) {
+      return;
+    }
+    long totalSize = 0L;
+    for (File hashDir : hashDirs) {
+      totalSize += FileUtils.sizeOfDirectory(hashDir);
+    }
+    if (totalSize <= maxSize) {
+      return;
+    }
+    List<File> leastRecentlyUsedFirst = Arrays.asList(hashDirs);
+    Collections.sort(leastRecentlyUsedFirst, new Comparator<File>() {
+      public int compare(File f1, File f2) {
+        long diff = f1.lastModified() - f2.lastModified();
+        return diff < 0L ? -1 : (diff > 0L ? 1 : 0);
+      }
+    });
+    for (File hashDir : leastRecentlyUsedFirst) {
+      if (totalSize <= maxSize) {
+        break;
+      }
+      totalSize -= evict(hashDir, hashDir.getName());
+    }
+  }
+
+  /**
+   * @return the number of bytes released
+   */
+  private long evict(File hashDir, String hash) {
+    CacheLock lock = tryLock(hash);
+    if (lock == null) {
+      // in use by this JVM or by another process
+      return 0L;
+    }
+    try {
+      long size = FileUtils.sizeOfDirectory(hashDir);
+      FileUtils.deleteDirectory(hashDir);
+      evictions.incrementAndGet();
+      log.debug(String.format("Evict %s from user cache", hashDir.getAbsolutePath()));
+      return size;
+    } catch (IOException e) {
+      log.warn(String.format("Unable to evict %s from user cache", hashDir.getAbsolutePath()));
+      return 0L;
+    } finally {
+      lock.release();
+    }
+  }
+
+  private File lockFile(String hash) {
+    return new File(tmpDir, hash + LOCK_SUFFIX);
+  }
+
+  /**
+   * Keeps a shared lock on the hash until the end of the JVM, so that the file is not evicted by other processes.
+   *
+   * @return false if the file does not exist anymore
+   */
+  private boolean use(String hash, File file) {
+    File lockFile = lockFile(hash);
+    String path = lockFile.getAbsolutePath();
+    if (IN_USE.containsKey(path)) {
+      return file.exists();
+    }
+    ReentrantLock threadLock = lockThread(path, true);
+    try {
+      if (!IN_USE.containsKey(path)) {
+        FileLock fileLock = lockFile(lockFile, true, true);
+        if (fileLock == null) {
+          // not supposed to happen as this JVM does not hold other locks on this file
+          return file.exists();
+        }
+        IN_USE.put(path, fileLock);
+      }
+      return file.exists();
+    } catch (IOException e) {
+      log.warn(String.format("Fail to lock cache entry %s: %s", hash, e.getMessage()));
+      return file.exists();
+    } finally {
+      unlockThread(path, threadLock);
+    }
+  }
+
+  private CacheLock lock(String hash) {
+    File lockFile = lockFile(hash);
+    String path = lockFile.getAbsolutePath();
+    ReentrantLock threadLock = lockThread(path, true);
+    if (IN_USE.containsKey(path)) {
+      // the file has been deleted while in use. Other processes can not evict it, so the JVM lock is enough.
+      return new CacheLock(path, threadLock, null);
+    }
+    try {
+      return new CacheLock(path, threadLock, lockFile(lockFile, false, true));
+    } catch (IOException e) {
+      unlockThread(path, threadLock);
+      throw new IllegalStateException("Fail to lock cache entry: " + hash, e);
+    }
+  }
+
+  @CheckForNull
+  private CacheLock tryLock(String hash) {
+    File lockFile = lockFile(hash);
+    String path = lockFile.getAbsolutePath();
+    ReentrantLock threadLock = lockThread(path, false);
+    if (threadLock == null) {
+      return null;
+    }
+    if (IN_USE.containsKey(path)) {
+      unlockThread(path, threadLock);
+      return null;
+    }
+    try {
+      FileLock fileLock = lockFile(lockFile, false, false);
+      if (fileLock != null) {
+        return new CacheLock(path, threadLock, fileLock);
+      }
+    } catch (IOException e) {
+      log.debug(String.format("Fail to lock cache entry %s: %s", hash, e.getMessage()));
+    }
+    unlockThread(path, threadLock);
+    return null;
+  }
+
+  /**
+   * @return null if <code>wait</code> is false and the lock is held by another thread
+   */
+  @CheckForNull
+  private static ReentrantLock lockThread(String path, boolean wait) {
+    while (true) {
+      ReentrantLock lock = THREAD_LOCKS.get(path);
+      if (lock == null) {
+        ReentrantLock newLock = new ReentrantLock();
+        lock = THREAD_LOCKS.putIfAbsent(path, newLock);
+        if (lock == null) {
+          lock = newLock;
+        }
+      }
+      if (wait) {
+        lock.lock();
+      } else if (!lock.tryLock()) {
+        return null;
+      }
+      if (THREAD_LOCKS.get(path) == lock) {
+        return lock;
+      }
+      // removed by the previous owner, try again with the new lock
+      lock.unlock();
+    }
+  }
+
+  private static void unlockThread(String path, ReentrantLock lock) {
+    if (!lock.hasQueuedThreads()) {
+      THREAD_LOCKS.remove(path, lock);
+    }
+    lock.unlock();
+  }
+
+  /**
+   * Lock files are deleted while locked. A file that has been deleted is marked as not empty, so that
+   * the processes that were waiting for its lock try again with a new file.
+   *
+   * @return null if <code>wait</code> is false and the lock is held by another process
+   */
+  @CheckForNull
+  private static FileLock lockFile(File file, boolean shared, boolean wait) throws IOException {
+    while (true) {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      FileLock lock = null;
+      try {
+        lock = wait ? randomAccessFile.getChannel().lock(0L, Long.MAX_VALUE, shared)
+          : randomAccessFile.getChannel().tryLock(0L, Long.MAX_VALUE, shared);
+        if (lock == null) {
+          return null;
+        }
+        if (randomAccessFile.length() == 0L) {
+          return lock;
+        }
+        lock = null;
+      } catch (OverlappingFileLockException e) {
+        // locked by another channel of this JVM
+        return null;
+      } finally {
+        if (lock == null) {
+          // also releases the lock
+          randomAccessFile.close();
+        }
+      }
+    }
+  }
+
+  private final class CacheLock {
+    private final String path;
+    private final ReentrantLock threadLock;
+    private final FileLock fileLock;
+
+    private CacheLock(String path, ReentrantLock threadLock, @CheckForNull FileLock fileLock) {
+      this.path = path;
+      this.threadLock = threadLock;
+      this.fileLock = fileLock;
+    }
+
+    void release() {
+      try {
+        if (fileLock != null) {
+          releaseFileLock();
+        }
+      } finally {
+        unlockThread(path, threadLock);
+      }
+    }
+
+    private void releaseFileLock() {
+      FileChannel channel = fileLock.channel();
+      try {
+        // the deleted file can still be locked by the processes that opened it before
+        if (new File(path).delete()) {
+          channel.write(ByteBuffer.wrap(new byte[] {1}), 0L);
+        }
+        fileLock.release();
+      } catch (IOException e) {
+        log.warn(String.format("Fail to release lock of user cache: %s", e.getMessage()));
+      } finally {
+        // also releases the lock
+        IOUtils.closeQuietly(channel);
+      }
+    }
+  }
+
   private File hashDir(String hash) {
     return new File(dir, hash);
   }
@@ -31,6 +31,7 @@ public class FileCacheBuilder {
 
   private File userHome;
   private Log log = new StandardLog();
+  private long maxSize = 0L;
 
   public FileCacheBuilder setUserHome(File d) {
     this.userHome = d;
@@ -47,6 +48,15 @@ public class FileCacheBuilder {
     return this;
   }
 
+  /**
+   * Maximum size in bytes of the cache. Zero or negative value means unbounded (default).
+   * @since 3.6
+   */
+  public FileCacheBuilder setMaxSize(long bytes) {
+    this.maxSize = bytes;
+    return this;
+  }
+
   public FileCache build() {
     if (userHome == null) {
       String path = System.getenv("SONAR_USER_HOME");
@@ -57,6 +67,6 @@ public class FileCacheBuilder {
       userHome = new File(path);
     }
     File cacheDir = new File(userHome, "cache");
-    return FileCache.create(cacheDir, log);
+    return FileCache.create(cacheDir, log, maxSize);
   }
 }
@@ -57,4 +57,11 @@ public class FileCacheBuilderTest {
     assertThat(cache.getDir()).isDirectory().exists();
     assertThat(cache.getDir().getName()).isEqualTo("cache");
   }
+
+  @Test
+  public void set_max_size() throws Exception {
+    FileCache cache = new FileCacheBuilder().setUserHome(temp.newFolder()).setMaxSize(1024L).build();
+
+    assertThat(cache.getDir()).isDirectory().exists();
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.home.log.Slf4jLog;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 
@@ -118,4 +119,77 @@ public class FileCacheTest {
     assertThat(cachedFile.getParentFile().getParentFile()).isEqualTo(cache.getDir());
     assertThat(FileUtils.readFileToString(cachedFile)).contains("downloaded by");
   }
+
+  @Test
+  public void count_hits_and_misses() throws IOException {
+    FileHashes hashes = mock(FileHashes.class);
+    when(hashes.of(any(File.class))).thenReturn("ABCDE");
+    FileCache cache = new FileCache(tempFolder.newFolder(), log, hashes);
+
+    FileCache.Downloader downloader = new FileCache.Downloader() {
+      public void download(String filename, File toFile) throws IOException {
+        FileUtils.write(toFile, "body");
+      }
+    };
+    cache.get("sonar-foo-plugin-1.5.jar", "ABCDE", downloader);
+    cache.get("sonar-foo-plugin-1.5.jar", "ABCDE", downloader);
+    cache.get("sonar-foo-plugin-1.5.jar", "ABCDE", downloader);
+
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void evict_least_recently_used_files() throws IOException {
+    FileCache cache = new FileCache(tempFolder.newFolder(), log, new FileHashes(), 10L);
+    // cached by a previous analysis
+    File first = new File(new File(cache.getDir(), "123456"), "first");
+    FileUtils.write(first, "body of first");
+    first.getParentFile().setLastModified(System.currentTimeMillis() - 10000L);
+
+    File second = cache.get("second", hash("body2"), downloader("body2"));
+
+    assertThat(first.getParentFile()).doesNotExist();
+    assertThat(second).exists();
+    assertThat(cache.getEvictions()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_evict_files_in_use() throws IOException {
+    FileCache cache = new FileCache(tempFolder.newFolder(), log, new FileHashes(), 10L);
+
+    File first = cache.get("first", hash("body of first"), downloader("body of first"));
+    first.getParentFile().setLastModified(System.currentTimeMillis() - 10000L);
+    File second = cache.get("second", hash("body of second"), downloader("body of second"));
+
+    assertThat(first).exists();
+    assertThat(second).exists();
+    assertThat(cache.getEvictions()).isEqualTo(0);
+  }
+
+  @Test
+  public void release_locks() throws IOException {
+    FileCache cache = new FileCache(tempFolder.newFolder(), log, new FileHashes(), 10L);
+    File evicted = new File(new File(cache.getDir(), "123456"), "evicted");
+    FileUtils.write(evicted, "body of evicted");
+    evicted.getParentFile().setLastModified(System.currentTimeMillis() - 10000L);
+
+    cache.get("file", hash("body"), downloader("body"));
+
+    assertThat(FileCache.THREAD_LOCKS).isEmpty();
+    // only the lock of the file in use is kept
+    assertThat(new File(cache.getDir(), "_tmp").list()).containsOnly(hash("body") + ".lock");
+  }
+
+  private static String hash(String body) {
+    return new FileHashes().of(new ByteArrayInputStream(body.getBytes()));
+  }
+
+  private static FileCache.Downloader downloader(final String body) {
+    return new FileCache.Downloader() {
+      public void download(String filename, File toFile) throws IOException {
+        FileUtils.write(toFile, body);
+      }
+    };
+  }
 }
@@ -289,6 +289,17 @@ public interface CoreProperties {
    */
   String CPD_EXCLUSIONS = "sonar.cpd.exclusions";
 
+  /**
+   * @since 3.6
+   */
+  String CPD_INCREMENTAL = "sonar.cpd.incremental";
+
+  /**
+   * @see #CPD_INCREMENTAL
+   * @since 3.6
+   */
+  boolean CPD_INCREMENTAL_DEFAULT_VALUE = false;
+
   /* Design */
 
   /**
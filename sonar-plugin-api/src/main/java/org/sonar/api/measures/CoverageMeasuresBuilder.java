@@ -20,8 +20,8 @@
 package org.sonar.api.measures;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.sonar.api.utils.KeyValueFormat;
+import org.sonar.api.utils.SparseIntArray;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -44,9 +44,12 @@ public final class CoverageMeasuresBuilder {
 
 
   private int totalCoveredLines = 0, totalConditions = 0, totalCoveredConditions = 0;
-  private SortedMap<Integer, Integer> hitsByLine = Maps.newTreeMap();
-  private SortedMap<Integer, Integer> conditionsByLine = Maps.newTreeMap();
-  private SortedMap<Integer, Integer> coveredConditionsByLine = Maps.newTreeMap();
+  private SparseIntArray hitsByLine = new SparseIntArray();
+  private SparseIntArray conditionsByLine = new SparseIntArray();
+  private SparseIntArray coveredConditionsByLine = new SparseIntArray();
+
+  // views built on demand, dropped as soon as the underlying data changes
+  private SortedMap<Integer, Integer> hitsByLineView, conditionsByLineView, coveredConditionsByLineView;
 
   private CoverageMeasuresBuilder() {
     // use the factory
@@ -59,12 +62,16 @@ public final class CoverageMeasuresBuilder {
     hitsByLine.clear();
     conditionsByLine.clear();
     coveredConditionsByLine.clear();
+    hitsByLineView = null;
+    conditionsByLineView = null;
+    coveredConditionsByLineView = null;
     return this;
   }
 
   public CoverageMeasuresBuilder setHits(int lineId, int hits) {
     if (!hitsByLine.containsKey(lineId)) {
       hitsByLine.put(lineId, hits);
+      hitsByLineView = null;
       if (hits > 0) {
         totalCoveredLines += 1;
       }
@@ -78,6 +85,8 @@ public final class CoverageMeasuresBuilder {
       totalCoveredConditions += coveredConditions;
       conditionsByLine.put(lineId, conditions);
       coveredConditionsByLine.put(lineId, coveredConditions);
+      conditionsByLineView = null;
+      coveredConditionsByLineView = null;
     }
     return this;
   }
@@ -98,16 +107,34 @@ public final class CoverageMeasuresBuilder {
     return totalCoveredConditions;
   }
 
+  /**
+   * The returned map is unmodifiable and built once until the next call to {@link #setHits(int, int)} or {@link #reset()}.
+   */
   public SortedMap<Integer, Integer> getHitsByLine() {
-    return Collections.unmodifiableSortedMap(hitsByLine);
+    if (hitsByLineView == null) {
+      hitsByLineView = Collections.unmodifiableSortedMap(hitsByLine.toMap());
+    }
+    return hitsByLineView;
   }
 
+  /**
+   * The returned map is unmodifiable and built once until the next call to {@link #setConditions(int, int, int)} or {@link #reset()}.
+   */
   public SortedMap<Integer, Integer> getConditionsByLine() {
-    return Collections.unmodifiableSortedMap(conditionsByLine);
+    if (conditionsByLineView == null) {
+      conditionsByLineView = Collections.unmodifiableSortedMap(conditionsByLine.toMap());
+    }
+    return conditionsByLineView;
   }
 
+  /**
+   * The returned map is unmodifiable and built once until the next call to {@link #setConditions(int, int, int)} or {@link #reset()}.
+   */
   public SortedMap<Integer, Integer> getCoveredConditionsByLine() {
-    return Collections.unmodifiableSortedMap(coveredConditionsByLine);
+    if (coveredConditionsByLineView == null) {
+      coveredConditionsByLineView = Collections.unmodifiableSortedMap(coveredConditionsByLine.toMap());
+    }
+    return coveredConditionsByLineView;
   }
 
   public Collection<Measure> createMeasures() {
@@ -48,7 +48,11 @@ public final class MeasuresFilters {
   }
 
   public static MeasuresFilter<Measure> metric(final String metricKey) {
-    return new MetricFilter<Measure>(metricKey) {
+    return new MeasureFilter<Measure>(metricKey) {
+
+      public Measure filterOnMeasure() {
+        return new Measure(metricKey);
+      }
 
       public Measure filter(Collection<Measure> measures) {
         if (measures == null) {
@@ -68,7 +72,11 @@ public final class MeasuresFilters {
   }
 
   public static MeasuresFilter<Measure> characteristic(final Metric metric, final Characteristic characteristic) {
-    return new MetricFilter<Measure>(metric) {
+    return new MeasureFilter<Measure>(metric) {
+
+      public Measure filterOnMeasure() {
+        return new Measure(metric).setCharacteristic(characteristic);
+      }
 
       public Measure filter(Collection<Measure> measures) {
         if (measures == null) {
@@ -176,9 +184,30 @@ public final class MeasuresFilters {
     }
   }
 
-  private abstract static class AbstractRuleMeasureFilter<M> extends MetricFilter<M> {
+  /**
+   * Filter that accepts at most one measure, the one which is equal to {@link #filterOnMeasure()}.
+   * Used for internal optimizations.
+   *
+   * @since 3.6
+   */
+  public abstract static class MeasureFilter<M> extends MetricFilter<M> {
+    protected MeasureFilter(Metric metric) {
+      super(metric);
+    }
+
+    protected MeasureFilter(String metricKey) {
+      super(metricKey);
+    }
+
+    public abstract Measure filterOnMeasure();
+  }
+
+  private abstract static class AbstractRuleMeasureFilter<M> extends MeasureFilter<M> {
+    protected final Metric metric;
+
     protected AbstractRuleMeasureFilter(Metric metric) {
       super(metric);
+      this.metric = metric;
     }
 
     private boolean apply(Measure measure) {
@@ -207,15 +236,14 @@ public final class MeasuresFilters {
    * @deprecated since 2.5. See http://jira.codehaus.org/browse/SONAR-2007
    */
   @Deprecated
-  private static class RuleCategoryFilter extends AbstractRuleMeasureFilter<RuleMeasure> {
+  private static class RuleCategoryFilter extends MetricFilter<RuleMeasure> {
 
     protected RuleCategoryFilter(Metric metric, Integer categ) {
       super(metric);
     }
 
-    @Override
-    boolean doApply(RuleMeasure measure) {
-      return false;
+    public RuleMeasure filter(Collection<Measure> measures) {
+      return null;
     }
   }
 
@@ -228,6 +256,11 @@ public final class MeasuresFilters {
       this.rule = rule;
     }
 
+    @Override
+    public Measure filterOnMeasure() {
+      return new RuleMeasure(metric, rule, null, null);
+    }
+
     @Override
     boolean doApply(RuleMeasure measure) {
       return measure.getRule() != null
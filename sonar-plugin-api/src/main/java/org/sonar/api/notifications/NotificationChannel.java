@@ -19,8 +19,13 @@
  */
 package org.sonar.api.notifications;
 
+import com.google.common.collect.Multimap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerExtension;
 
+import java.util.Map;
+
 /**
  * <p>
  * Plugins should extend this class to provide implementation on a specific way to deliver notifications.
@@ -36,6 +41,8 @@ import org.sonar.api.ServerExtension;
  */
 public abstract class NotificationChannel implements ServerExtension {
 
+  private static final Logger LOG = LoggerFactory.getLogger(NotificationChannel.class);
+
   /**
    * Returns the unique key of this channel. 
    * 
@@ -53,6 +60,27 @@ public abstract class NotificationChannel implements ServerExtension {
    */
   public abstract void deliver(Notification notification, String userlogin);
 
+  /**
+   * Implements the delivery of several notifications at once. By default each notification is delivered
+   * with {@link #deliver(Notification, String)}. Channels should override this method when deliveries can share
+   * resources, for example a single connection to a mail server.
+   * <p/>
+   * Failure of a delivery must not prevent the other notifications from being delivered.
+   *
+   * @param notificationsByUser the notifications to deliver, grouped by login of the user who should receive them
+   * @since 3.6
+   */
+  public void deliverAll(Multimap<String, Notification> notificationsByUser) {
+    for (Map.Entry<String, Notification> entry : notificationsByUser.entries()) {
+      try {
+        deliver(entry.getValue(), entry.getKey());
+      } catch (Exception e) {
+        // catch all exceptions in order to deliver the other notifications
+        LOG.warn("Unable to deliver notification " + entry.getValue() + " for user " + entry.getKey() + " via " + this, e);
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return getKey();
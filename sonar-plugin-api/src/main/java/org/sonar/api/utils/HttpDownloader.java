@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
@@ -36,6 +37,8 @@ import org.sonar.api.ServerComponent;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -48,6 +51,7 @@ import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * This component downloads HTTP files
@@ -192,11 +196,22 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri) {
-      return new HttpInputSupplier(uri, userAgent, null, null);
+      return new HttpInputSupplier(uri, userAgent, null, null, ImmutableMap.<String, String>of());
     }
 
     public InputSupplier<InputStream> newInputSupplier(URI uri, String login, String password) {
-      return new HttpInputSupplier(uri, userAgent, login, password);
+      return new HttpInputSupplier(uri, userAgent, login, password, ImmutableMap.<String, String>of());
+    }
+
+    /**
+     * Same as {@link #newInputSupplier(java.net.URI, String, String)} but with additional request headers,
+     * for example <code>If-None-Match</code>. A "304 Not Modified" response is reported as an {@link HttpException}.
+     * If the header <code>Accept-Encoding: gzip</code> is set, then gzip responses are transparently decompressed.
+     *
+     * @since 3.6
+     */
+    public InputSupplier<InputStream> newInputSupplier(URI uri, @Nullable String login, @Nullable String password, Map<String, String> requestHeaders) {
+      return new HttpInputSupplier(uri, userAgent, login, password, requestHeaders);
     }
 
     private static class HttpInputSupplier implements InputSupplier<InputStream> {
@@ -204,12 +219,14 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
       private final String password;
       private final URI uri;
       private final String userAgent;
+      private final Map<String, String> requestHeaders;
 
-      HttpInputSupplier(URI uri, String userAgent, String login, String password) {
+      HttpInputSupplier(URI uri, String userAgent, String login, String password, Map<String, String> requestHeaders) {
         this.uri = uri;
         this.userAgent = userAgent;
         this.login = login;
         this.password = password;
+        this.requestHeaders = requestHeaders;
       }
 
       public InputStream getInput() throws IOException {
@@ -225,13 +242,20 @@ public class HttpDownloader extends UriReader.SchemeProcessor implements BatchCo
         connection.setUseCaches(true);
         connection.setInstanceFollowRedirects(true);
         connection.setRequestProperty("User-Agent", userAgent);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+          connection.setRequestProperty(header.getKey(), header.getValue());
+        }
 
         int responseCode = connection.getResponseCode();
-        if (responseCode >= 400) {
+        if (responseCode >= 400 || responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
           throw new HttpException(uri, responseCode);
         }
 
-        return connection.getInputStream();
+        InputStream input = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+          return new GZIPInputStream(input);
+        }
+        return input;
       }
     }
 
@@ -273,6 +273,57 @@ public final class KeyValueFormat {
     return parse(data, newIntegerConverter(), newIntegerConverter());
   }
 
+  /**
+   * Same as {@link #parseIntInt(String)} without boxing of keys and values. Pairs without value are ignored.
+   *
+   * @since 3.6
+   */
+  public static SparseIntArray parseSparseIntArray(String data) {
+    SparseIntArray result = new SparseIntArray();
+    if (data != null) {
+      int length = data.length();
+      int pairStart = 0;
+      while (pairStart < length) {
+        int pairEnd = data.indexOf(PAIR_SEPARATOR, pairStart);
+        if (pairEnd < 0) {
+          pairEnd = length;
+        }
+        int fieldSeparator = data.indexOf(FIELD_SEPARATOR, pairStart);
+        if (fieldSeparator > pairStart && fieldSeparator < pairEnd - 1) {
+          result.put(toInt(data, pairStart, fieldSeparator), toInt(data, fieldSeparator + 1, pairEnd));
+        }
+        pairStart = pairEnd + 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parses the decimal integer between <code>start</code> (inclusive) and <code>end</code> (exclusive), without
+   * creating substrings in the common case. Returns 0 if the characters are not a valid integer, like
+   * {@link NumberUtils#toInt(String)}.
+   */
+  private static int toInt(String data, int start, int end) {
+    int index = start;
+    boolean negative = data.charAt(index) == '-';
+    if (negative) {
+      index++;
+    }
+    if (index == end || end - index > 9) {
+      // let the JDK handle overflows
+      return NumberUtils.toInt(data.substring(start, end));
+    }
+    int result = 0;
+    for (; index < end; index++) {
+      int digit = data.charAt(index) - '0';
+      if (digit < 0 || digit > 9) {
+        return NumberUtils.toInt(data.substring(start, end));
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
   /**
    * @since 2.7
    */
@@ -385,6 +436,20 @@ public final class KeyValueFormat {
     return format(map, newToStringConverter(), newToStringConverter());
   }
 
+  /**
+   * @since 3.6
+   */
+  public static String format(SparseIntArray array) {
+    StringBuilder sb = new StringBuilder(array.size() * 6);
+    for (int i = 0; i < array.size(); i++) {
+      if (i > 0) {
+        sb.append(PAIR_SEPARATOR);
+      }
+      sb.append(array.keyAt(i)).append(FIELD_SEPARATOR).append(array.valueAt(i));
+    }
+    return sb.toString();
+  }
+
   /**
    * @since 2.7
    */
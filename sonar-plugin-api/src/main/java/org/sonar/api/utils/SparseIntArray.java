@@ -0,0 +1,173 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.utils;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Map of int keys to int values, sorted by keys and backed by two arrays of primitives. It is intended for
+ * data by line (for example coverage hits by line), where keys are mostly added in increasing order.
+ * It is not thread-safe.
+ *
+ * @since 3.6
+ */
+public final class SparseIntArray {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private int[] keys;
+  private int[] values;
+  private int size = 0;
+
+  public SparseIntArray() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public SparseIntArray(int initialCapacity) {
+    keys = new int[initialCapacity];
+    values = new int[initialCapacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean containsKey(int key) {
+    return indexOf(key) >= 0;
+  }
+
+  /**
+   * Returns the value associated to the key, or <code>defaultValue</code> if the key is not present.
+   */
+  public int get(int key, int defaultValue) {
+    int index = indexOf(key);
+    return index >= 0 ? values[index] : defaultValue;
+  }
+
+  public SparseIntArray put(int key, int value) {
+    if (size == 0 || key > keys[size - 1]) {
+      // most common case : keys are added in order
+      insert(size, key, value);
+    } else {
+      int index = indexOf(key);
+      if (index >= 0) {
+        values[index] = value;
+      } else {
+        insert(-(index + 1), key, value);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Key at the given position, between 0 and {@link #size()} - 1, in increasing order of keys.
+   */
+  public int keyAt(int index) {
+    checkIndex(index);
+    return keys[index];
+  }
+
+  /**
+   * Value at the given position, between 0 and {@link #size()} - 1, in increasing order of keys.
+   */
+  public int valueAt(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public SparseIntArray clear() {
+    size = 0;
+    return this;
+  }
+
+  public SortedMap<Integer, Integer> toMap() {
+    SortedMap<Integer, Integer> map = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < size; i++) {
+      map.put(keys[i], values[i]);
+    }
+    return map;
+  }
+
+  private int indexOf(int key) {
+    return Arrays.binarySearch(keys, 0, size, key);
+  }
+
+  private void insert(int index, int key, int value) {
+    if (size == keys.length) {
+      int capacity = Math.max(DEFAULT_CAPACITY, keys.length * 2);
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+    if (index < size) {
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      System.arraycopy(values, index, values, index + 1, size - index);
+    }
+    keys[index] = key;
+    values[index] = value;
+    size++;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    SparseIntArray other = (SparseIntArray) o;
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (keys[i] != other.keys[i] || values[i] != other.values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = size;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + keys[i];
+      result = 31 * result + values[i];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return KeyValueFormat.format(this);
+  }
+}
@@ -19,7 +19,8 @@
  */
 package org.sonar.api.utils;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
 
@@ -28,7 +29,8 @@ import org.apache.commons.lang.StringUtils;
 /**
  * Implementation of Ant-style matching patterns.
  * Contrary to other implementations (like AntPathMatcher from Spring Framework) it is based on {@link Pattern Java Regular Expressions}.
- * To increase performance it holds an internal cache of all processed patterns.
+ * To increase performance it holds an internal cache of the most recently used patterns, and the regular expression
+ * is evaluated only if the value starts and ends with the literal parts of the pattern.
  * <p>
  * Following rules are applied:
  * <ul>
@@ -61,15 +63,69 @@ import org.apache.commons.lang.StringUtils;
  */
 public class WildcardPattern {
 
-  private static final Map<String, WildcardPattern> CACHE = new HashMap<String, WildcardPattern>();
+  private static final int CACHE_SIZE = 1000;
+  private static final Map<String, WildcardPattern> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, WildcardPattern>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, WildcardPattern> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  });
   private static final String SPECIAL_CHARS = "()[]^$.{}+|";
 
   private Pattern pattern;
   private String stringRepresentation;
+  private String literalPrefix;
+  private String literalSuffix;
 
   protected WildcardPattern(String pattern, String directorySeparator) {
     this.stringRepresentation = pattern;
     this.pattern = Pattern.compile(toRegexp(pattern, directorySeparator));
+    initLiterals(pattern, directorySeparator);
+  }
+
+  /**
+   * Extracts the characters before the first wildcard and after the last wildcard. They must be
+   * respectively at the beginning and at the end of matching values.
+   */
+  private void initLiterals(String antPattern, String directorySeparator) {
+    int start = antPattern.startsWith("/") || antPattern.startsWith("\\") ? 1 : 0;
+    int firstWildcard = -1;
+    int afterLastWildcard = start;
+    int i = start;
+    while (i < antPattern.length()) {
+      char ch = antPattern.charAt(i);
+      if (ch == '*' || ch == '?') {
+        if (firstWildcard < 0) {
+          firstWildcard = i;
+        }
+        if (ch == '*' && i + 1 < antPattern.length() && antPattern.charAt(i + 1) == '*') {
+          // the directory separator following a double asterisk is optional
+          i += (i + 2 < antPattern.length() && isSlash(antPattern.charAt(i + 2))) ? 2 : 1;
+        }
+        afterLastWildcard = i + 1;
+      }
+      i++;
+    }
+    if (firstWildcard < 0) {
+      literalPrefix = toLiteral(antPattern.substring(start), directorySeparator);
+      literalSuffix = "";
+    } else {
+      literalPrefix = toLiteral(antPattern.substring(start, firstWildcard), directorySeparator);
+      literalSuffix = toLiteral(antPattern.substring(afterLastWildcard), directorySeparator);
+    }
+  }
+
+  private static String toLiteral(String antPatternPart, String directorySeparator) {
+    StringBuilder sb = new StringBuilder(antPatternPart.length());
+    for (int i = 0; i < antPatternPart.length(); i++) {
+      char ch = antPatternPart.charAt(i);
+      if (isSlash(ch)) {
+        sb.append(directorySeparator);
+      } else {
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
   }
 
   private static String toRegexp(String antPattern, String directorySeparator) {
@@ -139,9 +195,15 @@ public class WildcardPattern {
    * Returns true if specified value matches this pattern.
    */
   public boolean match(String value) {
-    value = StringUtils.removeStart(value, "/");
-    value = StringUtils.removeEnd(value, "/");
-    return pattern.matcher(value).matches();
+    return matchNormalized(normalize(value));
+  }
+
+  private boolean matchNormalized(String value) {
+    return value.startsWith(literalPrefix) && value.endsWith(literalSuffix) && pattern.matcher(value).matches();
+  }
+
+  private static String normalize(String value) {
+    return StringUtils.removeEnd(StringUtils.removeStart(value, "/"), "/");
   }
 
   /**
@@ -150,8 +212,9 @@ public class WildcardPattern {
    * @since 2.4
    */
   public static boolean match(WildcardPattern[] patterns, String value) {
+    String normalizedValue = normalize(value);
     for (WildcardPattern pattern : patterns) {
-      if (pattern.match(value)) {
+      if (pattern.matchNormalized(normalizedValue)) {
         return true;
       }
     }
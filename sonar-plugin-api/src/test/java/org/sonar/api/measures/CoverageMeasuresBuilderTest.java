@@ -123,6 +123,32 @@ public class CoverageMeasuresBuilderTest {
     assertThat(builder.getCoveredConditionsByLine().size(), is(0));
   }
 
+  @Test
+  public void shouldBuildLineMapsOnlyOnce() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(1, 4);
+    builder.setConditions(1, 3, 1);
+    assertThat(builder.getHitsByLine() == builder.getHitsByLine(), is(true));
+    assertThat(builder.getConditionsByLine() == builder.getConditionsByLine(), is(true));
+    assertThat(builder.getCoveredConditionsByLine() == builder.getCoveredConditionsByLine(), is(true));
+  }
+
+  @Test
+  public void shouldRefreshLineMapsWhenDataChange() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    builder.setHits(1, 4);
+    builder.setConditions(1, 3, 1);
+    assertThat(builder.getHitsByLine().size(), is(1));
+    assertThat(builder.getConditionsByLine().size(), is(1));
+    assertThat(builder.getCoveredConditionsByLine().size(), is(1));
+
+    builder.setHits(2, 0);
+    builder.setConditions(2, 2, 2);
+    assertThat(builder.getHitsByLine().size(), is(2));
+    assertThat(builder.getConditionsByLine().get(2), is(2));
+    assertThat(builder.getCoveredConditionsByLine().get(2), is(2));
+  }
+
   private Measure find(Collection<Measure> measures, String metricKey) {
     for (Measure measure : measures) {
       if (metricKey.equals(measure.getMetricKey())) {
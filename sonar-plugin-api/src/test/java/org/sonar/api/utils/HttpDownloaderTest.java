@@ -20,6 +20,8 @@
 package org.sonar.api.utils;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -43,8 +45,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -65,6 +69,21 @@ public class HttpDownloaderTest {
           if (req.getPath().getPath().contains("/redirect/")) {
             resp.setCode(303);
             resp.add("Location", "/");
+          } else if (req.getPath().getPath().contains("/gzip/")) {
+            if ("gzip".equals(req.getValue("Accept-Encoding"))) {
+              resp.add("Content-Encoding", "gzip");
+              GZIPOutputStream gzipOutputStream = new GZIPOutputStream(resp.getOutputStream());
+              gzipOutputStream.write("GZIP response".getBytes());
+              gzipOutputStream.close();
+            } else {
+              resp.getPrintStream().append("plain response");
+            }
+          } else if (req.getPath().getPath().contains("/etag/")) {
+            if ("\"abc\"".equals(req.getValue("If-None-Match"))) {
+              resp.setCode(304);
+            } else {
+              resp.getPrintStream().append("modified");
+            }
           } else {
             resp.getPrintStream().append("agent=" + req.getValues("User-Agent").get(0));
           }
@@ -143,6 +162,35 @@ public class HttpDownloaderTest {
     assertThat(props.getProperty("agent")).isEqualTo("Sonar 2.2");
   }
 
+  @Test
+  public void should_decompress_gzip_response_if_requested() throws Exception {
+    HttpDownloader.BaseHttpDownloader downloader = new HttpDownloader.BaseHttpDownloader(ImmutableMap.<String, String>of(), "2.2");
+
+    byte[] content = ByteStreams.toByteArray(downloader.newInputSupplier(new URI(baseUrl + "/gzip/"), null, null, ImmutableMap.of("Accept-Encoding", "gzip")));
+    assertThat(new String(content)).isEqualTo("GZIP response");
+  }
+
+  @Test
+  public void should_not_request_gzip_response_by_default() throws URISyntaxException {
+    String content = new HttpDownloader(new Settings()).readString(new URI(baseUrl + "/gzip/"), Charsets.UTF_8);
+    assertThat(content).isEqualTo("plain response");
+  }
+
+  @Test
+  public void should_send_request_headers() throws Exception {
+    HttpDownloader.BaseHttpDownloader downloader = new HttpDownloader.BaseHttpDownloader(ImmutableMap.<String, String>of(), "2.2");
+
+    byte[] content = ByteStreams.toByteArray(downloader.newInputSupplier(new URI(baseUrl + "/etag/"), null, null, ImmutableMap.of("If-None-Match", "\"xyz\"")));
+    assertThat(new String(content)).isEqualTo("modified");
+
+    try {
+      ByteStreams.toByteArray(downloader.newInputSupplier(new URI(baseUrl + "/etag/"), null, null, ImmutableMap.of("If-None-Match", "\"abc\"")));
+      fail();
+    } catch (HttpDownloader.HttpException e) {
+      assertThat(e.getResponseCode()).isEqualTo(304);
+    }
+  }
+
   @Test
   public void followRedirect() throws URISyntaxException {
     String content = new HttpDownloader(new Settings()).readString(new URI(baseUrl + "/redirect/"), Charsets.UTF_8);
@@ -153,4 +153,33 @@ public class KeyValueFormatTest {
     // first one is foo
     assertThat(multiset.iterator().next(), is("foo"));
   }
+
+  @Test
+  public void shouldFormatSparseIntArray() {
+    SparseIntArray array = new SparseIntArray().put(10, 0).put(3, 5).put(-1, 12);
+    assertThat(KeyValueFormat.format(array), is("-1=12;3=5;10=0"));
+    assertThat(KeyValueFormat.format(new SparseIntArray()), is(""));
+  }
+
+  @Test
+  public void shouldParseSparseIntArray() {
+    SparseIntArray array = KeyValueFormat.parseSparseIntArray("3=5;10=0;;-1=12;7=;foo=2;1234567890123=1");
+    assertThat(array.size(), is(4));
+    assertThat(array.get(-1, -100), is(12));
+    assertThat(array.get(3, -100), is(5));
+    assertThat(array.get(10, -100), is(0));
+    assertThat(array.get(7, -100), is(-100));
+    // invalid numbers are converted to zero, as in parseIntInt()
+    assertThat(array.get(0, -100), is(1));
+    assertThat(KeyValueFormat.parseSparseIntArray(null).isEmpty(), is(true));
+  }
+
+  @Test
+  public void sparseIntArrayShouldBeCompatibleWithParseIntInt() {
+    String data = "1=3;2=0;5=12;100=1";
+    Map<Integer, Integer> expected = KeyValueFormat.parseIntInt(data);
+    Map<Integer, Integer> actual = KeyValueFormat.parseSparseIntArray(data).toMap();
+    assertThat(actual, is(expected));
+    assertThat(KeyValueFormat.format(KeyValueFormat.parseSparseIntArray(data)), is(data));
+  }
 }
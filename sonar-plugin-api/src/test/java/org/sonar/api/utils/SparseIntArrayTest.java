@@ -0,0 +1,90 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.utils;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SparseIntArrayTest {
+
+  @Test
+  public void should_keep_keys_sorted() {
+    SparseIntArray array = new SparseIntArray(2);
+    array.put(5, 50).put(1, 10).put(3, 30).put(10, 100);
+
+    assertThat(array.size()).isEqualTo(4);
+    assertThat(array.keyAt(0)).isEqualTo(1);
+    assertThat(array.valueAt(0)).isEqualTo(10);
+    assertThat(array.keyAt(1)).isEqualTo(3);
+    assertThat(array.keyAt(2)).isEqualTo(5);
+    assertThat(array.keyAt(3)).isEqualTo(10);
+    assertThat(array.valueAt(3)).isEqualTo(100);
+  }
+
+  @Test
+  public void should_replace_value() {
+    SparseIntArray array = new SparseIntArray().put(1, 10).put(2, 20).put(1, 11);
+
+    assertThat(array.size()).isEqualTo(2);
+    assertThat(array.get(1, 0)).isEqualTo(11);
+    assertThat(array.get(2, 0)).isEqualTo(20);
+    assertThat(array.get(3, -1)).isEqualTo(-1);
+    assertThat(array.containsKey(2)).isTrue();
+    assertThat(array.containsKey(3)).isFalse();
+  }
+
+  @Test
+  public void should_grow() {
+    SparseIntArray array = new SparseIntArray(0);
+    for (int i = 1000; i > 0; i--) {
+      array.put(i, i * 2);
+    }
+    assertThat(array.size()).isEqualTo(1000);
+    assertThat(array.keyAt(0)).isEqualTo(1);
+    assertThat(array.get(500, 0)).isEqualTo(1000);
+    assertThat(array.toMap()).hasSize(1000);
+  }
+
+  @Test
+  public void should_clear() {
+    SparseIntArray array = new SparseIntArray().put(1, 10);
+    array.clear();
+
+    assertThat(array.isEmpty()).isTrue();
+    assertThat(array.containsKey(1)).isFalse();
+  }
+
+  @Test
+  public void test_equals_and_hashCode() {
+    SparseIntArray array = new SparseIntArray().put(1, 10).put(2, 20);
+    SparseIntArray same = new SparseIntArray(1).put(2, 20).put(1, 10);
+    SparseIntArray other = new SparseIntArray().put(1, 10).put(2, 21);
+
+    assertThat(array).isEqualTo(same);
+    assertThat(array.hashCode()).isEqualTo(same.hashCode());
+    assertThat(array).isNotEqualTo(other);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void should_fail_on_bad_index() {
+    new SparseIntArray().put(1, 10).keyAt(1);
+  }
+}
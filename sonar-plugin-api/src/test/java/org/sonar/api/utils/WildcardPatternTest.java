@@ -20,6 +20,7 @@
 package org.sonar.api.utils;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -182,6 +183,30 @@ public class WildcardPatternTest {
     assertThat(WildcardPattern.create((String[]) null).length, is(0));
   }
 
+  @Test
+  public void shouldCheckLiteralPrefixAndSuffix() {
+    assertTrue(match("src/**/*Test.java", "src/org/FooTest.java"));
+    assertTrue(match("src/**/*Test.java", "/src/FooTest.java/"));
+    assertFalse(match("src/**/*Test.java", "test/org/FooTest.java"));
+    assertFalse(match("src/**/*Test.java", "src/org/FooTest.jav"));
+    assertTrue(match("**/Foo", "Foo"));
+    assertTrue(match("org/*/?oo", "org.sonar.Foo", "."));
+    assertFalse(match("org/*/?oo", "com.sonar.Foo", "."));
+  }
+
+  @Test
+  public void multiplePatternsShouldNormalizeValue() {
+    WildcardPattern[] patterns = WildcardPattern.create(new String[] { "**/*Test.java", "src/generated/**" });
+    assertTrue(WildcardPattern.match(patterns, "/src/generated/Foo.java"));
+    assertTrue(WildcardPattern.match(patterns, "org/FooTest.java/"));
+    assertFalse(WildcardPattern.match(patterns, "src/main/Foo.java"));
+  }
+
+  @Test
+  public void shouldCacheRecentlyUsedPatterns() {
+    assertThat(WildcardPattern.create("**/*.java"), sameInstance(WildcardPattern.create("**/*.java")));
+  }
+
   @Test
   public void testToString() {
     assertThat(WildcardPattern.create("foo*").toString(), is("foo*"));
@@ -0,0 +1,234 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.charts;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.MetricRegistryLocator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of the PNG images generated by {@link ChartsServlet}, bounded by the total size of images.
+ * The least recently used images are evicted first. Statistics are published in the shared {@link MetricRegistry}.
+ *
+ * @since 3.6
+ */
+public class ChartCache implements ServerComponent {
+
+  static final long DEFAULT_MAX_BYTES = 16 * FileUtils.ONE_MB;
+
+  /**
+   * Images of deprecated charts depend only on the request parameters, so they never expire
+   */
+  public static final long NO_EXPIRATION = -1L;
+
+  private static final Logger LOG = LoggerFactory.getLogger(ChartCache.class);
+
+  private final long maxBytes;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private long bytes = 0L;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+  private final Timer generations;
+
+  public ChartCache() {
+    this(DEFAULT_MAX_BYTES, MetricRegistryLocator.INSTANCE.getRegistry());
+  }
+
+  ChartCache(long maxBytes, MetricRegistry registry) {
+    this.maxBytes = maxBytes;
+    this.hits = registry.counter(MetricRegistry.name(ChartCache.class, "hits"));
+    this.misses = registry.counter(MetricRegistry.name(ChartCache.class, "misses"));
+    this.evictions = registry.counter(MetricRegistry.name(ChartCache.class, "evictions"));
+    this.generations = registry.timer(MetricRegistry.name(ChartCache.class, "generations"));
+    register(registry, MetricRegistry.name(ChartCache.class, "hitRatio"), new RatioGauge() {
+      @Override
+      protected Ratio getRatio() {
+        return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+      }
+    });
+    register(registry, MetricRegistry.name(ChartCache.class, "sizeInBytes"), new Gauge<Long>() {
+      public Long getValue() {
+        return getSizeInBytes();
+      }
+    });
+    register(registry, MetricRegistry.name(ChartCache.class, "size"), new Gauge<Integer>() {
+      public Integer getValue() {
+        return getSize();
+      }
+    });
+  }
+
+  private static void register(MetricRegistry registry, String name, Gauge gauge) {
+    // the gauges of the previous instance, if any, are replaced
+    registry.remove(name);
+    registry.register(name, gauge);
+  }
+
+  /**
+   * Builds the cache key of a chart from its key and its parameters, whatever the order of parameters.
+   */
+  public static String key(String chartKey, Map<String, String> params) {
+    StringBuilder sb = new StringBuilder(chartKey);
+    SortedMap<String, String> sortedParams = new TreeMap<String, String>(params);
+    for (Map.Entry<String, String> param : sortedParams.entrySet()) {
+      if (param.getValue() != null) {
+        sb.append('&').append(param.getKey()).append('=').append(param.getValue());
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the cached image, or null if it is missing or expired
+   */
+  public synchronized Entry get(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+      remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.inc();
+    } else {
+      hits.inc();
+    }
+    return entry;
+  }
+
+  /**
+   * @param timeToLiveMs duration in milliseconds, or {@link #NO_EXPIRATION}
+   */
+  public synchronized Entry put(String key, byte[] png, long timeToLiveMs) {
+    long now = System.currentTimeMillis();
+    Entry entry = new Entry(png, now, timeToLiveMs == NO_EXPIRATION ? Long.MAX_VALUE : now + timeToLiveMs);
+    remove(key);
+    if (png.length <= maxBytes) {
+      entries.put(key, entry);
+      bytes += png.length;
+      evict();
+    }
+    return entry;
+  }
+
+  public void recordGeneration(String chartKey, long durationMs) {
+    generations.update(durationMs, TimeUnit.MILLISECONDS);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Chart " + chartKey + " generated in " + durationMs + " ms");
+    }
+  }
+
+  private void remove(String key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      bytes -= removed.getPng().length;
+    }
+  }
+
+  private void evict() {
+    Iterator<Entry> it = entries.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Entry eldest = it.next();
+      it.remove();
+      bytes -= eldest.getPng().length;
+      evictions.inc();
+    }
+  }
+
+  public synchronized long getSizeInBytes() {
+    return bytes;
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public long getHits() {
+    return hits.getCount();
+  }
+
+  public long getMisses() {
+    return misses.getCount();
+  }
+
+  public long getEvictions() {
+    return evictions.getCount();
+  }
+
+  public double getHitRate() {
+    long requests = hits.getCount() + misses.getCount();
+    return requests == 0L ? 0.0 : (double) hits.getCount() / requests;
+  }
+
+  public long getGenerations() {
+    return generations.getCount();
+  }
+
+  public long getAverageGenerationTimeMs() {
+    // durations of timers are in nanoseconds
+    return TimeUnit.NANOSECONDS.toMillis((long) generations.getSnapshot().getMean());
+  }
+
+  public static final class Entry {
+    private final byte[] png;
+    private final String etag;
+    private final long lastModified;
+    private final long expiresAt;
+
+    Entry(byte[] png, long lastModified, long expiresAt) {
+      this.png = png;
+      this.etag = "\"" + DigestUtils.md5Hex(png) + "\"";
+      // HTTP dates have a precision of one second
+      this.lastModified = lastModified - lastModified % 1000L;
+      this.expiresAt = expiresAt;
+    }
+
+    public byte[] getPng() {
+      return png;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expiresAt;
+    }
+  }
+}
@@ -19,13 +19,14 @@
  */
 package org.sonar.server.charts;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
-import com.google.common.io.Closeables;
 import org.jfree.chart.encoders.KeypointPNGEncoderAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.charts.Chart;
 import org.sonar.api.charts.ChartParameters;
+import org.sonar.core.resource.ResourceDao;
 import org.sonar.server.charts.deprecated.BarChart;
 import org.sonar.server.charts.deprecated.BaseChartWeb;
 import org.sonar.server.charts.deprecated.CustomBarChart;
@@ -34,12 +35,14 @@ import org.sonar.server.charts.deprecated.PieChart;
 import org.sonar.server.charts.deprecated.SparkLinesChart;
 import org.sonar.server.platform.Platform;
 
+import javax.annotation.CheckForNull;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Enumeration;
@@ -50,32 +53,91 @@ public class ChartsServlet extends HttpServlet {
   private static final Logger LOG = LoggerFactory.getLogger(ChartsServlet.class);
   private static final long serialVersionUID = 669857447198433893L;
 
+  /**
+   * Images generated by plugin charts may depend on database data. They are generated again after each analysis,
+   * and data changed between analyses (manual measures for example) are taken into account after this delay.
+   */
+  private static final long PLUGIN_CHART_TIME_TO_LIVE_MS = 5 * 60 * 1000L;
+
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
     if (isDeprecatedChart(request)) {
       deprecatedDoGet(request, response);
 
     } else {
-      ChartFactory chartFactory = Platform.getInstance().getContainer().getComponentByType(ChartFactory.class);
-      Chart chart = chartFactory.getChart(request.getParameter("ck"));
+      Chart chart = getChartFactory().getChart(request.getParameter("ck"));
       if (chart != null) {
-        BufferedImage image = chart.generateImage(getParams(request));
-        OutputStream out = response.getOutputStream();
-        try {
-          response.setContentType("image/png");
-          exportAsPNG(image, out);
-
-        } catch (Exception e) {
-          LOG.error("Generating chart " + chart.getClass().getName(), e);
-
-        } finally {
-          out.close();
+        ChartCache cache = getCache();
+        Map<String, String> params = getParamsAsMap(request);
+        String key = ChartCache.key(chart.getKey(), params) + "@" + getLastAnalysisId();
+        ChartCache.Entry entry = cache.get(key);
+        if (entry == null) {
+          try {
+            long start = System.currentTimeMillis();
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            exportAsPNG(chart.generateImage(new ChartParameters(params)), png);
+            cache.recordGeneration(chart.getKey(), System.currentTimeMillis() - start);
+            entry = cache.put(key, png.toByteArray(), PLUGIN_CHART_TIME_TO_LIVE_MS);
+
+          } catch (Exception e) {
+            LOG.error("Generating chart " + chart.getClass().getName(), e);
+            response.getOutputStream().close();
+            return;
+          }
         }
+        write(entry, request, response);
       }
     }
   }
 
-  private ChartParameters getParams(HttpServletRequest request) {
+  @VisibleForTesting
+  ChartCache getCache() {
+    return Platform.getInstance().getContainer().getComponentByType(ChartCache.class);
+  }
+
+  @VisibleForTesting
+  ChartFactory getChartFactory() {
+    return Platform.getInstance().getContainer().getComponentByType(ChartFactory.class);
+  }
+
+  @VisibleForTesting
+  @CheckForNull
+  Long getLastAnalysisId() {
+    return Platform.getInstance().getContainer().getComponentByType(ResourceDao.class).getLastAnalysisId();
+  }
+
+  private void write(ChartCache.Entry entry, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setHeader("ETag", entry.getEtag());
+    response.setDateHeader("Last-Modified", entry.getLastModified());
+    if (isNotModified(entry, request)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    OutputStream out = response.getOutputStream();
+    try {
+      response.setContentType("image/png");
+      response.setContentLength(entry.getPng().length);
+      out.write(entry.getPng());
+    } finally {
+      out.close();
+    }
+  }
+
+  private boolean isNotModified(ChartCache.Entry entry, HttpServletRequest request) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      return ifNoneMatch.contains(entry.getEtag());
+    }
+    try {
+      long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+      return ifModifiedSince >= 0 && ifModifiedSince >= entry.getLastModified();
+    } catch (IllegalArgumentException e) {
+      // badly formatted date
+      return false;
+    }
+  }
+
+  private Map<String, String> getParamsAsMap(HttpServletRequest request) {
     Map<String, String> map = Maps.newHashMap();
     Enumeration keys = request.getParameterNames();
     while (keys.hasMoreElements()) {
@@ -83,7 +145,7 @@ public class ChartsServlet extends HttpServlet {
       String value = request.getParameter(key);
       map.put(key, value);
     }
-    return new ChartParameters(map);
+    return map;
   }
 
   private void exportAsPNG(BufferedImage image, OutputStream out) throws IOException {
@@ -131,30 +193,42 @@ public class ChartsServlet extends HttpServlet {
     params.put(BaseChartWeb.CHART_PARAM_OUTLINE_VISIBLE, request.getParameter(BaseChartWeb.CHART_PARAM_OUTLINE_VISIBLE));
 
     String chartType = params.get(BaseChartWeb.CHART_PARAM_TYPE);
+    ChartCache cache = getCache();
+    String key = ChartCache.key(chartType, params);
+    ChartCache.Entry entry = cache.get(key);
+    try {
+      if (entry == null) {
+        // charts are built only when they are not cached
+        DeprecatedChart chart = createDeprecatedChart(chartType, params);
+        if (chart == null) {
+          return;
+        }
+        long start = System.currentTimeMillis();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        chart.exportChartAsPNG(png);
+        cache.recordGeneration(chartType, System.currentTimeMillis() - start);
+        entry = cache.put(key, png.toByteArray(), ChartCache.NO_EXPIRATION);
+      }
+      write(entry, request, response);
+    } catch (Exception e) {
+      LOG.error("Generating chart " + chartType, e);
+    }
+  }
 
-    DeprecatedChart chart = null;
-
+  @CheckForNull
+  private static DeprecatedChart createDeprecatedChart(String chartType, Map<String, String> params) {
     if (BaseChartWeb.BAR_CHART_HORIZONTAL.equals(chartType) || BaseChartWeb.BAR_CHART_VERTICAL.equals(chartType) || BaseChartWeb.STACKED_BAR_CHART.equals(chartType)) {
-      chart = new BarChart(params);
-    } else if (BaseChartWeb.BAR_CHART_VERTICAL_CUSTOM.equals(chartType)) {
-      chart = new CustomBarChart(params);
-    } else if (BaseChartWeb.PIE_CHART.equals(chartType)) {
-      chart = new PieChart(params);
-    } else if (BaseChartWeb.SPARKLINES_CHART.equals(chartType)) {
-      chart = new SparkLinesChart(params);
+      return new BarChart(params);
     }
-
-    if (chart != null) {
-      OutputStream out = null;
-      try {
-        out = response.getOutputStream();
-        response.setContentType("image/png");
-        chart.exportChartAsPNG(out);
-      } catch (Exception e) {
-        LOG.error("Generating chart " + chart.getClass().getName(), e);
-      } finally {
-        Closeables.closeQuietly(out);
-      }
+    if (BaseChartWeb.BAR_CHART_VERTICAL_CUSTOM.equals(chartType)) {
+      return new CustomBarChart(params);
+    }
+    if (BaseChartWeb.PIE_CHART.equals(chartType)) {
+      return new PieChart(params);
+    }
+    if (BaseChartWeb.SPARKLINES_CHART.equals(chartType)) {
+      return new SparkLinesChart(params);
     }
+    return null;
   }
 }
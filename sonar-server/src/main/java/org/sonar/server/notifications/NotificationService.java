@@ -19,8 +19,17 @@
  */
 package org.sonar.server.notifications;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,16 +43,32 @@ import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.core.notification.NotificationQueueElement;
+import org.sonar.core.persistence.MetricRegistryLocator;
+import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Notifications are removed from the queue by batches. Dispatchers are called in parallel for all the notifications
+ * of a batch, then each channel delivers its part of the batch at once. The next batch is removed from the queue
+ * only when the current one is delivered, so the number of notifications loaded in memory is bounded.
+ * <p/>
+ * Dispatchers and channels run in a pool of threads. The database session of the pool thread is closed at the end
+ * of each task, so that entities are not cached from one batch to another.
+ * <p/>
+ * The size of the queue, the number of processed notifications, their delay in queue and the processing time of
+ * batches are published in the shared {@link MetricRegistry}.
+ *
  * @since 2.10
  */
 @Properties({
@@ -52,6 +77,12 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "60",
     name = "Delay of notifications, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_THREADS,
+    defaultValue = "4",
+    name = "Number of threads used to dispatch notifications",
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent {
@@ -60,40 +91,80 @@ public class NotificationService implements ServerComponent {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
 
+  /**
+   * @since 3.6
+   */
+  public static final String PROPERTY_THREADS = "sonar.notifications.threads";
+
+  static final int DEFAULT_THREADS = 4;
+
+  @VisibleForTesting
+  static final int BATCH_SIZE = 100;
+
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(LOG).setLevelToDebug();
 
   private final long delayInSeconds;
+  private final int threads;
   private final DefaultNotificationManager manager;
+  private final DatabaseSessionFactory sessionFactory;
   private final NotificationDispatcher[] dispatchers;
 
+  private final Counter processedCounter;
+  private final Histogram delayHistogram;
+  private final Timer batchTimer;
+  private volatile long queueSize = 0L;
+
   private ScheduledExecutorService executorService;
+  private ExecutorService dispatchService;
   private boolean stopping = false;
 
   /**
    * Constructor for {@link NotificationService} 
    */
-  public NotificationService(Settings settings, DefaultNotificationManager manager, NotificationDispatcher[] dispatchers) {
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory sessionFactory,
+                             NotificationDispatcher[] dispatchers) {
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
+    threads = Math.max(1, settings.hasKey(PROPERTY_THREADS) ? settings.getInt(PROPERTY_THREADS) : DEFAULT_THREADS);
     this.manager = manager;
+    this.sessionFactory = sessionFactory;
     this.dispatchers = dispatchers;
+
+    MetricRegistry registry = getRegistry();
+    processedCounter = registry.counter(MetricRegistry.name(NotificationService.class, "processed"));
+    delayHistogram = registry.histogram(MetricRegistry.name(NotificationService.class, "delayInMs"));
+    batchTimer = registry.timer(MetricRegistry.name(NotificationService.class, "batches"));
+    String queueSizeName = MetricRegistry.name(NotificationService.class, "queueSize");
+    // the gauge of the previous instance, if any, is replaced
+    registry.remove(queueSizeName);
+    registry.register(queueSizeName, new Gauge<Long>() {
+      public Long getValue() {
+        return queueSize;
+      }
+    });
   }
 
   /**
    * Default constructor when no channels.
    */
-  public NotificationService(Settings settings, DefaultNotificationManager manager) {
-    this(settings, manager, new NotificationDispatcher[0]);
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory sessionFactory) {
+    this(settings, manager, sessionFactory, new NotificationDispatcher[0]);
     LOG.warn("There is no dispatcher - all notifications will be ignored!");
   }
 
+  @VisibleForTesting
+  MetricRegistry getRegistry() {
+    return MetricRegistryLocator.INSTANCE.getRegistry();
+  }
+
   public void start() {
+    dispatchService = Executors.newFixedThreadPool(threads);
     executorService = Executors.newSingleThreadScheduledExecutor();
     executorService.scheduleWithFixedDelay(new Runnable() {
       public void run() {
         processQueue();
       }
     }, 0, delayInSeconds, TimeUnit.SECONDS);
-    LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
+    LOG.info("Notification service started (delay {} sec., {} threads)", delayInSeconds, threads);
   }
 
   public void stop() {
@@ -101,6 +172,8 @@ public class NotificationService implements ServerComponent {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      dispatchService.shutdown();
+      dispatchService.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
@@ -111,19 +184,106 @@ public class NotificationService implements ServerComponent {
   synchronized void processQueue() {
     TIME_PROFILER.start("Processing notifications queue");
 
-    NotificationQueueElement queueElement = manager.getFromQueue();
-    while (queueElement != null) {
-      deliver(queueElement.getNotification());
+    long startedAt = System.currentTimeMillis();
+    int processed = 0;
+    long maxLatency = 0;
+    List<NotificationQueueElement> queueElements = manager.getFromQueue(BATCH_SIZE);
+    updateQueueSize(queueElements);
+    long initialQueueSize = queueSize;
+    while (!queueElements.isEmpty()) {
+      maxLatency = Math.max(maxLatency, maxLatency(queueElements));
+      Timer.Context context = batchTimer.time();
+      try {
+        deliver(queueElements);
+      } finally {
+        context.stop();
+      }
+      processed += queueElements.size();
+      processedCounter.inc(queueElements.size());
       if (stopping) {
         break;
       }
-      queueElement = manager.getFromQueue();
+      queueElements = manager.getFromQueue(BATCH_SIZE);
+      updateQueueSize(queueElements);
+    }
+    if (processed > 0) {
+      LOG.info("{} notifications processed in {} ms (queue size: {}, max delay: {} ms)",
+        new Object[] {processed, System.currentTimeMillis() - startedAt, initialQueueSize, maxLatency});
     }
 
     TIME_PROFILER.stop();
   }
 
-  private void deliver(Notification notification) {
+  private void updateQueueSize(List<NotificationQueueElement> queueElements) {
+    queueSize = queueElements.isEmpty() ? 0L : (queueElements.size() + manager.getQueueSize());
+  }
+
+  private long maxLatency(List<NotificationQueueElement> queueElements) {
+    long now = System.currentTimeMillis();
+    long max = 0;
+    for (NotificationQueueElement queueElement : queueElements) {
+      if (queueElement.getCreatedAt() != null) {
+        long latency = now - queueElement.getCreatedAt().getTime();
+        delayHistogram.update(latency);
+        max = Math.max(max, latency);
+      }
+    }
+    return max;
+  }
+
+  private void deliver(List<NotificationQueueElement> queueElements) {
+    List<Future<SetMultimap<String, NotificationChannel>>> recipientsFutures = Lists.newArrayList();
+    for (NotificationQueueElement queueElement : queueElements) {
+      final Notification notification = queueElement.getNotification();
+      recipientsFutures.add(dispatchService.submit(new Callable<SetMultimap<String, NotificationChannel>>() {
+        public SetMultimap<String, NotificationChannel> call() {
+          try {
+            return findRecipients(notification);
+          } finally {
+            sessionFactory.clear();
+          }
+        }
+      }));
+    }
+
+    Map<NotificationChannel, ListMultimap<String, Notification>> notificationsByChannel = Maps.newLinkedHashMap();
+    for (int i = 0; i < queueElements.size(); i++) {
+      Notification notification = queueElements.get(i).getNotification();
+      SetMultimap<String, NotificationChannel> recipients = waitFor(recipientsFutures.get(i));
+      if (recipients != null) {
+        for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
+          String username = entry.getKey();
+          LOG.debug("For user {} via {}", username, entry.getValue());
+          for (NotificationChannel channel : entry.getValue()) {
+            ListMultimap<String, Notification> notifications = notificationsByChannel.get(channel);
+            if (notifications == null) {
+              notifications = LinkedListMultimap.create();
+              notificationsByChannel.put(channel, notifications);
+            }
+            notifications.put(username, notification);
+          }
+        }
+      }
+    }
+
+    List<Future<?>> deliveryFutures = Lists.newArrayList();
+    for (final Map.Entry<NotificationChannel, ListMultimap<String, Notification>> entry : notificationsByChannel.entrySet()) {
+      deliveryFutures.add(dispatchService.submit(new Runnable() {
+        public void run() {
+          try {
+            deliver(entry.getKey(), entry.getValue());
+          } finally {
+            sessionFactory.clear();
+          }
+        }
+      }));
+    }
+    for (Future<?> deliveryFuture : deliveryFutures) {
+      waitFor(deliveryFuture);
+    }
+  }
+
+  private SetMultimap<String, NotificationChannel> findRecipients(Notification notification) {
     LOG.debug("Delivering notification " + notification);
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
@@ -145,23 +305,28 @@ public class NotificationService implements ServerComponent {
         LOG.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
-    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
-        }
-      }
+  private static void deliver(NotificationChannel channel, ListMultimap<String, Notification> notificationsByUser) {
+    try {
+      channel.deliverAll(notificationsByUser);
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver via other channels
+      LOG.warn("Unable to deliver " + notificationsByUser.size() + " notifications via " + channel, e);
+    }
+  }
+
+  private static <T> T waitFor(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while processing notifications", e);
+    } catch (ExecutionException e) {
+      LOG.warn("Unable to process notifications", e.getCause());
     }
+    return null;
   }
 
   @VisibleForTesting
@@ -68,6 +68,7 @@ import org.sonar.jpa.session.DatabaseSessionFactory;
 import org.sonar.jpa.session.DatabaseSessionProvider;
 import org.sonar.jpa.session.DefaultDatabaseConnector;
 import org.sonar.jpa.session.ThreadLocalDatabaseSessionFactory;
+import org.sonar.server.charts.ChartCache;
 import org.sonar.server.charts.ChartFactory;
 import org.sonar.server.configuration.Backup;
 import org.sonar.server.configuration.ProfilesManager;
@@ -173,6 +174,7 @@ public final class Platform {
     rootContainer.addSingleton(PluginDeployer.class);
     rootContainer.addSingleton(InstalledPluginReferentialFactory.class);
     rootContainer.addSingleton(DefaultServerPluginRepository.class);
+    rootContainer.addSingleton(ResourceCache.class);
 
     rootContainer.addSingleton(DefaultServerFileSystem.class);
     rootContainer.addSingleton(ApplicationDeployer.class);
@@ -219,6 +221,7 @@ public final class Platform {
     servicesContainer.addSingleton(DefaultModelFinder.class); // depends on plugins
     servicesContainer.addSingleton(DefaultModelManager.class);
     servicesContainer.addSingleton(ChartFactory.class);
+    servicesContainer.addSingleton(ChartCache.class);
     servicesContainer.addSingleton(Languages.class);
     servicesContainer.addSingleton(Views.class);
     servicesContainer.addSingleton(CodeColorizers.class);
@@ -290,6 +293,7 @@ public final class Platform {
 
   private void executeStartupTasks() {
     ComponentContainer startupContainer = servicesContainer.createChild();
+    startupContainer.addSingleton(StartupTaskExecutor.class);
     startupContainer.addSingleton(GwtPublisher.class);
     startupContainer.addSingleton(RegisterMetrics.class);
     startupContainer.addSingleton(RegisterRules.class);
@@ -305,6 +309,7 @@ public final class Platform {
     startupContainer.addSingleton(LogServerId.class);
     startupContainer.addSingleton(RegisterServletFilters.class);
     startupContainer.startComponents();
+    startupContainer.getComponentByType(StartupTaskExecutor.class).awaitTermination();
 
     startupContainer.getComponentByType(ServerLifecycleNotifier.class).notifyStart();
 
@@ -0,0 +1,186 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.utils.SonarException;
+import org.sonar.core.persistence.MetricRegistryLocator;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes in background the startup tasks that do not depend on other tasks, for example the tasks that only
+ * write to the file system. The tasks updating the database are still executed one after the other by picocontainer.
+ * {@link Platform} waits for the background tasks before declaring the server as started. The duration of each task
+ * and the time spent waiting for them are published in the shared {@link MetricRegistry}.
+ *
+ * @since 3.6
+ */
+public class StartupTaskExecutor implements ServerComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StartupTaskExecutor.class);
+  private static final int DEFAULT_THREADS = 4;
+
+  private final ExecutorService executor;
+  private final MetricRegistry registry;
+  private final Map<String, Future<?>> futures = Maps.newLinkedHashMap();
+  private final Map<String, Long> durations = Maps.newConcurrentMap();
+  private volatile long waitingTimeMs = 0L;
+
+  public StartupTaskExecutor() {
+    this(DEFAULT_THREADS, MetricRegistryLocator.INSTANCE.getRegistry());
+  }
+
+  /**
+   * @param threads number of background threads, or 0 to execute tasks in the calling thread
+   */
+  StartupTaskExecutor(int threads, MetricRegistry registry) {
+    this.executor = threads > 0 ? Executors.newFixedThreadPool(threads, new StartupThreadFactory()) : null;
+    this.registry = registry;
+    String waitingTimeName = MetricRegistry.name(StartupTaskExecutor.class, "waitingTimeMs");
+    // the gauge of the previous instance, if any, is replaced
+    registry.remove(waitingTimeName);
+    registry.register(waitingTimeName, new Gauge<Long>() {
+      public Long getValue() {
+        return getWaitingTime();
+      }
+    });
+  }
+
+  /**
+   * Executor that executes tasks immediately in the calling thread. Its metrics are not published in the shared registry.
+   */
+  public static StartupTaskExecutor sameThread() {
+    return new StartupTaskExecutor(0, new MetricRegistry());
+  }
+
+  public void submit(final String name, final Callable<?> task) {
+    if (executor == null) {
+      try {
+        execute(name, task);
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    } else {
+      futures.put(name, executor.submit(new Callable<Object>() {
+        public Object call() throws Exception {
+          return execute(name, task);
+        }
+      }));
+    }
+  }
+
+  private Object execute(String name, Callable<?> task) throws Exception {
+    long start = System.currentTimeMillis();
+    try {
+      return task.call();
+    } finally {
+      long duration = System.currentTimeMillis() - start;
+      durations.put(name, duration);
+      registry.timer(MetricRegistry.name(StartupTaskExecutor.class, "tasks", name)).update(duration, TimeUnit.MILLISECONDS);
+      LOG.debug("{} executed in {} ms", name, duration);
+    }
+  }
+
+  /**
+   * Waits for the completion of all the submitted tasks. The first failure, if any, is thrown.
+   */
+  public void awaitTermination() {
+    long start = System.currentTimeMillis();
+    try {
+      for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+        try {
+          entry.getValue().get();
+        } catch (ExecutionException e) {
+          Throwables.propagateIfPossible(e.getCause());
+          throw new SonarException("Fail to execute startup task: " + entry.getKey(), e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SonarException("Interrupted while executing startup task: " + entry.getKey(), e);
+        }
+      }
+    } finally {
+      waitingTimeMs = System.currentTimeMillis() - start;
+      futures.clear();
+      stop();
+    }
+    logTimeline();
+  }
+
+  private void logTimeline() {
+    String longestTask = null;
+    long longestDuration = -1L;
+    for (Map.Entry<String, Long> entry : durations.entrySet()) {
+      if (entry.getValue() > longestDuration) {
+        longestTask = entry.getKey();
+        longestDuration = entry.getValue();
+      }
+    }
+    if (longestTask != null) {
+      // if the startup had to wait, then the background tasks are on the critical path
+      LOG.info("Background startup tasks done. Longest task: {} ({} ms), waited for {} ms", new Object[] {longestTask, longestDuration, waitingTimeMs});
+    }
+  }
+
+  /**
+   * Duration in milliseconds of each executed task
+   */
+  public Map<String, Long> getDurations() {
+    return Maps.newHashMap(durations);
+  }
+
+  /**
+   * Time spent by the startup waiting for background tasks. Zero when background tasks are not on the critical path.
+   */
+  public long getWaitingTime() {
+    return waitingTimeMs;
+  }
+
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class StartupThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger(0);
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "startup-task-" + count.incrementAndGet());
+      // do not prevent the JVM from shutting down if startup fails
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -19,10 +19,12 @@
  */
 package org.sonar.server.plugins;
 
+import com.google.common.io.InputSupplier;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.server.platform.Platform;
 import org.sonar.server.startup.GenerateBootstrapIndex;
 
 import javax.servlet.ServletException;
@@ -32,7 +34,6 @@ import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 
 /**
@@ -46,7 +47,7 @@ public class BatchResourcesServlet extends HttpServlet {
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-    String filename = filename(request);
+    final String filename = filename(request);
     if (StringUtils.isBlank(filename)) {
       PrintWriter writer = null;
       try {
@@ -60,27 +61,28 @@ public class BatchResourcesServlet extends HttpServlet {
         IOUtils.closeQuietly(writer);
       }
     } else {
-      InputStream in = null;
-      OutputStream out = null;
       try {
-        in = getServletContext().getResourceAsStream("/WEB-INF/lib/" + filename);
-        if (in == null) {
-          // TODO
+        ResourceCache.Resource resource = getCache().get("batch:" + filename, "application/java-archive", new InputSupplier<InputStream>() {
+          public InputStream getInput() {
+            return getServletContext().getResourceAsStream("/WEB-INF/lib/" + filename);
+          }
+        });
+        if (resource == null) {
+          response.sendError(HttpServletResponse.SC_NOT_FOUND);
         } else {
-          response.setContentType("application/java-archive");
-          out = response.getOutputStream();
-          IOUtils.copy(in, out);
+          ResourceCache.write(resource, request, response);
         }
       } catch (Exception e) {
         LOG.error("Unable to load batch resource '" + filename + "'", e);
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-      } finally {
-        IOUtils.closeQuietly(in);
-        IOUtils.closeQuietly(out);
       }
     }
   }
 
+  private ResourceCache getCache() {
+    return Platform.getInstance().getContainer().getComponentByType(ResourceCache.class);
+  }
+
   /**
    * @return part of request URL after servlet path
    */
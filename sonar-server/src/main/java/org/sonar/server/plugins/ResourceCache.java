@@ -0,0 +1,281 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.plugins;
+
+import com.google.common.io.InputSupplier;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.ServerComponent;
+
+import javax.annotation.CheckForNull;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of the static resources of plugins and of the libraries downloaded by batch. These resources
+ * can not change while the server is up, so their content hash is computed only once. Small resources
+ * are kept in memory, and text resources are also kept gzipped.
+ *
+ * @since 3.6
+ */
+public class ResourceCache implements ServerComponent {
+
+  /**
+   * Name of the request parameter of versioned URLs. Its value is the content hash of the resource.
+   */
+  public static final String VERSION_PARAMETER = "v";
+
+  static final int MAX_CACHED_RESOURCE_BYTES = 256 * 1024;
+  static final long DEFAULT_MAX_BYTES = 8 * FileUtils.ONE_MB;
+  static final long ONE_YEAR_IN_SECONDS = 365L * 24L * 3600L;
+
+  private final DefaultServerPluginRepository pluginRepository;
+  private final long maxBytes;
+  private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+  private final AtomicLong bytes = new AtomicLong();
+
+  public ResourceCache(DefaultServerPluginRepository pluginRepository) {
+    this(pluginRepository, DEFAULT_MAX_BYTES);
+  }
+
+  ResourceCache(DefaultServerPluginRepository pluginRepository, long maxBytes) {
+    this.pluginRepository = pluginRepository;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @param resourcePath path in the plugin classloader, without leading "/"
+   * @return null if the plugin or the resource does not exist
+   */
+  @CheckForNull
+  public Resource getPluginResource(String pluginKey, final String resourcePath) throws IOException {
+    final ClassLoader classLoader = pluginRepository.getClassLoader(pluginKey);
+    if (classLoader == null) {
+      return null;
+    }
+    return get("plugin:" + pluginKey + ":" + resourcePath, MimeTypes.getByFilename(resourcePath), new InputSupplier<InputStream>() {
+      public InputStream getInput() {
+        return classLoader.getResourceAsStream(resourcePath);
+      }
+    });
+  }
+
+  /**
+   * Missing resources are not cached, so that invalid URLs do not consume memory.
+   *
+   * @param source supplies null if the resource does not exist
+   * @return null if the resource does not exist
+   */
+  @CheckForNull
+  public Resource get(String key, String contentType, InputSupplier<? extends InputStream> source) throws IOException {
+    Resource resource = resources.get(key);
+    if (resource == null) {
+      resource = load(contentType, source);
+      if (resource != null) {
+        Resource previous = resources.putIfAbsent(key, resource);
+        if (previous != null) {
+          release(resource);
+          resource = previous;
+        }
+      }
+    }
+    return resource;
+  }
+
+  long getSizeInBytes() {
+    return bytes.get();
+  }
+
+  @CheckForNull
+  private Resource load(String contentType, InputSupplier<? extends InputStream> source) throws IOException {
+    InputStream input = source.getInput();
+    if (input == null) {
+      return null;
+    }
+    try {
+      byte[] head = read(input, MAX_CACHED_RESOURCE_BYTES + 1);
+      if (head.length <= MAX_CACHED_RESOURCE_BYTES && reserve(head.length)) {
+        byte[] gzipped = isCompressible(contentType) ? gzip(head) : null;
+        if (gzipped != null && gzipped.length >= head.length) {
+          gzipped = null;
+        }
+        return new Resource(DigestUtils.md5Hex(head), contentType, head, gzipped, source);
+      }
+      // too big to be kept in memory, it's streamed on each request
+      String hash = DigestUtils.md5Hex(new SequenceInputStream(new ByteArrayInputStream(head), input));
+      return new Resource(hash, contentType, null, null, source);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private boolean reserve(int size) {
+    if (bytes.addAndGet(size) > maxBytes) {
+      bytes.addAndGet(-size);
+      return false;
+    }
+    return true;
+  }
+
+  private void release(Resource resource) {
+    if (resource.content != null) {
+      bytes.addAndGet(-resource.content.length);
+    }
+  }
+
+  private static byte[] read(InputStream input, int maxLength) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while (output.size() < maxLength && (read = input.read(buffer, 0, Math.min(buffer.length, maxLength - output.size()))) != -1) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 2);
+    GZIPOutputStream gzip = new GZIPOutputStream(output);
+    try {
+      gzip.write(content);
+    } finally {
+      gzip.close();
+    }
+    return output.toByteArray();
+  }
+
+  static boolean isCompressible(String contentType) {
+    return StringUtils.startsWith(contentType, "text/")
+      || StringUtils.contains(contentType, "javascript")
+      || StringUtils.contains(contentType, "json")
+      || StringUtils.contains(contentType, "xml");
+  }
+
+  /**
+   * Writes the resource with its validators and caching headers. Versioned requests, whose parameter {@link #VERSION_PARAMETER}
+   * is the content hash, are cached for one year by clients. Other requests must be revalidated.
+   */
+  public static void write(Resource resource, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    boolean gzip = resource.gzippedContent != null && acceptsGzip(request);
+    String etag = "\"" + resource.hash + (gzip ? "-gzip" : "") + "\"";
+    response.setHeader("ETag", etag);
+    if (resource.gzippedContent != null) {
+      response.setHeader("Vary", "Accept-Encoding");
+    }
+    if (resource.hash.equals(request.getParameter(VERSION_PARAMETER))) {
+      response.setHeader("Cache-Control", "public, max-age=" + ONE_YEAR_IN_SECONDS);
+    } else {
+      response.setHeader("Cache-Control", "public, max-age=0, must-revalidate");
+    }
+    if (matches(request.getHeader("If-None-Match"), etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(resource.contentType);
+    OutputStream out = null;
+    InputStream in = null;
+    try {
+      if (gzip) {
+        response.setHeader("Content-Encoding", "gzip");
+        response.setContentLength(resource.gzippedContent.length);
+        out = response.getOutputStream();
+        out.write(resource.gzippedContent);
+      } else if (resource.content != null) {
+        response.setContentLength(resource.content.length);
+        out = response.getOutputStream();
+        out.write(resource.content);
+      } else {
+        in = resource.source.getInput();
+        out = response.getOutputStream();
+        IOUtils.copy(in, out);
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    return acceptEncoding != null && acceptEncoding.contains("gzip");
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+      String trimmed = StringUtils.removeStart(candidate.trim(), "W/");
+      if ("*".equals(trimmed) || etag.equals(trimmed)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public static final class Resource {
+    private final String hash;
+    private final String contentType;
+    private final byte[] content;
+    private final byte[] gzippedContent;
+    private final InputSupplier<? extends InputStream> source;
+
+    private Resource(String hash, String contentType, byte[] content, byte[] gzippedContent, InputSupplier<? extends InputStream> source) {
+      this.hash = hash;
+      this.contentType = contentType;
+      this.content = content;
+      this.gzippedContent = gzippedContent;
+      this.source = source;
+    }
+
+    /**
+     * MD5 of content, as used by the bootstrap index
+     */
+    public String getHash() {
+      return hash;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    boolean isInMemory() {
+      return content != null;
+    }
+
+    boolean isGzipped() {
+      return gzippedContent != null;
+    }
+  }
+}
@@ -19,8 +19,6 @@
  */
 package org.sonar.server.plugins;
 
-import com.google.common.annotations.VisibleForTesting;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,8 +29,6 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 public class StaticResourcesServlet extends HttpServlet {
 
@@ -44,22 +40,10 @@ public class StaticResourcesServlet extends HttpServlet {
     String pluginKey = getPluginKey(request);
     String resource = getResourcePath(request);
 
-    DefaultServerPluginRepository pluginRepository = Platform.getInstance().getContainer().getComponentByType(DefaultServerPluginRepository.class);
-    ClassLoader classLoader = pluginRepository.getClassLoader(pluginKey);
-    if (classLoader == null) {
-      LOG.error("Plugin not found: " + pluginKey);
-      response.sendError(HttpServletResponse.SC_NOT_FOUND);
-      return;
-    }
-    InputStream in = null;
-    OutputStream out = null;
     try {
-      in = classLoader.getResourceAsStream(resource);
-      if (in != null) {
-        out = response.getOutputStream();
-        IOUtils.copy(in, out);
-        completeContentType(response, resource);
-
+      ResourceCache.Resource cached = getCache().getPluginResource(pluginKey, resource);
+      if (cached != null) {
+        ResourceCache.write(cached, request, response);
       } else {
         LOG.error("Unable to find resource '" + resource + "' in plugin '" + pluginKey + "'");
         response.sendError(HttpServletResponse.SC_NOT_FOUND);
@@ -67,12 +51,13 @@ public class StaticResourcesServlet extends HttpServlet {
     } catch (Exception e) {
       LOG.error("Unable to load static resource '" + resource + "' from plugin '" + pluginKey + "'", e);
       response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-    } finally {
-      IOUtils.closeQuietly(in);
-      IOUtils.closeQuietly(out);
     }
   }
 
+  private ResourceCache getCache() {
+    return Platform.getInstance().getContainer().getComponentByType(ResourceCache.class);
+  }
+
   /**
    * @return part of request URL after servlet path
    */
@@ -90,9 +75,4 @@ public class StaticResourcesServlet extends HttpServlet {
   protected String getResourcePath(HttpServletRequest request) {
     return "static/" + StringUtils.substringAfter(getPluginKeyAndResourcePath(request), "/");
   }
-
-  @VisibleForTesting
-  void completeContentType(HttpServletResponse response, String filename) {
-    response.setContentType(MimeTypes.getByFilename(filename));
-  }
 }
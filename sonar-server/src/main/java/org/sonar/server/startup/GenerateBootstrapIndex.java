@@ -26,6 +26,7 @@ import org.apache.commons.lang.CharUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.home.cache.FileHashes;
 import org.sonar.server.platform.DefaultServerFileSystem;
+import org.sonar.server.platform.StartupTaskExecutor;
 
 import javax.servlet.ServletContext;
 
@@ -35,6 +36,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * @since 3.5
@@ -43,14 +45,21 @@ public final class GenerateBootstrapIndex {
 
   private final ServletContext servletContext;
   private final DefaultServerFileSystem fileSystem;
+  private final StartupTaskExecutor executor;
 
-  public GenerateBootstrapIndex(DefaultServerFileSystem fileSystem, ServletContext servletContext) {
+  public GenerateBootstrapIndex(DefaultServerFileSystem fileSystem, ServletContext servletContext, StartupTaskExecutor executor) {
     this.servletContext = servletContext;
     this.fileSystem = fileSystem;
+    this.executor = executor;
   }
 
-  public void start() throws IOException {
-    writeIndex(fileSystem.getBootstrapIndex());
+  public void start() {
+    executor.submit("Generate bootstrap index", new Callable<Void>() {
+      public Void call() throws IOException {
+        writeIndex(fileSystem.getBootstrapIndex());
+        return null;
+      }
+    });
   }
 
   void writeIndex(File indexFile) throws IOException {
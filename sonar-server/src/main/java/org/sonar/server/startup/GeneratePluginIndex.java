@@ -26,11 +26,13 @@ import org.sonar.api.platform.PluginMetadata;
 import org.sonar.core.plugins.DefaultPluginMetadata;
 import org.sonar.core.plugins.RemotePlugin;
 import org.sonar.server.platform.DefaultServerFileSystem;
+import org.sonar.server.platform.StartupTaskExecutor;
 import org.sonar.server.plugins.DefaultServerPluginRepository;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * @since 2.11
@@ -39,14 +41,21 @@ public final class GeneratePluginIndex {
 
   private DefaultServerFileSystem fileSystem;
   private DefaultServerPluginRepository repository;
+  private StartupTaskExecutor executor;
 
-  public GeneratePluginIndex(DefaultServerFileSystem fileSystem, DefaultServerPluginRepository repository) {
+  public GeneratePluginIndex(DefaultServerFileSystem fileSystem, DefaultServerPluginRepository repository, StartupTaskExecutor executor) {
     this.fileSystem = fileSystem;
     this.repository = repository;
+    this.executor = executor;
   }
 
-  public void start() throws IOException {
-    writeIndex(fileSystem.getPluginIndex());
+  public void start() {
+    executor.submit("Generate plugin index", new Callable<Void>() {
+      public Void call() throws IOException {
+        writeIndex(fileSystem.getPluginIndex());
+        return null;
+      }
+    });
   }
 
   void writeIndex(File indexFile) throws IOException {
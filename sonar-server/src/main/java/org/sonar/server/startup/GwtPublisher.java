@@ -30,12 +30,14 @@ import org.sonar.api.utils.TimeProfiler;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.web.GwtExtension;
 import org.sonar.server.platform.ServerSettings;
+import org.sonar.server.platform.StartupTaskExecutor;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
 
 public class GwtPublisher {
@@ -44,10 +46,12 @@ public class GwtPublisher {
   private Settings settings;
   private GwtExtension[] extensions = null;
   private File outputDir = null;
+  private StartupTaskExecutor executor = StartupTaskExecutor.sameThread();
 
-  public GwtPublisher(GwtExtension[] extensions, Settings settings) {
+  public GwtPublisher(GwtExtension[] extensions, Settings settings, StartupTaskExecutor executor) {
     this.extensions = extensions;
     this.settings = settings;
+    this.executor = executor;
   }
 
   GwtPublisher(GwtExtension[] extensions, File outputDir) {
@@ -59,6 +63,15 @@ public class GwtPublisher {
   }
 
   public void start() {
+    executor.submit("Deploy GWT plugins", new Callable<Void>() {
+      public Void call() {
+        deploy();
+        return null;
+      }
+    });
+  }
+
+  private void deploy() {
     TimeProfiler profiler = new TimeProfiler().start("Deploy GWT plugins");
     try {
       cleanDirectory();
@@ -22,19 +22,32 @@ package org.sonar.server.startup;
 import org.apache.commons.io.FileUtils;
 import org.sonar.home.cache.FileHashes;
 import org.sonar.server.platform.DefaultServerFileSystem;
+import org.sonar.server.platform.StartupTaskExecutor;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 public class JdbcDriverDeployer {
 
   private final DefaultServerFileSystem fileSystem;
+  private final StartupTaskExecutor executor;
 
-  public JdbcDriverDeployer(DefaultServerFileSystem fileSystem) {
+  public JdbcDriverDeployer(DefaultServerFileSystem fileSystem, StartupTaskExecutor executor) {
     this.fileSystem = fileSystem;
+    this.executor = executor;
   }
 
   public void start() {
+    executor.submit("Deploy JDBC driver", new Callable<Void>() {
+      public Void call() {
+        deploy();
+        return null;
+      }
+    });
+  }
+
+  private void deploy() {
     File driver = fileSystem.getJdbcDriver();
     File deployedDriver = new File(fileSystem.getDeployDir(), driver.getName());
     if (!deployedDriver.exists() || deployedDriver.length() != driver.length()) {
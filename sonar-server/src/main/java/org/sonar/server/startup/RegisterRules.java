@@ -26,6 +26,8 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,36 +39,46 @@ import org.sonar.api.rules.RuleRepository;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.i18n.RuleI18nManager;
+import org.sonar.core.template.LoadedTemplateDao;
+import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 import org.sonar.server.configuration.ProfilesManager;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public final class RegisterRules {
 
   private static final Logger LOG = LoggerFactory.getLogger(RegisterRules.class);
+  private static final int MAX_TEMPLATE_KEY_LENGTH = 200;
   private final DatabaseSessionFactory sessionFactory;
+  private final LoadedTemplateDao loadedTemplateDao;
   private final ProfilesManager profilesManager;
   private final List<RuleRepository> repositories;
   private final RuleI18nManager ruleI18nManager;
 
-  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleRepository[] repos, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
+  public RegisterRules(DatabaseSessionFactory sessionFactory, LoadedTemplateDao loadedTemplateDao, RuleRepository[] repos,
+                       RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
     this.sessionFactory = sessionFactory;
+    this.loadedTemplateDao = loadedTemplateDao;
     this.profilesManager = profilesManager;
     this.repositories = newArrayList(repos);
     this.ruleI18nManager = ruleI18nManager;
   }
 
-  public RegisterRules(DatabaseSessionFactory sessionFactory, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
-    this(sessionFactory, new RuleRepository[0], ruleI18nManager, profilesManager);
+  public RegisterRules(DatabaseSessionFactory sessionFactory, LoadedTemplateDao loadedTemplateDao, RuleI18nManager ruleI18nManager, ProfilesManager profilesManager) {
+    this(sessionFactory, loadedTemplateDao, new RuleRepository[0], ruleI18nManager, profilesManager);
   }
 
   public void start() {
@@ -74,7 +86,8 @@ public final class RegisterRules {
     DatabaseSession session = sessionFactory.getSession();
     RulesByRepository existingRules = new RulesByRepository(findAllRules(session));
 
-    List<Rule> registeredRules = registerRules(existingRules, profiler, session);
+    List<String> repositoryHashes = newArrayList();
+    Set<Rule> registeredRules = registerRules(existingRules, repositoryHashes, profiler, session);
     disableDeprecatedRules(existingRules, registeredRules, session);
     disableDeprecatedRepositories(existingRules, session);
     disableDeprecatedUserRules(profiler, existingRules, session);
@@ -82,6 +95,7 @@ public final class RegisterRules {
     session.commit();
 
     notifyForRemovedRules(existingRules);
+    saveRepositoryHashes(existingRules, repositoryHashes);
   }
 
   private List<Rule> findAllRules(DatabaseSession session) {
@@ -91,18 +105,18 @@ public final class RegisterRules {
         .getResultList();
   }
 
-  private List<Rule> registerRules(RulesByRepository existingRules, TimeProfiler profiler, DatabaseSession session) {
-    List<Rule> registeredRules = newArrayList();
+  private Set<Rule> registerRules(RulesByRepository existingRules, List<String> repositoryHashes, TimeProfiler profiler, DatabaseSession session) {
+    Set<Rule> registeredRules = newHashSet();
     for (RuleRepository repository : repositories) {
       profiler.start("Register rules [" + repository.getKey() + "/" + StringUtils.defaultString(repository.getLanguage(), "-") + "]");
 
-      registeredRules.addAll(registerRepository(repository, existingRules, session));
+      registeredRules.addAll(registerRepository(repository, existingRules, repositoryHashes, session));
       profiler.stop();
     }
     return registeredRules;
   }
 
-  private List<Rule> registerRepository(RuleRepository repository, RulesByRepository existingRules, DatabaseSession session) {
+  private List<Rule> registerRepository(RuleRepository repository, RulesByRepository existingRules, List<String> repositoryHashes, DatabaseSession session) {
     List<Rule> registeredRules = newArrayList();
     Map<String, Rule> ruleByKey = newHashMap();
     for (Rule rule : repository.createRules()) {
@@ -115,18 +129,114 @@ public final class RegisterRules {
     }
     LOG.debug(ruleByKey.size() + " rules");
 
+    String hash = repository.getKey() + ":" + hash(repository, registeredRules);
+    repositoryHashes.add(hash);
+    if (isUpToDate(hash, ruleByKey, existingRules.get(repository.getKey()))) {
+      LOG.debug("Rules are up-to-date");
+      return registeredRules;
+    }
+
     for (Rule persistedRule : existingRules.get(repository.getKey())) {
       Rule rule = ruleByKey.get(persistedRule.getKey());
       if (rule != null) {
-        updateRule(persistedRule, rule, session);
-        session.saveWithoutFlush(persistedRule);
+        if (hasChanged(persistedRule, rule)) {
+          updateRule(persistedRule, rule, session);
+          session.saveWithoutFlush(persistedRule);
+        }
         ruleByKey.remove(rule.getKey());
       }
     }
     saveNewRules(ruleByKey.values(), session);
+    existingRules.markAsChanged();
     return registeredRules;
   }
 
+  /**
+   * Hash of all the fields copied to database, so that repositories which did not change since
+   * the last registration are not compared rule by rule.
+   */
+  private static String hash(RuleRepository repository, List<Rule> rules) {
+    List<Rule> sortedRules = newArrayList(rules);
+    Collections.sort(sortedRules, new Comparator<Rule>() {
+      public int compare(Rule r1, Rule r2) {
+        return r1.getKey().compareTo(r2.getKey());
+      }
+    });
+    StringBuilder sb = new StringBuilder();
+    sb.append(repository.getKey()).append('|').append(repository.getLanguage());
+    for (Rule rule : sortedRules) {
+      sb.append('\n').append(rule.getKey())
+          .append('|').append(rule.getName())
+          .append('|').append(rule.getConfigKey())
+          .append('|').append(rule.getDescription())
+          .append('|').append(rule.getSeverity())
+          .append('|').append(rule.getCardinality())
+          .append('|').append(rule.getStatus());
+      if (rule.getParams() != null) {
+        for (RuleParam param : rule.getParams()) {
+          sb.append('|').append(param.getKey())
+              .append(':').append(param.getType())
+              .append(':').append(param.getDescription())
+              .append(':').append(param.getDefaultValue());
+        }
+      }
+    }
+    return DigestUtils.md5Hex(sb.toString());
+  }
+
+  /**
+   * The repository hash is not enough as the table RULES could have been updated since last registration,
+   * for example when the plugin was uninstalled. Persisted rules must also be the same than declared rules.
+   */
+  private boolean isUpToDate(String hash, Map<String, Rule> ruleByKey, Collection<Rule> persistedRules) {
+    if (hash.length() > MAX_TEMPLATE_KEY_LENGTH || loadedTemplateDao.countByTypeAndKey(LoadedTemplateDto.RULE_REPOSITORY_TYPE, hash) == 0) {
+      return false;
+    }
+    int enabledRules = 0;
+    for (Rule persistedRule : persistedRules) {
+      if (!Rule.STATUS_REMOVED.equals(persistedRule.getStatus())) {
+        if (!ruleByKey.containsKey(persistedRule.getKey())) {
+          return false;
+        }
+        enabledRules++;
+      }
+    }
+    return enabledRules == ruleByKey.size();
+  }
+
+  private boolean hasChanged(Rule persistedRule, Rule rule) {
+    if (!ObjectUtils.equals(persistedRule.getName(), rule.getName())
+      || !ObjectUtils.equals(persistedRule.getConfigKey(), rule.getConfigKey())
+      || !ObjectUtils.equals(persistedRule.getDescription(), rule.getDescription())
+      || !ObjectUtils.equals(persistedRule.getSeverity(), rule.getSeverity())
+      || !ObjectUtils.equals(persistedRule.getCardinality(), rule.getCardinality())
+      || !ObjectUtils.equals(persistedRule.getStatus(), rule.getStatus())
+      || !ObjectUtils.equals(persistedRule.getLanguage(), rule.getLanguage())) {
+      return true;
+    }
+    return haveParametersChanged(persistedRule, rule);
+  }
+
+  private boolean haveParametersChanged(Rule persistedRule, Rule rule) {
+    int persistedParams = persistedRule.getParams() == null ? 0 : persistedRule.getParams().size();
+    int params = rule.getParams() == null ? 0 : rule.getParams().size();
+    if (persistedParams != params) {
+      return true;
+    }
+    if (rule.getParams() != null) {
+      for (RuleParam param : rule.getParams()) {
+        RuleParam persistedParam = persistedRule.getParam(param.getKey());
+        if (persistedParam == null
+          || !ObjectUtils.equals(persistedParam.getDescription(), param.getDescription())
+          || !ObjectUtils.equals(persistedParam.getType(), param.getType())
+          || !ObjectUtils.equals(persistedParam.getDefaultValue(), param.getDefaultValue())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private void validateRule(Rule rule, String repositoryKey) {
     validateRuleRepositoryName(rule, repositoryKey);
     validateRuleDescription(rule, repositoryKey);
@@ -206,7 +316,7 @@ public final class RegisterRules {
     }
   }
 
-  private void disableDeprecatedRules(RulesByRepository existingRules, List<Rule> registeredRules, DatabaseSession session) {
+  private void disableDeprecatedRules(RulesByRepository existingRules, Set<Rule> registeredRules, DatabaseSession session) {
     for (Rule rule : existingRules.rules()) {
       if (!registeredRules.contains(rule)) {
         disable(rule, existingRules, session);
@@ -255,6 +365,7 @@ public final class RegisterRules {
       rule.setUpdatedAt(new Date());
       session.saveWithoutFlush(rule);
       existingRules.addRuleToRemove(rule);
+      existingRules.markAsChanged();
     }
   }
 
@@ -264,9 +375,21 @@ public final class RegisterRules {
     }
   }
 
+  private void saveRepositoryHashes(RulesByRepository existingRules, List<String> repositoryHashes) {
+    if (existingRules.hasChanged()) {
+      loadedTemplateDao.deleteByType(LoadedTemplateDto.RULE_REPOSITORY_TYPE);
+      for (String hash : repositoryHashes) {
+        if (hash.length() <= MAX_TEMPLATE_KEY_LENGTH) {
+          loadedTemplateDao.insert(new LoadedTemplateDto(hash, LoadedTemplateDto.RULE_REPOSITORY_TYPE));
+        }
+      }
+    }
+  }
+
   static class RulesByRepository {
     Multimap<String, Rule> ruleRepositoryList;
     List<Rule> rulesToRemove;
+    boolean changed = false;
 
     public RulesByRepository() {
       ruleRepositoryList = ArrayListMultimap.create();
@@ -303,6 +426,14 @@ public final class RegisterRules {
     public List<Rule> getRulesToRemove() {
       return rulesToRemove;
     }
+
+    public void markAsChanged() {
+      changed = true;
+    }
+
+    public boolean hasChanged() {
+      return changed;
+    }
   }
 
 }
@@ -70,6 +70,7 @@ import org.sonar.updatecenter.common.UpdateCenter;
 import org.sonar.updatecenter.common.Version;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.util.*;
@@ -384,6 +385,19 @@ public final class JRubyFacade {
     return component;
   }
 
+  /**
+   * Content hash of a static resource of plugin, used to build versioned URLs. Returns null if the resource does not exist.
+   */
+  public String getStaticResourceHash(String pluginKey, String path) {
+    try {
+      ResourceCache.Resource resource = get(ResourceCache.class).getPluginResource(pluginKey, "static/" + path);
+      return resource != null ? resource.getHash() : null;
+    } catch (IOException e) {
+      LoggerFactory.getLogger(getClass()).error("Fail to load static resource " + path + " of plugin " + pluginKey, e);
+      return null;
+    }
+  }
+
   private JRubyI18n getJRubyI18n() {
     if (i18n == null) {
       i18n = get(JRubyI18n.class);
@@ -512,8 +526,8 @@ public final class JRubyFacade {
     }
   }
 
-  public byte[] createDatabaseForDryRun(@Nullable Long projectId) {
-    return get(DryRunDatabaseFactory.class).createDatabaseForDryRun(projectId);
+  public DryRunDatabaseFactory.DryRunDatabase getDatabaseForDryRun(@Nullable Long projectId, @Nullable String knownHash) {
+    return get(DryRunDatabaseFactory.class).getDatabaseForDryRun(projectId, knownHash);
   }
 
   public String getPeriodLabel(int periodIndex) {
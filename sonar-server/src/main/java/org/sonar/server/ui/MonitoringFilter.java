@@ -19,8 +19,11 @@
  */
 package org.sonar.server.ui;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.jvm.BufferPoolMetricSet;
 import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
@@ -28,6 +31,7 @@ import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import com.codahale.metrics.servlet.WebappMetricsFilter;
 import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.MetricRegistryLocator;
+import org.sonar.core.persistence.MonitoredDataSource;
 import org.sonar.server.platform.Platform;
 
 import javax.management.MBeanServer;
@@ -36,11 +40,16 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class MonitoringFilter extends WebappMetricsFilter {
 
@@ -54,7 +63,19 @@ public class MonitoringFilter extends WebappMetricsFilter {
   private static final int NOT_FOUND = 404;
   private static final int SERVER_ERROR = 500;
 
+  static final String ROUTE_PREFIX = "http";
+  static final String OTHER_ROUTE = "other";
+
+  /**
+   * Upper bound of the number of monitored routes, so that crawlers or invalid URLs can not flood the registry
+   */
+  static final int MAX_ROUTES = 200;
+
+  private static final Pattern ROUTE_SEGMENT = Pattern.compile("[a-z][a-z_]*");
+  private static final Pattern FORMAT_SUFFIX = Pattern.compile("\\.(json|xml|csv)$");
+
   private MetricRegistry httpMetricsRegistry;
+  private final ConcurrentMap<String, RouteMetrics> metricsByRoute = new ConcurrentHashMap<String, RouteMetrics>();
 
   public MonitoringFilter() {
     super(REGISTRY_ATTRIBUTE, createMeterNamesByStatusCode(), NAME_PREFIX + "other");
@@ -78,10 +99,14 @@ public class MonitoringFilter extends WebappMetricsFilter {
     return settings.getBoolean("sonar.jmx.monitoring");
   }
 
+  // for test purposes
+  MetricRegistry getRegistry() {
+    return MetricRegistryLocator.INSTANCE.getRegistry();
+  }
 
   public void init(FilterConfig config) throws ServletException {
     if (isJmxMonitoringActive()) {
-      MetricRegistry registry = MetricRegistryLocator.INSTANCE.getRegistry();
+      MetricRegistry registry = getRegistry();
       config.getServletContext().setAttribute(REGISTRY_ATTRIBUTE, registry);
       config.getServletContext().setAttribute("com.codahale.metrics.servlets.MetricsServlet.registry", registry);
       super.init(config);
@@ -91,6 +116,7 @@ public class MonitoringFilter extends WebappMetricsFilter {
       registry.register("jvm-mem", new MemoryUsageGaugeSet());
       registry.register("jvm-thread", new ThreadStatesGaugeSet());
       JmxReporter.forRegistry(registry).inDomain("sonar").build().start();
+      httpMetricsRegistry = registry;
     }
   }
 
@@ -103,9 +129,90 @@ public class MonitoringFilter extends WebappMetricsFilter {
     if (httpMetricsRegistry == null) {
       chain.doFilter(request, response);
     } else {
-      super.doFilter(request, response, chain);
+      RouteMetrics metrics = metricsOf(request);
+      metrics.active.inc();
+      long dbStart = MonitoredDataSource.getCurrentThreadExecutionTime();
+      Timer.Context context = metrics.latency.time();
+      try {
+        super.doFilter(request, response, chain);
+      } finally {
+        context.stop();
+        metrics.active.dec();
+        long dbTime = MonitoredDataSource.getCurrentThreadExecutionTime() - dbStart;
+        metrics.dbTime.update(TimeUnit.NANOSECONDS.toMillis(dbTime));
+      }
     }
+  }
 
+  private RouteMetrics metricsOf(ServletRequest request) {
+    String route = OTHER_ROUTE;
+    if (request instanceof HttpServletRequest) {
+      HttpServletRequest httpRequest = (HttpServletRequest) request;
+      String uri = httpRequest.getRequestURI();
+      String contextPath = httpRequest.getContextPath();
+      if (uri != null && contextPath != null && uri.startsWith(contextPath)) {
+        uri = uri.substring(contextPath.length());
+      }
+      route = normalizeRoute(uri);
+    }
+    RouteMetrics metrics = metricsByRoute.get(route);
+    if (metrics == null) {
+      if (metricsByRoute.size() >= MAX_ROUTES) {
+        route = OTHER_ROUTE;
+      }
+      metrics = new RouteMetrics(httpMetricsRegistry, route);
+      RouteMetrics previous = metricsByRoute.putIfAbsent(route, metrics);
+      if (previous != null) {
+        metrics = previous;
+      }
+    }
+    return metrics;
   }
 
+  /**
+   * Removes identifiers from the path, so that all the requests served by the same controller action,
+   * web service action or servlet share the same metrics. For example "/api/issues/search.json?componentRoots=foo"
+   * becomes "api.issues.search", "/api/resources?resource=foo" becomes "api.resources"
+   * and "/dashboard/index/123" becomes "dashboard.index".
+   */
+  static String normalizeRoute(String path) {
+    if (path == null) {
+      return OTHER_ROUTE;
+    }
+    String[] segments = path.split("/");
+    StringBuilder route = new StringBuilder();
+    int count = 0;
+    int maxCount = 2;
+    for (String segment : segments) {
+      if (segment.length() == 0) {
+        continue;
+      }
+      segment = FORMAT_SUFFIX.matcher(segment).replaceFirst("");
+      if (count == maxCount || !ROUTE_SEGMENT.matcher(segment).matches()) {
+        break;
+      }
+      if (count == 0 && "api".equals(segment)) {
+        // web services are identified by the controller and the action
+        maxCount = 3;
+      }
+      if (count > 0) {
+        route.append('.');
+      }
+      route.append(segment);
+      count++;
+    }
+    return count == 0 ? "root" : route.toString();
+  }
+
+  private static final class RouteMetrics {
+    private final Timer latency;
+    private final Counter active;
+    private final Histogram dbTime;
+
+    private RouteMetrics(MetricRegistry registry, String route) {
+      latency = registry.timer(MetricRegistry.name(ROUTE_PREFIX, route, "requests"));
+      active = registry.counter(MetricRegistry.name(ROUTE_PREFIX, route, "activeRequests"));
+      dbTime = registry.histogram(MetricRegistry.name(ROUTE_PREFIX, route, "dbTimeInMs"));
+    }
+  }
 }
@@ -25,11 +25,27 @@ class BatchBootstrapController < Api::ApiController
   skip_before_filter :check_authentication, :only => 'index'
 
   # GET /batch_bootstrap/db?project=<key or id>
+  # The MD5 hash of the database is returned as ETag. The database is not sent again if the
+  # request header If-None-Match contains the same hash (since 3.6). The server keeps the last
+  # database of each project, so the hash does not change while data is unchanged.
   def db
     project = load_project()
-    db_content = java_facade.createDatabaseForDryRun(project ? project.id : nil)
+    known_hash = request.env['HTTP_IF_NONE_MATCH'].to_s.delete('"')
+    database = java_facade.getDatabaseForDryRun(project ? project.id : nil, known_hash.blank? ? nil : known_hash)
 
-    send_data String.from_java_bytes(db_content)
+    response.headers['ETag'] = "\"#{database.getHash()}\""
+    if database.getContent().nil?
+      head :not_modified
+      return
+    end
+
+    db_content = String.from_java_bytes(database.getContent())
+    if request.env['HTTP_ACCEPT_ENCODING'].to_s.include?('gzip')
+      response.headers['Content-Encoding'] = 'gzip'
+      send_data ActiveSupport::Gzip.compress(db_content)
+    else
+      send_data db_content
+    end
   end
 
   # GET /batch_bootstrap/properties?[project=<key or id>]
@@ -109,7 +109,10 @@ module ApplicationHelper
   #   url_for_static(:plugin => 'myplugin', :path => 'image.png')
   def url_for_static(options={})
     if options[:plugin]
-      "#{ApplicationController.root_context}/static/#{options[:plugin]}/#{options[:path]}"
+      url = "#{ApplicationController.root_context}/static/#{options[:plugin]}/#{options[:path]}"
+      # versioned URL, so that the resource is cached by browsers until its content changes
+      hash = Api::Utils.java_facade.getStaticResourceHash(options[:plugin], options[:path]) unless options[:path].include?('?')
+      hash ? "#{url}?v=#{hash}" : url
     else
       "#{ApplicationController.root_context}/#{options[:path]}"
     end
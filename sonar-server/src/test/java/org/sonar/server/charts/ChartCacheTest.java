@@ -0,0 +1,117 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.charts;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ChartCacheTest {
+
+  @Test
+  public void key_should_not_depend_on_parameter_order() {
+    Map<String, String> params = ImmutableMap.of("w", "100", "h", "200");
+    Map<String, String> sameParams = ImmutableMap.of("h", "200", "w", "100");
+
+    assertThat(ChartCache.key("pie", params)).isEqualTo(ChartCache.key("pie", sameParams));
+    assertThat(ChartCache.key("pie", params)).isNotEqualTo(ChartCache.key("bar", params));
+  }
+
+  @Test
+  public void should_cache_images() {
+    ChartCache cache = new ChartCache(ChartCache.DEFAULT_MAX_BYTES, new MetricRegistry());
+    assertThat(cache.get("pie")).isNull();
+
+    ChartCache.Entry entry = cache.put("pie", new byte[] {1, 2, 3}, ChartCache.NO_EXPIRATION);
+    assertThat(cache.get("pie")).isSameAs(entry);
+    assertThat(entry.getEtag()).startsWith("\"").endsWith("\"");
+    assertThat(entry.getLastModified() % 1000L).isEqualTo(0L);
+
+    assertThat(cache.getHits()).isEqualTo(1L);
+    assertThat(cache.getMisses()).isEqualTo(1L);
+    assertThat(cache.getHitRate()).isEqualTo(0.5);
+    assertThat(cache.getSizeInBytes()).isEqualTo(3L);
+  }
+
+  @Test
+  public void should_evict_least_recently_used_images() {
+    ChartCache cache = new ChartCache(10L, new MetricRegistry());
+    cache.put("first", new byte[4], ChartCache.NO_EXPIRATION);
+    cache.put("second", new byte[4], ChartCache.NO_EXPIRATION);
+    cache.get("first");
+    cache.put("third", new byte[4], ChartCache.NO_EXPIRATION);
+
+    assertThat(cache.get("first")).isNotNull();
+    assertThat(cache.get("second")).isNull();
+    assertThat(cache.get("third")).isNotNull();
+    assertThat(cache.getEvictions()).isEqualTo(1L);
+    assertThat(cache.getSizeInBytes()).isEqualTo(8L);
+  }
+
+  @Test
+  public void should_not_cache_images_bigger_than_max_size() {
+    ChartCache cache = new ChartCache(10L, new MetricRegistry());
+    ChartCache.Entry entry = cache.put("big", new byte[20], ChartCache.NO_EXPIRATION);
+
+    assertThat(entry.getPng()).hasSize(20);
+    assertThat(cache.getSize()).isEqualTo(0);
+    assertThat(cache.getSizeInBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void should_expire_images() {
+    ChartCache cache = new ChartCache(ChartCache.DEFAULT_MAX_BYTES, new MetricRegistry());
+    cache.put("expired", new byte[4], 0L);
+
+    assertThat(cache.get("expired")).isNull();
+    assertThat(cache.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_record_generation_time() {
+    ChartCache cache = new ChartCache(ChartCache.DEFAULT_MAX_BYTES, new MetricRegistry());
+    cache.recordGeneration("pie", 10L);
+    cache.recordGeneration("pie", 20L);
+
+    assertThat(cache.getGenerations()).isEqualTo(2L);
+    assertThat(cache.getAverageGenerationTimeMs()).isEqualTo(15L);
+  }
+
+  @Test
+  public void should_publish_statistics() {
+    MetricRegistry registry = new MetricRegistry();
+    ChartCache cache = new ChartCache(ChartCache.DEFAULT_MAX_BYTES, registry);
+    cache.get("pie");
+    cache.put("pie", new byte[3], ChartCache.NO_EXPIRATION);
+    cache.get("pie");
+    cache.recordGeneration("pie", 10L);
+
+    assertThat(registry.counter(MetricRegistry.name(ChartCache.class, "hits")).getCount()).isEqualTo(1L);
+    assertThat(registry.counter(MetricRegistry.name(ChartCache.class, "misses")).getCount()).isEqualTo(1L);
+    assertThat(registry.timer(MetricRegistry.name(ChartCache.class, "generations")).getCount()).isEqualTo(1L);
+    assertThat(registry.getGauges().get(MetricRegistry.name(ChartCache.class, "hitRatio")).getValue()).isEqualTo(0.5);
+    assertThat(registry.getGauges().get(MetricRegistry.name(ChartCache.class, "sizeInBytes")).getValue()).isEqualTo(3L);
+    assertThat(registry.getGauges().get(MetricRegistry.name(ChartCache.class, "size")).getValue()).isEqualTo(1);
+  }
+}
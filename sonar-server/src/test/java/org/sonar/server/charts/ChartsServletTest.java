@@ -0,0 +1,211 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.charts;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.charts.Chart;
+import org.sonar.api.charts.ChartParameters;
+import org.sonar.server.charts.deprecated.BaseChartWeb;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChartsServletTest {
+
+  ChartCache cache = new ChartCache(ChartCache.DEFAULT_MAX_BYTES, new MetricRegistry());
+  CountingChart pluginChart = new CountingChart();
+  Long lastAnalysisId = 1L;
+  ChartsServlet servlet;
+
+  @Before
+  public void setUp() {
+    servlet = new ChartsServlet() {
+      @Override
+      ChartCache getCache() {
+        return cache;
+      }
+
+      @Override
+      ChartFactory getChartFactory() {
+        return new ChartFactory(new Chart[] {pluginChart});
+      }
+
+      @Override
+      Long getLastAnalysisId() {
+        return lastAnalysisId;
+      }
+    };
+  }
+
+  @Test
+  public void should_generate_deprecated_chart_only_once() throws Exception {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    HttpServletResponse response = newResponse(png);
+
+    servlet.doGet(newPieChartRequest(), response);
+
+    assertThat(png.size()).isGreaterThan(0);
+    verify(response).setContentType("image/png");
+    verify(response).setHeader(eq("ETag"), anyString());
+    verify(response).setDateHeader(eq("Last-Modified"), anyLong());
+    assertThat(cache.getGenerations()).isEqualTo(1L);
+
+    ByteArrayOutputStream cachedPng = new ByteArrayOutputStream();
+    servlet.doGet(newPieChartRequest(), newResponse(cachedPng));
+
+    assertThat(cachedPng.toByteArray()).isEqualTo(png.toByteArray());
+    assertThat(cache.getGenerations()).isEqualTo(1L);
+    assertThat(cache.getHits()).isEqualTo(1L);
+  }
+
+  @Test
+  public void should_return_not_modified_if_etag_matches() throws Exception {
+    String etag = requestEtag();
+
+    HttpServletRequest request = newPieChartRequest();
+    when(request.getHeader("If-None-Match")).thenReturn(etag);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response).setHeader("ETag", etag);
+    verify(response, never()).getOutputStream();
+    assertThat(cache.getGenerations()).isEqualTo(1L);
+  }
+
+  @Test
+  public void should_return_image_if_etag_does_not_match() throws Exception {
+    requestEtag();
+
+    HttpServletRequest request = newPieChartRequest();
+    when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    HttpServletResponse response = newResponse(png);
+    servlet.doGet(request, response);
+
+    verify(response, never()).setStatus(anyInt());
+    assertThat(png.size()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_return_not_modified_if_not_modified_since() throws Exception {
+    requestEtag();
+
+    HttpServletRequest request = newPieChartRequest();
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(System.currentTimeMillis());
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void should_generate_plugin_chart_only_once_per_analysis() throws Exception {
+    servlet.doGet(newPluginChartRequest(), newResponse(new ByteArrayOutputStream()));
+    servlet.doGet(newPluginChartRequest(), newResponse(new ByteArrayOutputStream()));
+    assertThat(pluginChart.generations).isEqualTo(1);
+
+    lastAnalysisId = 2L;
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    servlet.doGet(newPluginChartRequest(), newResponse(png));
+    assertThat(pluginChart.generations).isEqualTo(2);
+    assertThat(png.size()).isGreaterThan(0);
+  }
+
+  @Test
+  public void should_cache_plugin_chart_if_nothing_is_analyzed() throws Exception {
+    lastAnalysisId = null;
+    servlet.doGet(newPluginChartRequest(), newResponse(new ByteArrayOutputStream()));
+    servlet.doGet(newPluginChartRequest(), newResponse(new ByteArrayOutputStream()));
+    assertThat(pluginChart.generations).isEqualTo(1);
+  }
+
+  private String requestEtag() throws IOException, ServletException {
+    HttpServletResponse response = newResponse(new ByteArrayOutputStream());
+    servlet.doGet(newPieChartRequest(), response);
+    ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+    verify(response).setHeader(eq("ETag"), etag.capture());
+    return etag.getValue();
+  }
+
+  private static HttpServletRequest newPieChartRequest() {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter(BaseChartWeb.CHART_PARAM_TYPE)).thenReturn(BaseChartWeb.PIE_CHART);
+    when(request.getParameter(BaseChartWeb.CHART_PARAM_VALUES)).thenReturn("10,20,30");
+    when(request.getParameter(BaseChartWeb.CHART_PARAM_DIMENSIONS)).thenReturn("50x50");
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+    return request;
+  }
+
+  private static HttpServletRequest newPluginChartRequest() {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameterNames()).thenReturn(Collections.enumeration(Arrays.asList("ck", "v")));
+    when(request.getParameter("ck")).thenReturn("counting");
+    when(request.getParameter("v")).thenReturn("10");
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+    return request;
+  }
+
+  private static HttpServletResponse newResponse(final ByteArrayOutputStream output) throws IOException {
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        output.write(b);
+      }
+    });
+    return response;
+  }
+
+  private static class CountingChart implements Chart {
+    int generations = 0;
+
+    public String getKey() {
+      return "counting";
+    }
+
+    public BufferedImage generateImage(ChartParameters params) {
+      generations++;
+      return new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+    }
+  }
+}
@@ -19,7 +19,11 @@
  */
 package org.sonar.server.notifications;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
@@ -28,15 +32,23 @@ import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.core.notification.NotificationQueueElement;
+import org.sonar.jpa.session.DatabaseSessionFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -46,10 +58,11 @@ public class NotificationServiceTest {
   private static String ASSIGNEE_SIMON = "simon";
 
   private final DefaultNotificationManager manager = mock(DefaultNotificationManager.class);
+  private final DatabaseSessionFactory sessionFactory = mock(DatabaseSessionFactory.class);
   private final NotificationQueueElement queueElement = mock(NotificationQueueElement.class);
   private final Notification notification = mock(Notification.class);
-  private final NotificationChannel emailChannel = mock(NotificationChannel.class);
-  private final NotificationChannel gtalkChannel = mock(NotificationChannel.class);
+  private final NotificationChannel emailChannel = spy(new FakeChannel());
+  private final NotificationChannel gtalkChannel = spy(new FakeChannel());
   private final NotificationDispatcher commentOnReviewAssignedToMe = mock(NotificationDispatcher.class);
   private final NotificationDispatcher commentOnReviewCreatedByMe = mock(NotificationDispatcher.class);
 
@@ -61,11 +74,11 @@ public class NotificationServiceTest {
     when(commentOnReviewAssignedToMe.getKey()).thenReturn("comment on review assigned to me");
     when(commentOnReviewCreatedByMe.getKey()).thenReturn("comment on review created by me");
     when(queueElement.getNotification()).thenReturn(notification);
-    when(manager.getFromQueue()).thenReturn(queueElement).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(queueElement)).thenReturn(Collections.<NotificationQueueElement>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
-    service = new NotificationService(settings, manager,
+    service = new NotificationService(settings, manager, sessionFactory,
         new NotificationDispatcher[] {commentOnReviewAssignedToMe, commentOnReviewCreatedByMe});
   }
 
@@ -176,6 +189,67 @@ public class NotificationServiceTest {
     verify(gtalkChannel, never()).deliver(any(Notification.class), anyString());
   }
 
+  @Test
+  public void shouldDeliverBatchOfNotificationsAtOnce() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    NotificationQueueElement otherQueueElement = mock(NotificationQueueElement.class);
+    Notification otherNotification = mock(Notification.class);
+    when(otherQueueElement.getNotification()).thenReturn(otherNotification);
+    when(manager.getFromQueue(NotificationService.BATCH_SIZE)).thenReturn(Arrays.asList(queueElement, otherQueueElement))
+      .thenReturn(Collections.<NotificationQueueElement>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    service.stop();
+
+    ArgumentCaptor<Multimap> batch = ArgumentCaptor.forClass(Multimap.class);
+    verify(emailChannel, times(1)).deliverAll(batch.capture());
+    assertThat(Lists.newArrayList(batch.getValue().get(ASSIGNEE_SIMON))).containsExactly(notification, otherNotification);
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, never()).deliverAll(any(Multimap.class));
+  }
+
+  @Test
+  public void shouldCloseDatabaseSessionsOfPoolThreads() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    service.stop();
+
+    // one dispatch task and one delivery task
+    verify(sessionFactory, times(2)).clear();
+  }
+
+  @Test
+  public void shouldPublishMetrics() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    when(queueElement.getCreatedAt()).thenReturn(new Date(System.currentTimeMillis() - 5000L));
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
+    final MetricRegistry registry = new MetricRegistry();
+    service = new NotificationService(new Settings().setProperty("sonar.notifications.delay", 1L), manager, sessionFactory,
+        new NotificationDispatcher[] {commentOnReviewAssignedToMe}) {
+      @Override
+      MetricRegistry getRegistry() {
+        return registry;
+      }
+    };
+    String prefix = NotificationService.class.getName();
+    assertThat(registry.getGauges().get(prefix + ".queueSize").getValue()).isEqualTo(0L);
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    service.stop();
+
+    assertThat(registry.getCounters().get(prefix + ".processed").getCount()).isEqualTo(1L);
+    assertThat(registry.getTimers().get(prefix + ".batches").getCount()).isEqualTo(1L);
+    assertThat(registry.getHistograms().get(prefix + ".delayInMs").getCount()).isEqualTo(1L);
+    assertThat(registry.getHistograms().get(prefix + ".delayInMs").getSnapshot().getMax()).isGreaterThanOrEqualTo(5000L);
+    assertThat(registry.getGauges().get(prefix + ".queueSize").getValue()).isEqualTo(0L);
+  }
+
   @Test
   public void shouldReturnDispatcherList() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
@@ -187,7 +261,7 @@ public class NotificationServiceTest {
   public void shouldReturnNoDispatcher() {
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
-    service = new NotificationService(settings, manager);
+    service = new NotificationService(settings, manager, sessionFactory);
     assertThat(service.getDispatchers()).hasSize(0);
   }
 
@@ -205,4 +279,10 @@ public class NotificationServiceTest {
       }
     };
   }
+
+  static class FakeChannel extends NotificationChannel {
+    @Override
+    public void deliver(Notification notification, String userlogin) {
+    }
+  }
 }
@@ -0,0 +1,134 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StartupTaskExecutorTest {
+
+  MetricRegistry registry = new MetricRegistry();
+
+  @Test
+  public void should_execute_tasks_concurrently() throws Exception {
+    StartupTaskExecutor executor = new StartupTaskExecutor(2, registry);
+    final CountDownLatch latch = new CountDownLatch(2);
+    Callable<Void> task = new Callable<Void>() {
+      public Void call() throws Exception {
+        latch.countDown();
+        // fails if the other task is not executed at the same time
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        return null;
+      }
+    };
+    executor.submit("first", task);
+    executor.submit("second", task);
+    executor.awaitTermination();
+
+    assertThat(executor.getDurations()).hasSize(2);
+    assertThat(executor.getDurations().get("first")).isGreaterThanOrEqualTo(0L);
+    assertThat(executor.getWaitingTime()).isGreaterThanOrEqualTo(0L);
+  }
+
+  @Test
+  public void should_publish_metrics() throws Exception {
+    StartupTaskExecutor executor = new StartupTaskExecutor(2, registry);
+    executor.submit("first", new Callable<Void>() {
+      public Void call() throws Exception {
+        Thread.sleep(50L);
+        return null;
+      }
+    });
+    executor.awaitTermination();
+
+    assertThat(registry.timer(MetricRegistry.name(StartupTaskExecutor.class, "tasks", "first")).getCount()).isEqualTo(1L);
+    Gauge waitingTime = registry.getGauges().get(MetricRegistry.name(StartupTaskExecutor.class, "waitingTimeMs"));
+    assertThat(waitingTime.getValue()).isEqualTo(executor.getWaitingTime());
+    assertThat(executor.getWaitingTime()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void should_replace_metrics_of_previous_instance() {
+    new StartupTaskExecutor(2, registry).stop();
+    StartupTaskExecutor executor = new StartupTaskExecutor(2, registry);
+    executor.awaitTermination();
+
+    assertThat(registry.getGauges()).hasSize(1);
+  }
+
+  @Test
+  public void should_execute_tasks_in_calling_thread() {
+    StartupTaskExecutor executor = StartupTaskExecutor.sameThread();
+    final AtomicBoolean executed = new AtomicBoolean(false);
+    executor.submit("task", new Callable<Void>() {
+      public Void call() {
+        executed.set(true);
+        return null;
+      }
+    });
+
+    assertThat(executed.get()).isTrue();
+    assertThat(executor.getDurations()).hasSize(1);
+    executor.awaitTermination();
+  }
+
+  @Test
+  public void should_propagate_failure() {
+    StartupTaskExecutor executor = new StartupTaskExecutor(2, registry);
+    executor.submit("task", new Callable<Void>() {
+      public Void call() {
+        throw new IllegalStateException("Fail");
+      }
+    });
+    try {
+      executor.awaitTermination();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail");
+    }
+  }
+
+  @Test
+  public void should_wrap_checked_exception() {
+    StartupTaskExecutor executor = new StartupTaskExecutor(2, registry);
+    executor.submit("task", new Callable<Void>() {
+      public Void call() throws IOException {
+        throw new IOException("Fail");
+      }
+    });
+    try {
+      executor.awaitTermination();
+      fail();
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).contains("task");
+      assertThat(e.getCause()).isInstanceOf(IOException.class);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.plugins;
+
+import com.google.common.base.Strings;
+import com.google.common.io.InputSupplier;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceCacheTest {
+
+  ResourceCache cache = new ResourceCache(mock(DefaultServerPluginRepository.class));
+
+  @Test
+  public void should_keep_small_text_resources_in_memory_and_gzipped() throws IOException {
+    String css = Strings.repeat(".foo { color: red; }\n", 100);
+    ResourceCache.Resource resource = cache.get("style.css", "text/css", supplier(css.getBytes()));
+
+    assertThat(resource.getHash()).isEqualTo(DigestUtils.md5Hex(css.getBytes()));
+    assertThat(resource.isInMemory()).isTrue();
+    assertThat(resource.isGzipped()).isTrue();
+    assertThat(cache.getSizeInBytes()).isEqualTo(css.length());
+  }
+
+  @Test
+  public void should_not_gzip_binary_resources() throws IOException {
+    ResourceCache.Resource resource = cache.get("lib.jar", "application/java-archive", supplier(new byte[100]));
+
+    assertThat(resource.isInMemory()).isTrue();
+    assertThat(resource.isGzipped()).isFalse();
+  }
+
+  @Test
+  public void should_only_compute_hash_of_big_resources() throws IOException {
+    byte[] content = new byte[ResourceCache.MAX_CACHED_RESOURCE_BYTES + 10];
+    content[content.length - 1] = 42;
+    ResourceCache.Resource resource = cache.get("big.jar", "application/java-archive", supplier(content));
+
+    assertThat(resource.getHash()).isEqualTo(DigestUtils.md5Hex(content));
+    assertThat(resource.isInMemory()).isFalse();
+    assertThat(cache.getSizeInBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_bound_memory() throws IOException {
+    cache = new ResourceCache(mock(DefaultServerPluginRepository.class), 150);
+
+    assertThat(cache.get("first", "text/plain", supplier(new byte[100])).isInMemory()).isTrue();
+    assertThat(cache.get("second", "text/plain", supplier(new byte[100])).isInMemory()).isFalse();
+    assertThat(cache.getSizeInBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void should_load_resource_only_once() throws IOException {
+    CountingSupplier supplier = new CountingSupplier("foo".getBytes());
+
+    ResourceCache.Resource first = cache.get("foo.txt", "text/plain", supplier);
+    ResourceCache.Resource second = cache.get("foo.txt", "text/plain", supplier);
+
+    assertThat(second).isSameAs(first);
+    assertThat(supplier.calls).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_cache_missing_resources() throws IOException {
+    CountingSupplier supplier = new CountingSupplier(null);
+
+    assertThat(cache.get("missing.txt", "text/plain", supplier)).isNull();
+    assertThat(cache.get("missing.txt", "text/plain", supplier)).isNull();
+    assertThat(supplier.calls).isEqualTo(2);
+  }
+
+  @Test
+  public void should_return_null_if_plugin_does_not_exist() throws IOException {
+    assertThat(cache.getPluginResource("unknown", "static/foo.js")).isNull();
+  }
+
+  @Test
+  public void should_guess_content_type_of_plugin_resource() throws IOException {
+    DefaultServerPluginRepository pluginRepository = mock(DefaultServerPluginRepository.class);
+    ClassLoader classLoader = mock(ClassLoader.class);
+    when(classLoader.getResourceAsStream("static/sqale/sqale.css")).thenReturn(new ByteArrayInputStream(".foo {}".getBytes()));
+    when(pluginRepository.getClassLoader("sqale")).thenReturn(classLoader);
+    cache = new ResourceCache(pluginRepository);
+
+    ResourceCache.Resource resource = cache.getPluginResource("sqale", "static/sqale/sqale.css");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    mockOutput(response);
+    ResourceCache.write(resource, mock(HttpServletRequest.class), response);
+
+    assertThat(resource.getContentType()).isEqualTo("text/css");
+    verify(response).setContentType("text/css");
+  }
+
+  @Test
+  public void should_write_resource_with_validators() throws IOException {
+    ResourceCache.Resource resource = cache.get("foo.txt", "text/plain", supplier("foo".getBytes()));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream output = mockOutput(response);
+
+    ResourceCache.write(resource, request, response);
+
+    verify(response).setHeader("ETag", "\"" + resource.getHash() + "\"");
+    verify(response).setHeader("Cache-Control", "public, max-age=0, must-revalidate");
+    verify(response).setContentType("text/plain");
+    assertThat(output.toString()).isEqualTo("foo");
+  }
+
+  @Test
+  public void should_cache_versioned_resources_for_a_long_time() throws IOException {
+    ResourceCache.Resource resource = cache.get("foo.txt", "text/plain", supplier("foo".getBytes()));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getParameter(ResourceCache.VERSION_PARAMETER)).thenReturn(resource.getHash());
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    mockOutput(response);
+
+    ResourceCache.write(resource, request, response);
+
+    verify(response).setHeader("Cache-Control", "public, max-age=" + ResourceCache.ONE_YEAR_IN_SECONDS);
+  }
+
+  @Test
+  public void should_not_send_content_if_not_modified() throws IOException {
+    ResourceCache.Resource resource = cache.get("foo.txt", "text/plain", supplier("foo".getBytes()));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("If-None-Match")).thenReturn("\"other\", \"" + resource.getHash() + "\"");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    ResourceCache.write(resource, request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void should_send_precompressed_content_if_accepted() throws IOException {
+    String css = Strings.repeat(".foo { color: red; }\n", 100);
+    ResourceCache.Resource resource = cache.get("style.css", "text/css", supplier(css.getBytes()));
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream output = mockOutput(response);
+
+    ResourceCache.write(resource, request, response);
+
+    verify(response).setHeader("Content-Encoding", "gzip");
+    verify(response).setHeader("ETag", "\"" + resource.getHash() + "-gzip\"");
+    verify(response).setHeader("Vary", "Accept-Encoding");
+    assertThat(output.size()).isGreaterThan(0).isLessThan(css.length());
+  }
+
+  @Test
+  public void should_stream_big_resources() throws IOException {
+    byte[] content = new byte[ResourceCache.MAX_CACHED_RESOURCE_BYTES + 10];
+    ResourceCache.Resource resource = cache.get("big.jar", "application/java-archive", supplier(content));
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayOutputStream output = mockOutput(response);
+
+    ResourceCache.write(resource, mock(HttpServletRequest.class), response);
+
+    assertThat(output.size()).isEqualTo(content.length);
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+  }
+
+  @Test
+  public void should_detect_compressible_content_types() {
+    assertThat(ResourceCache.isCompressible("text/css")).isTrue();
+    assertThat(ResourceCache.isCompressible("application/javascript")).isTrue();
+    assertThat(ResourceCache.isCompressible("application/json")).isTrue();
+    assertThat(ResourceCache.isCompressible("image/png")).isFalse();
+    assertThat(ResourceCache.isCompressible(null)).isFalse();
+  }
+
+  private static ByteArrayOutputStream mockOutput(HttpServletResponse response) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        output.write(b);
+      }
+    });
+    return output;
+  }
+
+  private static InputSupplier<InputStream> supplier(byte[] content) {
+    return new CountingSupplier(content);
+  }
+
+  private static class CountingSupplier implements InputSupplier<InputStream> {
+    private final byte[] content;
+    private int calls = 0;
+
+    CountingSupplier(byte[] content) {
+      this.content = content;
+    }
+
+    public InputStream getInput() {
+      calls++;
+      return content == null ? null : new ByteArrayInputStream(content);
+    }
+  }
+}
@@ -23,11 +23,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class StaticResourcesServletTest {
@@ -68,11 +66,4 @@ public class StaticResourcesServletTest {
     when(request.getRequestURI()).thenReturn("/static/myplugin/");
     assertThat(servlet.getResourcePath(request)).isEqualTo("static/");
   }
-
-  @Test
-  public void completeMimeType() {
-    HttpServletResponse response = mock(HttpServletResponse.class);
-    servlet.completeContentType(response, "static/sqale/sqale.css");
-    verify(response).setContentType("text/css");
-  }
 }
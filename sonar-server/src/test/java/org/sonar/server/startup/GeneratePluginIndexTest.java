@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.sonar.api.platform.PluginMetadata;
 import org.sonar.core.plugins.DefaultPluginMetadata;
 import org.sonar.server.platform.DefaultServerFileSystem;
+import org.sonar.server.platform.StartupTaskExecutor;
 import org.sonar.server.plugins.DefaultServerPluginRepository;
 
 import java.io.File;
@@ -57,7 +58,7 @@ public class GeneratePluginIndexTest {
     PluginMetadata checkstyle = newMetadata("checkstyle");
     when(repository.getMetadata()).thenReturn(Arrays.asList(sqale, checkstyle));
 
-    new GeneratePluginIndex(fileSystem, repository).start();
+    new GeneratePluginIndex(fileSystem, repository, StartupTaskExecutor.sameThread()).start();
 
     List<String> lines = FileUtils.readLines(index);
     assertThat(lines.size(), Is.is(2));
@@ -73,7 +74,7 @@ public class GeneratePluginIndexTest {
     when(repository.getMetadata()).thenReturn(Arrays.asList(sqale, checkstyle));
     when(repository.isDisabled("checkstyle")).thenReturn(true);
 
-    new GeneratePluginIndex(fileSystem, repository).start();
+    new GeneratePluginIndex(fileSystem, repository, StartupTaskExecutor.sameThread()).start();
 
     List<String> lines = FileUtils.readLines(index);
     assertThat(lines.size(), Is.is(1));
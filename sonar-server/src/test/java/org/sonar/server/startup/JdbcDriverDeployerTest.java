@@ -22,6 +22,7 @@ package org.sonar.server.startup;
 import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.sonar.server.platform.DefaultServerFileSystem;
+import org.sonar.server.platform.StartupTaskExecutor;
 import org.sonar.test.TestUtils;
 
 import java.io.File;
@@ -46,7 +47,7 @@ public class JdbcDriverDeployerTest {
     assertThat(deployedFile).doesNotExist();
     when(fs.getDeployedJdbcDriverIndex()).thenReturn(deployedIndex);
 
-    JdbcDriverDeployer deployer = new JdbcDriverDeployer(fs);
+    JdbcDriverDeployer deployer = new JdbcDriverDeployer(fs, StartupTaskExecutor.sameThread());
     deployer.start();
 
     assertThat(deployedIndex).exists();
@@ -22,6 +22,7 @@ package org.sonar.server.startup;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.ActiveRuleParam;
 import org.sonar.api.rules.Rule;
@@ -30,11 +31,14 @@ import org.sonar.api.rules.RulePriority;
 import org.sonar.api.rules.RuleRepository;
 import org.sonar.api.utils.SonarException;
 import org.sonar.core.i18n.RuleI18nManager;
+import org.sonar.core.template.LoadedTemplateDao;
+import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 import org.sonar.server.configuration.ProfilesManager;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -50,7 +54,11 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -58,11 +66,13 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
 
   private RegisterRules task;
   private ProfilesManager profilesManager;
+  private LoadedTemplateDao loadedTemplateDao;
 
   @Before
   public void init() {
     profilesManager = mock(ProfilesManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new FakeRepository()}, null, profilesManager);
+    loadedTemplateDao = mock(LoadedTemplateDao.class);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new FakeRepository()}, null, profilesManager);
   }
 
   @Test
@@ -185,6 +195,53 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
     assertThat(rule2.getUpdatedAt(), notNullValue());
   }
 
+  @Test
+  public void should_not_update_rules_of_unchanged_repository() {
+    setupData("updadeRuleFields");
+    when(loadedTemplateDao.countByTypeAndKey(eq(LoadedTemplateDto.RULE_REPOSITORY_TYPE), startsWith("fake:"))).thenReturn(1);
+    task.start();
+
+    Rule rule1 = getSession().getSingleResult(Rule.class, "id", 1);
+    assertThat(rule1.getName(), is("old name"));
+    assertThat(rule1.getUpdatedAt(), nullValue());
+    verify(loadedTemplateDao, never()).deleteByType(anyString());
+  }
+
+  @Test
+  public void should_update_rules_of_unchanged_repository_if_rules_have_been_removed() {
+    setupData("disableDeprecatedRules");
+    when(loadedTemplateDao.countByTypeAndKey(eq(LoadedTemplateDto.RULE_REPOSITORY_TYPE), startsWith("fake:"))).thenReturn(1);
+    task.start();
+
+    // persisted rules are not the declared ones, so the repository is registered again
+    assertThat(getSession().getResults(Rule.class, "pluginName", "fake").size(), is(3));
+    assertThat(getSession().getSingleResult(Rule.class, "id", 2).isEnabled(), is(false));
+  }
+
+  @Test
+  public void should_save_repository_hashes() {
+    setupData("shared");
+    task.start();
+
+    verify(loadedTemplateDao).deleteByType(LoadedTemplateDto.RULE_REPOSITORY_TYPE);
+    ArgumentCaptor<LoadedTemplateDto> template = ArgumentCaptor.forClass(LoadedTemplateDto.class);
+    verify(loadedTemplateDao, times(1)).insert(template.capture());
+    assertThat(template.getValue().getType(), is(LoadedTemplateDto.RULE_REPOSITORY_TYPE));
+    assertThat(template.getValue().getKey().matches("fake:[0-9a-f]{32}"), is(true));
+  }
+
+  @Test
+  public void should_not_update_unchanged_rules() {
+    setupData("updadeRuleFields");
+    task.start();
+    Rule rule = getSession().getSingleResult(Rule.class, "id", 1);
+    Date updatedAt = rule.getUpdatedAt();
+    getSession().commit();
+
+    task.start();
+    assertThat(getSession().getSingleResult(Rule.class, "id", 1).getUpdatedAt(), is(updatedAt));
+  }
+
   @Test
   public void should_update_rule_parameters() {
     setupData("updateRuleParameters");
@@ -239,7 +296,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
 
   @Test
   public void volume_testing() {
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new VolumeRepository()}, null, profilesManager);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new VolumeRepository()}, null, profilesManager);
     setupData("shared");
     task.start();
 
@@ -251,7 +308,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   @Test
   public void should_fail_with_rule_without_name() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -273,7 +330,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   public void should_fail_with_rule_with_blank_name() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
     when(ruleI18nManager.getName(anyString(), anyString(), any(Locale.class))).thenReturn("");
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new RuleWithoutNameRepository()}, ruleI18nManager, profilesManager);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -290,7 +347,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   public void should_fail_with_rule_without_description() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
     when(ruleI18nManager.getName(anyString(), anyString(), any(Locale.class))).thenReturn("Name");
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
     setupData("shared");
 
     // the rule has no name, it should fail
@@ -311,7 +368,7 @@ public class RegisterRulesTest extends AbstractDbUnitTestCase {
   @Test
   public void should_fail_with_rule_without_name_in_bundle() throws Exception {
     RuleI18nManager ruleI18nManager = mock(RuleI18nManager.class);
-    task = new RegisterRules(getSessionFactory(), new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
+    task = new RegisterRules(getSessionFactory(), loadedTemplateDao, new RuleRepository[] {new RuleWithoutDescriptionRepository()}, ruleI18nManager, profilesManager);
     setupData("shared");
 
     // the rule has no name, it should fail
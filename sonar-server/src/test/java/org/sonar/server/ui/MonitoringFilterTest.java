@@ -19,6 +19,7 @@
  */
 package org.sonar.server.ui;
 
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Test;
 
 import javax.servlet.FilterChain;
@@ -79,4 +80,61 @@ public class MonitoringFilterTest {
     assertThat(domains).contains("sonar");
   }
 
+  @Test
+  public void shouldRecordMetricsByRoute() throws IOException, ServletException {
+    final MetricRegistry registry = new MetricRegistry();
+    MonitoringFilter filter = new MonitoringFilter() {
+      @Override
+      boolean isJmxMonitoringActive() {
+        return true;
+      }
+
+      @Override
+      MetricRegistry getRegistry() {
+        return registry;
+      }
+    };
+    FilterConfig config = mock(FilterConfig.class);
+    ServletContext ctx = mock(ServletContext.class);
+    when(config.getServletContext()).thenReturn(ctx);
+    when(ctx.getAttribute(MonitoringFilter.REGISTRY_ATTRIBUTE)).thenReturn(registry);
+    filter.init(config);
+
+    filter.doFilter(request("/sonar", "/sonar/api/issues/search"), mock(HttpServletResponse.class), mock(FilterChain.class));
+    filter.doFilter(request("/sonar", "/sonar/api/issues/search.json"), mock(HttpServletResponse.class), mock(FilterChain.class));
+    filter.doFilter(request("/sonar", "/sonar/api/issues/show/12"), mock(HttpServletResponse.class), mock(FilterChain.class));
+    filter.doFilter(request("/sonar", "/sonar/dashboard/index/12"), mock(HttpServletResponse.class), mock(FilterChain.class));
+
+    assertThat(registry.timer("http.api.issues.search.requests").getCount()).isEqualTo(2);
+    assertThat(registry.histogram("http.api.issues.search.dbTimeInMs").getCount()).isEqualTo(2);
+    assertThat(registry.counter("http.api.issues.search.activeRequests").getCount()).isEqualTo(0);
+    assertThat(registry.timer("http.api.issues.show.requests").getCount()).isEqualTo(1);
+    assertThat(registry.timer("http.dashboard.index.requests").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNormalizeRoutes() {
+    assertThat(MonitoringFilter.normalizeRoute("/api/resources/index")).isEqualTo("api.resources.index");
+    assertThat(MonitoringFilter.normalizeRoute("/api/issues/search")).isEqualTo("api.issues.search");
+    assertThat(MonitoringFilter.normalizeRoute("/api/issues/search.json")).isEqualTo("api.issues.search");
+    assertThat(MonitoringFilter.normalizeRoute("/api/issues/show/123")).isEqualTo("api.issues.show");
+    assertThat(MonitoringFilter.normalizeRoute("/api/sources.xml")).isEqualTo("api.sources");
+    assertThat(MonitoringFilter.normalizeRoute("/api/reviews/42")).isEqualTo("api.reviews");
+    assertThat(MonitoringFilter.normalizeRoute("/api/projects/org.codehaus.sonar:sonar")).isEqualTo("api.projects");
+    assertThat(MonitoringFilter.normalizeRoute("/api/resources")).isEqualTo("api.resources");
+    assertThat(MonitoringFilter.normalizeRoute("/dashboard/index/123")).isEqualTo("dashboard.index");
+    assertThat(MonitoringFilter.normalizeRoute("/resource/index/org.codehaus.sonar:sonar")).isEqualTo("resource.index");
+    assertThat(MonitoringFilter.normalizeRoute("/chart")).isEqualTo("chart");
+    assertThat(MonitoringFilter.normalizeRoute("/images/logo.png")).isEqualTo("images");
+    assertThat(MonitoringFilter.normalizeRoute("/")).isEqualTo("root");
+    assertThat(MonitoringFilter.normalizeRoute(null)).isEqualTo(MonitoringFilter.OTHER_ROUTE);
+  }
+
+  private static HttpServletRequest request(String contextPath, String uri) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getContextPath()).thenReturn(contextPath);
+    when(request.getRequestURI()).thenReturn(uri);
+    return request;
+  }
+
 }
@@ -19,15 +19,26 @@
  */
 package org.sonar.wsclient;
 
+import org.sonar.wsclient.connectors.ConnectionException;
 import org.sonar.wsclient.connectors.Connector;
 import org.sonar.wsclient.connectors.ConnectorFactory;
 import org.sonar.wsclient.services.*;
+import org.sonar.wsclient.unmarshallers.AbstractUnmarshaller;
+import org.sonar.wsclient.unmarshallers.ModelIterator;
 import org.sonar.wsclient.unmarshallers.UnmarshalException;
 import org.sonar.wsclient.unmarshallers.Unmarshaller;
 import org.sonar.wsclient.unmarshallers.Unmarshallers;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Sonar {
 
@@ -75,6 +86,68 @@ public class Sonar {
     return result;
   }
 
+  /**
+   * Executes the queries concurrently on at most <code>threads</code> connections. The connector
+   * must be thread-safe, like {@link org.sonar.wsclient.connectors.HttpClient4Connector}.
+   *
+   * @return the results, in the same order than queries
+   * @since 3.6
+   */
+  public <M extends Model> List<List<M>> findAll(List<? extends Query<M>> queries, int threads) {
+    if (queries.isEmpty()) {
+      return Collections.emptyList();
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, queries.size())));
+    try {
+      List<Future<List<M>>> futures = new ArrayList<Future<List<M>>>();
+      for (final Query<M> query : queries) {
+        futures.add(executor.submit(new Callable<List<M>>() {
+          public List<M> call() {
+            return findAll(query);
+          }
+        }));
+      }
+      List<List<M>> result = new ArrayList<List<M>>();
+      for (Future<List<M>> future : futures) {
+        result.add(future.get());
+      }
+      return result;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionException("Interrupted", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ConnectionException("Fail to execute queries", e.getCause());
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Same as {@link #findAll(org.sonar.wsclient.services.Query)} but models are unmarshalled while the response
+   * is downloaded, so that the whole response is never loaded in memory. The iterator must be closed
+   * if it's not fully consumed.
+   *
+   * @throws IllegalArgumentException if the models of the query are not returned as a JSON array, for example {@link Server}
+   * @since 3.6
+   */
+  public <M extends Model> ModelIterator<M> iterate(Query<M> query) {
+    Unmarshaller<M> unmarshaller = Unmarshallers.forModel(query.getModelClass());
+    if (!(unmarshaller instanceof AbstractUnmarshaller)) {
+      throw new IllegalArgumentException("Models " + query.getModelClass().getName() + " can not be iterated");
+    }
+    Reader json = connector.executeAsReader(query);
+    if (json == null) {
+      json = new StringReader("[]");
+    }
+    return ((AbstractUnmarshaller<M>) unmarshaller).toModels(json);
+  }
+
   public <M extends Model> M create(CreateQuery<M> query) {
     String json = connector.execute(query);
     M result = null;
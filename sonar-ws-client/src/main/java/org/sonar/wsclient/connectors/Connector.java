@@ -24,6 +24,9 @@ import org.sonar.wsclient.services.DeleteQuery;
 import org.sonar.wsclient.services.Query;
 import org.sonar.wsclient.services.UpdateQuery;
 
+import java.io.Reader;
+import java.io.StringReader;
+
 /**
  * @since 2.1
  */
@@ -35,6 +38,19 @@ public abstract class Connector {
    */
   public abstract String execute(Query<?> query);
 
+  /**
+   * Same as {@link #execute(org.sonar.wsclient.services.Query)} but the response is not loaded in memory.
+   * The default implementation wraps the response returned by {@link #execute(org.sonar.wsclient.services.Query)}.
+   *
+   * @return reader of the JSON response, which must be closed by caller, or null if 404 NOT FOUND error
+   * @throws ConnectionException if connection error or HTTP status not in (200, 404)
+   * @since 3.6
+   */
+  public Reader executeAsReader(Query<?> query) {
+    String json = execute(query);
+    return json == null ? null : new StringReader(json);
+  }
+
   /**
    * @return JSON response or null if 404 NOT FOUND error
    * @since 2.2
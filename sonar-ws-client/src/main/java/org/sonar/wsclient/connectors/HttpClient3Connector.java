@@ -27,6 +27,7 @@ import org.sonar.wsclient.Host;
 import org.sonar.wsclient.services.*;
 
 import java.io.*;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @since 2.1
@@ -81,6 +82,40 @@ public class HttpClient3Connector extends Connector {
     return executeRequest(newGetRequest(query));
   }
 
+  @Override
+  public Reader executeAsReader(Query<?> query) {
+    final HttpMethodBase method = newGetRequest(query);
+    try {
+      httpClient.executeMethod(method);
+
+      if (method.getStatusCode() == HttpStatus.SC_OK) {
+        return new InputStreamReader(getResponseBodyAsStream(method), method.getResponseCharSet()) {
+          @Override
+          public void close() throws IOException {
+            try {
+              super.close();
+            } finally {
+              method.releaseConnection();
+            }
+          }
+        };
+      }
+      method.releaseConnection();
+      if (method.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+        throw new ConnectionException("HTTP error: " + method.getStatusCode() + ", msg: " + method.getStatusText() + ", query: " + method);
+      }
+      return null;
+
+    } catch (HttpException e) {
+      method.releaseConnection();
+      throw new ConnectionException("Query: " + method, e);
+
+    } catch (IOException e) {
+      method.releaseConnection();
+      throw new ConnectionException("Query: " + method, e);
+    }
+  }
+
   @Override
   public String execute(CreateQuery<?> query) {
     return executeRequest(newPostRequest(query));
@@ -160,6 +195,7 @@ public class HttpClient3Connector extends Connector {
 
   private void initRequest(HttpMethodBase request, AbstractQuery query) {
     request.setRequestHeader("Accept", "application/json");
+    request.setRequestHeader("Accept-Encoding", "gzip");
     if (query.getLocale() != null) {
       request.setRequestHeader("Accept-Language", query.getLocale());
     }
@@ -169,7 +205,7 @@ public class HttpClient3Connector extends Connector {
   private String getResponseBodyAsString(HttpMethod method) {
     BufferedReader reader = null;
     try {
-      final InputStream inputStream = method.getResponseBodyAsStream();
+      final InputStream inputStream = getResponseBodyAsStream(method);
       reader = new BufferedReader(new InputStreamReader(inputStream));
       final StringBuilder sb = new StringBuilder();
       String line;
@@ -192,4 +228,13 @@ public class HttpClient3Connector extends Connector {
       }
     }
   }
+
+  private static InputStream getResponseBodyAsStream(HttpMethod method) throws IOException {
+    InputStream input = method.getResponseBodyAsStream();
+    Header encoding = method.getResponseHeader("Content-Encoding");
+    if (input != null && encoding != null && "gzip".equalsIgnoreCase(encoding.getValue())) {
+      return new GZIPInputStream(input);
+    }
+    return input;
+  }
 }
@@ -19,12 +19,14 @@
  */
 package org.sonar.wsclient.connectors;
 
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScheme;
 import org.apache.http.auth.AuthScope;
@@ -32,6 +34,7 @@ import org.apache.http.auth.AuthState;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
@@ -42,11 +45,13 @@ import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.sonar.wsclient.Host;
@@ -57,30 +62,89 @@ import org.sonar.wsclient.services.Query;
 import org.sonar.wsclient.services.UpdateQuery;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 
 /**
+ * Connections are pooled and kept alive, so this connector can be used by concurrent threads. Responses are compressed with gzip
+ * when the server supports it.
+ *
  * @since 2.1
  */
 public class HttpClient4Connector extends Connector {
 
+  /**
+   * @since 3.6
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
   private Host server;
   private DefaultHttpClient client;
+  private final RequestStatistics statistics = new RequestStatistics();
 
   public HttpClient4Connector(Host server) {
+    this(server, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  /**
+   * @param maxConnections the maximum number of concurrent connections to server
+   * @since 3.6
+   */
+  public HttpClient4Connector(Host server, int maxConnections) {
     this.server = server;
-    initClient();
+    initClient(maxConnections);
   }
 
   public DefaultHttpClient getHttpClient() {
     return client;
   }
 
+  /**
+   * Latency of the requests executed by this connector
+   * @since 3.6
+   */
+  public RequestStatistics getStatistics() {
+    return statistics;
+  }
+
   @Override
   public String execute(Query<?> query) {
     return executeRequest(newGetMethod(query));
   }
 
+  @Override
+  public Reader executeAsReader(Query<?> query) {
+    HttpGet request = newGetMethod(query);
+    long start = System.currentTimeMillis();
+    try {
+      BasicHttpContext context = createLocalContext(client);
+      HttpResponse response = client.execute(request, context);
+      HttpEntity entity = response.getEntity();
+      int statusCode = response.getStatusLine().getStatusCode();
+      if (entity != null && statusCode == HttpStatus.SC_OK) {
+        String charset = EntityUtils.getContentCharSet(entity);
+        // the connection is released when the content stream is closed
+        return new InputStreamReader(entity.getContent(), charset == null ? HTTP.DEFAULT_CONTENT_CHARSET : charset);
+      }
+      request.releaseConnection();
+      if (entity != null && statusCode != HttpStatus.SC_NOT_FOUND) {
+        throw new ConnectionException("HTTP error: " + statusCode
+          + ", msg: " + response.getStatusLine().getReasonPhrase()
+          + ", query: " + request.toString());
+      }
+      return null;
+
+    } catch (IOException e) {
+      request.releaseConnection();
+      throw new ConnectionException("Query: " + request.getURI(), e);
+
+    } finally {
+      // time to first byte, as the response is read by caller
+      statistics.add(System.currentTimeMillis() - start);
+    }
+  }
+
   @Override
   public String execute(CreateQuery<?> query) {
     return executeRequest(newPostMethod(query));
@@ -98,6 +162,7 @@ public class HttpClient4Connector extends Connector {
 
   private String executeRequest(HttpRequestBase request) {
     String json = null;
+    long start = System.currentTimeMillis();
     try {
       BasicHttpContext context = createLocalContext(client);
       HttpResponse response = client.execute(request, context);
@@ -118,6 +183,7 @@ public class HttpClient4Connector extends Connector {
 
     } finally {
       request.releaseConnection();
+      statistics.add(System.currentTimeMillis() - start);
     }
     return json;
   }
@@ -128,15 +194,22 @@ public class HttpClient4Connector extends Connector {
     }
   }
 
-  private void initClient() {
-    client = new DefaultHttpClient();
+  private void initClient(int maxConnections) {
+    PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+    client = new DefaultHttpClient(connectionManager);
     HttpParams params = client.getParams();
     HttpConnectionParams.setConnectionTimeout(params, AbstractQuery.DEFAULT_TIMEOUT_MILLISECONDS);
     HttpConnectionParams.setSoTimeout(params, AbstractQuery.DEFAULT_TIMEOUT_MILLISECONDS);
     if (server.getUsername() != null) {
       client.getCredentialsProvider()
         .setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(server.getUsername(), server.getPassword()));
+      // Add as the first request interceptor
+      client.addRequestInterceptor(new PreemptiveAuth(), 0);
     }
+    client.addRequestInterceptor(new GzipRequestInterceptor());
+    client.addResponseInterceptor(new GzipResponseInterceptor());
   }
 
   private BasicHttpContext createLocalContext(DefaultHttpClient client) {
@@ -147,9 +220,6 @@ public class HttpClient4Connector extends Connector {
       // execution context
       BasicScheme basicAuth = new BasicScheme();
       localcontext.setAttribute("preemptive-auth", basicAuth);
-
-      // Add as the first request interceptor
-      client.addRequestInterceptor(new PreemptiveAuth(), 0);
     }
     return localcontext;
   }
@@ -199,6 +269,28 @@ public class HttpClient4Connector extends Connector {
     request.getParams().setParameter(CoreConnectionPNames.SO_TIMEOUT, query.getTimeoutMilliseconds());
   }
 
+  static final class GzipRequestInterceptor implements HttpRequestInterceptor {
+    public void process(HttpRequest request, HttpContext context) {
+      if (!request.containsHeader("Accept-Encoding")) {
+        request.addHeader("Accept-Encoding", "gzip");
+      }
+    }
+  }
+
+  static final class GzipResponseInterceptor implements HttpResponseInterceptor {
+    public void process(HttpResponse response, HttpContext context) {
+      HttpEntity entity = response.getEntity();
+      if (entity != null && entity.getContentEncoding() != null) {
+        for (HeaderElement codec : entity.getContentEncoding().getElements()) {
+          if ("gzip".equalsIgnoreCase(codec.getName())) {
+            response.setEntity(new GzipDecompressingEntity(entity));
+            return;
+          }
+        }
+      }
+    }
+  }
+
   static final class PreemptiveAuth implements HttpRequestInterceptor {
     public void process(
       final HttpRequest request,
@@ -0,0 +1,65 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.wsclient.connectors;
+
+/**
+ * Latency of HTTP requests. This class is thread-safe.
+ *
+ * @since 3.6
+ */
+public final class RequestStatistics {
+
+  private long count = 0L;
+  private long totalMillis = 0L;
+  private long maxMillis = 0L;
+
+  synchronized void add(long durationMillis) {
+    count++;
+    totalMillis += durationMillis;
+    maxMillis = Math.max(maxMillis, durationMillis);
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getTotalMillis() {
+    return totalMillis;
+  }
+
+  public synchronized long getMaxMillis() {
+    return maxMillis;
+  }
+
+  public synchronized long getAverageMillis() {
+    return count == 0L ? 0L : totalMillis / count;
+  }
+
+  public synchronized void reset() {
+    count = 0L;
+    totalMillis = 0L;
+    maxMillis = 0L;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%d requests, average %d ms, max %d ms", count, getAverageMillis(), maxMillis);
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.wsclient.unmarshallers;
 import org.sonar.wsclient.services.Model;
 import org.sonar.wsclient.services.WSUtils;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -58,5 +59,15 @@ public abstract class AbstractUnmarshaller<M extends Model> implements Unmarshal
     return result;
   }
 
+  /**
+   * Models are unmarshalled one by one while the JSON array is read. The iterator
+   * must be closed if it's not fully consumed.
+   *
+   * @since 3.6
+   */
+  public final ModelIterator<M> toModels(Reader json) {
+    return new ModelIterator<M>(json, this);
+  }
+
   protected abstract M parse(Object elt);
 }
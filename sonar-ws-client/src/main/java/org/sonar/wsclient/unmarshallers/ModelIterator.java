@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.wsclient.unmarshallers;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.sonar.wsclient.services.Model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * Unmarshals the elements of a JSON array while it is read, so that the whole response
+ * is never loaded in memory. Only the JSON tree of the current element is built.
+ * The reader is closed when the last element is read or when {@link #close()} is called.
+ *
+ * @since 3.6
+ */
+public final class ModelIterator<M extends Model> implements Iterator<M>, Closeable {
+
+  // null elements of the array are ignored, as in AbstractUnmarshaller#toModels(String)
+  private static final Object NULL_ELEMENT = new Object();
+
+  private final Reader reader;
+  private final AbstractUnmarshaller<M> unmarshaller;
+  private final JSONParser parser = new JSONParser();
+  private final ElementHandler handler = new ElementHandler();
+  private M next;
+  private boolean finished = false;
+
+  ModelIterator(Reader reader, AbstractUnmarshaller<M> unmarshaller) {
+    this.reader = reader;
+    this.unmarshaller = unmarshaller;
+  }
+
+  public boolean hasNext() {
+    if (next == null && !finished) {
+      next = readNext();
+    }
+    return next != null;
+  }
+
+  public M next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    M result = next;
+    next = null;
+    return result;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public void close() {
+    finished = true;
+    try {
+      reader.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  private M readNext() {
+    try {
+      while (!finished) {
+        handler.element = null;
+        parser.parse(reader, handler, true);
+        if (handler.element == null) {
+          close();
+        } else if (handler.element != NULL_ELEMENT) {
+          return unmarshaller.parse(handler.element);
+        }
+      }
+      return null;
+
+    } catch (IOException e) {
+      close();
+      throw new UnmarshalException("Fail to read JSON stream: " + e.getMessage());
+    } catch (ParseException e) {
+      close();
+      throw new UnmarshalException("Fail to parse JSON stream: " + e);
+    }
+  }
+
+  /**
+   * Builds the JSON tree of each element of the root array, then interrupts parsing.
+   * If the root value is not an array, then it's considered as the single element.
+   */
+  private static final class ElementHandler implements ContentHandler {
+    private static final Object ROOT_ARRAY = new Object();
+
+    private final LinkedList<Object> stack = new LinkedList<Object>();
+    private Object element;
+
+    public void startJSON() {
+      stack.clear();
+    }
+
+    public void endJSON() {
+      // nothing to do
+    }
+
+    public boolean startObject() {
+      stack.addFirst(new JSONObject());
+      return true;
+    }
+
+    public boolean endObject() {
+      return addValue(stack.removeFirst());
+    }
+
+    public boolean startObjectEntry(String key) {
+      stack.addFirst(key);
+      return true;
+    }
+
+    public boolean endObjectEntry() {
+      return true;
+    }
+
+    public boolean startArray() {
+      stack.addFirst(stack.isEmpty() ? ROOT_ARRAY : new JSONArray());
+      return true;
+    }
+
+    public boolean endArray() {
+      Object array = stack.removeFirst();
+      return array == ROOT_ARRAY || addValue(array);
+    }
+
+    public boolean primitive(Object value) {
+      return addValue(value);
+    }
+
+    /**
+     * @return false if the element of root array is complete, so parsing must be interrupted
+     */
+    @SuppressWarnings("unchecked")
+    private boolean addValue(Object value) {
+      if (stack.isEmpty() || stack.getFirst() == ROOT_ARRAY) {
+        element = (value == null ? NULL_ELEMENT : value);
+        return false;
+      }
+      Object parent = stack.getFirst();
+      if (parent instanceof String) {
+        stack.removeFirst();
+        ((JSONObject) stack.getFirst()).put(parent, value);
+      } else {
+        ((JSONArray) parent).add(value);
+      }
+      return true;
+    }
+  }
+}
@@ -33,12 +33,15 @@ import org.sonar.wsclient.services.Query;
 import org.sonar.wsclient.services.RuleQuery;
 import org.sonar.wsclient.services.Server;
 import org.sonar.wsclient.services.ServerQuery;
+import org.sonar.wsclient.unmarshallers.ModelIterator;
 import org.sonar.wsclient.unmarshallers.UnmarshalException;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.number.OrderingComparisons.greaterThan;
 import static org.junit.Assert.assertThat;
@@ -70,6 +73,7 @@ public class SonarTest {
     tester.addServlet(MetricServlet.class, "/api/metrics");
     tester.addServlet(EmptyServlet.class, "/api/empty");
     tester.addServlet(BadRulesServlet.class, "/api/rules");
+    tester.addServlet(GzipServlet.class, "/api/gzip");
     baseUrl = tester.createSocketConnector(true);
     tester.start();
 
@@ -90,6 +94,53 @@ public class SonarTest {
     assertThat(metrics.size(), greaterThan(1));
   }
 
+  @Test
+  public void iterate() {
+    ModelIterator<Metric> metrics = sonar.iterate(MetricQuery.all());
+    int count = 0;
+    while (metrics.hasNext()) {
+      assertThat(metrics.next().getKey(), notNullValue());
+      count++;
+    }
+    assertThat(count, greaterThan(1));
+  }
+
+  @Test
+  public void iterateEmptyResults() {
+    assertThat(sonar.iterate(new EmptyQuery()).hasNext(), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void iterateOnlyArraysOfModels() {
+    sonar.iterate(new ServerQuery());
+  }
+
+  @Test
+  public void findAllConcurrently() {
+    List<List<Metric>> results = sonar.findAll(Arrays.asList(MetricQuery.all(), new EmptyQuery(), MetricQuery.all()), 2);
+    assertThat(results.size(), is(3));
+    assertThat(results.get(0).size(), greaterThan(1));
+    assertThat(results.get(1).size(), is(0));
+    assertThat(results.get(2).size(), is(results.get(0).size()));
+  }
+
+  @Test
+  public void decompressGzipResponse() {
+    Collection<Metric> metrics = sonar.findAll(new GzipQuery());
+    assertThat(metrics.size(), is(sonar.findAll(MetricQuery.all()).size()));
+  }
+
+  @Test
+  public void measureLatency() {
+    HttpClient4Connector connector = new HttpClient4Connector(new Host(baseUrl), 2);
+    new Sonar(connector).findAll(MetricQuery.all());
+    new Sonar(connector).findAll(MetricQuery.all());
+
+    assertThat(connector.getStatistics().getCount(), is(2L));
+    assertThat(connector.getStatistics().getMaxMillis() >= connector.getStatistics().getAverageMillis(), is(true));
+    connector.close();
+  }
+
   @Test
   public void findEmptyResults() {
     Query<Metric> query = new EmptyQuery();
@@ -127,6 +178,18 @@ public class SonarTest {
     }
   }
 
+  static class GzipQuery extends Query<Metric> {
+    @Override
+    public String getUrl() {
+      return "/api/gzip";
+    }
+
+    @Override
+    public Class<Metric> getModelClass() {
+      return Metric.class;
+    }
+  }
+
   static class EmptyQuery extends Query<Metric> {
     @Override
     public String getUrl() {
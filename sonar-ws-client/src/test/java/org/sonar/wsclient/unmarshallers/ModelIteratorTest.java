@@ -0,0 +1,108 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2013 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.wsclient.unmarshallers;
+
+import org.junit.Test;
+import org.sonar.wsclient.services.Metric;
+import org.sonar.wsclient.services.Model;
+import org.sonar.wsclient.services.Violation;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ModelIteratorTest extends UnmarshallerTestCase {
+
+  @Test
+  public void should_unmarshal_elements_of_array() {
+    List<Violation> violations = toList(new ViolationUnmarshaller().toModels(new StringReader(loadFile("/violations/violations.json"))));
+
+    List<Violation> expected = new ViolationUnmarshaller().toModels(loadFile("/violations/violations.json"));
+    assertThat(violations.size(), is(2));
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(violations.get(i).getId(), is(expected.get(i).getId()));
+      assertThat(violations.get(i).getMessage(), is(expected.get(i).getMessage()));
+      assertThat(violations.get(i).getRuleKey(), is(expected.get(i).getRuleKey()));
+      assertThat(violations.get(i).getResourceKey(), is(expected.get(i).getResourceKey()));
+    }
+  }
+
+  @Test
+  public void should_support_empty_array() {
+    ModelIterator<Metric> it = new MetricUnmarshaller().toModels(new StringReader("[]"));
+    assertThat(it.hasNext(), is(false));
+  }
+
+  @Test
+  public void should_ignore_null_elements() {
+    List<Metric> metrics = toList(new MetricUnmarshaller().toModels(new StringReader("[null,{\"key\":\"ncloc\",\"domain\":\"Size\",\"direction\":-1},null]")));
+    assertThat(metrics.size(), is(1));
+    assertThat(metrics.get(0).getKey(), is("ncloc"));
+  }
+
+  @Test
+  public void should_support_single_object() {
+    List<Metric> metrics = toList(new MetricUnmarshaller().toModels(new StringReader("{\"key\":\"ncloc\",\"direction\":-1}")));
+    assertThat(metrics.size(), is(1));
+    assertThat(metrics.get(0).getKey(), is("ncloc"));
+  }
+
+  @Test
+  public void should_read_large_array() {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 10000; i++) {
+      if (i > 0) {
+        json.append(",");
+      }
+      json.append("{\"key\":\"metric").append(i).append("\",\"val_type\":\"INT\",\"direction\":1,\"hidden\":false}");
+    }
+    json.append("]");
+
+    ModelIterator<Metric> it = new MetricUnmarshaller().toModels(new StringReader(json.toString()));
+    int count = 0;
+    while (it.hasNext()) {
+      assertThat(it.next().getKey(), is("metric" + count));
+      count++;
+    }
+    assertThat(count, is(10000));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void should_fail_if_no_more_elements() {
+    new MetricUnmarshaller().toModels(new StringReader("[]")).next();
+  }
+
+  @Test(expected = UnmarshalException.class)
+  public void should_fail_if_bad_json() {
+    toList(new MetricUnmarshaller().toModels(new StringReader("[{\"key\":\"ncloc\",\"direction\":-1}, {\"key\"")));
+  }
+
+  private static <M extends Model> List<M> toList(ModelIterator<M> it) {
+    List<M> result = new ArrayList<M>();
+    while (it.hasNext()) {
+      result.add(it.next());
+    }
+    return result;
+  }
+}